@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Wraps a {@link DataSeries} that is expensive to query (e.g. one backed by the datastore) so that reduced queries, see
+ * {@link #getDataForRange(Range, int)}, are served from a {@link MipmapDataSeries} that caches the samples fetched so far. Each reduced
+ * query only fetches the samples newer than the last cached ones, which suits timelines whose data grows at the end. Unreduced queries
+ * go straight to the wrapped series so their results do not change.
+ *
+ * The last {@link #REFETCHED_SAMPLE_COUNT} cached samples are fetched again along with the new ones, so that a sample which arrives late
+ * among them replaces the cached samples from its position on. Once the cache holds more than its maximum size, the samples before the
+ * queried range are dropped from it if they are at least half of the cache, so the cache stays within the larger of its maximum size and
+ * twice the samples being shown.
+ */
+public class CachedMipmapDataSeries implements DataSeries<Long> {
+  @VisibleForTesting static final int REFETCHED_SAMPLE_COUNT = 64;
+  private static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+  @NotNull private final DataSeries<Long> mySeries;
+  @NotNull private final Range myDataRange;
+  private final int myMaxSize;
+  @NotNull private MipmapDataSeries myCache = new MipmapDataSeries();
+  /**
+   * Start of the span that has been fetched into {@link #myCache}, or {@link Double#NaN} before the first fetch.
+   */
+  private double myCachedMin = Double.NaN;
+
+  /**
+   * @param series    the series to fetch samples from. It must return samples sorted by x.
+   * @param dataRange the range of the data, used as the start of the first fetch so that panning back over it does not refetch.
+   */
+  public CachedMipmapDataSeries(@NotNull DataSeries<Long> series, @NotNull Range dataRange) {
+    this(series, dataRange, DEFAULT_MAX_SIZE);
+  }
+
+  @VisibleForTesting
+  CachedMipmapDataSeries(@NotNull DataSeries<Long> series, @NotNull Range dataRange, int maxSize) {
+    mySeries = series;
+    myDataRange = dataRange;
+    myMaxSize = maxSize;
+  }
+
+  @Override
+  public List<SeriesData<Long>> getDataForRange(Range range) {
+    return mySeries.getDataForRange(range);
+  }
+
+  @Override
+  public synchronized List<SeriesData<Long>> getDataForRange(Range range, int resolution) {
+    if (resolution <= 0 || range.isEmpty()) {
+      return mySeries.getDataForRange(range, resolution);
+    }
+    updateCache(range);
+    return myCache.getDataForRange(range, resolution);
+  }
+
+  @Override
+  public synchronized List<SeriesData<Long>> getAlignedDataForRange(Range range, int resolution) {
+    if (resolution <= 0 || range.isEmpty()) {
+      return mySeries.getAlignedDataForRange(range, resolution);
+    }
+    updateCache(range);
+    return myCache.getAlignedDataForRange(range, resolution);
+  }
+
+  private void updateCache(@NotNull Range range) {
+    if (Double.isNaN(myCachedMin) || range.getMin() < myCachedMin) {
+      // The cache can only grow at the end, so start over from the earlier point.
+      myCache = new MipmapDataSeries();
+      myCachedMin = myDataRange.isEmpty() ? range.getMin() : Math.min(range.getMin(), myDataRange.getMin());
+    }
+    int size = myCache.size();
+    if (size == 0 || range.getMax() > myCache.getX(size - 1)) {
+      fetch(range);
+    }
+    if (myCache.size() > myMaxSize) {
+      // Keep the sample before the range too, so that the line enters the range from the correct value.
+      int fromIndex = myCache.getNearestXIndex((long)range.getMin());
+      if (fromIndex >= myCache.size() / 2) {
+        myCache = copyOf(myCache, fromIndex, myCache.size());
+        myCachedMin = myCache.getX(0);
+      }
+    }
+  }
+
+  /**
+   * Fetches the samples up to the end of the given range, along with the last {@link #REFETCHED_SAMPLE_COUNT} cached ones. If the
+   * refetched samples differ from the cached ones, e.g. because a sample arrived late, the cache is rebuilt from the first difference.
+   */
+  private void fetch(@NotNull Range range) {
+    int size = myCache.size();
+    int cacheIndex = Math.max(0, size - REFETCHED_SAMPLE_COUNT);
+    double fetchMin = size == 0 ? myCachedMin : myCache.getX(cacheIndex);
+    // Samples with the same x as the first refetched one are all returned by the wrapped series.
+    while (cacheIndex > 0 && myCache.getX(cacheIndex - 1) == fetchMin) {
+      cacheIndex--;
+    }
+    List<SeriesData<Long>> fetched = mySeries.getDataForRange(new Range(fetchMin, range.getMax()));
+
+    int fetchedIndex = 0;
+    while (size > 0 && fetchedIndex < fetched.size() && fetched.get(fetchedIndex).x < fetchMin) {
+      fetchedIndex++;
+    }
+    while (fetchedIndex < fetched.size() && cacheIndex < size) {
+      SeriesData<Long> data = fetched.get(fetchedIndex);
+      if (data.x != myCache.getX(cacheIndex) || data.value != myCache.getY(cacheIndex)) {
+        myCache = copyOf(myCache, 0, cacheIndex);
+        break;
+      }
+      fetchedIndex++;
+      cacheIndex++;
+    }
+    for (; fetchedIndex < fetched.size(); fetchedIndex++) {
+      SeriesData<Long> data = fetched.get(fetchedIndex);
+      myCache.add(data.x, data.value);
+    }
+  }
+
+  @NotNull
+  private static MipmapDataSeries copyOf(@NotNull MipmapDataSeries series, int fromIndex, int toIndex) {
+    MipmapDataSeries copy = new MipmapDataSeries();
+    for (int i = fromIndex; i < toIndex; i++) {
+      copy.add(series.getX(i), series.getY(i));
+    }
+    return copy;
+  }
+}
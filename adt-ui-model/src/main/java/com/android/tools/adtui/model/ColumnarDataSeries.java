@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Append-only {@link DataSeries} that keeps its x values in primitive, fixed-size chunks instead of boxed {@link SeriesData} objects.
+ * Subclasses provide the storage for the y values by growing their own column whenever {@link #growColumns(int)} is called.
+ *
+ * Range queries binary search the x column directly and return a read-only view over the matching indices, so no data is copied. Since
+ * samples can only be appended, a returned view keeps describing the same samples after more data arrives.
+ *
+ * Samples are expected to be appended in non-decreasing x order by a single writer. Readers on other threads only observe samples whose
+ * {@link #size()} has been published.
+ */
+public abstract class ColumnarDataSeries<E> implements DataSeries<E> {
+  static final int CHUNK_SHIFT = 12;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  @NotNull private long[][] myXChunks = new long[0][];
+  private volatile int mySize;
+
+  @Override
+  public List<SeriesData<E>> getDataForRange(Range range) {
+    int size = mySize;
+    if (size == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    int fromIndex = getNearestXIndex((long)range.getMin(), size);
+    int toIndex = getNearestXIndex((long)range.getMax(), size) + 1;
+    return new SeriesDataView(fromIndex, toIndex);
+  }
+
+  @NotNull
+  public List<SeriesData<E>> getAllData() {
+    return new SeriesDataView(0, mySize);
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    checkIndex(index);
+    return myXChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the value of Y at a given index.
+   */
+  public abstract E getY(int index);
+
+  /**
+   * @return the index of the last sample whose x is less than or equal to the given value, clamped to the valid index range, like
+   * {@link DefaultDataSeries#getNearestXIndex(long)}. Duplicate x values resolve to the last sample with that x.
+   */
+  public int getNearestXIndex(long x) {
+    return getNearestXIndex(x, mySize);
+  }
+
+  /**
+   * Reserves the slot for the next sample and writes its x value. Subclasses write their y value into the returned index and then call
+   * {@link #publish()} to make the sample visible to readers.
+   */
+  protected final int appendX(long x) {
+    int index = mySize;
+    if (index > 0 && x < getX(index - 1)) {
+      throw new IllegalArgumentException("Samples must be added in non-decreasing x order: " + x + " < " + getX(index - 1));
+    }
+    int chunk = index >>> CHUNK_SHIFT;
+    if (chunk == myXChunks.length) {
+      myXChunks = grow(myXChunks);
+      growColumns(chunk + 1);
+    }
+    myXChunks[chunk][index & CHUNK_MASK] = x;
+    return index;
+  }
+
+  protected final void publish() {
+    mySize = mySize + 1;
+  }
+
+  protected final void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+
+  /**
+   * Called whenever a new chunk is needed so that subclasses can grow their y columns to hold {@code chunkCount} chunks.
+   */
+  protected abstract void growColumns(int chunkCount);
+
+  @NotNull
+  static long[][] grow(@NotNull long[][] chunks) {
+    long[][] grown = new long[chunks.length + 1][];
+    System.arraycopy(chunks, 0, grown, 0, chunks.length);
+    grown[chunks.length] = new long[CHUNK_SIZE];
+    return grown;
+  }
+
+  private int getNearestXIndex(long x, int size) {
+    int low = 0;
+    int high = size - 1;
+    int index = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midX = getX(mid);
+      if (midX <= x) {
+        // Keep searching right so duplicates resolve to the last matching sample, rounding down like DefaultDataSeries.
+        index = mid;
+        low = mid + 1;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    return Math.max(0, Math.min(index, size - 1));
+  }
+
+  /**
+   * Read-only view over a fixed index range of the series. {@link SeriesData} instances are only created when an element is accessed.
+   */
+  private final class SeriesDataView extends AbstractList<SeriesData<E>> implements RandomAccess {
+    private final int myFromIndex;
+    private final int myToIndex;
+
+    SeriesDataView(int fromIndex, int toIndex) {
+      myFromIndex = fromIndex;
+      myToIndex = toIndex;
+    }
+
+    @Override
+    public SeriesData<E> get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      int seriesIndex = myFromIndex + index;
+      return new SeriesData<>(getX(seriesIndex), getY(seriesIndex));
+    }
+
+    @Override
+    public int size() {
+      return myToIndex - myFromIndex;
+    }
+
+    @Override
+    public List<SeriesData<E>> subList(int fromIndex, int toIndex) {
+      if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+        throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size());
+      }
+      return new SeriesDataView(myFromIndex + fromIndex, myFromIndex + toIndex);
+    }
+  }
+}
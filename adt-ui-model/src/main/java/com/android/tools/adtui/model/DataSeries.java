@@ -23,4 +23,21 @@ import java.util.List;
 public interface DataSeries<E> {
 
   List<SeriesData<E>> getDataForRange(Range range);
+
+  /**
+   * Returns the data for the given range, reduced to roughly {@code resolution} buckets (e.g. the pixel width of the component showing
+   * it) if the series keeps a level-of-detail representation of its data such as {@link MipmapDataSeries}. Other series return the same
+   * data as {@link #getDataForRange(Range)}.
+   */
+  default List<SeriesData<E>> getDataForRange(Range range, int resolution) {
+    return getDataForRange(range);
+  }
+
+  /**
+   * Same as {@link #getDataForRange(Range, int)}, but the data is reduced by picking samples at fixed x intervals, so that series sharing
+   * their x values return the same x values. This is needed by series whose values are added up point by point, like stacked lines.
+   */
+  default List<SeriesData<E>> getAlignedDataForRange(Range range, int resolution) {
+    return getDataForRange(range);
+  }
 }
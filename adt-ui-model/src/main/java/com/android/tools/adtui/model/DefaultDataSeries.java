@@ -16,7 +16,6 @@
 package com.android.tools.adtui.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -71,15 +70,31 @@ public class DefaultDataSeries<E> implements DataSeries<E> {
   }
 
   public int getNearestXIndex(long x) {
-    int index = Collections.binarySearch(mSeriesList.stream().map(data -> data.x).collect(Collectors.toList()), x);
+    // Search the x values in place rather than mapping them into a new list, which made every range query O(n).
+    int low = 0;
+    int high = size() - 1;
+    int index = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midX = mSeriesList.get(mid).x;
+      if (midX < x) {
+        low = mid + 1;
+      }
+      else if (midX > x) {
+        high = mid - 1;
+      }
+      else {
+        index = mid;
+        break;
+      }
+    }
 
     if (index < 0) {
       // No exact match, returns position to the left of the insertion point.
-      // NOTE: binarySearch returns -(insertion point + 1) if not found.
       // Example: Value = 2.5, data = 0,1,2,3,4.
-      //    BinarySearch will return -4 = -(3 + 1) as 3 is the insertion point.
-      //    Given our usage of the data we want to round down not up as such we step to 1 before the insertion point.
-      index = -index - 2;
+      //    The insertion point is 3, given our usage of the data we want to round down not up as such we step to 1 before the
+      //    insertion point.
+      index = low - 1;
     }
 
     return Math.max(0, Math.min(index, size() - 1));
@@ -15,6 +15,8 @@
  */
 package com.android.tools.adtui.model;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -40,6 +42,24 @@ public interface HNode<N extends HNode<N>> {
 
   int getDepth();
 
+  /**
+   * Returns the greatest depth of this node and its descendants. Nodes that keep track of the depths of their subtrees can override this
+   * to avoid visiting every descendant.
+   */
+  default int getMaxDepth() {
+    int maxDepth = getDepth();
+    Deque<HNode<?>> queue = new ArrayDeque<>();
+    queue.add(this);
+    while (!queue.isEmpty()) {
+      HNode<?> node = queue.poll();
+      maxDepth = Math.max(maxDepth, node.getDepth());
+      for (int i = 0; i < node.getChildCount(); ++i) {
+        queue.add(node.getChildAt(i));
+      }
+    }
+    return maxDepth;
+  }
+
   default long getDuration() {
     return getEnd() - getStart();
   }
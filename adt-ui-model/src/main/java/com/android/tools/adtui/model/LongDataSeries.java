@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link ColumnarDataSeries} that stores its y values as primitive longs. Use {@link #add(long, long)} and {@link #getLongY(int)}
+ * to avoid boxing on the write and read paths; {@link #getY(int)} only boxes for callers that go through {@link DataSeries}.
+ */
+public class LongDataSeries extends ColumnarDataSeries<Long> {
+  @NotNull private long[][] myYChunks = new long[0][];
+
+  public void add(long x, long y) {
+    int index = appendX(x);
+    myYChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = y;
+    publish();
+  }
+
+  public long getLongY(int index) {
+    checkIndex(index);
+    return myYChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  @Override
+  public Long getY(int index) {
+    return getLongY(index);
+  }
+
+  @Override
+  protected void growColumns(int chunkCount) {
+    long[][] grown = new long[chunkCount][];
+    System.arraycopy(myYChunks, 0, grown, 0, myYChunks.length);
+    for (int i = myYChunks.length; i < chunkCount; i++) {
+      grown[i] = new long[CHUNK_SIZE];
+    }
+    myYChunks = grown;
+  }
+}
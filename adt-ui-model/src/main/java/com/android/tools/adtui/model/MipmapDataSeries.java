@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link LongDataSeries} with a level-of-detail pyramid on top of it. Level {@code k} groups the raw samples into buckets of
+ * {@code FANOUT^k} consecutive samples and keeps the index of each bucket's min and max sample.
+ * The pyramid is updated incrementally in {@link #add(long, long)}, at a cost of one bucket update per level.
+ *
+ * {@link #getDataForRange(Range, int)} picks the coarsest level that still gives one bucket per unit of resolution (usually a pixel) and
+ * returns the first, min, max and last sample of each bucket, so the cost of a query depends on the resolution and not on the number of
+ * samples in the range. Like {@link ColumnarDataSeries}, the series expects a single writer.
+ */
+public class MipmapDataSeries implements DataSeries<Long> {
+  private static final int FANOUT_SHIFT = 2;
+  /**
+   * A bucket contributes at most its first, min, max and last sample.
+   */
+  private static final int POINTS_PER_BUCKET = 4;
+
+  @NotNull private final LongDataSeries myRawSeries = new LongDataSeries();
+  /**
+   * Levels 1 and up. The raw series acts as level 0.
+   */
+  @NotNull private final List<Level> myLevels = new CopyOnWriteArrayList<>();
+  /**
+   * Number of samples that are fully reflected in every level. Only samples below this index are visible to readers.
+   */
+  private volatile int mySize;
+
+  public void add(long x, long y) {
+    myRawSeries.add(x, y);
+    int index = myRawSeries.size() - 1;
+    for (Level level : myLevels) {
+      level.add(index);
+    }
+    // Add a level once the current top one has more than one bucket, seeding it from the raw samples added so far.
+    while (index >= getBucketSpan(myLevels.size() + 1)) {
+      Level level = new Level(myLevels.size() + 1);
+      for (int i = 0; i <= index; i++) {
+        level.add(i);
+      }
+      myLevels.add(level);
+    }
+    mySize = index + 1;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    return myRawSeries.getX(index);
+  }
+
+  public long getY(int index) {
+    return myRawSeries.getLongY(index);
+  }
+
+  /**
+   * @return the index of the last sample whose x is less than or equal to the given value, clamped to the valid index range.
+   */
+  public int getNearestXIndex(long x) {
+    return Math.min(myRawSeries.getNearestXIndex(x), Math.max(0, mySize - 1));
+  }
+
+  @Override
+  public List<SeriesData<Long>> getDataForRange(Range range) {
+    int size = mySize;
+    if (size == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return myRawSeries.getAllData().subList(getFromIndex(range, size), getToIndex(range, size) + 1);
+  }
+
+  /**
+   * Returns the samples in the given range, reduced to the first, min, max and last sample of at most {@code resolution} buckets. The
+   * raw samples are returned when there are not more of them than the reduced data would have.
+   */
+  @Override
+  public List<SeriesData<Long>> getDataForRange(Range range, int resolution) {
+    int size = mySize;
+    if (size == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int fromIndex = getFromIndex(range, size);
+    int toIndex = getToIndex(range, size);
+    int levelIndex = getLevelForResolution(toIndex - fromIndex + 1, resolution);
+    if (levelIndex < 0) {
+      return myRawSeries.getAllData().subList(fromIndex, toIndex + 1);
+    }
+
+    Level level = myLevels.get(levelIndex);
+    List<SeriesData<Long>> reduced = new ArrayList<>();
+    int[] indices = new int[POINTS_PER_BUCKET];
+    for (int bucket = fromIndex >> level.myShift; bucket <= toIndex >> level.myShift; bucket++) {
+      int bucketStart = bucket << level.myShift;
+      int bucketEnd = ((bucket + 1) << level.myShift) - 1;
+      indices[0] = Math.max(bucketStart, fromIndex);
+      indices[3] = Math.min(bucketEnd, toIndex);
+      if (indices[0] == bucketStart && indices[3] == bucketEnd) {
+        indices[1] = level.myMinIndices[bucket];
+        indices[2] = level.myMaxIndices[bucket];
+      }
+      else {
+        // The bucket is cut by the range, so its extremes may lie outside of it.
+        findMinMaxIndices(indices[0], indices[3], indices);
+      }
+      Arrays.sort(indices);
+      for (int i = 0; i < indices.length; i++) {
+        if (i == 0 || indices[i] != indices[i - 1]) {
+          reduced.add(new SeriesData<>(getX(indices[i]), getY(indices[i])));
+        }
+      }
+    }
+    return reduced;
+  }
+
+  /**
+   * Returns the samples in the given range, reduced to the last sample at or before each multiple of {@code range.getLength() /
+   * resolution}. Unlike {@link #getDataForRange(Range, int)}, samples are picked by their x rather than by their index, so series that
+   * share their x values, such as stacked lines, still share them after the reduction.
+   */
+  @Override
+  public List<SeriesData<Long>> getAlignedDataForRange(Range range, int resolution) {
+    int size = mySize;
+    if (size == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int fromIndex = getFromIndex(range, size);
+    int toIndex = getToIndex(range, size);
+    if (resolution <= 0) {
+      return myRawSeries.getAllData().subList(fromIndex, toIndex + 1);
+    }
+
+    double interval = range.getLength() / resolution;
+    List<SeriesData<Long>> sampled = new ArrayList<>();
+    int lastIndex = -1;
+    long lastStep = (long)Math.ceil(range.getMax() / interval);
+    for (long step = (long)Math.floor(range.getMin() / interval); step <= lastStep; step++) {
+      int index = Math.max(fromIndex, Math.min(toIndex, myRawSeries.getNearestXIndex((long)(step * interval))));
+      if (index != lastIndex) {
+        sampled.add(new SeriesData<>(getX(index), getY(index)));
+        lastIndex = index;
+      }
+    }
+    return sampled;
+  }
+
+  /**
+   * Stores the indices of the min and max sample in {@code [from, to]} into {@code result[1]} and {@code result[2]}. The span is covered
+   * with the coarsest whole buckets that fit in it, so this costs O(levels * FANOUT) rather than O(to - from).
+   */
+  private void findMinMaxIndices(int from, int to, @NotNull int[] result) {
+    int minIndex = from;
+    int maxIndex = from;
+    int index = from;
+    while (index <= to) {
+      Level coarsest = null;
+      for (Level level : myLevels) {
+        int span = 1 << level.myShift;
+        if ((index & (span - 1)) != 0 || index + span - 1 > to) {
+          break;
+        }
+        coarsest = level;
+      }
+      int candidateMin = index;
+      int candidateMax = index;
+      if (coarsest == null) {
+        index++;
+      }
+      else {
+        int bucket = index >> coarsest.myShift;
+        candidateMin = coarsest.myMinIndices[bucket];
+        candidateMax = coarsest.myMaxIndices[bucket];
+        index += 1 << coarsest.myShift;
+      }
+      if (getY(candidateMin) < getY(minIndex)) {
+        minIndex = candidateMin;
+      }
+      if (getY(candidateMax) > getY(maxIndex)) {
+        maxIndex = candidateMax;
+      }
+    }
+    result[1] = minIndex;
+    result[2] = maxIndex;
+  }
+
+  /**
+   * @return the index into {@link #myLevels} to serve a query over {@code count} samples, or -1 if the raw samples should be used.
+   */
+  private int getLevelForResolution(int count, int resolution) {
+    if (resolution <= 0 || count <= (long)resolution * POINTS_PER_BUCKET) {
+      return -1;
+    }
+    int levelCount = myLevels.size();
+    for (int i = 0; i < levelCount; i++) {
+      // Conservatively assume the range does not start on a bucket boundary, which may cost one extra bucket.
+      if ((count >> myLevels.get(i).myShift) + 1 <= resolution) {
+        return i;
+      }
+    }
+    return levelCount - 1;
+  }
+
+  private int getFromIndex(@NotNull Range range, int size) {
+    return Math.min(myRawSeries.getNearestXIndex((long)range.getMin()), size - 1);
+  }
+
+  private int getToIndex(@NotNull Range range, int size) {
+    return Math.min(myRawSeries.getNearestXIndex((long)range.getMax()), size - 1);
+  }
+
+  private static long getBucketSpan(int level) {
+    return 1L << (level * FANOUT_SHIFT);
+  }
+
+  private final class Level {
+    private final int myShift;
+    @NotNull private int[] myMinIndices = new int[16];
+    @NotNull private int[] myMaxIndices = new int[16];
+    private int myBucketCount;
+
+    Level(int level) {
+      myShift = level * FANOUT_SHIFT;
+    }
+
+    void add(int index) {
+      int bucket = index >> myShift;
+      long y = getY(index);
+      if (bucket == myBucketCount) {
+        if (bucket == myMinIndices.length) {
+          int capacity = myMinIndices.length * 2;
+          myMinIndices = Arrays.copyOf(myMinIndices, capacity);
+          myMaxIndices = Arrays.copyOf(myMaxIndices, capacity);
+        }
+        myMinIndices[bucket] = index;
+        myMaxIndices[bucket] = index;
+        myBucketCount++;
+        return;
+      }
+
+      if (y < getY(myMinIndices[bucket])) {
+        myMinIndices[bucket] = index;
+      }
+      if (y > getY(myMaxIndices[bucket])) {
+        myMaxIndices[bucket] = index;
+      }
+    }
+  }
+}
@@ -38,6 +38,8 @@ public class RangedSeries<E> {
   protected final Range myIntersectRange;
 
   @NotNull private Range myLastQueriedRange = new Range();
+  private int myLastQueriedResolution;
+  private boolean myLastQueriedAligned;
   @NotNull private List<SeriesData<E>> myLastQueriedSeries = Collections.emptyList();
 
   /**
@@ -74,17 +76,44 @@ public class RangedSeries<E> {
    */
   @NotNull
   public List<SeriesData<E>> getSeries() {
+    return getSeries(0);
+  }
+
+  /**
+   * Same as {@link #getSeries()}, but lets the underlying {@link DataSeries} reduce its data to the given resolution. See
+   * {@link DataSeries#getDataForRange(Range, int)}.
+   *
+   * @param resolution The number of buckets (usually pixels) the data will be shown in, or 0 to get all the data in the range.
+   */
+  @NotNull
+  public List<SeriesData<E>> getSeries(int resolution) {
+    return getSeries(resolution, false);
+  }
+
+  /**
+   * Same as {@link #getSeries(int)}, but keeps the x values of the data aligned with those of other series that share them. See
+   * {@link DataSeries#getAlignedDataForRange(Range, int)}.
+   */
+  @NotNull
+  public List<SeriesData<E>> getAlignedSeries(int resolution) {
+    return getSeries(resolution, true);
+  }
+
+  @NotNull
+  private List<SeriesData<E>> getSeries(int resolution, boolean aligned) {
     Range queryRange = myRange.getIntersection(myIntersectRange);
     if (queryRange.getMax() == Long.MAX_VALUE || queryRange.getMax() == Double.MAX_VALUE) {
-      return getSeriesForRange(queryRange);
+      return getSeriesForRange(queryRange, resolution, aligned);
     }
 
-    if (myLastQueriedRange.isSameAs(queryRange)) {
+    if (myLastQueriedRange.isSameAs(queryRange) && myLastQueriedResolution == resolution && myLastQueriedAligned == aligned) {
       return myLastQueriedSeries;
     }
 
-    myLastQueriedSeries = getSeriesForRange(queryRange);
+    myLastQueriedSeries = getSeriesForRange(queryRange, resolution, aligned);
     myLastQueriedRange = queryRange;
+    myLastQueriedResolution = resolution;
+    myLastQueriedAligned = aligned;
     return myLastQueriedSeries;
   }
 
@@ -97,6 +126,14 @@ public class RangedSeries<E> {
     return mySeries.getDataForRange(range);
   }
 
+  @NotNull
+  private List<SeriesData<E>> getSeriesForRange(@NotNull Range range, int resolution, boolean aligned) {
+    if (resolution <= 0) {
+      return getSeriesForRange(range);
+    }
+    return aligned ? mySeries.getAlignedDataForRange(range, resolution) : mySeries.getDataForRange(range, resolution);
+  }
+
   /**
    * @return A new range object that represents the intersection between the default and intersect ranges.
    */
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class CachedMipmapDataSeriesTest {
+
+  @Test
+  public void testReducedQueriesOnlyFetchNewData() {
+    DefaultDataSeries<Long> source = new DefaultDataSeries<>();
+    List<Range> fetched = new ArrayList<>();
+    DataSeries<Long> recording = range -> {
+      fetched.add(new Range(range));
+      return source.getDataForRange(range);
+    };
+    for (int i = 0; i < 1000; i++) {
+      source.add(i, (long)i);
+    }
+    CachedMipmapDataSeries series = new CachedMipmapDataSeries(recording, new Range(0, 1000));
+
+    List<SeriesData<Long>> reduced = series.getDataForRange(new Range(0, 999), 10);
+    assertThat(reduced.size()).isAtMost(4 * 10);
+    assertThat(reduced.get(reduced.size() - 1)).isEqualTo(new SeriesData<>(999, 999L));
+    assertThat(fetched).hasSize(1);
+
+    // Nothing new is fetched for ranges within the cached data.
+    series.getDataForRange(new Range(100, 500), 10);
+    assertThat(fetched).hasSize(1);
+
+    for (int i = 1000; i < 2000; i++) {
+      source.add(i, (long)i);
+    }
+    reduced = series.getDataForRange(new Range(0, 1999), 10);
+    assertThat(reduced.get(reduced.size() - 1)).isEqualTo(new SeriesData<>(1999, 1999L));
+    assertThat(fetched).hasSize(2);
+    // Only the last cached samples are fetched again.
+    assertThat(fetched.get(1).getMin()).isWithin(0).of(1000 - CachedMipmapDataSeries.REFETCHED_SAMPLE_COUNT);
+  }
+
+  @Test
+  public void testLateSamplesReplaceCachedSamples() {
+    TreeMap<Long, Long> samples = new TreeMap<>();
+    DataSeries<Long> source = range -> {
+      Long fromKey = samples.floorKey((long)range.getMin());
+      return samples.subMap(fromKey == null ? (long)range.getMin() : fromKey, true, (long)range.getMax(), true).entrySet().stream()
+        .map(entry -> new SeriesData<>(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList());
+    };
+    for (long i = 0; i < 1000; i += 2) {
+      samples.put(i, i);
+    }
+    CachedMipmapDataSeries series = new CachedMipmapDataSeries(source, new Range(0, 1000));
+    assertThat(series.getDataForRange(new Range(0, 998), 1000)).hasSize(500);
+
+    // A sample arrives after newer ones have been cached.
+    samples.put(1000L, 1000L);
+    samples.put(997L, 997L);
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(0, 1000), 1000);
+    assertThat(data).containsExactlyElementsIn(source.getDataForRange(new Range(0, 1000))).inOrder();
+    assertThat(data).contains(new SeriesData<>(997, 997L));
+  }
+
+  @Test
+  public void testCacheDropsSamplesBeforeQueriedRange() {
+    DefaultDataSeries<Long> source = new DefaultDataSeries<>();
+    List<Range> fetched = new ArrayList<>();
+    DataSeries<Long> recording = range -> {
+      fetched.add(new Range(range));
+      return source.getDataForRange(range);
+    };
+    for (int i = 0; i < 1000; i++) {
+      source.add(i, (long)i);
+    }
+    CachedMipmapDataSeries series = new CachedMipmapDataSeries(recording, new Range(0, 1000), 100);
+    series.getDataForRange(new Range(0, 999), 10);
+    assertThat(series.getDataForRange(new Range(900, 999), 1000)).hasSize(100);
+    assertThat(fetched).hasSize(1);
+
+    // The samples before the last queried range have been dropped, so going back to them fetches them again.
+    assertThat(series.getDataForRange(new Range(0, 999), 1000)).hasSize(1000);
+    assertThat(fetched).hasSize(2);
+  }
+
+  @Test
+  public void testUnreducedQueriesUseSourceSeries() {
+    DefaultDataSeries<Long> source = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      source.add(i, (long)i);
+    }
+    CachedMipmapDataSeries series = new CachedMipmapDataSeries(source, new Range(0, 100));
+    Range range = new Range(10, 20);
+    assertThat(series.getDataForRange(range)).containsExactlyElementsIn(source.getDataForRange(range)).inOrder();
+  }
+
+  @Test
+  public void testQueryBeforeCachedDataRefetches() {
+    DefaultDataSeries<Long> source = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      source.add(i, (long)i);
+    }
+    Range dataRange = new Range(50, 100);
+    CachedMipmapDataSeries series = new CachedMipmapDataSeries(source, dataRange);
+    assertThat(series.getDataForRange(new Range(60, 99), 100)).hasSize(40);
+    // The cache starts at the data range, so going back before it fetches the samples again.
+    assertThat(series.getDataForRange(new Range(0, 99), 100)).hasSize(100);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class LongDataSeriesTest {
+
+  @Test
+  public void testGetDataForRangeMatchesDefaultDataSeries() {
+    LongDataSeries columnar = new LongDataSeries();
+    DefaultDataSeries<Long> boxed = new DefaultDataSeries<>();
+    // Span several chunks so lookups cross chunk boundaries.
+    for (int i = 0; i < ColumnarDataSeries.CHUNK_SIZE * 3; i++) {
+      columnar.add(i * 10L, i * 2L);
+      boxed.add(i * 10L, i * 2L);
+    }
+
+    Range[] ranges = {new Range(0, 100), new Range(5, 95), new Range(-50, 20), new Range(40955, 41000), new Range(100000, 200000)};
+    for (Range range : ranges) {
+      assertThat(columnar.getDataForRange(range)).containsExactlyElementsIn(boxed.getDataForRange(range)).inOrder();
+    }
+    assertThat(columnar.getAllData()).containsExactlyElementsIn(boxed.getAllData()).inOrder();
+  }
+
+  @Test
+  public void testGetNearestXIndex() {
+    LongDataSeries series = new LongDataSeries();
+    for (int i = 0; i < 5; i++) {
+      series.add(i * 10L, i);
+    }
+    assertThat(series.getNearestXIndex(-5)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(0)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(25)).isEqualTo(2);
+    assertThat(series.getNearestXIndex(30)).isEqualTo(3);
+    assertThat(series.getNearestXIndex(1000)).isEqualTo(4);
+  }
+
+  @Test
+  public void testViewIsStableWhenDataIsAppended() {
+    LongDataSeries series = new LongDataSeries();
+    for (int i = 0; i < 10; i++) {
+      series.add(i, i);
+    }
+    List<SeriesData<Long>> view = series.getDataForRange(new Range(0, 100));
+    assertThat(view).hasSize(10);
+
+    for (int i = 10; i < 20; i++) {
+      series.add(i, i);
+    }
+    assertThat(view).hasSize(10);
+    assertThat(view.get(9)).isEqualTo(new SeriesData<>(9, 9L));
+    assertThat(view.subList(2, 4)).containsExactly(new SeriesData<>(2, 2L), new SeriesData<>(3, 3L)).inOrder();
+  }
+
+  @Test
+  public void testEmptySeries() {
+    LongDataSeries series = new LongDataSeries();
+    assertThat(series.getDataForRange(new Range(0, 100))).isEmpty();
+    series.add(0, 1);
+    assertThat(series.getDataForRange(new Range())).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutOfOrderAddThrows() {
+    LongDataSeries series = new LongDataSeries();
+    series.add(10, 1);
+    series.add(5, 2);
+  }
+
+  @Test
+  public void testDoubleDataSeries() {
+    DoubleDataSeries series = new DoubleDataSeries();
+    series.add(0, 0.5);
+    series.add(10, 1.5);
+    assertThat(series.getDoubleY(1)).isEqualTo(1.5);
+    assertThat(series.getDataForRange(new Range(0, 5))).containsExactly(new SeriesData<>(0, 0.5));
+  }
+}
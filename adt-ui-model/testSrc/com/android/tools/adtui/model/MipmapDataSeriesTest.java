@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class MipmapDataSeriesTest {
+
+  @Test
+  public void testSmallRangeReturnsRawData() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 100; i++) {
+      series.add(i, i);
+    }
+    Range range = new Range(10, 19);
+    assertThat(series.getDataForRange(range, 100)).containsExactlyElementsIn(series.getDataForRange(range)).inOrder();
+    assertThat(series.getDataForRange(range)).hasSize(10);
+  }
+
+  @Test
+  public void testReducedDataIsBoundedByResolution() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 100000; i++) {
+      series.add(i, i % 7);
+    }
+    List<SeriesData<Long>> reduced = series.getDataForRange(new Range(0, 100000), 100);
+    assertThat(reduced.size()).isAtMost(4 * 100);
+    assertThat(reduced.get(0)).isEqualTo(new SeriesData<>(0, 0L));
+    assertThat(reduced.get(reduced.size() - 1)).isEqualTo(new SeriesData<>(99999, 99999L % 7));
+    for (int i = 1; i < reduced.size(); i++) {
+      assertThat(reduced.get(i).x).isGreaterThan(reduced.get(i - 1).x);
+    }
+  }
+
+  @Test
+  public void testReducedDataKeepsExtremes() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 10000; i++) {
+      series.add(i, i == 5123 ? 1000 : i == 7001 ? -1000 : 0);
+    }
+    List<SeriesData<Long>> reduced = series.getDataForRange(new Range(0, 10000), 10);
+    assertThat(reduced).contains(new SeriesData<>(5123, 1000L));
+    assertThat(reduced).contains(new SeriesData<>(7001, -1000L));
+  }
+
+  @Test
+  public void testAlignedDataKeepsSharedXValues() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    MipmapDataSeries shorterSeries = new MipmapDataSeries();
+    for (int i = 0; i < 10000; i++) {
+      series.add(i * 3, i);
+      if (i < 9000) {
+        shorterSeries.add(i * 3, -i);
+      }
+    }
+    Range range = new Range(1000, 29000);
+    List<SeriesData<Long>> sampled = series.getAlignedDataForRange(range, 100);
+    List<SeriesData<Long>> shorterSampled = shorterSeries.getAlignedDataForRange(range, 100);
+    assertThat(sampled.size()).isAtMost(102);
+    assertThat(shorterSampled.size()).isLessThan(sampled.size());
+    for (int i = 0; i < shorterSampled.size() - 1; i++) {
+      assertThat(shorterSampled.get(i).x).isEqualTo(sampled.get(i).x);
+    }
+    assertThat(sampled.get(0).x).isAtMost(1000L);
+    assertThat(sampled.get(sampled.size() - 1).x).isAtLeast(28998L);
+  }
+
+  @Test
+  public void testAlignedDataReturnsAllSparseSamples() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 10; i++) {
+      series.add(i * 1000, i);
+    }
+    Range range = new Range(0, 9000);
+    assertThat(series.getAlignedDataForRange(range, 100)).containsExactlyElementsIn(series.getDataForRange(range)).inOrder();
+  }
+
+  @Test
+  public void testRangedSeriesUsesResolution() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 10000; i++) {
+      series.add(i, i);
+    }
+    RangedContinuousSeries ranged = new RangedContinuousSeries("test", new Range(0, 10000), new Range(0, 10000), series);
+    assertThat(ranged.getSeries()).hasSize(10000);
+    assertThat(ranged.getSeries(10).size()).isLessThan(10000);
+    // Cached results are keyed by resolution too.
+    assertThat(ranged.getSeries()).hasSize(10000);
+  }
+
+  @Test
+  public void testEdgeBucketExtremesStayInRange() {
+    MipmapDataSeries series = new MipmapDataSeries();
+    for (int i = 0; i < 4096; i++) {
+      // The global extremes sit right outside of the queried range, in the same coarse buckets as its edges.
+      series.add(i, i == 1000 ? 1000 : i == 3100 ? -1000 : i % 13);
+    }
+    Range range = new Range(1001, 3099);
+    List<SeriesData<Long>> reduced = series.getDataForRange(range, 8);
+    assertThat(reduced.size()).isLessThan(3099 - 1001 + 1);
+    for (SeriesData<Long> data : reduced) {
+      assertThat(data.x).isAtLeast(1001L);
+      assertThat(data.x).isAtMost(3099L);
+    }
+    // The extremes of the clipped edge buckets are still kept.
+    assertThat(reduced).contains(new SeriesData<>(1001, 1001L % 13));
+    assertThat(reduced).contains(new SeriesData<>(1001 + 12 - (1001 % 13), 12L));
+    assertThat(reduced).contains(new SeriesData<>(3081, 0L));
+  }
+}
@@ -43,9 +43,7 @@ import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
 import org.jetbrains.annotations.NotNull;
@@ -518,22 +516,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       return 0;
     }
 
-    int maxDepth = -1;
-    Queue<N> queue = new LinkedList<>();
-    queue.add(myRoot);
-
-    while (!queue.isEmpty()) {
-      N n = queue.poll();
-      assert n != null;
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
+    int maxDepth = myRoot.getMaxDepth() + 1;
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
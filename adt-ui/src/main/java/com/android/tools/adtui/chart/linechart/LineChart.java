@@ -193,7 +193,17 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      // Bars need every bucket. Stacked lines add up values point by point, so their reduced points must keep the same x across series.
+      List<SeriesData<Long>> seriesList;
+      if (config.getDataBucketInterval() > 0) {
+        seriesList = ranged.getSeries();
+      }
+      else if (config.isStacked()) {
+        seriesList = ranged.getAlignedSeries(dim.width);
+      }
+      else {
+        seriesList = ranged.getSeries(dim.width);
+      }
       if (config.isStacked()) {
         if (lastStackedSeries == null) {
           // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -270,6 +271,62 @@ public class FutureCallbackExecutor implements Executor {
     }
   }
 
+  /**
+   * Execute a task from the {@code taskFactory} for each element of the {@code iterator},
+   * running at most {@code maxParallelism} tasks at a time. A new task is started as soon as
+   * the {@link ListenableFuture} of a running task completes.
+   *
+   * <p>This is a work queue that throttles tasks without serializing them, see
+   * {@link #executeFuturesInSequence(Iterator, Function)}.
+   *
+   * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed.
+   *
+   * @param iterator       The source of elements to process
+   * @param maxParallelism The maximum number of tasks running at the same time
+   * @param taskFactory    A factory {@link Function} that returns a {@link ListenableFuture} for a given element
+   * @param <T>            The type of the elements to process
+   */
+  @NotNull
+  public <T> ListenableFuture<Void> executeFuturesInParallel(@NotNull Iterator<T> iterator,
+                                                             int maxParallelism,
+                                                             @NotNull Function<T, ListenableFuture<Void>> taskFactory) {
+    SettableFuture<Void> finalResult = SettableFuture.create();
+    // The pending count starts at 1 so that the result is not set before all initial tasks are started
+    AtomicInteger pendingCount = new AtomicInteger(1);
+    for (int i = 0; i < maxParallelism; i++) {
+      if (!executeFuturesInParallelWorker(iterator, taskFactory, pendingCount, finalResult)) {
+        break;
+      }
+    }
+    if (pendingCount.decrementAndGet() == 0) {
+      finalResult.set(null);
+    }
+    return finalResult;
+  }
+
+  private <T> boolean executeFuturesInParallelWorker(@NotNull Iterator<T> iterator,
+                                                     @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                     @NotNull AtomicInteger pendingCount,
+                                                     @NotNull SettableFuture<Void> finalResult) {
+    T element;
+    synchronized (iterator) {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      element = iterator.next();
+      pendingCount.incrementAndGet();
+    }
+    ListenableFuture<Void> future = taskFactory.apply(element);
+    addConsumer(future, (aVoid, throwable) -> {
+      // Start the next task before marking this one as done, so that the count only reaches 0 once all tasks are done
+      executeFuturesInParallelWorker(iterator, taskFactory, pendingCount, finalResult);
+      if (pendingCount.decrementAndGet() == 0) {
+        finalResult.set(null);
+      }
+    });
+    return true;
+  }
+
   /**
    * Similar to {@link Function} but allows the {@link #apply(Object)} method to throw checked exceptions.
    */
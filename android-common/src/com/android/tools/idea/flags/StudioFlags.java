@@ -111,6 +111,22 @@ public final class StudioFlags {
     "Toggles usage of gRPC apis to fetch data from perfd and the datastore.",
     true);
 
+  public static final Flag<Boolean> PROFILER_DATASTORE_BATCHED_WRITES = Flag.create(
+    PROFILER, "datastore.batched.writes", "Batch datastore inserts",
+    "Queues rows inserted by the datastore pollers and writes them in batches on a dedicated writer thread.",
+    false);
+
+  public static final Flag<Boolean> PROFILER_DATASTORE_EVENT_PARTITIONS = Flag.create(
+    PROFILER, "datastore.event.partitions", "Partition unified events by time",
+    "Stores unified pipeline events in per-stream, time-bucketed tables.",
+    false);
+
+  public static final Flag<Boolean> PROFILER_DATASTORE_EVENT_RETENTION = Flag.create(
+    PROFILER, "datastore.event.retention", "Compact old unified event partitions",
+    "With partitioned unified events, compacts buckets that are more than an hour old. Only the latest event of each group that has not " +
+    "ended is kept; events and payloads of ended groups in those buckets are dropped.",
+    false);
+
   public static final Flag<Boolean> PROFILER_ENERGY_PROFILER_ENABLED = Flag.create(
     PROFILER, "energy", "Enable Energy profiling",
     "Enable the new energy profiler. It monitors battery usage of the selected app.", true);
@@ -135,6 +151,17 @@ public final class StudioFlags {
     "For Android O or newer, supports single-point selection which shows a snapshot of the heap at the specific time.",
     true);
 
+  public static final Flag<Boolean> PROFILER_LAZY_HEAP_DUMP_ANALYSIS = Flag.create(
+    PROFILER, "memory.heapdump.lazy", "Show heap dump class histograms before the analysis completes",
+    "Shows the classes of a heap dump as soon as it is parsed, and fills in the depth and retained sizes once the dominators have " +
+    "been computed in the background.",
+    false);
+
+  public static final Flag<Boolean> PROFILER_PARALLEL_HEAP_DUMP_DOMINATORS = Flag.create(
+    PROFILER, "memory.heapdump.parallel.dominators", "Compute heap dump dominators in parallel",
+    "Computes the dominator tree, depths and retained sizes of heap dumps over primitive arrays using all cores, instead of with perflib.",
+    false);
+
   public static final Flag<Boolean> PROFILER_SAMPLE_LIVE_ALLOCATIONS = Flag.create(
     PROFILER, "memory.livealloc.sampled", "Enable Sampled Live Allocation Tracking",
     "For Android O or newer, allows users to configure the sampling mode of live allocation tracking",
@@ -244,6 +271,29 @@ public final class StudioFlags {
     "Log in the IDEA log the messages coming from Java and native code of Layoutlib Native.",
     false);
 
+  // RenderSecurityManager keeps a single global credential, so renders can only run on more than one thread once it supports that.
+  public static final Flag<Integer> NELE_RENDER_THREAD_COUNT = Flag.create(
+    NELE, "render.thread.count", "Number of Layoutlib render threads",
+    "Number of threads used to render layouts. The renders of a module always run on the same thread. Requires a restart.",
+    1);
+
+  public static final Flag<Integer> NELE_IMAGE_POOL_BUDGET_MB = Flag.create(
+    NELE, "image.pool.budget", "Memory budget of the render image pool (MB)",
+    "Maximum size of the free render images kept for reuse. The least recently freed images are dropped first. " +
+    "0 only limits the number of images of each size. Requires a restart.",
+    256);
+
+  public static final Flag<Boolean> NELE_RENDER_RESULT_CACHE = Flag.create(
+    NELE, "render.result.cache", "Cache rendered thumbnails on disk",
+    "Reuse the images of layouts rendered with the same XML, configuration, resources and classes for the navigation editor and " +
+    "resource explorer thumbnails, also across restarts.",
+    false);
+
+  public static final Flag<Boolean> NELE_INCREMENTAL_RENDER = Flag.create(
+    NELE, "incremental.render", "Apply layout params edits without re-inflating",
+    "When only layout_ attributes change, apply them to the views of the current render instead of inflating the layout again.",
+    false);
+
   private static final FlagGroup ASSISTANT = new FlagGroup(FLAGS, "assistant", "Assistants");
   public static final Flag<Boolean> CONNECTION_ASSISTANT_ENABLED = Flag.create(
     ASSISTANT, "connection.enabled", "Enable the connection assistant",
@@ -446,6 +496,12 @@ public final class StudioFlags {
 
   public static final Flag<Boolean> ALLOW_DIFFERENT_JDK_VERSION = Flag.create(
     GRADLE_IDE, "jdk.allow.different", "Allow different Gradle JDK", "Allow usage of a different JDK version when running Gradle.", true);
+
+  public static final Flag<Boolean> PARALLEL_MODULE_SETUP = Flag.create(
+    GRADLE_IDE, "parallel.module.setup", "Prepare the setup of modules in parallel",
+    "After sync, compute the data needed to set up each module (e.g. its dependencies) in worker threads before applying it to " +
+    "the project in a single write action.",
+    false);
   //endregion
 
   //region Database Inspector
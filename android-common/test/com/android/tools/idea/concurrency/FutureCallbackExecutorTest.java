@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.concurrency;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FutureCallbackExecutor}.
+ */
+public class FutureCallbackExecutorTest {
+  private final FutureCallbackExecutor myExecutor = FutureCallbackExecutor.wrap(MoreExecutors.directExecutor());
+
+  @Test
+  public void executeFuturesInParallelRunsAtMostMaxParallelismTasks() {
+    List<Integer> elements = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    List<Integer> startedElements = new ArrayList<>();
+    List<SettableFuture<Void>> tasks = new ArrayList<>();
+
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(elements.iterator(), 3, element -> {
+      SettableFuture<Void> task = SettableFuture.create();
+      startedElements.add(element);
+      tasks.add(task);
+      return task;
+    });
+
+    assertThat(tasks).hasSize(3);
+    for (int i = 0; i < elements.size(); i++) {
+      assertThat(result.isDone()).isFalse();
+      tasks.get(i).set(null);
+      long runningCount = tasks.stream().filter(task -> !task.isDone()).count();
+      assertThat(runningCount).isAtMost(3);
+      assertThat(runningCount).isEqualTo(Math.min(3, elements.size() - i - 1));
+    }
+
+    assertThat(result.isDone()).isTrue();
+    assertThat(startedElements).isEqualTo(elements);
+  }
+
+  @Test
+  public void executeFuturesInParallelContinuesAfterFailedTasks() throws Exception {
+    List<SettableFuture<Void>> tasks = new ArrayList<>();
+
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(IntStream.range(0, 4).iterator(), 2, element -> {
+      SettableFuture<Void> task = SettableFuture.create();
+      tasks.add(task);
+      return task;
+    });
+
+    tasks.get(0).setException(new RuntimeException("task failed"));
+    tasks.get(1).set(null);
+    tasks.get(2).set(null);
+    assertThat(result.isDone()).isFalse();
+    tasks.get(3).setException(new RuntimeException("task failed"));
+
+    assertThat(tasks).hasSize(4);
+    assertThat(result.isDone()).isTrue();
+    assertThat(result.get()).isNull();
+  }
+
+  @Test
+  public void executeFuturesInParallelCompletesWhenTasksCompleteImmediately() {
+    List<Integer> completedElements = new ArrayList<>();
+
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(IntStream.range(0, 5).iterator(), 2, element -> {
+      completedElements.add(element);
+      SettableFuture<Void> task = SettableFuture.create();
+      task.set(null);
+      return task;
+    });
+    assertThat(result.isDone()).isTrue();
+    assertThat(completedElements).containsExactly(0, 1, 2, 3, 4).inOrder();
+  }
+
+  @Test
+  public void executeFuturesInParallelCompletesWithoutElements() {
+    ListenableFuture<Void> result =
+      myExecutor.executeFuturesInParallel(Collections.<Integer>emptyIterator(), 4, element -> SettableFuture.create());
+
+    assertThat(result.isDone()).isTrue();
+  }
+}
@@ -19,6 +19,7 @@ import static com.android.tools.idea.concurrency.FutureUtils.ignoreResult;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.concurrency.UiThread;
+import com.android.tools.idea.apk.viewer.ApkViewPanel;
 import com.android.tools.idea.concurrency.FutureCallbackExecutor;
 import com.android.tools.idea.device.fs.DownloadProgress;
 import com.android.tools.idea.device.fs.DownloadedFileData;
@@ -61,10 +62,12 @@ import com.intellij.util.Alarm;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.ExceptionUtil;
 import java.awt.datatransfer.StringSelection;
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -81,6 +84,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -109,6 +113,19 @@ public class DeviceExplorerController {
   private static final String DEVICE_EXPLORER_BUSY_MESSAGE = "Device Explorer is busy, please retry later or cancel current operation";
   private static final long FILE_ENTRY_CREATION_TIMEOUT_MILLIS = 10_000;
   private static final long FILE_ENTRY_DELETION_TIMEOUT_MILLIS = 10_000;
+  /**
+   * The maximum number of children of a directory downloaded at the same time.
+   */
+  private static final int MAX_PARALLEL_DOWNLOADS = 4;
+  /**
+   * Files up to this size are downloaded in batches of files from the same directory.
+   */
+  private static final long MAX_BATCHED_FILE_SIZE = 64 * 1024;
+  private static final long MAX_BATCH_SIZE = 8 * 1024 * 1024;
+  /**
+   * The maximum total length of the names of the files in a batch, as they are passed to a shell command.
+   */
+  private static final int MAX_BATCH_NAMES_LENGTH = 2_000;
 
   private int myShowLoadingNodeDelayMillis = 200;
   private int myTransferringNodeRepaintMillis = 100;
@@ -808,10 +825,16 @@ public class DeviceExplorerController {
       myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
         @Override
         public void onSuccess(@Nullable Void result) {
-          ListenableFuture<Void> futureDownloadChildren = executeFuturesInSequence(treeNode.getChildEntryNodes().iterator(), node -> {
-            Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
-            return downloadSingleNode(node, nodePath, tracker);
-          });
+          List<List<DeviceFileEntryNode>> batches = createDownloadBatches(treeNode.getChildEntryNodes());
+          ListenableFuture<Void> futureDownloadChildren =
+            myEdtExecutor.executeFuturesInParallel(batches.iterator(), MAX_PARALLEL_DOWNLOADS, batch -> {
+              if (batch.size() == 1) {
+                DeviceFileEntryNode node = batch.get(0);
+                Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+                return downloadSingleNode(node, nodePath, tracker);
+              }
+              return downloadFileBatch(treeNode, batch, localDirectoryPath, tracker);
+            });
           myEdtExecutor.addConsumer(futureDownloadChildren, (aVoid, throwable) -> {
             if (throwable != null) {
               tracker.addProblem(throwable);
@@ -830,6 +853,106 @@ public class DeviceExplorerController {
       return futureResult;
     }
 
+    /**
+     * Groups small files into batches that can be downloaded with a single transfer, in lists of
+     * at least 2 nodes. Other nodes are returned as single node lists.
+     */
+    @NotNull
+    private List<List<DeviceFileEntryNode>> createDownloadBatches(@NotNull List<DeviceFileEntryNode> nodes) {
+      List<List<DeviceFileEntryNode>> batches = new ArrayList<>();
+      List<DeviceFileEntryNode> batch = new ArrayList<>();
+      long batchSize = 0;
+      int batchNamesLength = 0;
+      for (DeviceFileEntryNode node : nodes) {
+        DeviceFileEntry entry = node.getEntry();
+        boolean isSmallFile = entry.isFile() && !entry.isSymbolicLink() && entry.getSize() >= 0 && entry.getSize() <= MAX_BATCHED_FILE_SIZE;
+        if (!isSmallFile || node.isTransferring()) {
+          batches.add(Collections.singletonList(node));
+          continue;
+        }
+        if (!batch.isEmpty() &&
+            (batchSize + entry.getSize() > MAX_BATCH_SIZE || batchNamesLength + entry.getName().length() > MAX_BATCH_NAMES_LENGTH)) {
+          batches.add(batch);
+          batch = new ArrayList<>();
+          batchSize = 0;
+          batchNamesLength = 0;
+        }
+        batch.add(node);
+        batchSize += entry.getSize();
+        batchNamesLength += entry.getName().length();
+      }
+      if (!batch.isEmpty()) {
+        batches.add(batch);
+      }
+      return batches;
+    }
+
+    /**
+     * Downloads the files of a directory with a single transfer, see {@link DeviceFileEntry#downloadFiles}.
+     * If the batched transfer fails, e.g. because it is not supported by the device, the files are downloaded one at a time.
+     */
+    @NotNull
+    private ListenableFuture<Void> downloadFileBatch(@NotNull DeviceFileEntryNode directoryNode,
+                                                     @NotNull List<DeviceFileEntryNode> fileNodes,
+                                                     @NotNull Path localDirectoryPath,
+                                                     @NotNull FileTransferOperationTracker tracker) {
+      if (tracker.isCancelled()) {
+        return Futures.immediateCancelledFuture();
+      }
+
+      List<DeviceFileEntry> entries = fileNodes.stream().map(DeviceFileEntryNode::getEntry).collect(Collectors.toList());
+      long totalFileBytes = entries.stream().mapToLong(DeviceFileEntry::getSize).sum();
+      fileNodes.forEach(node -> startNodeDownload(node));
+
+      AtomicLong reportedBytes = new AtomicLong();
+      FileTransferProgress progress = new FileTransferProgress() {
+        @Override
+        public void progress(long currentBytes, long totalBytes) {
+          // The transfer includes the archive overhead, report its progress as a fraction of the size of the files
+          long fileBytes = totalBytes <= 0 ? 0 : Math.min(totalFileBytes, totalFileBytes * currentBytes / totalBytes);
+          tracker.processFileBytes(fileBytes - reportedBytes.getAndSet(fileBytes));
+          tracker.setDownloadFileText(directoryNode.getEntry().getFullPath(), fileBytes, totalFileBytes);
+        }
+
+        @Override
+        public boolean isCancelled() {
+          return tracker.isCancelled();
+        }
+      };
+      ListenableFuture<Void> futureDownload = directoryNode.getEntry().downloadFiles(entries, localDirectoryPath, progress);
+      logFuture(futureDownload, millis -> String.format(Locale.US, "Downloaded %,d files in %,d msec: %s", entries.size(), millis,
+                                                        directoryNode.getEntry().getFullPath()));
+
+      SettableFuture<Void> futureResult = SettableFuture.create();
+      myEdtExecutor.addConsumer(futureDownload, (aVoid, throwable) -> {
+        fileNodes.forEach(node -> stopNodeDownload(node));
+        if (throwable != null) {
+          // Progress is reported again by the individual downloads
+          tracker.processFileBytes(-reportedBytes.get());
+          LOGGER.info(String.format("Error downloading files of %s in a batch, downloading them one at a time",
+                                    directoryNode.getEntry().getFullPath()), throwable);
+          futureResult.setFuture(executeFuturesInSequence(fileNodes.iterator(), node -> {
+            Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+            return downloadSingleFile(node, nodePath, tracker);
+          }));
+          return;
+        }
+
+        tracker.processFileBytes(totalFileBytes - reportedBytes.get());
+        for (int i = 0; i < fileNodes.size(); i++) {
+          tracker.processFile();
+          tracker.getSummary().addFileCount(1);
+        }
+        tracker.getSummary().addByteCount(totalFileBytes);
+
+        // The files were written without going through the VFS
+        File[] files = entries.stream().map(entry -> localDirectoryPath.resolve(entry.getName()).toFile()).toArray(File[]::new);
+        VfsUtil.markDirtyAndRefresh(true, false, false, files);
+        futureResult.set(null);
+      });
+      return futureResult;
+    }
+
     @Override
     public void copyNodePathsInvoked(@NotNull List<DeviceFileEntryNode> treeNodes) {
       String text = treeNodes.stream().map(x -> x.getEntry().getFullPath()).collect(Collectors.joining("\n"));
@@ -1296,6 +1419,15 @@ public class DeviceExplorerController {
       public long byteCount;
     }
 
+    @NotNull
+    private String getThroughputText(@NotNull FileTransferSummary summary) {
+      long bytesPerSecond = summary.getBytesPerSecond();
+      if (bytesPerSecond <= 0) {
+        return "";
+      }
+      return String.format(" (%s/s)", ApkViewPanel.getHumanizedSize(bytesPerSecond));
+    }
+
     private void reportFileTransferSummary(@NotNull DeviceFileEntryNode node,
                                            @NotNull FileTransferSummary summary,
                                            @NotNull String pastParticiple,
@@ -1309,7 +1441,7 @@ public class DeviceExplorerController {
         String successMessage;
         if (summary.getDirectoryCount() > 0) {
           successMessage = String.format(Locale.getDefault(),
-                                         "Successfully %s %,d %s and %,d %s for a total size of %,d %s in %s.",
+                                         "Successfully %s %,d %s and %,d %s for a total size of %,d %s in %s%s.",
                                          pastParticiple,
                                          summary.getFileCount(),
                                          fileString,
@@ -1317,17 +1449,19 @@ public class DeviceExplorerController {
                                          directoryString,
                                          summary.getByteCount(),
                                          byteCountString,
-                                         StringUtil.formatDuration(summary.getDurationMillis()));
+                                         StringUtil.formatDuration(summary.getDurationMillis()),
+                                         getThroughputText(summary));
         }
         else {
           successMessage = String.format(Locale.getDefault(),
-                                         "Successfully %s %,d %s for a total of size of %,d %s in %s.",
+                                         "Successfully %s %,d %s for a total of size of %,d %s in %s%s.",
                                          pastParticiple,
                                          summary.getFileCount(),
                                          fileString,
                                          summary.getByteCount(),
                                          byteCountString,
-                                         StringUtil.formatDuration(summary.getDurationMillis()));
+                                         StringUtil.formatDuration(summary.getDurationMillis()),
+                                         getThroughputText(summary));
         }
         myView.reportMessageRelatedToNode(node, successMessage);
         return;
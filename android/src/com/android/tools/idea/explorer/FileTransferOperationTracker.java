@@ -37,6 +37,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   @NotNull private final FileTransferSummary mySummary;
   private long myFinishedWorkUnits;
   private long myTotalWorkUnits;
+  private long myTransferredBytes;
   private int myCurrentFileCount;
   private int myTotalFileCount;
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
@@ -88,9 +89,18 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
 
   public void processFileBytes(long byteCount) {
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileContentsWorkUnits(byteCount);
+    myTransferredBytes += byteCount;
     showProgress();
   }
 
+  /**
+   * Returns the average number of bytes transferred per second, for all files, since the transfer started.
+   */
+  public long getBytesPerSecond() {
+    long durationMillis = getDurationMillis();
+    return durationMillis <= 0 ? 0 : myTransferredBytes * 1000 / durationMillis;
+  }
+
   public void setUploadFileText(@NotNull VirtualFile file, long currentBytes, long totalBytes) {
     String text;
     if (myTotalFileCount > 1) {
@@ -107,7 +117,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(addThroughputText(text));
   }
 
   public void setDownloadFileText(@NotNull String entryFullPath, long currentBytes, long totalBytes) {
@@ -125,7 +135,16 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(addThroughputText(text));
+  }
+
+  @NotNull
+  private String addThroughputText(@NotNull String text) {
+    long bytesPerSecond = getBytesPerSecond();
+    if (bytesPerSecond <= 0) {
+      return text;
+    }
+    return text + String.format(" - %s/s", ApkViewPanel.getHumanizedSize(bytesPerSecond));
   }
 
   public void addWorkEstimate(FileTransferWorkEstimate estimate) {
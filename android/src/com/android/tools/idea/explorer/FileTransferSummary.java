@@ -63,4 +63,11 @@ public class FileTransferSummary {
   public void setDurationMillis(long durationMillis) {
     myDurationMillis = durationMillis;
   }
+
+  /**
+   * The average throughput of the transfer, in bytes per second.
+   */
+  public long getBytesPerSecond() {
+    return myDurationMillis <= 0 ? 0 : myByteCount * 1000 / myDurationMillis;
+  }
 }
@@ -54,6 +54,7 @@ public class AdbDeviceCapabilities {
   @Nullable private Boolean mySupportsCpCommand;
   @Nullable private Boolean myEscapingLs;
   @Nullable private Boolean mySupportsMkTempCommand;
+  @Nullable private Boolean mySupportsTarCommand;
 
   public AdbDeviceCapabilities(@NotNull IDevice device) {
     myDevice = device;
@@ -119,6 +120,16 @@ public class AdbDeviceCapabilities {
     return mySupportsCpCommand;
   }
 
+  public synchronized boolean supportsTarCommand()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, SyncException {
+    assertNotDispatchThread();
+
+    if (mySupportsTarCommand == null) {
+      mySupportsTarCommand = supportsTarCommandWorker();
+    }
+    return mySupportsTarCommand;
+  }
+
   synchronized boolean hasEscapingLs()
     throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
     assertNotDispatchThread();
@@ -289,6 +300,41 @@ public class AdbDeviceCapabilities {
     }
   }
 
+  private boolean supportsTarCommandWorker()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, SyncException {
+
+    try (ScopedRemoteFile srcFile = new ScopedRemoteFile(AdbPathUtil.resolve(PROBE_FILES_TEMP_PATH, ".__temp_tar_test_file__.tmp"));
+         ScopedRemoteFile dstFile = new ScopedRemoteFile(AdbPathUtil.resolve(PROBE_FILES_TEMP_PATH, ".__temp_tar_test_file_dst__.tmp"))) {
+      // Create the remote file used for testing capability
+      srcFile.create();
+
+      // Archive source file into destination file
+      String command = new AdbShellCommandBuilder()
+        .withText("tar -cf ")
+        .withEscapedPath(dstFile.getRemotePath())
+        .withText(" -C ")
+        .withEscapedPath(PROBE_FILES_TEMP_PATH)
+        .withText(" ")
+        .withEscapedPath(AdbPathUtil.getFileName(srcFile.getRemotePath()))
+        .build();
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+      try {
+        commandResult.throwIfError();
+
+        // If "tar" succeeded, we need to delete the destination file
+        dstFile.setDeleteOnClose(true);
+        return true;
+      }
+      catch (AdbShellCommandException e) {
+        LOGGER.info(String.format("Device \"%s\" does not seem to support the \"tar\" command: %s",
+                                  DeviceUtil.toDebugString(myDevice),
+                                  getCommandOutputExtract(commandResult)),
+                    e);
+        return false;
+      }
+    }
+  }
+
   private boolean hasEscapingLsWorker()
     throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
 
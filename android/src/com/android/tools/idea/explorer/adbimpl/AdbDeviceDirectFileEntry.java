@@ -108,6 +108,19 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
     });
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> downloadFiles(@NotNull List<DeviceFileEntry> files,
+                                              @NotNull Path localDirectory,
+                                              @NotNull FileTransferProgress progress) {
+    // Note: The archive is created with "su 0" if available, so that files not readable by the
+    //       default user can be archived too.
+    List<String> fileNames = files.stream().map(DeviceFileEntry::getName).collect(Collectors.toList());
+    long totalFileSize = files.stream().mapToLong(DeviceFileEntry::getSize).sum();
+    return myDevice.getAdbFileTransfer().downloadFilesViaTarArchive(getFullPath(), fileNames, totalFileSize, localDirectory, progress,
+                                                                    myRunAs);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath,
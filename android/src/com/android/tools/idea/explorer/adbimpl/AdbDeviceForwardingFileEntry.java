@@ -79,6 +79,14 @@ public abstract class AdbDeviceForwardingFileEntry extends AdbDeviceFileEntry {
     return getForwardedFileEntry().downloadFile(localPath, progress);
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> downloadFiles(@NotNull List<DeviceFileEntry> files,
+                                              @NotNull Path localDirectory,
+                                              @NotNull FileTransferProgress progress) {
+    return getForwardedFileEntry().downloadFiles(files, localDirectory, progress);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath, @NotNull String fileName, @NotNull FileTransferProgress progress) {
@@ -237,6 +237,32 @@ public class AdbFileOperations {
     });
   }
 
+  /**
+   * Creates a tar archive at {@code destination} containing the files {@code fileNames} of {@code directory}.
+   * The future fails with an {@link UnsupportedOperationException} if the device does not support
+   * the "tar" command.
+   */
+  @NotNull
+  public ListenableFuture<Void> archiveFilesRunAs(@NotNull String directory,
+                                                  @NotNull List<String> fileNames,
+                                                  @NotNull String destination,
+                                                  @Nullable String runAs) {
+    return myExecutor.executeAsync(() -> {
+      if (!myDeviceCapabilities.supportsTarCommand()) {
+        throw new UnsupportedOperationException("The device does not support the \"tar\" command");
+      }
+      AdbShellCommandBuilder command =
+        getCommand(runAs, "tar -cf ").withEscapedPath(destination).withText(" -C ").withEscapedPath(directory);
+      for (String fileName : fileNames) {
+        // Note: The "./" prefix prevents file names starting with "-" from being interpreted as options
+        command.withText(" ").withEscapedPath("./" + fileName);
+      }
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command.build());
+      commandResult.throwIfError();
+      return null;
+    });
+  }
+
   @NotNull
   public ListenableFuture<String> createTempFile(@NotNull String tempPath) {
     return createTempFileRunAs(tempPath, null);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Queue of file transfers to a device, each using its own {@link com.android.ddmlib.SyncService}, that
+ * runs at most {@code maxSessions} transfers at the same time.
+ *
+ * <p>ADB serves each sync session on its own connection, so a few concurrent sessions hide the
+ * per-file round trips of small transfers, while too many would compete for the USB bandwidth.
+ */
+public class AdbSyncSessionQueue {
+  private final int myMaxSessions;
+  @NotNull private final Object myLock = new Object();
+  @NotNull private final Queue<Runnable> myPendingTransfers = new ArrayDeque<>();
+  private int myActiveSessionCount;
+
+  public AdbSyncSessionQueue(int maxSessions) {
+    myMaxSessions = maxSessions;
+  }
+
+  /**
+   * Starts the transfer returned by {@code transfer} as soon as fewer than {@code maxSessions}
+   * transfers are running, and returns a {@link ListenableFuture} that completes with its result.
+   */
+  @NotNull
+  public <V> ListenableFuture<V> submit(@NotNull Supplier<ListenableFuture<V>> transfer) {
+    SettableFuture<V> futureResult = SettableFuture.create();
+    Runnable startTransfer = () -> {
+      if (futureResult.isCancelled()) {
+        startNextTransfer();
+        return;
+      }
+      ListenableFuture<V> futureTransfer;
+      try {
+        futureTransfer = transfer.get();
+      }
+      catch (Throwable t) {
+        futureResult.setException(t);
+        startNextTransfer();
+        return;
+      }
+      futureResult.setFuture(futureTransfer);
+      futureTransfer.addListener(this::startNextTransfer, MoreExecutors.directExecutor());
+    };
+
+    synchronized (myLock) {
+      if (myActiveSessionCount >= myMaxSessions) {
+        myPendingTransfers.add(startTransfer);
+        return futureResult;
+      }
+      myActiveSessionCount++;
+    }
+    startTransfer.run();
+    return futureResult;
+  }
+
+  /**
+   * Returns the number of transfers that are running.
+   */
+  public int getActiveSessionCount() {
+    synchronized (myLock) {
+      return myActiveSessionCount;
+    }
+  }
+
+  private void startNextTransfer() {
+    Runnable nextTransfer;
+    synchronized (myLock) {
+      nextTransfer = myPendingTransfers.poll();
+      if (nextTransfer == null) {
+        myActiveSessionCount--;
+        return;
+      }
+    }
+    nextTransfer.run();
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Extracts the regular files of a tar archive created by the "tar" command of a device.
+ *
+ * <p>Supports ustar archives, as well as the GNU ("L") and pax ("x") extensions for long file names,
+ * which cover the archives created by the toybox and busybox implementations of "tar".
+ */
+final class TarFileExtractor {
+  private static final int BLOCK_SIZE = 512;
+  private static final int NAME_OFFSET = 0;
+  private static final int NAME_LENGTH = 100;
+  private static final int SIZE_OFFSET = 124;
+  private static final int SIZE_LENGTH = 12;
+  private static final int CHECKSUM_OFFSET = 148;
+  private static final int CHECKSUM_LENGTH = 8;
+  private static final int TYPE_OFFSET = 156;
+  private static final int MAGIC_OFFSET = 257;
+  private static final int PREFIX_OFFSET = 345;
+  private static final int PREFIX_LENGTH = 155;
+  private static final int MAX_LONG_NAME_LENGTH = 64 * 1024;
+
+  private TarFileExtractor() {
+  }
+
+  /**
+   * Extracts the files of {@code tarFile} whose names are in {@code fileNames} into {@code directory},
+   * replacing existing files, and returns their paths. Other entries, e.g. directories and links, are ignored.
+   *
+   * @throws IOException if the archive is invalid or a file cannot be written
+   */
+  @NotNull
+  static List<Path> extract(@NotNull Path tarFile, @NotNull Path directory, @NotNull Set<String> fileNames) throws IOException {
+    List<Path> extractedFiles = new ArrayList<>();
+    byte[] header = new byte[BLOCK_SIZE];
+    byte[] buffer = new byte[64 * 1024];
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(tarFile), buffer.length))) {
+      String longName = null;
+      while (true) {
+        try {
+          input.readFully(header);
+        }
+        catch (EOFException e) {
+          // Some implementations omit the end of archive blocks
+          break;
+        }
+        if (isZeroBlock(header)) {
+          break;
+        }
+        checkHeader(header);
+
+        char type = (char)header[TYPE_OFFSET];
+        long size = parseNumber(header, SIZE_OFFSET, SIZE_LENGTH);
+        String name = longName != null ? longName : getHeaderName(header);
+        longName = null;
+
+        switch (type) {
+          case 'L':
+            longName = trimNul(new String(readLongData(input, size), StandardCharsets.UTF_8));
+            break;
+          case 'x':
+            longName = getPaxPath(new String(readLongData(input, size), StandardCharsets.UTF_8));
+            break;
+          case '0':
+          case '\0':
+            String fileName = normalizeName(name);
+            if (fileName != null && fileNames.contains(fileName)) {
+              Path file = directory.resolve(fileName);
+              try (OutputStream output = Files.newOutputStream(file)) {
+                copy(input, output, size, buffer);
+              }
+              skip(input, getPadding(size));
+              extractedFiles.add(file);
+            }
+            else {
+              skip(input, size + getPadding(size));
+            }
+            break;
+          default:
+            skip(input, size + getPadding(size));
+            break;
+        }
+      }
+    }
+    return extractedFiles;
+  }
+
+  private static boolean isZeroBlock(@NotNull byte[] block) {
+    for (byte b : block) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void checkHeader(@NotNull byte[] header) throws IOException {
+    long expected = parseNumber(header, CHECKSUM_OFFSET, CHECKSUM_LENGTH);
+    long checksum = 0;
+    for (int i = 0; i < header.length; i++) {
+      boolean isChecksumField = i >= CHECKSUM_OFFSET && i < CHECKSUM_OFFSET + CHECKSUM_LENGTH;
+      checksum += isChecksumField ? ' ' : (header[i] & 0xff);
+    }
+    if (checksum != expected) {
+      throw new IOException("Invalid tar header checksum");
+    }
+  }
+
+  @NotNull
+  private static String getHeaderName(@NotNull byte[] header) {
+    String name = getString(header, NAME_OFFSET, NAME_LENGTH);
+    boolean isUstar = new String(header, MAGIC_OFFSET, 5, StandardCharsets.US_ASCII).equals("ustar");
+    String prefix = isUstar ? getString(header, PREFIX_OFFSET, PREFIX_LENGTH) : "";
+    return prefix.isEmpty() ? name : prefix + "/" + name;
+  }
+
+  @NotNull
+  private static String getString(@NotNull byte[] header, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && header[end] != 0) {
+      end++;
+    }
+    return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a numeric field, either in octal or, for large values, in the GNU base-256 encoding.
+   */
+  private static long parseNumber(@NotNull byte[] header, int offset, int length) throws IOException {
+    if ((header[offset] & 0x80) != 0) {
+      long value = header[offset] & 0x7f;
+      for (int i = offset + 1; i < offset + length; i++) {
+        value = (value << 8) | (header[i] & 0xff);
+      }
+      return value;
+    }
+    int index = offset;
+    int end = offset + length;
+    while (index < end && header[index] == ' ') {
+      index++;
+    }
+    long value = 0;
+    for (; index < end && header[index] != 0 && header[index] != ' '; index++) {
+      byte b = header[index];
+      if (b < '0' || b > '7') {
+        throw new IOException("Invalid tar header number");
+      }
+      value = (value << 3) + (b - '0');
+    }
+    return value;
+  }
+
+  @NotNull
+  private static byte[] readLongData(@NotNull DataInputStream input, long size) throws IOException {
+    if (size < 0 || size > MAX_LONG_NAME_LENGTH) {
+      throw new IOException("Invalid tar extended header size: " + size);
+    }
+    byte[] data = new byte[(int)size];
+    input.readFully(data);
+    skip(input, getPadding(size));
+    return data;
+  }
+
+  /**
+   * Returns the "path" record of pax extended header data, made of "length key=value\n" records.
+   */
+  @Nullable
+  private static String getPaxPath(@NotNull String data) {
+    int index = 0;
+    while (index < data.length()) {
+      int space = data.indexOf(' ', index);
+      if (space < 0) {
+        break;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(data.substring(index, space));
+      }
+      catch (NumberFormatException e) {
+        break;
+      }
+      if (length <= 0 || index + length > data.length()) {
+        break;
+      }
+      String record = data.substring(space + 1, index + length - 1);
+      if (record.startsWith("path=")) {
+        return record.substring("path=".length());
+      }
+      index += length;
+    }
+    return null;
+  }
+
+  @NotNull
+  private static String trimNul(@NotNull String value) {
+    int end = value.indexOf('\0');
+    return end < 0 ? value : value.substring(0, end);
+  }
+
+  /**
+   * Returns the name of an archived file relative to the archive directory, or {@code null} if the name
+   * is a path that would be extracted outside of the destination directory.
+   */
+  @Nullable
+  private static String normalizeName(@NotNull String name) {
+    while (name.startsWith("./")) {
+      name = name.substring(2);
+    }
+    if (name.isEmpty() || name.startsWith("/") || name.contains("/") || name.equals("..") || name.equals(".")) {
+      return null;
+    }
+    return name;
+  }
+
+  private static long getPadding(long size) {
+    return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+  }
+
+  private static void copy(@NotNull InputStream input, @NotNull OutputStream output, long size, @NotNull byte[] buffer)
+    throws IOException {
+    long remaining = size;
+    while (remaining > 0) {
+      int count = input.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+      if (count < 0) {
+        throw new EOFException("Truncated tar archive");
+      }
+      output.write(buffer, 0, count);
+      remaining -= count;
+    }
+  }
+
+  private static void skip(@NotNull InputStream input, long size) throws IOException {
+    long remaining = size;
+    while (remaining > 0) {
+      long count = input.skip(remaining);
+      if (count <= 0) {
+        if (input.read() < 0) {
+          throw new EOFException("Truncated tar archive");
+        }
+        count = 1;
+      }
+      remaining -= count;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.explorer.fs;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -93,6 +94,21 @@ public interface DeviceFileEntry {
   ListenableFuture<Void> downloadFile(@NotNull Path localPath,
                                       @NotNull FileTransferProgress progress);
 
+  /**
+   * Downloads the contents of {@code files}, all children of this directory, to a local directory
+   * in a single transfer. {@code progress} reports the progress of the whole transfer.
+   *
+   * <p>The future fails with an {@link UnsupportedOperationException} if the file system does
+   * not support batched transfers, in which case files should be downloaded one at a time
+   * with {@link #downloadFile(Path, FileTransferProgress)}.
+   */
+  @NotNull
+  default ListenableFuture<Void> downloadFiles(@NotNull List<DeviceFileEntry> files,
+                                               @NotNull Path localDirectory,
+                                               @NotNull FileTransferProgress progress) {
+    return Futures.immediateFailedFuture(new UnsupportedOperationException("Batched downloads are not supported"));
+  }
+
   /**
    * Uploads the contents of a local file to a remote {@link DeviceFileEntry} directory.
    */
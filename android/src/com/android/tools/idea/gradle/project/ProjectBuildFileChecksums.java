@@ -21,10 +21,15 @@ import com.android.tools.idea.gradle.project.facet.gradle.GradleFacet;
 import com.android.tools.idea.gradle.project.model.GradleModuleModel;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.idea.gradle.project.sync.idea.data.DataNodeCaches;
+import com.android.tools.idea.gradle.project.sync.idea.data.GradleModelCache;
 import com.android.tools.idea.gradle.util.LocalProperties;
 import com.android.tools.idea.sdk.IdeSdks;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.externalSystem.model.DataNode;
+import com.intellij.openapi.externalSystem.model.project.ProjectData;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
@@ -36,11 +41,13 @@ import java.io.*;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.gradle.util.GradleProjects.isGradleProjectModule;
 import static com.android.tools.idea.gradle.util.GradleUtil.*;
+import static com.android.tools.idea.gradle.util.GradleWrapper.getDefaultPropertiesFilePath;
 import static com.google.common.io.Files.toByteArray;
 import static com.intellij.openapi.util.io.FileUtil.*;
 import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
@@ -132,23 +139,53 @@ public final class ProjectBuildFileChecksums implements Serializable {
    * @param project the project to get the data from.
    */
   public static void saveToDisk(@NotNull Project project) {
-    boolean cacheSaved = false;
+    prepareSaveToDisk(project).run();
+  }
+
+  /**
+   * Computes the checksums of the build files and takes the models of the sync that just ended, and returns the task that persists them.
+   * Only the task, which serializes the models and writes the files, may run on another thread, since the checksums and models have to
+   * match the state of the project when the sync ended.
+   *
+   * @param project the project to get the data from.
+   */
+  @NotNull
+  public static Runnable prepareSaveToDisk(@NotNull Project project) {
+    ProjectBuildFileChecksums buildFileChecksums;
     try {
-      ProjectBuildFileChecksums buildFileChecksums = createFrom(project);
-      if (buildFileChecksums != null) {
-        File file = getProjectStateFile(project);
-        ensureExists(file.getParentFile());
-        buildFileChecksums.saveTo(file);
-        cacheSaved = true;
-      }
+      buildFileChecksums = createFrom(project);
     }
     catch (Throwable e) {
       getLog().info(String.format("Error while saving persistent state from project '%1$s'", project.getName()), e);
+      buildFileChecksums = null;
     }
-    if (!cacheSaved) {
-      getLog().info("Failed to generate new cache. Deleting the old one.");
-      removeFrom(project);
-    }
+    DataNode<ProjectData> projectData = DataNodeCaches.getInstance(project).getCachedProjectData();
+    ProjectBuildFileChecksums checksums = buildFileChecksums;
+    return () -> {
+      boolean cacheSaved = false;
+      if (checksums != null) {
+        try {
+          File file = getProjectStateFile(project);
+          ensureExists(file.getParentFile());
+          checksums.saveTo(file);
+          cacheSaved = true;
+
+          if (projectData != null) {
+            GradleModelCache.saveToDisk(project, projectData, checksums);
+          }
+          else {
+            GradleModelCache.removeFrom(project);
+          }
+        }
+        catch (Throwable e) {
+          getLog().info(String.format("Error while saving persistent state from project '%1$s'", project.getName()), e);
+        }
+      }
+      if (!cacheSaved) {
+        getLog().info("Failed to generate new cache. Deleting the old one.");
+        removeFrom(project);
+      }
+    };
   }
 
   @VisibleForTesting
@@ -174,6 +211,7 @@ public final class ProjectBuildFileChecksums implements Serializable {
         buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_GRADLE_PROPERTIES));
         buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_LOCAL_PROPERTIES));
         buildFileChecksums.addFileChecksum(rootFolderPath, getGradleUserSettingsFile());
+        buildFileChecksums.addFileChecksum(rootFolderPath, getDefaultPropertiesFilePath(rootFolderPath));
       }
 
       NdkModuleModel ndkModel = NdkModuleModel.get(module);
@@ -229,6 +267,7 @@ public final class ProjectBuildFileChecksums implements Serializable {
   }
 
   public static void removeFrom(@NotNull Project project) {
+    GradleModelCache.removeFrom(project);
     try {
       File stateFile = getProjectStateFile(project);
       if (stateFile.isFile()) {
@@ -278,6 +317,19 @@ public final class ProjectBuildFileChecksums implements Serializable {
     return Hashing.md5().hashBytes(data).asBytes();
   }
 
+  /**
+   * Returns a hash of the paths and checksums of all the build files, identifying the state of the build files the persisted data was
+   * created from.
+   */
+  @NotNull
+  public String getContentHash() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Map.Entry<String, byte[]> entry : new TreeMap<>(myFileChecksums).entrySet()) {
+      hasher.putUnencodedChars(entry.getKey()).putInt(entry.getValue().length).putBytes(entry.getValue());
+    }
+    return hasher.hash().toString();
+  }
+
   public long getLastGradleSyncTimestamp() {
     return myLastGradleSyncTimestamp;
   }
@@ -46,6 +46,7 @@ import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.project.sync.PsdModuleModels;
 import com.android.tools.idea.gradle.project.sync.idea.data.DataNodeCaches;
+import com.android.tools.idea.gradle.project.sync.idea.data.GradleModelCache;
 import com.android.tools.idea.gradle.project.sync.setup.post.PostSyncProjectSetup;
 import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.application.ApplicationManager;
@@ -104,7 +105,13 @@ public class GradleSyncExecutor {
       ProjectBuildFileChecksums buildFileChecksums = ProjectBuildFileChecksums.findFor((myProject));
       if (buildFileChecksums != null && buildFileChecksums.canUseCachedData()) {
         DataNodeCaches dataNodeCaches = DataNodeCaches.getInstance(myProject);
-        DataNode<ProjectData> cache = dataNodeCaches.getCachedProjectData();
+        DataNode<ProjectData> cachedProjectData = dataNodeCaches.getCachedProjectData();
+        if (cachedProjectData == null || dataNodeCaches.isCacheMissingModels(cachedProjectData)) {
+          // The IDE may have dropped its copy of the project structure (e.g. after a restart or branch switch), fall back to the models
+          // persisted by the last sync from build files with the same content.
+          cachedProjectData = GradleModelCache.loadFromDisk(myProject, buildFileChecksums);
+        }
+        DataNode<ProjectData> cache = cachedProjectData;
         if (cache != null && !dataNodeCaches.isCacheMissingModels(cache) && !areCachedFilesMissing(myProject)) {
           PostSyncProjectSetup.Request setupRequest = new PostSyncProjectSetup.Request();
           setupRequest.usingCachedGradleModels = true;
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data
+
+import com.android.tools.idea.gradle.project.ProjectBuildFileChecksums
+import com.android.tools.idea.gradle.util.GradleUtil.getCacheFolderRootPath
+import com.google.common.annotations.VisibleForTesting
+import com.intellij.openapi.application.ApplicationInfo
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.externalSystem.model.DataNode
+import com.intellij.openapi.externalSystem.model.project.ProjectData
+import com.intellij.openapi.project.Project
+import com.intellij.serialization.ObjectSerializer
+import com.intellij.serialization.ReadConfiguration
+import com.intellij.serialization.WriteConfiguration
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * On-disk store of the project structure created by the last successful sync, including the Android, Gradle and NDK models of the
+ * modules, used to set up the project without calling Gradle when none of its build files changed.
+ *
+ * Unlike the project structure returned by [DataNodeCaches], which belongs to the IDE's external system storage and may be dropped by
+ * it (e.g. when it cannot be read back after an IDE update), the store is kept in the project's cache folder next to the
+ * [ProjectBuildFileChecksums] it was created with. It is only used when its key, the [ProjectBuildFileChecksums.getContentHash] of the
+ * build files, matches, and when it was written by the same IDE build with the same format, since the serialized models may change
+ * between builds.
+ */
+object GradleModelCache {
+  private const val FORMAT_VERSION = 1
+  private const val FILE_NAME = "gradle_models.dat"
+
+  private val writeConfiguration = WriteConfiguration(allowAnySubTypes = true)
+  private val readConfiguration = ReadConfiguration(allowAnySubTypes = true)
+
+  private val log: Logger get() = Logger.getInstance(GradleModelCache::class.java)
+
+  /**
+   * Persists the given project structure, created from the build files described by the given checksums.
+   */
+  @JvmStatic
+  fun saveToDisk(project: Project, projectData: DataNode<ProjectData>, buildFileChecksums: ProjectBuildFileChecksums) {
+    saveToDisk(project, projectData, buildFileChecksums.contentHash)
+  }
+
+  @VisibleForTesting
+  fun saveToDisk(project: Project, projectData: DataNode<ProjectData>, contentHash: String) {
+    val file = getCacheFile(project)
+    try {
+      val bytes = ByteArrayOutputStream()
+      DataOutputStream(bytes).use { output ->
+        writeHeader(output, contentHash)
+        output.write(ObjectSerializer.instance.writeAsBytes(projectData, writeConfiguration))
+      }
+      Files.createDirectories(file.parentFile.toPath())
+      // Write to a temporary file first so that an interrupted write does not leave a truncated store behind.
+      val tempFile = File(file.parentFile, "$FILE_NAME.tmp")
+      tempFile.writeBytes(bytes.toByteArray())
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+    catch (e: Throwable) {
+      log.info("Failed to save the Gradle models of project '${project.name}'", e)
+      removeFrom(project)
+    }
+  }
+
+  /**
+   * Returns the persisted project structure if it was created from build files with the same checksums as the given ones, by the same
+   * IDE build, or `null` otherwise.
+   */
+  @JvmStatic
+  fun loadFromDisk(project: Project, buildFileChecksums: ProjectBuildFileChecksums): DataNode<ProjectData>? {
+    return loadFromDisk(project, buildFileChecksums.contentHash)
+  }
+
+  @VisibleForTesting
+  fun loadFromDisk(project: Project, contentHash: String): DataNode<ProjectData>? {
+    val file = getCacheFile(project)
+    if (!file.isFile) {
+      return null
+    }
+    try {
+      val bytes = file.readBytes()
+      val input = DataInputStream(bytes.inputStream())
+      if (!readHeader(input, contentHash)) {
+        log.info("Gradle models of project '${project.name}' are out of date")
+        return null
+      }
+      val data = ObjectSerializer.instance.read(DataNode::class.java, bytes.copyOfRange(bytes.size - input.available(), bytes.size),
+                                                readConfiguration)
+      @Suppress("UNCHECKED_CAST")
+      return if (data.data is ProjectData) data as DataNode<ProjectData> else null
+    }
+    catch (e: Throwable) {
+      log.warn("Cannot recover the Gradle models of project '${project.name}', sync will be needed.", e)
+      return null
+    }
+  }
+
+  @JvmStatic
+  fun removeFrom(project: Project) {
+    val file = getCacheFile(project)
+    if (file.isFile && !file.delete()) {
+      log.warn("Failed to remove the Gradle models of project '${project.name}'")
+    }
+  }
+
+  @VisibleForTesting
+  @Throws(IOException::class)
+  fun writeHeader(output: DataOutputStream, contentHash: String) {
+    output.writeInt(FORMAT_VERSION)
+    output.writeUTF(ApplicationInfo.getInstance().build.asString())
+    output.writeUTF(contentHash)
+  }
+
+  @VisibleForTesting
+  @Throws(IOException::class)
+  fun readHeader(input: DataInputStream, contentHash: String): Boolean {
+    return input.readInt() == FORMAT_VERSION &&
+           input.readUTF() == ApplicationInfo.getInstance().build.asString() &&
+           input.readUTF() == contentHash
+  }
+
+  private fun getCacheFile(project: Project) = File(getCacheFolderRootPath(project), FILE_NAME)
+}
@@ -30,6 +30,7 @@ public class IdeaSyncCachesInvalidator extends CachesInvalidator {
     for (Project project : openProjects) {
       if (GradleProjectInfo.getInstance(project).isBuildWithGradle()) {
         DataNodeCaches.getInstance(project).clearCaches();
+        GradleModelCache.removeFrom(project);
 
         // Remove contents in .idea/libraries to recover from any invalid library entries.
         deleteLibrariesFolder(getBaseDirPath(project));
@@ -17,6 +17,7 @@ package com.android.tools.idea.gradle.project.sync.idea.data.service;
 
 import static com.android.tools.idea.gradle.project.sync.idea.data.service.AndroidProjectKeys.ANDROID_MODEL;
 
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
@@ -27,14 +28,20 @@ import com.android.tools.idea.gradle.project.sync.setup.post.TimeBasedReminder;
 import com.android.tools.idea.gradle.project.sync.setup.post.upgrade.GradlePluginUpgrade;
 import com.android.tools.idea.gradle.project.sync.validation.android.AndroidModuleValidator;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.externalSystem.model.DataNode;
 import com.intellij.openapi.externalSystem.model.Key;
 import com.intellij.openapi.externalSystem.model.project.ProjectData;
 import com.intellij.openapi.externalSystem.service.project.IdeModelsProvider;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +52,9 @@ import org.jetbrains.annotations.TestOnly;
  * Service that sets an Android SDK and facets to the modules of a project that has been imported from an Android-Gradle project.
  */
 public class AndroidModuleModelDataService extends ModuleModelDataService<AndroidModuleModel> {
+  private static final com.intellij.openapi.util.Key<Map<Module, ModuleSetupContext>> PREPARED_CONTEXTS_KEY =
+    com.intellij.openapi.util.Key.create("gradle.sync.prepared.android.modules");
+
   @NotNull private final ModuleSetupContext.Factory myModuleSetupContextFactory;
   @NotNull private final AndroidModuleSetup myModuleSetup;
   @NotNull private final AndroidModuleValidator.Factory myModuleValidatorFactory;
@@ -73,15 +83,49 @@ public class AndroidModuleModelDataService extends ModuleModelDataService<Androi
     return ANDROID_MODEL;
   }
 
+  @Override
+  protected void prepareData(@NotNull Collection<DataNode<AndroidModuleModel>> toImport,
+                             @NotNull Project project,
+                             @NotNull IdeModifiableModelsProvider modelsProvider,
+                             @NotNull Map<String, AndroidModuleModel> modelsByModuleName) {
+    // When the caller already holds the write lock, preparing the modules would not save any time spent in write actions and the worker
+    // threads could not read the project model, so the modules are prepared while they are set up instead.
+    if (!StudioFlags.PARALLEL_MODULE_SETUP.get() || ApplicationManager.getApplication().isWriteAccessAllowed()) {
+      return;
+    }
+    Map<Module, ModuleSetupContext> contexts = new LinkedHashMap<>();
+    for (Module module : modelsProvider.getModules()) {
+      if (modelsByModuleName.containsKey(module.getName())) {
+        contexts.put(module, myModuleSetupContextFactory.create(module, modelsProvider));
+      }
+    }
+    if (contexts.isEmpty()) {
+      return;
+    }
+    // The module finder reads the project model, look it up before going to the worker threads.
+    contexts.values().iterator().next().getModuleFinder();
+
+    List<Map.Entry<Module, ModuleSetupContext>> toPrepare = new ArrayList<>(contexts.entrySet());
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(toPrepare, ProgressManager.getInstance().getProgressIndicator(), entry -> {
+      myModuleSetup.prepareModule(entry.getValue(), modelsByModuleName.get(entry.getKey().getName()));
+      return true;
+    });
+    project.putUserData(PREPARED_CONTEXTS_KEY, contexts);
+  }
+
   @Override
   protected void importData(@NotNull Collection<DataNode<AndroidModuleModel>> toImport,
                             @NotNull Project project,
                             @NotNull IdeModifiableModelsProvider modelsProvider,
                             @NotNull Map<String, AndroidModuleModel> modelsByModuleName) {
+    Map<Module, ModuleSetupContext> preparedContexts = project.getUserData(PREPARED_CONTEXTS_KEY);
+    project.putUserData(PREPARED_CONTEXTS_KEY, null);
+
     AndroidModuleValidator moduleValidator = myModuleValidatorFactory.create(project);
     for (Module module : modelsProvider.getModules()) {
       AndroidModuleModel androidModel = modelsByModuleName.get(module.getName());
-      setUpModule(module, moduleValidator, modelsProvider, androidModel);
+      ModuleSetupContext context = preparedContexts != null ? preparedContexts.get(module) : null;
+      setUpModule(module, context, moduleValidator, modelsProvider, androidModel);
     }
 
     if (!modelsByModuleName.isEmpty()) {
@@ -90,11 +134,14 @@ public class AndroidModuleModelDataService extends ModuleModelDataService<Androi
   }
 
   private void setUpModule(@NotNull Module module,
+                           @Nullable ModuleSetupContext context,
                            @NotNull AndroidModuleValidator moduleValidator,
                            @NotNull IdeModifiableModelsProvider modelsProvider,
                            @Nullable AndroidModuleModel androidModel) {
     if (androidModel != null) {
-      ModuleSetupContext context = myModuleSetupContextFactory.create(module, modelsProvider);
+      if (context == null) {
+        context = myModuleSetupContextFactory.create(module, modelsProvider);
+      }
       myModuleSetup.setUpModule(context, androidModel);
       moduleValidator.validate(module, androidModel);
     }
@@ -71,15 +71,25 @@ public abstract class ModuleModelDataService<T extends ModuleModel> extends Abst
   private void importData(@NotNull Collection<DataNode<T>> toImport,
                           @NotNull Project project,
                           @NotNull IdeModifiableModelsProvider modelsProvider) {
+    Map<String, T> modelsByModuleName = indexByModuleName(toImport, modelsProvider);
+    prepareData(toImport, project, modelsProvider, modelsByModuleName);
     WriteCommandAction.runWriteCommandAction(project, ()->  {
         if (project.isDisposed()) {
           return;
         }
-        Map<String, T> modelsByModuleName = indexByModuleName(toImport, modelsProvider);
         importData(toImport, project, modelsProvider, modelsByModuleName);
     });
   }
 
+  /**
+   * Invoked before the write action that imports the given models, to compute what does not require write access to the project.
+   */
+  protected void prepareData(@NotNull Collection<DataNode<T>> toImport,
+                             @NotNull Project project,
+                             @NotNull IdeModifiableModelsProvider modelsProvider,
+                             @NotNull Map<String, T> modelsByModuleName) {
+  }
+
   protected abstract void importData(@NotNull Collection<DataNode<T>> toImport,
                                      @NotNull Project project,
                                      @NotNull IdeModifiableModelsProvider modelsProvider,
@@ -100,8 +110,8 @@ public abstract class ModuleModelDataService<T extends ModuleModel> extends Abst
         Module module = modelsProvider.findIdeModule(moduleData);
         if (module != null && !module.getName().equals(moduleName)) {
           // If the module name in modelsProvider is different from in moduleData, use module name in modelsProvider as key.
-          // This happens when there are multiple *iml files for one module, which can be caused by opening a project created on a different machine,
-          // or opening projects with both Intellij and Studio, or moving existing module to different locations.
+          // This happens when there are multiple *iml files for one module, which can be caused by opening a project created on a different
+          // machine, or opening projects with both Intellij and Studio, or moving existing module to different locations.
           moduleName = module.getName();
         }
       }
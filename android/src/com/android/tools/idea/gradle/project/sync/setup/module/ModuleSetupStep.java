@@ -33,6 +33,20 @@ public abstract class ModuleSetupStep<T> {
     doSetUpModule(context, gradleModel);
   }
 
+  /**
+   * Computes, ahead of {@link #setUpModule(ModuleSetupContext, Object)}, the data this step needs to set up the module. It may be
+   * invoked from a worker thread, concurrently for several modules and without a read action, so it must not access the project
+   * model. The results are stored in the given context.
+   */
+  public final void prepareModule(@NotNull ModuleSetupContext context, @Nullable T gradleModel) {
+    if (gradleModel != null) {
+      doPrepareModule(context, gradleModel);
+    }
+  }
+
+  protected void doPrepareModule(@NotNull ModuleSetupContext context, @NotNull T gradleModel) {
+  }
+
   protected abstract void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull T gradleModel);
 
   public boolean invokeOnBuildVariantChange() {
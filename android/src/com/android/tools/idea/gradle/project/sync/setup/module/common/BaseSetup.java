@@ -29,12 +29,29 @@ public abstract class BaseSetup<T extends ModuleSetupStep<M>, M> {
 
   protected void beforeSetup(@NotNull ModuleSetupContext context, @Nullable M model) { }
 
+  /**
+   * Computes the data needed by the setup steps. See {@link ModuleSetupStep#prepareModule(ModuleSetupContext, Object)}.
+   */
+  public void prepareModule(@NotNull ModuleSetupContext context, @Nullable M model) {
+    SetupStepTimings timings = SetupStepTimings.getInstance(context.getModule().getProject());
+    for (T step : mySetupSteps) {
+      if (shouldRunSyncStep(step)) {
+        long start = System.nanoTime();
+        step.prepareModule(context, model);
+        timings.record(step, System.nanoTime() - start);
+      }
+    }
+  }
+
   public void setUpModule(@NotNull ModuleSetupContext context, @Nullable M model) {
     beforeSetup(context, model);
 
+    SetupStepTimings timings = SetupStepTimings.getInstance(context.getModule().getProject());
     for (T step : mySetupSteps) {
       if (shouldRunSyncStep(step)) {
+        long start = System.nanoTime();
         step.setUpModule(context, model);
+        timings.record(step, System.nanoTime() - start);
         if (step.shouldTerminateSetup()) {
           return;
         }
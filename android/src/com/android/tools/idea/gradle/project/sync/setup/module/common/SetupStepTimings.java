@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.setup.module.common;
+
+import com.android.tools.idea.gradle.project.sync.setup.module.ModuleSetupStep;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Accumulates the time spent in each {@link ModuleSetupStep} of a project, across all its modules, both while preparing and while
+ * applying the setup of the modules. The timings are kept until {@link #reset()} is called.
+ */
+public final class SetupStepTimings {
+  private static final Key<SetupStepTimings> KEY = Key.create("gradle.sync.setup.step.timings");
+
+  @NotNull private final Map<String, LongAdder> myNanosByStep = new ConcurrentHashMap<>();
+
+  @NotNull
+  public static SetupStepTimings getInstance(@NotNull Project project) {
+    SetupStepTimings timings = project.getUserData(KEY);
+    if (timings == null) {
+      timings = ((UserDataHolderEx)project).putUserDataIfAbsent(KEY, new SetupStepTimings());
+    }
+    return timings;
+  }
+
+  void record(@NotNull ModuleSetupStep<?> step, long durationNanos) {
+    myNanosByStep.computeIfAbsent(step.getClass().getSimpleName(), name -> new LongAdder()).add(durationNanos);
+  }
+
+  /**
+   * @return the total time spent in each setup step, in milliseconds, sorted by the name of the step.
+   */
+  @NotNull
+  public Map<String, Long> getTimingsMs() {
+    Map<String, Long> timings = new TreeMap<>();
+    myNanosByStep.forEach((step, nanos) -> timings.put(step, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+    return timings;
+  }
+
+  public void reset() {
+    myNanosByStep.clear();
+  }
+}
@@ -65,6 +65,7 @@ import com.intellij.execution.RunnerAndConfigurationSettings;
 import com.intellij.execution.configurations.ConfigurationFactory;
 import com.intellij.execution.configurations.ConfigurationType;
 import com.intellij.execution.configurations.RunConfiguration;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.externalSystem.model.task.ExternalSystemTaskId;
@@ -111,8 +112,9 @@ public final class PostSyncProjectSetup {
 
   @SuppressWarnings("unused") // Instantiated by IDEA
   public PostSyncProjectSetup(@NotNull Project project) {
-    this(project, IdeInfo.getInstance(), ProjectStructure.getInstance(project), GradleProjectInfo.getInstance(project), GradleSyncInvoker.getInstance(), GradleSyncState.getInstance(project), DependencySetupIssues.getInstance(project), new ProjectSetup(project),
-         new ModuleSetup(project));
+    this(project, IdeInfo.getInstance(), ProjectStructure.getInstance(project), GradleProjectInfo.getInstance(project),
+         GradleSyncInvoker.getInstance(), GradleSyncState.getInstance(project), DependencySetupIssues.getInstance(project),
+         new ProjectSetup(project), new ModuleSetup(project));
   }
 
   @NonInjectable
@@ -164,8 +166,8 @@ public final class PostSyncProjectSetup {
         failTestsIfSyncIssuesPresent();
 
         myProjectSetup.setUpProject(true /* sync failed */);
-        // Notify "sync end" event first, to register the timestamp. Otherwise the cache (ProjectBuildFileChecksums) will store the date of the
-        // previous sync, and not the one from the sync that just ended.
+        // Notify "sync end" event first, to register the timestamp. Otherwise the cache (ProjectBuildFileChecksums) will store the date of
+        // the previous sync, and not the one from the sync that just ended.
         String message = "Sync issues found";
         mySyncState.syncFailed(message, new RuntimeException(message), syncListener);
         finishFailedSync(taskId, myProject, message);
@@ -325,10 +327,29 @@ public final class PostSyncProjectSetup {
       else {
         mySyncState.syncSucceeded();
       }
-      ProjectBuildFileChecksums.saveToDisk(myProject);
+      saveBuildFileChecksums();
     }
   }
 
+  /**
+   * Saves the checksums of the build files and the models of the sync that just ended. The checksums are computed right away, so they
+   * match the build files the sync used. Serializing the models and writing the files can take a while for large projects, so that is
+   * done in a pooled thread, except in unit tests.
+   */
+  private void saveBuildFileChecksums() {
+    Runnable save = ProjectBuildFileChecksums.prepareSaveToDisk(myProject);
+    Application application = ApplicationManager.getApplication();
+    if (application.isUnitTestMode()) {
+      save.run();
+      return;
+    }
+    application.executeOnPooledThread(() -> {
+      if (!myProject.isDisposed()) {
+        save.run();
+      }
+    });
+  }
+
   private void findAndShowVariantConflicts() {
     ConflictSet conflicts = findConflicts(myProject);
 
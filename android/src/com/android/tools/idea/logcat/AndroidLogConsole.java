@@ -24,6 +24,7 @@ import com.android.tools.idea.ddms.actions.TerminateVMAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
@@ -109,6 +110,24 @@ public final class AndroidLogConsole extends LogConsoleBase {
     super.addMessage(line);
   }
 
+  /**
+   * Re-filters the logs by replaying the messages of the selected device that may match the new filters, see
+   * {@link AndroidLogFilterModel#createQuery()}, instead of filtering all the lines of the console.
+   */
+  @Override
+  public void onTextFilterChange() {
+    if (!myView.replayOldLogs()) {
+      super.onTextFilterChange();
+    }
+  }
+
+  @Override
+  public void onFilterStateChange(LogFilter filter) {
+    if (!myView.replayOldLogs()) {
+      super.onFilterStateChange(filter);
+    }
+  }
+
   /**
    * Clear the current logs and replay all old messages. This is useful to do if the display
    * format of the logs have changed, for example.
@@ -120,6 +120,56 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   }
 
 
+  /**
+   * Returns a query selecting, from the messages of a {@link LogcatMessageStore}, at least all the messages accepted by this model.
+   * Only the criteria that the store indexes are part of the query: the selected log level, the process of the selected app filter, and
+   * the custom pattern if it searches for a plain word.
+   */
+  @NotNull
+  LogcatQuery createQuery() {
+    LogcatQuery.Builder builder = new LogcatQuery.Builder();
+
+    LogFilter levelFilter = getSelectedLogLevelFilter();
+    if (levelFilter instanceof AndroidLogLevelFilter) {
+      builder.setMinLevel(((AndroidLogLevelFilter)levelFilter).myLogLevel);
+    }
+    if (myConfiguredFilter instanceof SelectedProcessFilter) {
+      builder.setPid(((SelectedProcessFilter)myConfiguredFilter).getProcessId());
+    }
+    if (myCustomPattern != null) {
+      builder.setText(getSearchedWord(myCustomPattern));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the text that the pattern searches for if it matches a literal that cannot match the header of a message, as long as the
+   * literal has at least two characters and contains a letter but no digit, white space, slash or colon. Lines are matched with their
+   * header, so other texts could be found in the date, process id or level of a message even when its message, tag and package name do not
+   * contain them.
+   */
+  @Nullable
+  private static String getSearchedWord(@NotNull Pattern pattern) {
+    String text = pattern.pattern();
+    if (text.startsWith("\\Q") && text.endsWith("\\E") && text.length() >= 4) {
+      // Literal patterns are quoted with Pattern.quote.
+      text = text.substring(2, text.length() - 2);
+      if (text.contains("\\E")) {
+        return null;
+      }
+    }
+    else if ((pattern.flags() & Pattern.LITERAL) == 0 && text.chars().anyMatch(c -> "\\^$.|?*+()[]{}".indexOf(c) >= 0)) {
+      return null;
+    }
+
+    if (text.length() < 2 ||
+        text.chars().noneMatch(Character::isLetter) ||
+        text.chars().anyMatch(c -> Character.isDigit(c) || Character.isWhitespace(c) || c == '/' || c == ':')) {
+      return null;
+    }
+    return text;
+  }
+
   private void fireTextFilterChange() {
     for (LogFilterListener listener : myListeners) {
       listener.onTextFilterChange();
@@ -62,22 +62,18 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   }
 
   private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
+    private final LogcatMessageStore myStore = new LogcatMessageStore();
 
     public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
+      myStore.add(message);
       if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
+        myStore.trimToSize(ConsoleBuffer.getCycleBufferSize());
       }
     }
 
     @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
+    public List<LogCatMessage> getMessages(@NotNull LogcatQuery query) {
+      return myStore.getMessages(query);
     }
   }
 
@@ -366,15 +362,46 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
     synchronized (myLock) {
-      List<LogCatMessage> oldMessages =
-          addOldLogs && myLogBuffers.containsKey(device) ? myLogBuffers.get(device).getMessages() : ImmutableList.of();
-
-      ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
-      myDeviceToListenerMultimap.put(device, listenerConnector);
+      connectListener(device, listener, addOldLogs ? LogcatQuery.ALL : null);
 
       if (device.isOnline()) {
         startReceiving(device);
       }
+    }
+  }
+
+  /**
+   * Notifies a listener previously {@link #addListener(IDevice, LogcatListener, boolean) added} of the old log messages selected by the
+   * query, followed by the new ones. The messages the listener was not notified of yet are dropped. This is how a view re-filters its
+   * logs without filtering all the messages received so far.
+   */
+  void replayOldLogs(@NotNull IDevice device, @NotNull LogcatListener listener, @NotNull LogcatQuery query) {
+    synchronized (myLock) {
+      for (Iterator<ListenerConnector> iter = myDeviceToListenerMultimap.get(device).iterator(); iter.hasNext(); ) {
+        ListenerConnector connector = iter.next();
+        if (connector.isConnectedTo(listener)) {
+          connector.disconnectListener();
+          iter.remove();
+          connectListener(device, listener, query);
+          return;
+        }
+      }
+    }
+  }
+
+  boolean isReceiving(@NotNull IDevice device) {
+    synchronized (myLock) {
+      return myLogBuffers.containsKey(device);
+    }
+  }
+
+  private void connectListener(@NotNull IDevice device, @NotNull LogcatListener listener, @Nullable LogcatQuery oldLogsQuery) {
+    synchronized (myLock) {
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      List<LogCatMessage> oldMessages = oldLogsQuery != null && buffer != null ? buffer.getMessages(oldLogsQuery) : ImmutableList.of();
+
+      ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
+      myDeviceToListenerMultimap.put(device, listenerConnector);
 
       if (!oldMessages.isEmpty()) {
         ExecutorService executor = myExecutors.get(device);
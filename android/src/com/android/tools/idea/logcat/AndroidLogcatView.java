@@ -310,6 +310,27 @@ public class AndroidLogcatView {
     }
   }
 
+  /**
+   * Clears the console and replays the messages of the current device that may be accepted by the filters.
+   *
+   * @return false if the messages of the current device are not being received, so that there are no messages to replay
+   */
+  boolean replayOldLogs() {
+    IDevice device = myDevice;
+    AndroidLogcatService androidLogcatService = AndroidLogcatService.getInstance();
+    if (device == null || !androidLogcatService.isReceiving(device)) {
+      return false;
+    }
+
+    // We check for null, because myLogConsole.clear() depends on myLogConsole.getConsole() not being null
+    if (myLogConsole.getConsole() != null) {
+      myLogConsole.clear();
+    }
+    myLogFilterModel.processingStarted();
+    androidLogcatService.replayOldLogs(device, myLogcatReceiver, myLogFilterModel.createQuery());
+    return true;
+  }
+
   @Nullable
   IDevice getSelectedDevice() {
     if (myDeviceContext != null) {
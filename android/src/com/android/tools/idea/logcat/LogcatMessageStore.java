@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact store of the logcat messages received from a device.
+ *
+ * <p>Messages are stored by column in fixed size chunks: the header fields are packed in primitive arrays, tags and package names are
+ * interned and the text of the messages is stored as UTF-8 in a byte array per chunk. Each chunk indexes its messages by level, process,
+ * tag and package name with bitmaps, and keeps a 128-bit signature of the trigrams of each message, so that a {@link LogcatQuery} only
+ * reads the text of the messages that may contain the searched text.
+ *
+ * <p>The oldest messages are removed by {@link #trimToSize(long)}. This class is not thread safe.
+ */
+final class LogcatMessageStore {
+  private static final int DEFAULT_CHUNK_SIZE = 4096;
+  private static final LogLevel[] LEVELS = LogLevel.values();
+
+  private final int myChunkSize;
+  private final List<Chunk> myChunks = new ArrayList<>();
+  private final List<String> myStrings = new ArrayList<>();
+  private final Map<String, Integer> myStringIds = new HashMap<>();
+
+  /** Id of the first message of the first chunk. */
+  private long myFirstChunkId;
+  /** Id of the oldest message that was not removed. */
+  private long myFirstId;
+  /** Id of the next message added. */
+  private long myNextId;
+  private long myByteCount;
+  @Nullable private LogCatHeader myLastHeader;
+
+  LogcatMessageStore() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param chunkSize the number of messages per chunk, a multiple of 64
+   */
+  LogcatMessageStore(int chunkSize) {
+    assert chunkSize > 0 && chunkSize % Long.SIZE == 0;
+    myChunkSize = chunkSize;
+  }
+
+  /**
+   * Adds a line of a message. Consecutive lines with the same header instance are lines of the same message, as sent by
+   * {@link AndroidLogcatReceiver}.
+   */
+  void add(@NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    Chunk chunk = myChunks.isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+    if (chunk == null || chunk.mySize == myChunkSize) {
+      chunk = new Chunk(myChunkSize);
+      myChunks.add(chunk);
+    }
+    byte[] text = message.getMessage().getBytes(StandardCharsets.UTF_8);
+    chunk.add(header, header == myLastHeader, intern(header.getAppName()), intern(header.getTag()), text);
+    myLastHeader = header;
+    myNextId++;
+    myByteCount += text.length;
+  }
+
+  /**
+   * Removes the oldest lines until the text of the remaining ones takes at most {@code maxBytes} bytes.
+   */
+  void trimToSize(long maxBytes) {
+    while (myByteCount > maxBytes && myFirstId < myNextId) {
+      Chunk chunk = myChunks.get(0);
+      myByteCount -= chunk.getTextLength((int)(myFirstId - myFirstChunkId));
+      myFirstId++;
+      if (myFirstId - myFirstChunkId == myChunkSize) {
+        myChunks.remove(0);
+        myFirstChunkId += myChunkSize;
+      }
+    }
+  }
+
+  void clear() {
+    myChunks.clear();
+    myStrings.clear();
+    myStringIds.clear();
+    myFirstChunkId = myNextId;
+    myFirstId = myNextId;
+    myByteCount = 0;
+    myLastHeader = null;
+  }
+
+  /**
+   * Returns the number of bytes of the UTF-8 text of the stored lines.
+   */
+  long getByteCount() {
+    return myByteCount;
+  }
+
+  int size() {
+    return (int)(myNextId - myFirstId);
+  }
+
+  @NotNull
+  List<LogCatMessage> getMessages() {
+    return getMessages(LogcatQuery.ALL);
+  }
+
+  /**
+   * Returns the lines selected by the query, oldest first. The lines of a message share the same header instance.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages(@NotNull LogcatQuery query) {
+    TextMatcher matcher = query.getText() == null ? null : new TextMatcher(query.getText(), myStrings);
+    List<LogCatMessage> messages = new ArrayList<>();
+    long next = myFirstId;
+
+    for (int c = 0; c < myChunks.size(); c++) {
+      Chunk chunk = myChunks.get(c);
+      long base = myFirstChunkId + (long)c * myChunkSize;
+      int from = (int)Math.max(0, myFirstId - base);
+      long[] selection = chunk.select(from, query.getMinLevel(), query.getPid(), matcher);
+
+      for (int i = nextSetBit(selection, from); i >= 0; i = nextSetBit(selection, i + 1)) {
+        long id = base + i;
+        if (id < next) {
+          continue;
+        }
+        long start = id;
+        while (start > myFirstId && isContinuation(start)) {
+          start--;
+        }
+        long end = id + 1;
+        while (end < myNextId && isContinuation(end)) {
+          end++;
+        }
+        LogCatHeader header = createHeader(start);
+        for (long line = start; line < end; line++) {
+          messages.add(new LogCatMessage(header, getText(line)));
+        }
+        next = end;
+      }
+    }
+    return messages;
+  }
+
+  private int intern(@NotNull String string) {
+    Integer id = myStringIds.get(string);
+    if (id == null) {
+      id = myStrings.size();
+      myStrings.add(string);
+      myStringIds.put(string, id);
+    }
+    return id;
+  }
+
+  @NotNull
+  private Chunk getChunk(long id) {
+    return myChunks.get((int)((id - myFirstChunkId) / myChunkSize));
+  }
+
+  private int getIndex(long id) {
+    return (int)((id - myFirstChunkId) % myChunkSize);
+  }
+
+  private boolean isContinuation(long id) {
+    return isSet(getChunk(id).myContinuations, getIndex(id));
+  }
+
+  @NotNull
+  private String getText(long id) {
+    return getChunk(id).getText(getIndex(id));
+  }
+
+  @NotNull
+  private LogCatHeader createHeader(long id) {
+    Chunk chunk = getChunk(id);
+    int i = getIndex(id);
+    LogLevel level = chunk.getLevel(i);
+    String appName = myStrings.get(chunk.myAppIds[i]);
+    String tag = myStrings.get(chunk.myTagIds[i]);
+    LogCatTimestamp timestamp = chunk.myLegacyTimestamps == null ? null : chunk.myLegacyTimestamps[i];
+    if (timestamp != null) {
+      //noinspection deprecation
+      return new LogCatHeader(level, chunk.myPids[i], chunk.myTids[i], appName, tag, timestamp);
+    }
+    return new LogCatHeader(level, chunk.myPids[i], chunk.myTids[i], appName, tag,
+                            Instant.ofEpochSecond(chunk.myEpochSeconds[i], chunk.myNanos[i]));
+  }
+
+  private static boolean isSet(@NotNull long[] bitmap, int index) {
+    return (bitmap[index >>> 6] & (1L << index)) != 0;
+  }
+
+  private static void set(@NotNull long[] bitmap, int index) {
+    bitmap[index >>> 6] |= 1L << index;
+  }
+
+  private static int nextSetBit(@NotNull long[] bitmap, int from) {
+    int word = from >>> 6;
+    if (word >= bitmap.length) {
+      return -1;
+    }
+    long bits = bitmap[word] & (-1L << from);
+    while (true) {
+      if (bits != 0) {
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+      }
+      if (++word == bitmap.length) {
+        return -1;
+      }
+      bits = bitmap[word];
+    }
+  }
+
+  private static void and(@NotNull long[] bitmap, @NotNull long[] other) {
+    for (int i = 0; i < bitmap.length; i++) {
+      bitmap[i] &= other[i];
+    }
+  }
+
+  private static void or(@NotNull long[] bitmap, @NotNull long[] other) {
+    for (int i = 0; i < bitmap.length; i++) {
+      bitmap[i] |= other[i];
+    }
+  }
+
+  private static byte toLowerCase(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte)(b + ('a' - 'A')) : b;
+  }
+
+  /**
+   * Sets the bits of the trigrams of {@code text[start, end)}, ignoring ASCII case, in {@code signatures[2 * index]} and
+   * {@code signatures[2 * index + 1]}.
+   */
+  private static void addSignature(@NotNull byte[] text, int start, int end, @NotNull long[] signatures, int index) {
+    for (int i = start; i + 2 < end; i++) {
+      int hash = ((toLowerCase(text[i]) * 31 + toLowerCase(text[i + 1])) * 31 + toLowerCase(text[i + 2])) * 0x9E3779B1 >>> 25;
+      signatures[2 * index + (hash >>> 6)] |= 1L << hash;
+    }
+  }
+
+  /**
+   * Matches the messages, tags and package names that contain a text, ignoring ASCII case.
+   */
+  private static final class TextMatcher {
+    @NotNull private final byte[] myText;
+    @NotNull private final long[] mySignature = new long[2];
+    @NotNull private final Set<Integer> myStringIds = new HashSet<>();
+
+    TextMatcher(@NotNull String text, @NotNull List<String> strings) {
+      myText = text.getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < myText.length; i++) {
+        myText[i] = toLowerCase(myText[i]);
+      }
+      addSignature(myText, 0, myText.length, mySignature, 0);
+
+      // Lower casing all characters matches a superset of the strings matched ignoring ASCII case only.
+      String lowerCaseText = text.toLowerCase(Locale.ROOT);
+      for (int i = 0; i < strings.size(); i++) {
+        if (strings.get(i).toLowerCase(Locale.ROOT).contains(lowerCaseText)) {
+          myStringIds.add(i);
+        }
+      }
+    }
+
+    boolean mayMatch(@NotNull long[] signatures, int index) {
+      return (signatures[2 * index] & mySignature[0]) == mySignature[0] && (signatures[2 * index + 1] & mySignature[1]) == mySignature[1];
+    }
+
+    boolean matches(@NotNull byte[] text, int start, int end) {
+      int last = end - myText.length;
+      for (int i = start; i <= last; i++) {
+        int j = 0;
+        while (j < myText.length && toLowerCase(text[i + j]) == myText[j]) {
+          j++;
+        }
+        if (j == myText.length) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class Chunk {
+    private final long[][] myLevels;
+    private final long[] myContinuations;
+    private final int[] myPids;
+    private final int[] myTids;
+    private final int[] myAppIds;
+    private final int[] myTagIds;
+    private final long[] myEpochSeconds;
+    private final int[] myNanos;
+    /** Timestamps of the lines received with "logcat -v long", allocated for the first one. */
+    @Nullable private LogCatTimestamp[] myLegacyTimestamps;
+    private final int[] myTextEnds;
+    private final long[] mySignatures;
+    private final Map<Integer, long[]> myPidIndex = new HashMap<>();
+    private final Map<Integer, long[]> myAppIndex = new HashMap<>();
+    private final Map<Integer, long[]> myTagIndex = new HashMap<>();
+    private byte[] myText = new byte[1024];
+    private int mySize;
+
+    Chunk(int capacity) {
+      int words = capacity / Long.SIZE;
+      myLevels = new long[LEVELS.length][words];
+      myContinuations = new long[words];
+      myPids = new int[capacity];
+      myTids = new int[capacity];
+      myAppIds = new int[capacity];
+      myTagIds = new int[capacity];
+      myEpochSeconds = new long[capacity];
+      myNanos = new int[capacity];
+      myTextEnds = new int[capacity];
+      mySignatures = new long[2 * capacity];
+    }
+
+    void add(@NotNull LogCatHeader header, boolean continuation, int appId, int tagId, @NotNull byte[] text) {
+      int i = mySize++;
+      set(myLevels[header.getLogLevel().ordinal()], i);
+      if (continuation) {
+        set(myContinuations, i);
+      }
+      myPids[i] = header.getPid();
+      myTids[i] = header.getTid();
+      myAppIds[i] = appId;
+      myTagIds[i] = tagId;
+      Instant instant = header.getTimestampInstant();
+      if (instant != null) {
+        myEpochSeconds[i] = instant.getEpochSecond();
+        myNanos[i] = instant.getNano();
+      }
+      else {
+        if (myLegacyTimestamps == null) {
+          myLegacyTimestamps = new LogCatTimestamp[myPids.length];
+        }
+        //noinspection deprecation
+        myLegacyTimestamps[i] = header.getTimestamp();
+      }
+      addToIndex(myPidIndex, header.getPid(), i);
+      addToIndex(myAppIndex, appId, i);
+      addToIndex(myTagIndex, tagId, i);
+
+      int start = getTextStart(i);
+      if (start + text.length > myText.length) {
+        myText = Arrays.copyOf(myText, Math.max(2 * myText.length, start + text.length));
+      }
+      System.arraycopy(text, 0, myText, start, text.length);
+      myTextEnds[i] = start + text.length;
+      addSignature(myText, start, myTextEnds[i], mySignatures, i);
+    }
+
+    private void addToIndex(@NotNull Map<Integer, long[]> index, int key, int i) {
+      set(index.computeIfAbsent(key, k -> new long[myContinuations.length]), i);
+    }
+
+    @NotNull
+    LogLevel getLevel(int i) {
+      for (int level = 0; level < myLevels.length; level++) {
+        if (isSet(myLevels[level], i)) {
+          return LEVELS[level];
+        }
+      }
+      throw new IllegalStateException("No level for line " + i);
+    }
+
+    private int getTextStart(int i) {
+      return i == 0 ? 0 : myTextEnds[i - 1];
+    }
+
+    int getTextLength(int i) {
+      return myTextEnds[i] - getTextStart(i);
+    }
+
+    @NotNull
+    String getText(int i) {
+      int start = getTextStart(i);
+      return new String(myText, start, myTextEnds[i] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the bitmap of the lines from {@code from} that match the given criteria.
+     */
+    @NotNull
+    long[] select(int from, @Nullable LogLevel minLevel, @Nullable Integer pid, @Nullable TextMatcher matcher) {
+      long[] selection = new long[myContinuations.length];
+      for (int i = from; i < mySize; i++) {
+        set(selection, i);
+      }
+
+      if (minLevel != null) {
+        long[] levels = new long[selection.length];
+        for (LogLevel level : LEVELS) {
+          if (level.getPriority() >= minLevel.getPriority()) {
+            or(levels, myLevels[level.ordinal()]);
+          }
+        }
+        and(selection, levels);
+      }
+
+      if (pid != null) {
+        long[] pids = myPidIndex.get(pid);
+        if (pids == null) {
+          return new long[selection.length];
+        }
+        and(selection, pids);
+      }
+
+      if (matcher != null) {
+        long[] matches = new long[selection.length];
+        orMatchingStrings(matches, myAppIndex, matcher);
+        orMatchingStrings(matches, myTagIndex, matcher);
+        for (int i = nextSetBit(selection, from); i >= 0; i = nextSetBit(selection, i + 1)) {
+          if (!isSet(matches, i) && matcher.mayMatch(mySignatures, i) && matcher.matches(myText, getTextStart(i), myTextEnds[i])) {
+            set(matches, i);
+          }
+        }
+        and(selection, matches);
+      }
+      return selection;
+    }
+
+    private static void orMatchingStrings(@NotNull long[] matches, @NotNull Map<Integer, long[]> index, @NotNull TextMatcher matcher) {
+      for (Map.Entry<Integer, long[]> entry : index.entrySet()) {
+        if (matcher.myStringIds.contains(entry.getKey())) {
+          or(matches, entry.getValue());
+        }
+      }
+    }
+  }
+}
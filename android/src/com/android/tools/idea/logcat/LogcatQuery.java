@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Selects messages of a {@link LogcatMessageStore} using its indexes.
+ *
+ * <p>A query may select more messages than the filters it is created from (see
+ * {@link AndroidLogFilterModel#createQuery()}), but never fewer: the messages it selects still go through the
+ * filters, it only saves filtering all the messages of the store. All the lines of a multi-line message
+ * are selected if any of them is.
+ */
+final class LogcatQuery {
+  static final LogcatQuery ALL = new Builder().build();
+
+  @Nullable private final LogLevel myMinLevel;
+  @Nullable private final Integer myPid;
+  @Nullable private final String myText;
+
+  private LogcatQuery(@Nullable LogLevel minLevel, @Nullable Integer pid, @Nullable String text) {
+    myMinLevel = minLevel;
+    myPid = pid;
+    myText = text;
+  }
+
+  /**
+   * The minimum level of the selected messages, or {@code null} for all levels.
+   */
+  @Nullable
+  LogLevel getMinLevel() {
+    return myMinLevel;
+  }
+
+  /**
+   * The process id of the selected messages, or {@code null} for all processes.
+   */
+  @Nullable
+  Integer getPid() {
+    return myPid;
+  }
+
+  /**
+   * Text that the selected messages contain, ignoring ASCII case, in their message, tag or package name,
+   * or {@code null} for all messages.
+   */
+  @Nullable
+  String getText() {
+    return myText;
+  }
+
+  static final class Builder {
+    @Nullable private LogLevel myMinLevel;
+    @Nullable private Integer myPid;
+    @Nullable private String myText;
+
+    Builder setMinLevel(@Nullable LogLevel minLevel) {
+      myMinLevel = minLevel;
+      return this;
+    }
+
+    Builder setPid(@Nullable Integer pid) {
+      myPid = pid;
+      return this;
+    }
+
+    Builder setText(@Nullable String text) {
+      myText = text != null && text.isEmpty() ? null : text;
+      return this;
+    }
+
+    @NotNull
+    LogcatQuery build() {
+      return new LogcatQuery(myMinLevel, myPid, myText);
+    }
+  }
+}
@@ -122,6 +122,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoader;
 import org.jetbrains.android.uipreview.ViewLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -965,6 +966,14 @@ public class LayoutlibCallbackImpl extends LayoutlibCallback {
     return myClassLoader.hasLoadedClass(classFqn);
   }
 
+  /**
+   * Returns the URLs of the project .class files loaded to render, with the timestamp and length they had when they were loaded.
+   */
+  @NotNull
+  public Map<String, ModuleClassLoader.ClassModificationTimestamp> getLoadedClassFiles() {
+    return myClassLoader.getLoadedClassFiles();
+  }
+
   private static class NamedXmlParser extends KXmlParser {
     @Nullable
     private final String myName;
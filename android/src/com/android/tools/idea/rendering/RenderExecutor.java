@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs the layoutlib render actions on a fixed set of render threads.
+ * <p/>
+ * Layoutlib and the user code it runs keep thread local state between calls, so every action is assigned to a thread by its affinity
+ * key: all the actions with the same key (usually the module being rendered) run on the same thread, in submission order when they have
+ * the same priority. Actions without a key run on the first thread. Each thread picks {@link Priority#HIGH} actions before
+ * {@link Priority#LOW} ones, and skips actions whose future was cancelled or completed before they started. A future can only be
+ * cancelled while its action is queued, so an action never keeps running after its cancellation succeeded.
+ */
+public final class RenderExecutor {
+  public enum Priority {
+    /** Renders the user is waiting for, like the ones of the visible design surfaces. */
+    HIGH,
+    /** Renders that can wait, like thumbnails and previews rendered in the background. */
+    LOW
+  }
+
+  private static final String THREAD_NAME = "Layoutlib Render Thread";
+
+  @NotNull private final ThreadPoolExecutor[] myExecutors;
+  @NotNull private final AtomicReference<Thread>[] myThreads;
+  @NotNull private final AtomicLong mySequence = new AtomicLong();
+
+  @SuppressWarnings("unchecked")
+  RenderExecutor(int threadCount) {
+    assert threadCount > 0;
+    myExecutors = new ThreadPoolExecutor[threadCount];
+    myThreads = new AtomicReference[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      AtomicReference<Thread> threadReference = new AtomicReference<>();
+      String threadName = threadCount == 1 ? THREAD_NAME : THREAD_NAME + " " + (i + 1);
+      myThreads[i] = threadReference;
+      myExecutors[i] = new ThreadPoolExecutor(1, 1,
+                                              0, TimeUnit.MILLISECONDS,
+                                              new PriorityBlockingQueue<>(),
+                                              (Runnable r) -> {
+                                                Thread renderingThread = new Thread(null, r, threadName);
+                                                renderingThread.setDaemon(true);
+                                                threadReference.set(renderingThread);
+
+                                                return renderingThread;
+                                              });
+    }
+  }
+
+  /**
+   * Runs the given action on the render thread of the given affinity key.
+   */
+  @NotNull
+  public <T> CompletableFuture<T> supplyAsync(@NotNull Supplier<T> action, @Nullable Object affinityKey, @NotNull Priority priority) {
+    RenderFuture<T> future = new RenderFuture<>();
+    myExecutors[getThreadIndex(affinityKey)].execute(new PrioritizedAction(priority, mySequence.getAndIncrement(), () -> {
+      if (!future.start()) {
+        // Cancelled while waiting in the queue.
+        return;
+      }
+      try {
+        future.complete(action.get());
+      }
+      catch (Throwable t) {
+        // Fail the same way CompletableFuture.supplyAsync does.
+        future.completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+      }
+    }));
+    return future;
+  }
+
+  /**
+   * Runs the given action on the render thread of the given affinity key.
+   */
+  @NotNull
+  public CompletableFuture<Void> runAsync(@NotNull Runnable action, @Nullable Object affinityKey, @NotNull Priority priority) {
+    return supplyAsync(() -> {
+      action.run();
+      return null;
+    }, affinityKey, priority);
+  }
+
+  /**
+   * Returns the render thread of the given affinity key or null if it has not been started.
+   */
+  @Nullable
+  public Thread getThread(@Nullable Object affinityKey) {
+    return myThreads[getThreadIndex(affinityKey)].get();
+  }
+
+  /**
+   * Returns the number of actions waiting to be run on all the render threads.
+   */
+  public int getQueuedActionCount() {
+    int count = 0;
+    for (ThreadPoolExecutor executor : myExecutors) {
+      count += executor.getQueue().size();
+    }
+    return count;
+  }
+
+  public int getThreadCount() {
+    return myExecutors.length;
+  }
+
+  /**
+   * Waits for the render threads to finish their work after a {@link #shutdownNow()}.
+   */
+  public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (ThreadPoolExecutor executor : myExecutors) {
+      if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stops accepting actions, drops the queued ones and interrupts the render threads.
+   */
+  public void shutdownNow() {
+    for (int i = 0; i < myExecutors.length; i++) {
+      myExecutors[i].shutdownNow();
+      Thread thread = myThreads[i].getAndSet(null);
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  private int getThreadIndex(@Nullable Object affinityKey) {
+    return affinityKey == null ? 0 : Math.floorMod(affinityKey.hashCode(), myExecutors.length);
+  }
+
+  /**
+   * Future of a render action that can only be cancelled before the action starts. Owners of the action, like a {@link RenderTask}
+   * disposing its session, can rely on a successful cancellation meaning that the action will never run.
+   */
+  private static final class RenderFuture<T> extends CompletableFuture<T> {
+    private final AtomicBoolean myStarted = new AtomicBoolean();
+
+    /**
+     * Marks the action as started. Returns false if the future was cancelled or completed before.
+     */
+    private boolean start() {
+      return myStarted.compareAndSet(false, true) && !isDone();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return myStarted.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+    }
+  }
+
+  private static final class PrioritizedAction implements Runnable, Comparable<PrioritizedAction> {
+    @NotNull private final Priority myPriority;
+    private final long mySequence;
+    @NotNull private final Runnable myAction;
+
+    private PrioritizedAction(@NotNull Priority priority, long sequence, @NotNull Runnable action) {
+      myPriority = priority;
+      mySequence = sequence;
+      myAction = action;
+    }
+
+    @Override
+    public void run() {
+      myAction.run();
+    }
+
+    @Override
+    public int compareTo(@NotNull PrioritizedAction other) {
+      int result = myPriority.compareTo(other.myPriority);
+      return result != 0 ? result : Long.compare(mySequence, other.mySequence);
+    }
+  }
+}
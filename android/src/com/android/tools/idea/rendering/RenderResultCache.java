@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.ide.common.rendering.api.ArrayResourceValue;
+import com.android.ide.common.rendering.api.AttrResourceValue;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.rendering.api.StyleItemResourceValue;
+import com.android.ide.common.rendering.api.StyleResourceValue;
+import com.android.ide.common.rendering.api.StyleableResourceValue;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceVisitor;
+import com.android.ide.common.resources.SingleNamespaceResourceRepository;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.State;
+import com.android.tools.idea.AndroidPsiUtils;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.res.LocalResourceRepository;
+import com.android.tools.idea.res.ResourceHelper;
+import com.android.tools.idea.res.ResourceRepositoryManager;
+import com.android.tools.idea.resources.base.LoadableResourceRepository;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.xml.XmlFile;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.concurrent.GuardedBy;
+import javax.imageio.ImageIO;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoader.ClassModificationTimestamp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of rendered images, persisted across IDE restarts, for the callers that only need the image of a layout like the thumbnails of
+ * the navigation editor and of the resource explorer.
+ * <p/>
+ * Entries are keyed by a hash of everything the image depends on: the XML of the layout, the {@link Configuration} (device, theme,
+ * locale, ...), the resources of the module and the rendering options of the caller (see {@link #computeKey}). Each entry also records
+ * the project .class files loaded by the render, and is ignored if any of them changed since. The most recently used images are also
+ * kept in memory.
+ * <p/>
+ * Only the images of renders without errors should be stored, see {@link #isCacheable}, so that a render that failed because of a
+ * transient problem, like classes that are not compiled yet, is not kept.
+ */
+public final class RenderResultCache {
+  private static final Logger LOG = Logger.getInstance(RenderResultCache.class);
+
+  private static final String CACHE_DIR = "caches/render_results";
+  private static final String IMAGE_EXTENSION = ".png";
+  private static final String CLASSES_EXTENSION = ".classes";
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+  private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+
+  private static final Object ourInstanceLock = new Object();
+  @GuardedBy("ourInstanceLock")
+  @Nullable private static RenderResultCache ourInstance;
+
+  /**
+   * Hash of the resources of each app resource repository, with the modification count it was computed for and the files of its file
+   * resources.
+   */
+  private static final Cache<LocalResourceRepository, ResourcesHash> ourResourceHashes = CacheBuilder.newBuilder().weakKeys().build();
+
+  @NotNull private final Path myDirectory;
+  private final int myMaxEntries;
+  @NotNull private final Function<String, ClassModificationTimestamp> myClassFileTimestamps;
+  @NotNull private final Cache<String, Entry> myMemoryCache = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_MEMORY_BYTES)
+    .<String, Entry>weigher((key, entry) -> entry.image.getWidth() * entry.image.getHeight() * 4)
+    .build();
+  @NotNull private final AtomicInteger myDiskEntryCount;
+  @NotNull private final AtomicLong myHitCount = new AtomicLong();
+  @NotNull private final AtomicLong myMissCount = new AtomicLong();
+
+  private static final class Entry {
+    @NotNull final BufferedImage image;
+    @NotNull final Map<String, ClassModificationTimestamp> classFiles;
+
+    Entry(@NotNull BufferedImage image, @NotNull Map<String, ClassModificationTimestamp> classFiles) {
+      this.image = image;
+      this.classFiles = classFiles;
+    }
+  }
+
+  private static final class ResourcesHash {
+    final long modificationCount;
+    @NotNull final HashCode hash;
+    /** The files of the file resources, like drawables and layouts, whose contents can change without changing the repository. */
+    @NotNull final List<VirtualFile> files;
+    /** The hash combined with the state of the files, or null if it hasn't been computed yet. */
+    @Nullable volatile FilesHash filesHash;
+
+    ResourcesHash(long modificationCount, @NotNull HashCode hash, @NotNull List<VirtualFile> files) {
+      this.modificationCount = modificationCount;
+      this.hash = hash;
+      this.files = files;
+    }
+  }
+
+  private static final class FilesHash {
+    /** The modification count of the VFS, which changes when files are changed on disk. */
+    final long fileModificationCount;
+    /** The modification count of the XML PSI of the project, which changes when XML files are edited. */
+    final long xmlModificationCount;
+    @NotNull final HashCode hash;
+
+    FilesHash(long fileModificationCount, long xmlModificationCount, @NotNull HashCode hash) {
+      this.fileModificationCount = fileModificationCount;
+      this.xmlModificationCount = xmlModificationCount;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * @param directory the directory storing the entries
+   * @param maxEntries the maximum number of entries stored on disk, the least recently used ones are deleted first
+   * @param classFileTimestamps function returning the current timestamp of the .class file with the given URL, or null if it does not
+   *                            exist anymore
+   */
+  @VisibleForTesting
+  RenderResultCache(@NotNull Path directory,
+                    int maxEntries,
+                    @NotNull Function<String, ClassModificationTimestamp> classFileTimestamps) throws IOException {
+    myDirectory = directory;
+    myMaxEntries = maxEntries;
+    myClassFileTimestamps = classFileTimestamps;
+    Files.createDirectories(directory);
+    myDiskEntryCount = new AtomicInteger(listImages().size());
+  }
+
+  /**
+   * Returns the cache shared by all the projects, or null if it is disabled or its directory can not be created. The cache is disabled
+   * in unit tests, whose renders must not depend on the images left by previous tests.
+   */
+  @Nullable
+  public static RenderResultCache getInstance() {
+    if (!StudioFlags.NELE_RENDER_RESULT_CACHE.get() || ApplicationManager.getApplication().isUnitTestMode()) {
+      return null;
+    }
+    synchronized (ourInstanceLock) {
+      if (ourInstance == null) {
+        try {
+          ourInstance = new RenderResultCache(Paths.get(PathManager.getSystemPath()).resolve(CACHE_DIR), DEFAULT_MAX_ENTRIES,
+                                              RenderResultCache::getClassFileTimestamp);
+        }
+        catch (IOException e) {
+          LOG.warn("Unable to create the render result cache", e);
+          return null;
+        }
+      }
+      return ourInstance;
+    }
+  }
+
+  /**
+   * Returns whether the image of the given result can be stored: the render succeeded and did not log any error, including broken or
+   * missing classes.
+   */
+  public static boolean isCacheable(@NotNull RenderResult result) {
+    return result.getRenderResult().isSuccess() && !result.getLogger().hasErrors();
+  }
+
+  /**
+   * Returns the key of the image of the given layout file rendered with the given configuration.
+   *
+   * @param renderOptions a string describing the options the caller renders with, like the scale or whether decorations are shown
+   */
+  @NotNull
+  public static String computeKey(@NotNull AndroidFacet facet,
+                                  @NotNull XmlFile file,
+                                  @NotNull Configuration configuration,
+                                  @NotNull String renderOptions) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(renderOptions, StandardCharsets.UTF_8);
+    hasher.putString(ReadAction.compute(file::getText), StandardCharsets.UTF_8);
+
+    Device device = configuration.getDevice();
+    State state = configuration.getDeviceState();
+    IAndroidTarget target = configuration.getTarget();
+    hasher.putString(String.valueOf(device != null ? device.getId() : null), StandardCharsets.UTF_8)
+      .putString(String.valueOf(state != null ? state.getName() : null), StandardCharsets.UTF_8)
+      .putString(String.valueOf(target != null ? target.hashString() : null), StandardCharsets.UTF_8)
+      .putString(configuration.getFullConfig().getQualifierString(), StandardCharsets.UTF_8)
+      .putString(String.valueOf(configuration.getTheme()), StandardCharsets.UTF_8)
+      .putString(String.valueOf(configuration.getActivity()), StandardCharsets.UTF_8)
+      .putFloat(configuration.getFontScale());
+
+    hasher.putBytes(getResourcesHash(ResourceRepositoryManager.getAppResources(facet), facet.getModule().getProject()).asBytes());
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns a hash of the resources of the given repository. The contents of the libraries are identified by their location, the rest of
+   * the resources by their values and, for file resources, by the timestamp and length of their files. The hash is recomputed only when
+   * the repository, the files on disk or the XML files of the project change.
+   */
+  @NotNull
+  private static HashCode getResourcesHash(@NotNull LocalResourceRepository repository, @NotNull Project project) {
+    // The modification counts are read before hashing, so that a change made while hashing invalidates the result.
+    long fileModificationCount = VirtualFileManager.getInstance().getModificationCount();
+    long xmlModificationCount = AndroidPsiUtils.getXmlPsiModificationTracker(project).getModificationCount();
+    ResourcesHash resourcesHash = getValuesHash(repository);
+    FilesHash filesHash = resourcesHash.filesHash;
+    if (filesHash == null ||
+        filesHash.fileModificationCount != fileModificationCount ||
+        filesHash.xmlModificationCount != xmlModificationCount) {
+      filesHash = new FilesHash(fileModificationCount, xmlModificationCount, hashFiles(resourcesHash.hash, resourcesHash.files));
+      resourcesHash.filesHash = filesHash;
+    }
+    return filesHash.hash;
+  }
+
+  /**
+   * Returns the hash of the values of the resources of the given repository, recomputing it if the repository changed since.
+   */
+  @NotNull
+  private static ResourcesHash getValuesHash(@NotNull LocalResourceRepository repository) {
+    long modificationCount = repository.getModificationCount();
+    ResourcesHash resourcesHash = ourResourceHashes.getIfPresent(repository);
+    if (resourcesHash != null && resourcesHash.modificationCount == modificationCount) {
+      return resourcesHash;
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    List<VirtualFile> files = new ArrayList<>();
+    ReadAction.run(() -> {
+      for (SingleNamespaceResourceRepository leaf : repository.getLeafResourceRepositories()) {
+        hasher.putString(leaf.getNamespace().toString(), StandardCharsets.UTF_8);
+        if (leaf instanceof LoadableResourceRepository && ((LoadableResourceRepository)leaf).getOrigin() != null) {
+          Path origin = ((LoadableResourceRepository)leaf).getOrigin();
+          hasher.putString(origin.toString(), StandardCharsets.UTF_8);
+          try {
+            hasher.putLong(Files.getLastModifiedTime(origin).toMillis());
+          }
+          catch (IOException e) {
+            LOG.debug(e);
+          }
+          continue;
+        }
+        leaf.accept(item -> {
+          hashResourceItem(hasher, item);
+          if (item.isFileBased()) {
+            VirtualFile file = ResourceHelper.getSourceAsVirtualFile(item);
+            if (file != null) {
+              files.add(file);
+            }
+          }
+          return ResourceVisitor.VisitResult.CONTINUE;
+        });
+      }
+    });
+    resourcesHash = new ResourcesHash(modificationCount, hasher.hash(), files);
+    ourResourceHashes.put(repository, resourcesHash);
+    return resourcesHash;
+  }
+
+  /**
+   * Combines the given hash of the resource values with the current state of the given files. The contents of the files that have
+   * unsaved changes are hashed, since those changes are rendered too.
+   */
+  @NotNull
+  private static HashCode hashFiles(@NotNull HashCode resourcesHash, @NotNull List<VirtualFile> files) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putBytes(resourcesHash.asBytes());
+    FileDocumentManager documentManager = FileDocumentManager.getInstance();
+    ReadAction.run(() -> {
+      for (VirtualFile file : files) {
+        hasher.putString(file.getPath(), StandardCharsets.UTF_8);
+        if (!file.isValid()) {
+          continue;
+        }
+        hasher.putLong(file.getTimeStamp()).putLong(file.getLength());
+        Document document = documentManager.getCachedDocument(file);
+        if (document != null && documentManager.isDocumentUnsaved(document)) {
+          hasher.putString(document.getImmutableCharSequence(), StandardCharsets.UTF_8);
+        }
+      }
+    });
+    return hasher.hash();
+  }
+
+  private static void hashResourceItem(@NotNull Hasher hasher, @NotNull ResourceItem item) {
+    hasher.putString(item.getType().getName(), StandardCharsets.UTF_8)
+      .putString(item.getName(), StandardCharsets.UTF_8)
+      .putString(item.getConfiguration().getQualifierString(), StandardCharsets.UTF_8);
+    ResourceValue value = item.getResourceValue();
+    if (value == null) {
+      return;
+    }
+    hasher.putString(String.valueOf(value.getValue()), StandardCharsets.UTF_8);
+    if (value instanceof StyleResourceValue) {
+      StyleResourceValue style = (StyleResourceValue)value;
+      hasher.putString(String.valueOf(style.getParentStyleName()), StandardCharsets.UTF_8);
+      for (StyleItemResourceValue styleItem : style.getDefinedItems()) {
+        hasher.putString(styleItem.getAttrName(), StandardCharsets.UTF_8)
+          .putString(String.valueOf(styleItem.getValue()), StandardCharsets.UTF_8);
+      }
+    }
+    else if (value instanceof ArrayResourceValue) {
+      for (String element : (ArrayResourceValue)value) {
+        hasher.putString(String.valueOf(element), StandardCharsets.UTF_8);
+      }
+    }
+    else if (value instanceof StyleableResourceValue) {
+      for (AttrResourceValue attr : ((StyleableResourceValue)value).getAllAttributes()) {
+        hasher.putString(attr.getName(), StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  @Nullable
+  private static ClassModificationTimestamp getClassFileTimestamp(@NotNull String url) {
+    VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
+    return file != null && file.isValid() ? new ClassModificationTimestamp(file.getTimeStamp(), file.getLength()) : null;
+  }
+
+  /**
+   * Returns a copy of the image stored with the given key, or null if there is none or if one of the .class files used to render it
+   * changed.
+   */
+  @Nullable
+  public BufferedImage getImage(@NotNull String key) {
+    Entry entry = myMemoryCache.getIfPresent(key);
+    if (entry == null) {
+      entry = readEntry(key);
+      if (entry != null) {
+        myMemoryCache.put(key, entry);
+      }
+    }
+    if (entry == null || !isUpToDate(entry.classFiles)) {
+      myMissCount.incrementAndGet();
+      return null;
+    }
+    myHitCount.incrementAndGet();
+    return copy(entry.image);
+  }
+
+  /**
+   * Stores a copy of the given image.
+   *
+   * @param classFiles the project .class files loaded to render the image, see {@link LayoutlibCallbackImpl#getLoadedClassFiles()}
+   */
+  public void putImage(@NotNull String key, @NotNull BufferedImage image, @NotNull Map<String, ClassModificationTimestamp> classFiles) {
+    Entry entry = new Entry(copy(image), new HashMap<>(classFiles));
+    myMemoryCache.put(key, entry);
+    try {
+      writeEntry(key, entry);
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+
+  private boolean isUpToDate(@NotNull Map<String, ClassModificationTimestamp> classFiles) {
+    for (Map.Entry<String, ClassModificationTimestamp> classFile : classFiles.entrySet()) {
+      ClassModificationTimestamp current = myClassFileTimestamps.apply(classFile.getKey());
+      if (current == null ||
+          current.timestamp != classFile.getValue().timestamp ||
+          current.length != classFile.getValue().length) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the entry with the given key. The list of classes is read before the image, and written after it by {@link #writeEntry}, so a
+   * list is never paired with an image older than itself.
+   */
+  @Nullable
+  private Entry readEntry(@NotNull String key) {
+    Path imageFile = myDirectory.resolve(key + IMAGE_EXTENSION);
+    Path classesFile = myDirectory.resolve(key + CLASSES_EXTENSION);
+    if (!Files.exists(imageFile) || !Files.exists(classesFile)) {
+      return null;
+    }
+    try {
+      Map<String, ClassModificationTimestamp> classFiles = new HashMap<>();
+      for (String line : Files.readAllLines(classesFile, StandardCharsets.UTF_8)) {
+        // timestamp length url
+        String[] parts = line.split(" ", 3);
+        if (parts.length == 3) {
+          classFiles.put(parts[2], new ClassModificationTimestamp(Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+        }
+      }
+      BufferedImage image = ImageIO.read(imageFile.toFile());
+      if (image == null) {
+        return null;
+      }
+      // The modification time of the image orders the entries by last use.
+      Files.setLastModifiedTime(imageFile, FileTime.fromMillis(System.currentTimeMillis()));
+      return new Entry(image, classFiles);
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes both files of the entry to temporary files first and then renames them, so that a reader or a crash never leaves a partially
+   * written file. The list of classes is renamed last, so an entry is only complete once its image is in place, see {@link #readEntry}.
+   */
+  private void writeEntry(@NotNull String key, @NotNull Entry entry) throws IOException {
+    List<String> lines = entry.classFiles.entrySet().stream()
+      .map(classFile -> classFile.getValue().timestamp + " " + classFile.getValue().length + " " + classFile.getKey())
+      .collect(Collectors.toList());
+    Path imageFile = myDirectory.resolve(key + IMAGE_EXTENSION);
+    boolean existed = Files.exists(imageFile);
+    Path tempImageFile = Files.createTempFile(myDirectory, key, ".tmp");
+    Path tempClassesFile = Files.createTempFile(myDirectory, key, ".tmp");
+    try {
+      ImageIO.write(entry.image, "png", tempImageFile.toFile());
+      Files.write(tempClassesFile, lines, StandardCharsets.UTF_8);
+      Files.move(tempImageFile, imageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Files.move(tempClassesFile, myDirectory.resolve(key + CLASSES_EXTENSION), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tempImageFile);
+      Files.deleteIfExists(tempClassesFile);
+    }
+    if (!existed && myDiskEntryCount.incrementAndGet() > myMaxEntries) {
+      deleteLeastRecentlyUsed();
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries from the disk, leaving 3/4 of the maximum number of entries.
+   */
+  private synchronized void deleteLeastRecentlyUsed() throws IOException {
+    List<Path> images = listImages();
+    images.sort(Comparator.comparing(image -> {
+      try {
+        return Files.getLastModifiedTime(image);
+      }
+      catch (IOException e) {
+        return FileTime.fromMillis(0);
+      }
+    }));
+    int toDelete = images.size() - myMaxEntries * 3 / 4;
+    for (int i = 0; i < toDelete; i++) {
+      Path image = images.get(i);
+      String fileName = image.getFileName().toString();
+      String key = fileName.substring(0, fileName.length() - IMAGE_EXTENSION.length());
+      Files.deleteIfExists(image);
+      Files.deleteIfExists(myDirectory.resolve(key + CLASSES_EXTENSION));
+      myMemoryCache.invalidate(key);
+    }
+    myDiskEntryCount.set(images.size() - Math.max(toDelete, 0));
+  }
+
+  @NotNull
+  private List<Path> listImages() throws IOException {
+    try (Stream<Path> files = Files.list(myDirectory)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(IMAGE_EXTENSION)).collect(Collectors.toCollection(ArrayList::new));
+    }
+  }
+
+  @NotNull
+  private static BufferedImage copy(@NotNull BufferedImage image) {
+    //noinspection UndesirableClassUsage
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = copy.createGraphics();
+    try {
+      g.drawImage(image, 0, 0, null);
+    }
+    finally {
+      g.dispose();
+    }
+    return copy;
+  }
+
+  long getHitCount() {
+    return myHitCount.get();
+  }
+
+  long getMissCount() {
+    return myMissCount.get();
+  }
+}
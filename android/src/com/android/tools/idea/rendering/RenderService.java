@@ -53,14 +53,11 @@ import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.maven.AndroidMavenUtil;
@@ -83,8 +80,7 @@ public class RenderService implements Disposable {
                                                                               : 6));
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
-  private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
+  private static RenderExecutor ourRenderingExecutor;
   private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
 
   /**
@@ -103,16 +99,7 @@ public class RenderService implements Disposable {
   private final Project myProject;
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(1, 1,
-                             0, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = new RenderExecutor(Math.max(1, StudioFlags.NELE_RENDER_THREAD_COUNT.get()));
   }
 
   @TestOnly
@@ -124,10 +111,6 @@ public class RenderService implements Disposable {
 
   private static void shutdownRenderExecutor() {
     ourRenderingExecutor.shutdownNow();
-    Thread currentThread = ourRenderingThread.getAndSet(null);
-    if (currentThread != null) {
-      currentThread.interrupt();
-    }
   }
 
   /**
@@ -154,7 +137,7 @@ public class RenderService implements Disposable {
 
   private final Object myCredential = new Object();
 
-  private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
+  private final ImagePool myImagePool = ImagePoolFactory.createImagePool(StudioFlags.NELE_IMAGE_POOL_BUDGET_MB.get() * 1024L * 1024L);
 
   /**
    * @return the {@linkplain RenderService} for the given facet.
@@ -262,22 +245,26 @@ public class RenderService implements Disposable {
 
   /**
    * Runs a action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
-   * method.
+   * method. The action runs on the render thread of the given affinity key, usually the module being rendered, see {@link RenderExecutor}.
    */
-  public static void runRenderAction(@NotNull final Runnable runnable) throws Exception {
-    runRenderAction(Executors.callable(runnable));
+  public static void runRenderAction(@NotNull final Runnable runnable,
+                                     @NotNull Object affinityKey,
+                                     @NotNull RenderExecutor.Priority priority) throws Exception {
+    runRenderAction(Executors.callable(runnable), affinityKey, priority);
   }
 
   /**
    * Runs a action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
-   * method.
+   * method. The action runs on the render thread of the given affinity key, usually the module being rendered, see {@link RenderExecutor}.
    */
-  public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+  public static <T> T runRenderAction(@NotNull Callable<T> callable,
+                                      @NotNull Object affinityKey,
+                                      @NotNull RenderExecutor.Priority priority) throws Exception {
     try {
       // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
       // clean-up the timeout counter instead. If it goes through, it means the queue is free.
       if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
+        ourRenderingExecutor.runAsync(() -> ourTimeoutExceptionCounter.set(0), affinityKey, priority).get(50, TimeUnit.MILLISECONDS);
       }
       long timeout = ourRenderThreadTimeoutMs;
       if (isFirstCall) {
@@ -286,7 +273,14 @@ public class RenderService implements Disposable {
         isFirstCall = false;
         timeout *= 2;
       }
-      T result = ourRenderingExecutor.submit(callable).get(timeout, TimeUnit.MILLISECONDS);
+      T result = ourRenderingExecutor.supplyAsync(() -> {
+        try {
+          return callable.call();
+        }
+        catch (Exception e) {
+          throw new CompletionException(e);
+        }
+      }, affinityKey, priority).get(timeout, TimeUnit.MILLISECONDS);
       // The executor seems to be taking tasks so reset the counter
       ourTimeoutExceptionCounter.set(0);
 
@@ -295,7 +289,7 @@ public class RenderService implements Disposable {
     catch (TimeoutException e) {
       ourTimeoutExceptionCounter.incrementAndGet();
 
-      Thread renderingThread = ourRenderingThread.get();
+      Thread renderingThread = ourRenderingExecutor.getThread(affinityKey);
       TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
                                                                "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
       if (renderingThread != null) {
@@ -308,23 +302,30 @@ public class RenderService implements Disposable {
 
   /**
    * Runs an action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
-   * method.
+   * method. The action runs on the render thread of the given affinity key. Actions that share state with other render actions, like the
+   * ones using a {@link RenderTask}'s session, must use the same affinity key, usually the module being rendered. See
+   * {@link RenderExecutor}.
    * <p/>
-   * This method will run the passed action asynchronously and return a {@link CompletableFuture}
+   * This method will run the passed action asynchronously and return a {@link CompletableFuture}. Cancelling the future before the action
+   * starts prevents it from running.
    */
   @NotNull
-  public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable) {
-    return CompletableFuture.supplyAsync(callable, ourRenderingExecutor);
+  public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable,
+                                                              @NotNull Object affinityKey,
+                                                              @NotNull RenderExecutor.Priority priority) {
+    return ourRenderingExecutor.supplyAsync(callable, affinityKey, priority);
   }
 
   /**
-   * Runs an action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
-   * method.
+   * Runs an action that requires the rendering lock on the render thread of the given affinity key. See
+   * {@link #runAsyncRenderAction(Supplier, Object, RenderExecutor.Priority)}.
    * <p/>
    * This method will run the passed action asynchronously
    */
-  public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.submit(runnable);
+  public static void runAsyncRenderAction(@NotNull Runnable runnable,
+                                          @NotNull Object affinityKey,
+                                          @NotNull RenderExecutor.Priority priority) {
+    ourRenderingExecutor.runAsync(runnable, affinityKey, priority);
   }
 
   /**
@@ -429,6 +430,7 @@ public class RenderService implements Disposable {
     private boolean useHighQualityShadows = StudioFlags.NELE_RENDER_HIGH_QUALITY_SHADOW.get();
     private SessionParams.RenderingMode myRenderingMode = null;
     private boolean useTransparentBackground = false;
+    @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.HIGH;
 
     private RenderTaskBuilder(@NotNull RenderService service,
                               @NotNull AndroidFacet facet,
@@ -551,6 +553,15 @@ public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * @see RenderTask#setPriority(RenderExecutor.Priority)
+     */
+    @NotNull
+    public RenderTaskBuilder withPriority(@NotNull RenderExecutor.Priority priority) {
+      myPriority = priority;
+      return this;
+    }
+
     /**
      * Builds a new {@link RenderTask}. The returned future always completes successfully but the value might be null if the RenderTask
      * can not be created.
@@ -612,6 +623,7 @@ public class RenderService implements Disposable {
           }
 
           task
+            .setPriority(myPriority)
             .setDecorations(showDecorations)
             .setHighQualityShadows(useHighQualityShadows)
             .setShadowEnabled(isShadowEnabled)
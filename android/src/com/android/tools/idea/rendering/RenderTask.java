@@ -90,6 +90,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.util.AndroidUtils;
@@ -152,6 +153,11 @@ public class RenderTask {
   private final float myDefaultQuality;
   @Nullable private IncludeReference myIncludedWithin;
   @NotNull private RenderingMode myRenderingMode = RenderingMode.NORMAL;
+  /** Key used to run all the render actions of this task on the same render thread. */
+  @NotNull private final Object myAffinityKey;
+  @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.HIGH;
+  /** The last render of a {@link RenderExecutor.Priority#LOW} priority task, cancelled by the next one if it has not started yet. */
+  @NotNull private final AtomicReference<CompletableFuture<RenderResult>> myPendingLowPriorityRender = new AtomicReference<>();
   private boolean mySetTransparentBackground = false;
   private boolean myShowDecorations = true;
   private boolean myShadowEnabled = true;
@@ -211,6 +217,7 @@ public class RenderTask {
     LocalResourceRepository appResources = ResourceRepositoryManager.getAppResources(facet);
     ActionBarHandler actionBarHandler = new ActionBarHandler(this, myCredential);
     Module module = facet.getModule();
+    myAffinityKey = module;
     myLayoutlibCallback =
         new LayoutlibCallbackImpl(this, myLayoutLib, appResources, module, facet, myLogger, myCredential, actionBarHandler, parserFactory);
     if (ResourceIdManager.get(module).finalIdsUsed()) {
@@ -309,7 +316,7 @@ public class RenderTask {
         catch (IllegalAccessException e) {
           LOG.debug(e);
         }
-      });
+      }, myAffinityKey, myPriority);
     } catch(Throwable t) {
       LOG.debug(t);
     }
@@ -329,7 +336,7 @@ public class RenderTask {
         catch (IllegalAccessException e) {
           LOG.debug(e);
         }
-      });
+      }, myAffinityKey, myPriority);
     } catch (Throwable t) {
       LOG.debug(t);
     }
@@ -362,7 +369,7 @@ public class RenderTask {
         catch (IllegalAccessException e) {
           LOG.debug(e);
         }
-      });
+      }, myAffinityKey, myPriority);
     }
     catch (Throwable t) {
       LOG.debug(t);
@@ -386,6 +393,12 @@ public class RenderTask {
           currentRunningFutures = myRunningFutures.toArray(new CompletableFuture<?>[0]);
           myRunningFutures.clear();
         }
+        if (myPriority == RenderExecutor.Priority.LOW) {
+          // Nobody is waiting for the background renders of a disposed task, so the actions that have not started yet are stale.
+          for (CompletableFuture<?> future : currentRunningFutures) {
+            future.cancel(false);
+          }
+        }
         // Wait for all current running operations to complete
         CompletableFuture.allOf(currentRunningFutures).get(5, TimeUnit.SECONDS);
       }
@@ -396,7 +409,7 @@ public class RenderTask {
       myLayoutlibCallback.setLogger(IRenderLogger.NULL_LOGGER);
       if (myRenderSession != null) {
         try {
-          RenderService.runAsyncRenderAction(myRenderSession::dispose);
+          RenderService.runAsyncRenderAction(myRenderSession::dispose, myAffinityKey, myPriority);
           myRenderSession = null;
         }
         catch (Exception ignored) {
@@ -462,6 +475,21 @@ public class RenderTask {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions of this task. Tasks rendering in the background, like thumbnails, should use
+   * {@link RenderExecutor.Priority#LOW} so they don't delay the renders the user is waiting for. The queued actions of a low priority task
+   * are cancelled when they become stale: a render is cancelled by the next render of the task, and all of them by {@link #dispose()}.
+   * The default is {@link RenderExecutor.Priority#HIGH}.
+   *
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderExecutor.Priority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   @SuppressWarnings("UnusedReturnValue")
   @NotNull
   public RenderTask setTimeout(long timeout) {
@@ -766,7 +794,7 @@ public class RenderTask {
   /**
    * Executes the passed {@link Callable} as an async render action and keeps track of it. If {@link #dispose()} is called, the call will
    * wait until all the async actions have finished running.
-   * See {@link RenderService#runAsyncRenderAction(Supplier)}.
+   * See {@link RenderService#runAsyncRenderAction(Supplier, Object, RenderExecutor.Priority)}.
    */
   @VisibleForTesting
   @NotNull
@@ -776,7 +804,7 @@ public class RenderTask {
     }
 
     synchronized (myRunningFutures) {
-      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myAffinityKey, myPriority);
       myRunningFutures.add(newFuture);
       newFuture
         .whenCompleteAsync((result, ex) -> {
@@ -891,7 +919,7 @@ public class RenderTask {
 
     return inflateCompletableResult.thenCompose(ignored -> {
       try {
-        return runAsyncRenderAction(() -> {
+        CompletableFuture<RenderResult> renderFuture = runAsyncRenderAction(() -> {
           myRenderSession.render();
           RenderResult result =
             RenderResult.create(this, myRenderSession, psiFile, myLogger, myImagePool.copyOf(myRenderSession.getImage()));
@@ -901,12 +929,20 @@ public class RenderTask {
             myLogger.error(null, renderResult.getErrorMessage(), renderResult.getException(), null, null);
           }
           return result;
-        }).whenComplete((result, ex) -> {
+        });
+        if (myPriority == RenderExecutor.Priority.LOW) {
+          // A newer background render makes the result of a previous one that is still queued stale.
+          CompletableFuture<RenderResult> previousRender = myPendingLowPriorityRender.getAndSet(renderFuture);
+          if (previousRender != null) {
+            previousRender.cancel(false);
+          }
+        }
+        return renderFuture.whenComplete((result, ex) -> {
           // After render clean-up. Dispose the GapWorker cache and the Choreographer queued tasks.
           clearGapWorkerCache();
           RenderService.runAsyncRenderAction(() -> {
             android.view.Choreographer.releaseInstance();
-          });
+          }, myAffinityKey, myPriority);
         });
       }
       catch (Exception e) {
@@ -1049,7 +1085,7 @@ public class RenderTask {
     params.setFlag(RenderParamsFlags.FLAG_KEY_RENDER_ALL_DRAWABLE_STATES, Boolean.TRUE);
 
     try {
-      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params));
+      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params), myAffinityKey, myPriority);
 
       if (result != null && result.isSuccess()) {
         Object data = result.getData();
@@ -1102,7 +1138,7 @@ public class RenderTask {
   public CompletableFuture<Map<XmlTag, ViewInfo>> measureChildren(@NotNull XmlTag parent, @Nullable AttributeFilter filter) {
     ILayoutPullParser modelParser = LayoutPsiPullParser.create(filter, parent, myLogger);
     Map<XmlTag, ViewInfo> map = new HashMap<>();
-    return RenderService.runAsyncRenderAction(() -> measure(modelParser))
+    return RenderService.runAsyncRenderAction(() -> measure(modelParser), myAffinityKey, myPriority)
         .thenComposeAsync(session -> {
           if (session != null) {
             try {
@@ -1123,7 +1159,7 @@ public class RenderTask {
               return CompletableFuture.completedFuture(map);
             }
             finally {
-              RenderService.runAsyncRenderAction(session::dispose);
+              RenderService.runAsyncRenderAction(session::dispose, myAffinityKey, myPriority);
             }
           }
 
@@ -21,7 +21,12 @@ import static com.android.tools.idea.rendering.classloading.ClassConverter.isVal
 
 import com.android.SdkConstants;
 import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.lang.UrlClassLoader;
@@ -62,6 +67,18 @@ public abstract class RenderClassLoader extends ClassLoader {
   private static final Function<ClassVisitor, ClassVisitor> DEFAULT_TRANSFORMS = visitor ->
     new ViewMethodWrapperTransform(new VersionClassTransform(visitor, getCurrentClassVersion(), 0));
 
+  /** Classes implementing {@link #DEFAULT_TRANSFORMS}, whose bytecode is part of {@link #DEFAULT_TRANSFORMS_ID}. */
+  private static final Class<?>[] DEFAULT_TRANSFORMS_CLASSES = {
+    ClassConverter.class, ViewMethodWrapperTransform.class, VersionClassTransform.class
+  };
+
+  /**
+   * Identifies {@link #DEFAULT_TRANSFORMS} in the {@link TransformedClassCache}, or null if they can not be identified and the cache must
+   * not be used. The id covers the IDE build, which also fixes the ASM version, and the bytecode of the transformation classes, so any
+   * change to the transformations stops matching the entries written before it.
+   */
+  private static final Supplier<String> DEFAULT_TRANSFORMS_ID = Suppliers.memoize(RenderClassLoader::computeDefaultTransformsId);
+
   private final Object myJarClassLoaderLock = new Object();
   @GuardedBy("myJarClassLoaderLock")
   private Supplier<UrlClassLoader> myJarClassLoader = Suppliers.memoize(() -> createJarClassLoader(getExternalJars()));
@@ -109,7 +126,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       if (!isValidClassFile(data)) {
         throw new ClassFormatError(name);
       }
-      byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+      byte[] rewritten = rewriteClass(data);
       return defineClassAndPackage(name, rewritten, 0, rewritten.length);
     }
     catch (IOException | ClassNotFoundException e) {
@@ -123,6 +140,43 @@ public abstract class RenderClassLoader extends ClassLoader {
     throw new ClassNotFoundException(name);
   }
 
+  /**
+   * Applies the {@link #DEFAULT_TRANSFORMS} to the given class, reusing the result of a previous rewrite of the same bytecode if it is in
+   * the {@link TransformedClassCache}.
+   */
+  @NotNull
+  private static byte[] rewriteClass(@NotNull byte[] data) {
+    String transformsId = DEFAULT_TRANSFORMS_ID.get();
+    TransformedClassCache cache = transformsId != null ? TransformedClassCache.getInstance() : null;
+    if (cache == null) {
+      return ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+    }
+    return cache.getOrTransform(data, transformsId, bytes -> ClassConverter.rewriteClass(bytes, DEFAULT_TRANSFORMS));
+  }
+
+  @Nullable
+  private static String computeDefaultTransformsId() {
+    Application application = ApplicationManager.getApplication();
+    if (application == null) {
+      return null;
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Class<?> transformClass : DEFAULT_TRANSFORMS_CLASSES) {
+      try (InputStream stream = transformClass.getResourceAsStream(transformClass.getSimpleName() + SdkConstants.DOT_CLASS)) {
+        if (stream == null) {
+          LOG.warn("Unable to read " + transformClass.getName() + ", rewritten classes will not be cached");
+          return null;
+        }
+        hasher.putBytes(ByteStreams.toByteArray(stream));
+      }
+      catch (IOException e) {
+        LOG.warn("Unable to read " + transformClass.getName() + ", rewritten classes will not be cached", e);
+        return null;
+      }
+    }
+    return ApplicationInfo.getInstance().getBuild().asString() + ':' + getCurrentClassVersion() + ':' + hasher.hash();
+  }
+
   @Nullable
   protected Class<?> loadClassFile(String fqcn, @NotNull VirtualFile classFile) {
     try {
@@ -142,7 +196,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       throw new ClassFormatError(fqcn);
     }
 
-    byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+    byte[] rewritten = rewriteClass(data);
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("Defining class '%s' from disk file", anonymizeClassName(fqcn)));
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import javax.annotation.concurrent.GuardedBy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Content-addressed cache of rewritten class files, shared by all the {@link RenderClassLoader}s and persisted across IDE restarts.
+ * <p/>
+ * Entries are keyed by the hash of the original bytecode and of an id describing the transformations, so a new build only needs to
+ * transform the classes whose bytecode changed, and changing the transformations just stops matching the old entries. The entries are
+ * appended to a single pack file that is memory mapped for reading:
+ * <pre>
+ *   header: int magic, int format version
+ *   entry:  32 byte SHA-256 key, int length, int CRC32 of the data, length bytes of rewritten class
+ * </pre>
+ * The index of the entries is rebuilt by scanning the file when it is opened; a truncated entry left by a crash ends the scan and is
+ * cut off. The data of an entry is checked against its CRC32 when it is read, so an append that was torn without truncating the file
+ * is treated as a miss instead of defining a corrupted class. Once the pack file reaches {@link #DEFAULT_MAX_SIZE} no more entries are
+ * added, and the file is discarded the next time it is opened.
+ */
+public final class TransformedClassCache {
+  private static final Logger LOG = Logger.getInstance(TransformedClassCache.class);
+
+  private static final String CACHE_FILE = "caches/render_classes/classes.pack";
+  private static final int MAGIC = 0x52434331; // "RCC1"
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 8;
+  private static final int KEY_SIZE = 32;
+  private static final int ENTRY_HEADER_SIZE = KEY_SIZE + 8;
+  static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+  private static final Object ourInstanceLock = new Object();
+  @GuardedBy("ourInstanceLock")
+  @Nullable private static TransformedClassCache ourInstance;
+  @GuardedBy("ourInstanceLock")
+  private static boolean ourInstanceFailed;
+
+  @NotNull private final FileChannel myChannel;
+  private final long myMaxSize;
+  @GuardedBy("this")
+  @NotNull private final Map<HashCode, Entry> myEntries = new HashMap<>();
+  @GuardedBy("this")
+  @NotNull private MappedByteBuffer myMappedFile;
+  @GuardedBy("this")
+  private long myEnd;
+  @GuardedBy("this")
+  private long myHitCount;
+  @GuardedBy("this")
+  private long myMissCount;
+
+  private static final class Entry {
+    final long offset;
+    final int length;
+    final int checksum;
+
+    Entry(long offset, int length, int checksum) {
+      this.offset = offset;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+  @VisibleForTesting
+  TransformedClassCache(@NotNull Path file, long maxSize) throws IOException {
+    assert maxSize <= Integer.MAX_VALUE / 2;
+    myMaxSize = maxSize;
+    Files.createDirectories(file.getParent());
+    if (Files.exists(file) && Files.size(file) >= maxSize) {
+      Files.delete(file);
+    }
+    myChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      myEnd = readIndex();
+      // Drop anything after the last complete entry so that it is not mistaken for an entry later.
+      myChannel.truncate(myEnd);
+      if (myEnd == 0) {
+        writeFully(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION), 0);
+        myEnd = HEADER_SIZE;
+      }
+      myMappedFile = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, myEnd);
+    }
+    catch (IOException | RuntimeException e) {
+      myChannel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the cache shared by all the render class loaders, or null if the cache file can not be opened.
+   */
+  @Nullable
+  public static TransformedClassCache getInstance() {
+    synchronized (ourInstanceLock) {
+      if (ourInstance == null && !ourInstanceFailed) {
+        try {
+          ourInstance = new TransformedClassCache(Paths.get(PathManager.getSystemPath()).resolve(CACHE_FILE), DEFAULT_MAX_SIZE);
+        }
+        catch (IOException | RuntimeException e) {
+          LOG.warn("Unable to open the cache of rewritten classes", e);
+          ourInstanceFailed = true;
+        }
+      }
+      return ourInstance;
+    }
+  }
+
+  /**
+   * Returns the rewritten version of the given class, calling the given transformation and caching its result if it is not in the
+   * cache yet. The transformation must always produce the same result for a given bytecode and transformation id.
+   *
+   * @param classData the original bytecode
+   * @param transformationId a string identifying the transformations applied by the given function
+   */
+  @NotNull
+  public byte[] getOrTransform(@NotNull byte[] classData, @NotNull String transformationId, @NotNull Function<byte[], byte[]> transform) {
+    HashCode key = Hashing.sha256().newHasher()
+      .putString(transformationId, StandardCharsets.UTF_8)
+      .putBytes(classData)
+      .hash();
+    byte[] cached = get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    byte[] rewritten = transform.apply(classData);
+    put(key, rewritten);
+    return rewritten;
+  }
+
+  @Nullable
+  private synchronized byte[] get(@NotNull HashCode key) {
+    Entry entry = myEntries.get(key);
+    if (entry == null) {
+      myMissCount++;
+      return null;
+    }
+    try {
+      if (entry.offset + entry.length > myMappedFile.capacity()) {
+        // The entry was added after the file was mapped.
+        myMappedFile = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, myEnd);
+      }
+      byte[] data = new byte[entry.length];
+      ByteBuffer buffer = myMappedFile.duplicate();
+      buffer.position((int)entry.offset);
+      buffer.get(data);
+      if (checksum(data) != entry.checksum) {
+        LOG.warn("Discarding a corrupted entry of the cache of rewritten classes");
+        myEntries.remove(key);
+        myMissCount++;
+        return null;
+      }
+      myHitCount++;
+      return data;
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      myMissCount++;
+      return null;
+    }
+  }
+
+  private synchronized void put(@NotNull HashCode key, @NotNull byte[] data) {
+    if (myEntries.containsKey(key) || myEnd >= myMaxSize) {
+      return;
+    }
+    try {
+      int checksum = checksum(data);
+      ByteBuffer buffer =
+        ByteBuffer.allocate(ENTRY_HEADER_SIZE + data.length).put(key.asBytes()).putInt(data.length).putInt(checksum).put(data);
+      long end = writeFully(buffer, myEnd);
+      myEntries.put(key, new Entry(myEnd + ENTRY_HEADER_SIZE, data.length, checksum));
+      myEnd = end;
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+
+  /**
+   * Reads the index of the entries in the file and returns the offset after the last complete entry, or 0 if the file does not have a
+   * valid header.
+   */
+  private long readIndex() throws IOException {
+    long size = myChannel.size();
+    ByteBuffer header = ByteBuffer.allocate(Math.max(HEADER_SIZE, ENTRY_HEADER_SIZE));
+    header.limit(HEADER_SIZE);
+    if (!readFully(header, 0) || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+      return 0;
+    }
+    long position = HEADER_SIZE;
+    byte[] key = new byte[KEY_SIZE];
+    while (true) {
+      header.clear().limit(ENTRY_HEADER_SIZE);
+      if (!readFully(header, position)) {
+        return position;
+      }
+      header.get(key);
+      int length = header.getInt();
+      int checksum = header.getInt();
+      long dataStart = position + ENTRY_HEADER_SIZE;
+      if (length < 0 || dataStart + length > size) {
+        return position;
+      }
+      myEntries.put(HashCode.fromBytes(key), new Entry(dataStart, length, checksum));
+      position = dataStart + length;
+    }
+  }
+
+  private static int checksum(@NotNull byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return (int)crc.getValue();
+  }
+
+  /**
+   * Fills the given buffer from the given file position and flips it. Returns false if the file ends before the buffer is full.
+   */
+  private boolean readFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = myChannel.read(buffer, position);
+      if (read < 0) {
+        return false;
+      }
+      position += read;
+    }
+    buffer.flip();
+    return true;
+  }
+
+  /**
+   * Writes the given buffer, which is flipped first, at the given file position and returns the position after it.
+   */
+  private long writeFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      position += myChannel.write(buffer, position);
+    }
+    return position;
+  }
+
+  synchronized long getHitCount() {
+    return myHitCount;
+  }
+
+  synchronized long getMissCount() {
+    return myMissCount;
+  }
+
+  @VisibleForTesting
+  void close() throws IOException {
+    myChannel.close();
+  }
+}
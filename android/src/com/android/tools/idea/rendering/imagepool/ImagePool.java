@@ -110,6 +110,25 @@ public interface ImagePool {
      * Returns the number of times we had an image that was returned to this bucket.
      */
     long imageWasReturned();
+
+    /**
+     * Returns the number of images that were dropped from this bucket to keep the pool within its byte budget.
+     */
+    long evictions();
+
+    /**
+     * Returns the estimated size in bytes of the free images currently held by this bucket.
+     */
+    long bytesHeld();
+
+    /**
+     * Returns the fraction of the requests to this bucket that reused an image.
+     */
+    default double hitRate() {
+      long hits = bucketHits();
+      long requests = hits + bucketMisses();
+      return requests == 0 ? 0 : (double)hits / requests;
+    }
   }
 
   interface Stats {
@@ -117,6 +136,16 @@ public interface ImagePool {
 
     long totalBytesInUse();
 
+    /**
+     * Returns the estimated size in bytes of the free images held by the pool for reuse.
+     */
+    long totalBytesPooled();
+
+    /**
+     * Returns the maximum number of bytes that the free images can use, or 0 if the pool does not have a byte budget.
+     */
+    long maxBytesPooled();
+
     BucketStats[] getBucketStats();
   }
 
@@ -206,8 +235,8 @@ public interface ImagePool {
     /**
      * Manually disposes the current image. After calling this method, the image can not be used anymore.
      * <p>
-     * This method does not need to be called directly as the images will be eventually collected anyway. However, using this method, you can
-     * speed up the collection process to avoid generating extra images.
+     * This method does not need to be called directly as the images will be eventually collected anyway. However, using this method, you
+     * can speed up the collection process to avoid generating extra images.
      */
     void dispose();
   }
@@ -57,6 +57,15 @@ public final class ImagePoolFactory {
    */
   @NotNull
   public static ImagePool createImagePool() {
+    return createImagePool(0);
+  }
+
+  /**
+   * Creates a new {@link ImagePool} with the default settings that holds at most maxPooledBytes of free images. The images that were
+   * returned to the pool least recently are dropped first. If maxPooledBytes is 0, the pool is only bounded by its bucket sizes.
+   */
+  @NotNull
+  public static ImagePool createImagePool(long maxPooledBytes) {
     return new ImagePoolImpl(new int[]{50, 500, 1000, 1500, 2000, 5000}, (w, h) -> (type) -> {
       // Images below 1k, do not pool
       if (w * h < 1000) {
@@ -64,7 +73,7 @@ public final class ImagePoolFactory {
       }
 
       return 50_000_000 / (w * h);
-    });
+    }, maxPooledBytes);
   }
 
   /**
@@ -30,11 +30,14 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.NoSuchElementException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -45,6 +48,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -52,6 +56,10 @@ import org.jetbrains.annotations.Nullable;
  * Class that offers a pool of {@link BufferedImage}s. The returned {@link Image} do not offer a direct access
  * to the underlying {@link BufferedImage} to avoid clients holding references to it.
  * Once the {@link Image} is not being referenced anymore, it will be automatically returned to the pool.
+ * <p/>
+ * The pool can be given a byte budget for the free images it holds. When returning an image would exceed the budget, the free images
+ * that were returned least recently are dropped, whatever their bucket, so the pool does not grow until the soft references are cleared
+ * by a full GC. Free images cleared by the GC are removed from the budget the next time the pool is used.
  */
 @SuppressWarnings("ALL")
 class ImagePoolImpl implements ImagePool {
@@ -69,6 +77,23 @@ class ImagePoolImpl implements ImagePool {
   private final LongAdder myTotalAllocatedBytes = new LongAdder();
   private final LongAdder myTotalInUseBytes = new LongAdder();
 
+  /**
+   * Maximum number of bytes used by the free images of all the buckets, or 0 if the pool is only bounded by the size of the buckets.
+   */
+  private final long myMaxPooledBytes;
+  private final Object myPooledImagesLock = new Object();
+  /**
+   * Free images of all the buckets, least recently returned first.
+   */
+  @GuardedBy("myPooledImagesLock")
+  private final LinkedHashMap<SoftReference<BufferedImage>, PooledImage> myPooledImages = new LinkedHashMap<>();
+  @GuardedBy("myPooledImagesLock")
+  private long myPooledBytes;
+  /**
+   * Queue the soft references of {@link #myPooledImages} are enqueued into once the GC clears them.
+   */
+  private final ReferenceQueue<BufferedImage> myClearedImages = new ReferenceQueue<>();
+
   private final Stats myStats = new Stats() {
     @Override
     public long totalBytesAllocated() {
@@ -80,6 +105,19 @@ class ImagePoolImpl implements ImagePool {
       return myTotalInUseBytes.sum();
     }
 
+    @Override
+    public long totalBytesPooled() {
+      synchronized (myPooledImagesLock) {
+        removeClearedImages();
+        return myPooledBytes;
+      }
+    }
+
+    @Override
+    public long maxBytesPooled() {
+      return myMaxPooledBytes;
+    }
+
     @Override
     public BucketStats[] getBucketStats() {
       return myBucketStats.values().stream()
@@ -93,19 +131,33 @@ class ImagePoolImpl implements ImagePool {
    * The return value from calling that function will be the size of the EvictingQueue used for caching the pooled
    * images.
    *
-   * @param bucketSizes        Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its two
-   *                           dimensions. If an image contains one dimension bigger than the biggest given bucket size, the image won't be
-   *                           allocated into the pool.
+   * @param bucketSizes        Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its
+   *                           two dimensions. If an image contains one dimension bigger than the biggest given bucket size, the image won't
+   *                           be allocated into the pool.
    * @param bucketSizingPolicy Function that returns the maximum size for a given bucket. The bucket is defined by width, height and image
    *                           type. If the returned size is 0, no pooling will be done for that bucket size.
    */
   ImagePoolImpl(@NotNull int[] bucketSizes, @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy) {
+    this(bucketSizes, bucketSizingPolicy, 0);
+  }
+
+  /**
+   * Constructs a new {@link ImagePoolImpl} that holds at most maxPooledBytes of free images.
+   *
+   * @param maxPooledBytes Maximum estimated size in bytes of the free images held by the pool. If 0, the pool is only bounded by the size
+   *                       of the buckets.
+   * @see #ImagePoolImpl(int[], BiFunction)
+   */
+  ImagePoolImpl(@NotNull int[] bucketSizes,
+                @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy,
+                long maxPooledBytes) {
     if (LOG.isDebugEnabled()) {
-      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes));
+      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes) + " maxPooledBytes=" + maxPooledBytes);
     }
     myBucketSizes = bucketSizes;
     Arrays.sort(myBucketSizes);
     myBucketSizingPolicy = bucketSizingPolicy;
+    myMaxPooledBytes = maxPooledBytes;
   }
 
   private boolean isDisposed = false;
@@ -193,14 +245,8 @@ class ImagePoolImpl implements ImagePool {
                               bucketStats != null));
     }
 
-    BufferedImage image;
-    SoftReference<BufferedImage> imageRef;
-    try {
-      imageRef = bucket.remove();
-      while ((image = imageRef.get()) == null) {
-        imageRef = bucket.remove();
-      }
-
+    BufferedImage image = takeImage(bucket);
+    if (image != null) {
       long totalSize = image.getWidth() * image.getHeight();
       if (bucketStats != null) {
         bucketStats.bucketHit();
@@ -224,7 +270,7 @@ class ImagePoolImpl implements ImagePool {
         g.dispose();
       }
     }
-    catch (NoSuchElementException e) {
+    else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("  New image %dx%d - %d\n", w, h, type));
       }
@@ -252,7 +298,7 @@ class ImagePoolImpl implements ImagePool {
       public void finalizeReferent() {
         // This method might be called twice if the user has manually called the free() method. The second call will have no effect.
         if (myReferences.remove(this)) {
-          boolean accepted = bucket.offer(new SoftReference<>(imagePointer));
+          boolean accepted = returnImage(bucket, imagePointer);
           if (bucketStats != null) {
             if (accepted) {
               bucketStats.returnedImageAccepted();
@@ -286,6 +332,137 @@ class ImagePoolImpl implements ImagePool {
     return pooledImage;
   }
 
+  /**
+   * Removes a free image from the given bucket, or returns null if the bucket does not have any.
+   */
+  @Nullable
+  private BufferedImage takeImage(@NotNull Bucket bucket) {
+    synchronized (myPooledImagesLock) {
+      removeClearedImages();
+      SoftReference<BufferedImage> imageRef;
+      while ((imageRef = bucket.poll()) != null) {
+        PooledImage pooledImage = myPooledImages.remove(imageRef);
+        BufferedImage image = imageRef.get();
+        if (pooledImage != null) {
+          releasePooledBytes(pooledImage, image == null);
+        }
+        if (image != null) {
+          return image;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Removes the free images whose soft references were cleared by the GC from their buckets and from the byte budget.
+   */
+  @GuardedBy("myPooledImagesLock")
+  private void removeClearedImages() {
+    Reference<? extends BufferedImage> imageRef;
+    while ((imageRef = myClearedImages.poll()) != null) {
+      PooledImage pooledImage = myPooledImages.remove(imageRef);
+      if (pooledImage != null) {
+        pooledImage.myBucket.remove(imageRef);
+        releasePooledBytes(pooledImage, true);
+      }
+    }
+  }
+
+  /**
+   * Removes a free image that is no longer held by the pool from the pooled bytes. If the image was cleared by the GC, it is also no
+   * longer allocated.
+   */
+  @GuardedBy("myPooledImagesLock")
+  private void releasePooledBytes(@NotNull PooledImage pooledImage, boolean cleared) {
+    myPooledBytes -= pooledImage.myBytes;
+    if (cleared) {
+      myTotalAllocatedBytes.add(-pooledImage.myBytes);
+    }
+    BucketStatsImpl bucketStats = myBucketStats.get(pooledImage.myBucket);
+    if (bucketStats != null) {
+      bucketStats.bytesReleased(pooledImage.myBytes);
+    }
+  }
+
+  /**
+   * Clears the soft references of the free images as the GC would.
+   */
+  @VisibleForTesting
+  void clearPooledImageReferences() {
+    synchronized (myPooledImagesLock) {
+      for (SoftReference<BufferedImage> imageRef : myPooledImages.keySet()) {
+        imageRef.clear();
+        imageRef.enqueue();
+      }
+    }
+  }
+
+  /**
+   * Adds a freed image to the given bucket, dropping the least recently returned images if the pool goes over its byte budget. Returns
+   * false if the image was not accepted.
+   */
+  private boolean returnImage(@NotNull Bucket bucket, @NotNull BufferedImage image) {
+    if (bucket.getMaxSize() == 0) {
+      // The images of this bucket are not pooled, the queue discards them.
+      return bucket.offer(new SoftReference<>(image));
+    }
+    long bytes = getEstimatedSize(image);
+    if (myMaxPooledBytes > 0 && bytes > myMaxPooledBytes) {
+      return false;
+    }
+
+    SoftReference<BufferedImage> imageRef = new SoftReference<>(image, myClearedImages);
+    synchronized (myPooledImagesLock) {
+      removeClearedImages();
+      if (isDisposed || !bucket.offer(imageRef)) {
+        return false;
+      }
+      myPooledImages.put(imageRef, new PooledImage(bucket, bytes));
+      myPooledBytes += bytes;
+      BucketStatsImpl bucketStats = myBucketStats.get(bucket);
+      if (bucketStats != null) {
+        bucketStats.bytesAdded(bytes);
+      }
+
+      Iterator<Map.Entry<SoftReference<BufferedImage>, PooledImage>> iterator = myPooledImages.entrySet().iterator();
+      while (myMaxPooledBytes > 0 && myPooledBytes > myMaxPooledBytes && iterator.hasNext()) {
+        Map.Entry<SoftReference<BufferedImage>, PooledImage> eldest = iterator.next();
+        if (eldest.getKey() == imageRef) {
+          // Always keep the image that was just returned
+          continue;
+        }
+        iterator.remove();
+        PooledImage evicted = eldest.getValue();
+        evicted.myBucket.remove(eldest.getKey());
+        myPooledBytes -= evicted.myBytes;
+        myTotalAllocatedBytes.add(-evicted.myBytes);
+        BucketStatsImpl evictedBucketStats = myBucketStats.get(evicted.myBucket);
+        if (evictedBucketStats != null) {
+          evictedBucketStats.imageEvicted(evicted.myBytes);
+        }
+      }
+    }
+    return true;
+  }
+
+  private static long getEstimatedSize(@NotNull BufferedImage image) {
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+
+  /**
+   * Bucket and estimated size of a free image held by the pool.
+   */
+  private static final class PooledImage {
+    private final Bucket myBucket;
+    private final long myBytes;
+
+    PooledImage(@NotNull Bucket bucket, long bytes) {
+      myBucket = bucket;
+      myBytes = bytes;
+    }
+  }
+
   private static final class BucketStatsImpl implements BucketStats {
     private final Bucket myBucket;
     private final AtomicLong myLastAccessMs = new AtomicLong(System.currentTimeMillis());
@@ -293,6 +470,8 @@ class ImagePoolImpl implements ImagePool {
     private final AtomicLong myBucketHit = new AtomicLong(0);
     private final AtomicLong myBucketFull = new AtomicLong(0);
     private final AtomicLong myBucketHadSpace = new AtomicLong(0);
+    private final AtomicLong myEvictions = new AtomicLong(0);
+    private final AtomicLong myBytesHeld = new AtomicLong(0);
 
     BucketStatsImpl(@NotNull Bucket bucket) {
       myBucket = bucket;
@@ -338,6 +517,16 @@ class ImagePoolImpl implements ImagePool {
       return myBucketHadSpace.get();
     }
 
+    @Override
+    public long evictions() {
+      return myEvictions.get();
+    }
+
+    @Override
+    public long bytesHeld() {
+      return myBytesHeld.get();
+    }
+
     public void bucketHit() {
       myLastAccessMs.set(System.currentTimeMillis());
       myBucketHit.incrementAndGet();
@@ -355,6 +544,19 @@ class ImagePoolImpl implements ImagePool {
     public void returnedImageRejected() {
       myBucketFull.incrementAndGet();
     }
+
+    public void bytesAdded(long bytes) {
+      myBytesHeld.addAndGet(bytes);
+    }
+
+    public void bytesReleased(long bytes) {
+      myBytesHeld.addAndGet(-bytes);
+    }
+
+    public void imageEvicted(long bytes) {
+      myEvictions.incrementAndGet();
+      myBytesHeld.addAndGet(-bytes);
+    }
   }
 
   private static class Bucket extends ForwardingQueue<SoftReference<BufferedImage>> {
@@ -427,6 +629,10 @@ class ImagePoolImpl implements ImagePool {
     myFinalizableReferenceQueue.close();
     myReferences.clear();
     myPool.clear();
+    synchronized (myPooledImagesLock) {
+      myPooledImages.clear();
+      myPooledBytes = 0;
+    }
   }
 
   public static class ImageImpl implements ImagePool.Image {
@@ -55,6 +55,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.annotations.NotNull;
@@ -72,20 +76,16 @@ import org.jetbrains.annotations.Nullable;
 public abstract class MultiResourceRepository extends LocalResourceRepository implements Disposable {
   private static final Logger LOG = Logger.getInstance(MultiResourceRepository.class);
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<LocalResourceRepository> myLocalResources = ImmutableList.of();
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<AarResourceRepository> myLibraryResources = ImmutableList.of();
+  // The immutable collections describing the children are replaced under ITEM_MAP_LOCK and may be read without it.
+  @NotNull private volatile ImmutableList<LocalResourceRepository> myLocalResources = ImmutableList.of();
+  @NotNull private volatile ImmutableList<AarResourceRepository> myLibraryResources = ImmutableList.of();
   /** A concatenation of {@link #myLocalResources} and {@link #myLibraryResources}. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<ResourceRepository> myChildren = ImmutableList.of();
+  @NotNull private volatile ImmutableList<ResourceRepository> myChildren = ImmutableList.of();
   /** Leaf resource repositories keyed by namespace. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myLeafsByNamespace =
+  @NotNull private volatile ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myLeafsByNamespace =
       ImmutableListMultimap.of();
   /** Contained single-namespace resource repositories keyed by namespace. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myRepositoriesByNamespace =
+  @NotNull private volatile ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myRepositoriesByNamespace =
       ImmutableListMultimap.of();
 
   @GuardedBy("ITEM_MAP_LOCK")
@@ -108,6 +108,22 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
+  /**
+   * Snapshots of the maps in {@link #myCachedMaps}, indexed by resource type ordinal, that are read without holding ITEM_MAP_LOCK.
+   * A snapshot is created, refreshed and marked stale under the lock, so a reader that finds a current one sees the state of the last
+   * invalidation or later. Namespaces with a single leaf repository are served directly from the leaf and don't have snapshots.
+   */
+  private final ConcurrentMap<ResourceNamespace, AtomicReferenceArray<Snapshot>> mySnapshots = new ConcurrentHashMap<>();
+
+  /** Names of resources that changed in {@link #myCachedMaps} since the corresponding snapshot was last refreshed. */
+  @GuardedBy("ITEM_MAP_LOCK")
+  private final Table<ResourceNamespace, ResourceType, Set<String>> myChangedNames =
+      Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
+
+  private final AtomicLong mySnapshotHitCount = new AtomicLong();
+  private final AtomicLong mySnapshotMissCount = new AtomicLong();
+  private final AtomicLong myMergeCount = new AtomicLong();
+
   MultiResourceRepository(@NotNull String displayName) {
     super(displayName);
   }
@@ -149,6 +165,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         myModificationCounts[i++] = child.getModificationCount();
       }
       myCachedMaps.clear();
+      mySnapshots.clear();
+      myChangedNames.clear();
 
       invalidateParentCaches();
     }
@@ -185,22 +203,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   }
 
   public ImmutableList<LocalResourceRepository> getLocalResources() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLocalResources;
-    }
+    return myLocalResources;
   }
 
   public ImmutableList<AarResourceRepository> getLibraryResources() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLibraryResources;
-    }
+    return myLibraryResources;
   }
 
   @NotNull
   public final List<ResourceRepository> getChildren() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myChildren;
-    }
+    return myChildren;
   }
 
   /**
@@ -213,9 +225,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
    */
   @NotNull
   public final List<SingleNamespaceResourceRepository> getRepositoriesForNamespace(@NotNull ResourceNamespace namespace) {
-    synchronized (ITEM_MAP_LOCK) {
-      return myRepositoriesByNamespace.get(namespace);
-    }
+    return myRepositoriesByNamespace.get(namespace);
   }
 
   @Override
@@ -247,9 +257,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myRepositoriesByNamespace.keySet();
-    }
+    return myRepositoriesByNamespace.keySet();
   }
 
   @Override
@@ -275,6 +283,146 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return ResourceVisitor.VisitResult.CONTINUE;
   }
 
+  @Override
+  @NotNull
+  public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    Snapshot snapshot = getOrCreateSnapshot(namespace, resourceType);
+    return snapshot == null ? super.getResources(namespace, resourceType) : getAllSnapshotItems(snapshot, namespace, resourceType);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    Snapshot snapshot = getOrCreateSnapshot(namespace, resourceType);
+    return snapshot == null ?
+           super.getResources(namespace, resourceType, resourceName) :
+           getSnapshotItems(snapshot, namespace, resourceType, resourceName);
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    Snapshot snapshot = getOrCreateSnapshot(namespace, resourceType);
+    return snapshot == null ?
+           super.getResourceNames(namespace, resourceType) :
+           getAllSnapshotItems(snapshot, namespace, resourceType).keySet();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    Snapshot snapshot = getOrCreateSnapshot(namespace, resourceType);
+    return snapshot == null ?
+           super.hasResources(namespace, resourceType, resourceName) :
+           !getSnapshotItems(snapshot, namespace, resourceType, resourceName).isEmpty();
+  }
+
+  /**
+   * Returns the current snapshot of the merged resources of the given namespace and type, or null if the namespace has a single leaf
+   * repository that is cheaper to read directly. Only a missing or stale snapshot requires ITEM_MAP_LOCK. Refreshing a stale snapshot
+   * drops only the entries of the resources that changed since it was last refreshed.
+   */
+  @Nullable
+  private Snapshot getOrCreateSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<Snapshot> snapshots = mySnapshots.get(namespace);
+    Snapshot snapshot = snapshots == null ? null : snapshots.get(type.ordinal());
+    if (snapshot != null && !snapshot.myStale) {
+      mySnapshotHitCount.incrementAndGet();
+      return snapshot;
+    }
+    if (myLeafsByNamespace.get(namespace).size() == 1) {
+      return null;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      if (myLeafsByNamespace.get(namespace).size() == 1) {
+        return null;
+      }
+      snapshots = mySnapshots.computeIfAbsent(namespace, ns -> new AtomicReferenceArray<>(ResourceType.values().length));
+      snapshot = snapshots.get(type.ordinal());
+      if (snapshot == null || snapshot.myStale) {
+        mySnapshotMissCount.incrementAndGet();
+        // Reconcile the merged map. This records the names of the resources that changed since the snapshot was last refreshed,
+        // or discards the snapshot if the map has to be recreated.
+        getMap(namespace, type);
+        snapshot = snapshots.get(type.ordinal());
+        Set<String> changedNames = myChangedNames.remove(namespace, type);
+        if (snapshot == null) {
+          snapshot = new Snapshot();
+          snapshots.set(type.ordinal(), snapshot);
+        }
+        else {
+          if (changedNames != null) {
+            snapshot.myItemsByName.keySet().removeAll(changedNames);
+          }
+          snapshot.myStale = false;
+        }
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * Returns the items of a single resource from the given current snapshot, taking them from the merged map if the snapshot
+   * doesn't contain them yet. Names without resources are not remembered, so that lookups of arbitrary names don't grow the snapshot.
+   */
+  @NotNull
+  private List<ResourceItem> getSnapshotItems(@NotNull Snapshot snapshot,
+                                              @NotNull ResourceNamespace namespace,
+                                              @NotNull ResourceType type,
+                                              @NotNull String name) {
+    ImmutableList<ResourceItem> items = snapshot.myItemsByName.get(name);
+    if (items == null) {
+      synchronized (ITEM_MAP_LOCK) {
+        items = ImmutableList.copyOf(getMap(namespace, type).get(name));
+        if (!items.isEmpty()) {
+          snapshot.myItemsByName.put(name, items);
+        }
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Returns all items from the given current snapshot, copying the merged map if the snapshot doesn't contain a copy yet.
+   */
+  @NotNull
+  private ImmutableListMultimap<String, ResourceItem> getAllSnapshotItems(@NotNull Snapshot snapshot,
+                                                                          @NotNull ResourceNamespace namespace,
+                                                                          @NotNull ResourceType type) {
+    ImmutableListMultimap<String, ResourceItem> items = snapshot.myAllItems;
+    if (items == null) {
+      synchronized (ITEM_MAP_LOCK) {
+        items = ImmutableListMultimap.copyOf(getMap(namespace, type));
+        snapshot.myAllItems = items;
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Returns the number of reads served from a snapshot without taking ITEM_MAP_LOCK.
+   */
+  public long getSnapshotHitCount() {
+    return mySnapshotHitCount.get();
+  }
+
+  /**
+   * Returns the number of snapshots created or refreshed because no current one was available for a read.
+   */
+  public long getSnapshotMissCount() {
+    return mySnapshotMissCount.get();
+  }
+
+  /**
+   * Returns the number of times resources of the child repositories were merged, either from scratch or by reconciling the resources
+   * of the changed children.
+   */
+  public long getMergeCount() {
+    return myMergeCount.get();
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @Override
   @NotNull
@@ -296,8 +444,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
     // Merge all items of the given type.
     Stopwatch stopwatch = LOG.isDebugEnabled() ? Stopwatch.createStarted() : null;
+    myMergeCount.incrementAndGet();
 
     if (map == null) {
+      // A snapshot of a previous map can't be refreshed incrementally.
+      AtomicReferenceArray<Snapshot> snapshots = mySnapshots.get(namespace);
+      if (snapshots != null) {
+        snapshots.set(type.ordinal(), null);
+      }
+      myChangedNames.remove(namespace, type);
+
       // Create a new map.
       // We only add a duplicate item if there isn't an item with the same qualifiers and it is
       // not a styleable or an id. Styleables and ids are allowed to be defined in multiple
@@ -315,10 +471,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
     else {
       // Update a partially out of date map.
+      Set<String> changedNames = myChangedNames.get(namespace, type);
+      if (changedNames == null) {
+        changedNames = new HashSet<>();
+        myChangedNames.put(namespace, type, changedNames);
+      }
       for (SingleNamespaceResourceRepository unreconciledRepository : unreconciledRepositories) {
         // Delete all resources that belonged to unreconciledRepository.
         Predicate<ResourceItem> filter = item -> item.getRepository().equals(unreconciledRepository);
         Set<String> names = myResourceNames.get(unreconciledRepository, type);
+        changedNames.addAll(names);
         PerConfigResourceMap perConfigMap = map instanceof PerConfigResourceMap ? (PerConfigResourceMap)map : null;
         for (String name : names) {
           if (perConfigMap != null) {
@@ -335,6 +497,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         // Add all resources from unreconciledRepository.
         ListMultimap<String, ResourceItem> unreconciledResources = getResourcesUnderLock(unreconciledRepository, namespace, type);
         map.putAll(unreconciledResources);
+        changedNames.addAll(unreconciledResources.keySet());
 
         assert unreconciledRepository instanceof LocalResourceRepository;
         myResourceNames.put(unreconciledRepository, type, ImmutableSet.copyOf(unreconciledResources.keySet()));
@@ -413,6 +576,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @GuardedBy("ITEM_MAP_LOCK")
   public void invalidateCache() {
     myCachedMaps.clear();
+    mySnapshots.clear();
+    myChangedNames.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
     setModificationCount(ourModificationCounter.incrementAndGet());
@@ -433,6 +598,17 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     // In such a case we don't need to do anything.
     ImmutableList<SingleNamespaceResourceRepository> leafs = myLeafsByNamespace.get(namespace);
     if (leafs != null && leafs.contains(repository)) {
+      AtomicReferenceArray<Snapshot> snapshots = mySnapshots.get(namespace);
+      if (snapshots != null) {
+        for (ResourceType type : types) {
+          Snapshot snapshot = snapshots.get(type.ordinal());
+          if (snapshot != null) {
+            snapshot.myStale = true;
+            snapshot.myAllItems = null;
+          }
+        }
+      }
+
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
@@ -479,21 +655,29 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @Override
   @NotNull
   protected Set<VirtualFile> computeResourceDirs() {
-    synchronized (ITEM_MAP_LOCK) {
-      Set<VirtualFile> result = new HashSet<>();
-      for (LocalResourceRepository resourceRepository : myLocalResources) {
-        result.addAll(resourceRepository.computeResourceDirs());
-      }
-      return result;
+    Set<VirtualFile> result = new HashSet<>();
+    for (LocalResourceRepository resourceRepository : myLocalResources) {
+      result.addAll(resourceRepository.computeResourceDirs());
     }
+    return result;
   }
 
   @Override
   @NotNull
   public Collection<SingleNamespaceResourceRepository> getLeafResourceRepositories() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLeafsByNamespace.values();
-    }
+    return myLeafsByNamespace.values();
+  }
+
+  /**
+   * Lock-free view of the merged resources of one namespace and type. Entries are added lazily under ITEM_MAP_LOCK.
+   */
+  private static class Snapshot {
+    /** Set when resources of the namespace and type change; cleared after the entries of the changed resources are dropped. */
+    volatile boolean myStale;
+    /** Immutable items of individual resources that exist. */
+    final ConcurrentMap<String, ImmutableList<ResourceItem>> myItemsByName = new ConcurrentHashMap<>();
+    /** Immutable copy of the whole merged map, or null if it hasn't been requested since the last change. */
+    @Nullable volatile ImmutableListMultimap<String, ResourceItem> myAllItems;
   }
 
   private static class ResourcePriorityComparator implements Comparator<ResourceItem> {
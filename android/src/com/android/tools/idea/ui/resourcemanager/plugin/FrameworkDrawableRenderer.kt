@@ -18,6 +18,7 @@ package com.android.tools.idea.ui.resourcemanager.plugin
 import com.android.ide.common.rendering.api.ResourceValue
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.rendering.RenderExecutor
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.google.common.annotations.VisibleForTesting
@@ -39,6 +40,7 @@ private fun createRenderTask(facet: AndroidFacet,
                              configuration: Configuration): CompletableFuture<RenderTask?> {
   return RenderService.getInstance(facet.module.project)
     .taskBuilder(facet, configuration)
+    .withPriority(RenderExecutor.Priority.LOW)
     .build()
 }
 
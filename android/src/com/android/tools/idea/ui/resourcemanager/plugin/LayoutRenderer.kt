@@ -17,7 +17,9 @@ package com.android.tools.idea.ui.resourcemanager.plugin
 
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.layoutlib.RenderingException
+import com.android.tools.idea.rendering.RenderExecutor
 import com.android.tools.idea.rendering.RenderResult
+import com.android.tools.idea.rendering.RenderResultCache
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.google.common.annotations.VisibleForTesting
@@ -41,6 +43,9 @@ const val MAX_RENDER_HEIGHT = 1024
 @VisibleForTesting
 const val DOWNSCALE_FACTOR = 0.25f
 
+/** Identifies the options of [createRenderTask] in the keys of the [RenderResultCache]. */
+private const val RENDER_OPTIONS = "resourceExplorer:$DOWNSCALE_FACTOR:${MAX_RENDER_WIDTH}x$MAX_RENDER_HEIGHT:noDecorations:noShadow"
+
 private val LAYOUT_KEY = Key.create<LayoutRenderer>(LayoutRenderer::class.java.name)
 
 typealias RenderTaskProvider = (AndroidFacet, XmlFile, Configuration) -> CompletableFuture<RenderTask?>
@@ -51,6 +56,7 @@ private fun createRenderTask(facet: AndroidFacet,
   return RenderService.getInstance(facet.module.project)
     .taskBuilder(facet, configuration)
     .withPsiFile(xmlFile)
+    .withPriority(RenderExecutor.Priority.LOW)
     .withDownscaleFactor(DOWNSCALE_FACTOR)
     .withMaxRenderSize(MAX_RENDER_WIDTH, MAX_RENDER_HEIGHT)
     .disableDecorations()
@@ -82,6 +88,22 @@ constructor(
   }
 
   private fun getImage(xmlFile: XmlFile, configuration: Configuration): CompletableFuture<BufferedImage?> {
+    val resultCache = RenderResultCache.getInstance()
+    if (resultCache != null) {
+      return CompletableFuture.supplyAsync(
+        { RenderResultCache.computeKey(facet, xmlFile, configuration, RENDER_OPTIONS) }, PooledThreadExecutor.INSTANCE)
+        .thenCompose { key ->
+          val cachedImage = resultCache.getImage(key)
+          if (cachedImage != null) CompletableFuture.completedFuture(cachedImage) else render(xmlFile, configuration, resultCache, key)
+        }
+    }
+    return render(xmlFile, configuration, null, null)
+  }
+
+  private fun render(xmlFile: XmlFile,
+                     configuration: Configuration,
+                     resultCache: RenderResultCache?,
+                     cacheKey: String?): CompletableFuture<BufferedImage?> {
     val renderTaskFuture = renderTaskProvider(facet, xmlFile, configuration)
     return renderTaskFuture.thenCompose { it?.render() }
       .thenApplyAsync(Function<RenderResult?, BufferedImage?> {
@@ -89,7 +111,11 @@ constructor(
           return@Function null
         }
         when {
-          it.renderResult.isSuccess -> it.renderedImage.copy
+          it.renderResult.isSuccess -> it.renderedImage.copy?.also { image ->
+            if (resultCache != null && cacheKey != null && RenderResultCache.isCacheable(it)) {
+              resultCache.putImage(cacheKey, image, renderTaskFuture.get()!!.layoutlibCallback.loadedClassFiles)
+            }
+          }
           it.renderResult.exception != null -> throw it.renderResult.exception
           else -> throw RenderingException(it.renderResult.status.name)
         }
@@ -32,6 +32,8 @@ import com.intellij.openapi.vfs.VirtualFile;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -59,11 +61,11 @@ public final class ModuleClassLoader extends RenderClassLoader {
   /** Map from fully qualified class name to the corresponding last modified info for each class loaded by this class loader */
   private Map<String, ClassModificationTimestamp> myClassFilesLastModified;
 
-  private static class ClassModificationTimestamp {
+  public static final class ClassModificationTimestamp {
     public final long timestamp;
     public final long length;
 
-    ClassModificationTimestamp(long timestamp, long length) {
+    public ClassModificationTimestamp(long timestamp, long length) {
       this.timestamp = timestamp;
       this.length = length;
     }
@@ -383,6 +385,26 @@ public final class ModuleClassLoader extends RenderClassLoader {
     return file.isValid() ? file : null;
   }
 
+  /**
+   * Returns the URLs of the .class files loaded by this loader, with the timestamp and length they had when they were loaded
+   */
+  @NotNull
+  public Map<String, ClassModificationTimestamp> getLoadedClassFiles() {
+    Map<String, VirtualFile> classFiles = myClassFiles;
+    Map<String, ClassModificationTimestamp> classFilesLastModified = myClassFilesLastModified;
+    if (classFiles == null || classFilesLastModified == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, ClassModificationTimestamp> loadedClassFiles = new HashMap<>();
+    for (Map.Entry<String, VirtualFile> entry : classFiles.entrySet()) {
+      ClassModificationTimestamp timestamp = classFilesLastModified.get(entry.getKey());
+      if (timestamp != null) {
+        loadedClassFiles.put(entry.getValue().getUrl(), timestamp);
+      }
+    }
+    return loadedClassFiles;
+  }
+
   /** Checks whether any of the .class files loaded by this loader have changed since the creation of this class loader */
   boolean isUpToDate() {
     if (myClassFiles != null) {
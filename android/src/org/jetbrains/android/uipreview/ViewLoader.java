@@ -586,4 +586,14 @@ public class ViewLoader {
   public boolean hasLoadedClass(@NotNull String classFqn) {
     return myModuleClassLoader != null && myModuleClassLoader.isClassLoaded(classFqn);
   }
+
+  /**
+   * Returns the project .class files loaded so far by the module class loader.
+   *
+   * @see ModuleClassLoader#getLoadedClassFiles()
+   */
+  @NotNull
+  public Map<String, ModuleClassLoader.ClassModificationTimestamp> getLoadedClassFiles() {
+    return myModuleClassLoader != null ? myModuleClassLoader.getLoadedClassFiles() : Collections.emptyMap();
+  }
 }
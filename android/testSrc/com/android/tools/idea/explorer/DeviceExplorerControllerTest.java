@@ -935,6 +935,92 @@ public class DeviceExplorerControllerTest extends AndroidTestCase {
     assertTrue(createdFiles.stream().anyMatch(x -> Objects.equals(x.getName(), myFooDir.getName())));
   }
 
+  public void testFileSystemTree_ContextMenu_SaveDirectoryAs_DownloadsSmallFilesInBatch() throws Exception {
+    // Prepare
+    myFooFile1.setSize(1_000);
+    myFooFile2.setSize(2_000);
+    myDevice1.setDownloadFilesSupported(true);
+    File tempDirectory = FileUtil.createTempDirectory("saveAsDir", "");
+
+    // Act
+    String summaryMessage = saveDirectoryAs(myFoo, tempDirectory);
+
+    // Assert
+    assertTrue(summaryMessage.contains("Successfully downloaded"));
+    assertEquals(Collections.singletonList(Arrays.asList(myFooFile1.getName(), myFooFile2.getName())), myDevice1.getDownloadedBatches());
+    assertEquals(1_000, new File(tempDirectory, myFooFile1.getName()).length());
+    assertEquals(2_000, new File(tempDirectory, myFooFile2.getName()).length());
+    assertTrue(new File(tempDirectory, myFooLink1.getName()).exists());
+    assertTrue(new File(tempDirectory, myFooDir.getName()).isDirectory());
+  }
+
+  public void testFileSystemTree_ContextMenu_SaveDirectoryAs_DownloadsFilesOneAtATimeIfBatchFails() throws Exception {
+    // Prepare
+    myFooFile1.setSize(1_000);
+    myFooFile2.setSize(2_000);
+    myDevice1.setDownloadFilesSupported(true);
+    myDevice1.setDownloadFilesError(new AdbShellCommandException("[test] tar: not found"));
+    File tempDirectory = FileUtil.createTempDirectory("saveAsDir", "");
+
+    // Act
+    String summaryMessage = saveDirectoryAs(myFoo, tempDirectory);
+
+    // Assert
+    assertTrue(summaryMessage.contains("Successfully downloaded"));
+    assertTrue(myDevice1.getDownloadedBatches().isEmpty());
+    assertEquals(1_000, new File(tempDirectory, myFooFile1.getName()).length());
+    assertEquals(2_000, new File(tempDirectory, myFooFile2.getName()).length());
+    assertTrue(new File(tempDirectory, myFooLink1.getName()).exists());
+    assertTrue(new File(tempDirectory, myFooDir.getName()).isDirectory());
+  }
+
+  /**
+   * Downloads {@code directory} to {@code localDirectory} with the "Save As..." action and returns the summary message.
+   */
+  @NotNull
+  private String saveDirectoryAs(@NotNull MockDeviceFileEntry directory, @NotNull File localDirectory) throws Exception {
+    DeviceExplorerController controller = createController();
+    controller.setup();
+    pumpEventsAndWaitForFuture(myMockView.getStartRefreshTracker().consume());
+    checkMockViewInitialState(controller, myDevice1);
+
+    myMockView.getTree().setSelectionPath(getFileEntryPath(directory));
+    AnAction action = getActionByText(myMockView.getFileTreeActionGroup(), "Save As...");
+    assertNotNull(action);
+    AnActionEvent e = createContentMenuItemEvent();
+    action.update(e);
+    assertTrue(e.getPresentation().isEnabled());
+
+    myDevice1.setDownloadFileChunkSize(1_000);
+    myDevice1.setDownloadFileChunkIntervalMillis(10);
+    // The "Choose file" dialog does not work in headless mode, so we register a custom
+    // component that simply returns the local directory.
+    FileChooserFactoryImpl factory = new FileChooserFactoryImpl() {
+      @NotNull
+      @Override
+      public PathChooserDialog createPathChooser(@NotNull FileChooserDescriptor descriptor,
+                                                 @Nullable Project project,
+                                                 @Nullable Component parent) {
+        return (toSelect, callback) -> {
+          List<VirtualFile> list = Collections.singletonList(new VirtualFileWrapper(localDirectory).getVirtualFile());
+          callback.consume(list);
+        };
+      }
+    };
+    ServiceContainerUtil.replaceService(ApplicationManager.getApplication(), FileChooserFactory.class, factory, getTestRootDisposable());
+
+    myMockView.getStartTreeBusyIndicatorTacker().clear();
+    myMockView.getStopTreeBusyIndicatorTacker().clear();
+    myMockView.getReportMessageRelatedToNodeTracker().clear();
+    action.actionPerformed(e);
+
+    pumpEventsAndWaitForFuture(myMockView.getStartTreeBusyIndicatorTacker().consume());
+    pumpEventsAndWaitForFuture(myMockView.getStopTreeBusyIndicatorTacker().consume());
+    String summaryMessage = pumpEventsAndWaitForFuture(myMockView.getReportMessageRelatedToNodeTracker().consume());
+    assertNotNull(summaryMessage);
+    return summaryMessage;
+  }
+
   public void testFileSystemTree_ContextMenu_New_IsHiddenForFiles() throws Exception {
     // Prepare
     DeviceExplorerController controller = createController();
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class AdbSyncSessionQueueTest {
+  @Test
+  public void testLimitsActiveSessions() throws Exception {
+    AdbSyncSessionQueue queue = new AdbSyncSessionQueue(2);
+    List<SettableFuture<String>> transfers = new ArrayList<>();
+    List<ListenableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      SettableFuture<String> transfer = SettableFuture.create();
+      results.add(queue.submit(() -> {
+        transfers.add(transfer);
+        return transfer;
+      }));
+    }
+
+    // Only the first 2 transfers are started
+    assertThat(transfers).hasSize(2);
+    assertThat(queue.getActiveSessionCount()).isEqualTo(2);
+
+    // Completing a transfer starts the pending one
+    transfers.get(0).set("first");
+    assertThat(results.get(0).get()).isEqualTo("first");
+    assertThat(transfers).hasSize(3);
+    assertThat(queue.getActiveSessionCount()).isEqualTo(2);
+
+    transfers.get(1).setException(new Exception("error"));
+    transfers.get(2).set("third");
+    assertThat(results.get(1).isDone()).isTrue();
+    assertThat(results.get(2).get()).isEqualTo("third");
+    assertThat(queue.getActiveSessionCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCancelledPendingTransferIsNotStarted() {
+    AdbSyncSessionQueue queue = new AdbSyncSessionQueue(1);
+    SettableFuture<Void> first = SettableFuture.create();
+    queue.submit(() -> first);
+    List<String> started = new ArrayList<>();
+    ListenableFuture<Void> second = queue.submit(() -> {
+      started.add("second");
+      return SettableFuture.create();
+    });
+
+    second.cancel(true);
+    first.set(null);
+
+    assertThat(started).isEmpty();
+    assertThat(queue.getActiveSessionCount()).isEqualTo(0);
+  }
+}
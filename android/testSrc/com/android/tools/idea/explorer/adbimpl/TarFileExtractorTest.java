@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TarFileExtractorTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testExtractFiles() throws IOException {
+    TarBuilder tar = new TarBuilder();
+    tar.addFile("./foo.txt", "foo");
+    tar.addFile("bar.bin", repeat('x', 700));
+    tar.addFile("./-dash", "dash");
+    Path directory = myTemporaryFolder.newFolder().toPath();
+
+    List<Path> files = TarFileExtractor.extract(tar.write(), directory, ImmutableSet.of("foo.txt", "bar.bin", "-dash"));
+
+    assertThat(files).hasSize(3);
+    assertThat(readFile(directory.resolve("foo.txt"))).isEqualTo("foo");
+    assertThat(readFile(directory.resolve("bar.bin"))).isEqualTo(repeat('x', 700));
+    assertThat(readFile(directory.resolve("-dash"))).isEqualTo("dash");
+  }
+
+  @Test
+  public void testExtractLongFileName() throws IOException {
+    String longName = repeat('n', 150);
+    TarBuilder tar = new TarBuilder();
+    tar.addEntry("././@LongLink", 'L', "./" + longName + "\0");
+    tar.addFile(longName.substring(0, 100), "long");
+    Path directory = myTemporaryFolder.newFolder().toPath();
+
+    List<Path> files = TarFileExtractor.extract(tar.write(), directory, ImmutableSet.of(longName));
+
+    assertThat(files).containsExactly(directory.resolve(longName));
+    assertThat(readFile(directory.resolve(longName))).isEqualTo("long");
+  }
+
+  @Test
+  public void testExtractPaxFileName() throws IOException {
+    String longName = repeat('p', 150);
+    String record = "path=" + longName + "\n";
+    String paxRecord = (record.length() + 4) + " " + record;
+    TarBuilder tar = new TarBuilder();
+    tar.addEntry("PaxHeaders/file", 'x', paxRecord);
+    tar.addFile(longName.substring(0, 100), "pax");
+    Path directory = myTemporaryFolder.newFolder().toPath();
+
+    List<Path> files = TarFileExtractor.extract(tar.write(), directory, ImmutableSet.of(longName));
+
+    assertThat(files).containsExactly(directory.resolve(longName));
+    assertThat(readFile(directory.resolve(longName))).isEqualTo("pax");
+  }
+
+  @Test
+  public void testSkipsUnexpectedEntries() throws IOException {
+    TarBuilder tar = new TarBuilder();
+    tar.addFile("../outside.txt", "outside");
+    tar.addFile("dir/nested.txt", "nested");
+    tar.addEntry("dir", '5', "");
+    tar.addFile("other.txt", "other");
+    tar.addFile("expected.txt", "expected");
+    Path directory = myTemporaryFolder.newFolder().toPath();
+
+    List<Path> files = TarFileExtractor.extract(tar.write(), directory, ImmutableSet.of("expected.txt", "outside.txt", "nested.txt"));
+
+    assertThat(files).containsExactly(directory.resolve("expected.txt"));
+    assertThat(Files.exists(directory.resolve("other.txt"))).isFalse();
+    assertThat(Files.exists(directory.getParent().resolve("outside.txt"))).isFalse();
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidChecksum() throws IOException {
+    TarBuilder tar = new TarBuilder();
+    tar.addFile("foo.txt", "foo");
+    byte[] bytes = tar.toByteArray();
+    bytes[0] = 'g';
+    Path file = myTemporaryFolder.newFile().toPath();
+    Files.write(file, bytes);
+
+    TarFileExtractor.extract(file, myTemporaryFolder.newFolder().toPath(), ImmutableSet.of("foo.txt", "goo.txt"));
+  }
+
+  @NotNull
+  private static String readFile(@NotNull Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  @NotNull
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Writes a minimal ustar archive.
+   */
+  private class TarBuilder {
+    @NotNull private final ByteArrayOutputStream myOutput = new ByteArrayOutputStream();
+
+    void addFile(@NotNull String name, @NotNull String content) {
+      addEntry(name, '0', content);
+    }
+
+    void addEntry(@NotNull String name, char type, @NotNull String content) {
+      byte[] data = content.getBytes(StandardCharsets.UTF_8);
+      byte[] header = new byte[512];
+      putString(header, 0, name);
+      putString(header, 100, "0000644");
+      putString(header, 124, String.format("%011o", data.length));
+      putString(header, 136, "00000000000");
+      header[156] = (byte)type;
+      putString(header, 257, "ustar");
+      putString(header, 263, "00");
+      for (int i = 148; i < 156; i++) {
+        header[i] = ' ';
+      }
+      int checksum = 0;
+      for (byte b : header) {
+        checksum += b & 0xff;
+      }
+      putString(header, 148, String.format("%06o", checksum));
+      header[154] = 0;
+      myOutput.write(header, 0, header.length);
+      myOutput.write(data, 0, data.length);
+      int padding = (512 - data.length % 512) % 512;
+      myOutput.write(new byte[padding], 0, padding);
+    }
+
+    @NotNull
+    byte[] toByteArray() {
+      byte[] end = new byte[1024];
+      myOutput.write(end, 0, end.length);
+      return myOutput.toByteArray();
+    }
+
+    @NotNull
+    Path write() throws IOException {
+      Path file = myTemporaryFolder.newFile().toPath();
+      Files.write(file, toByteArray());
+      return file;
+    }
+
+    private void putString(@NotNull byte[] header, int offset, @NotNull String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+  }
+}
@@ -191,6 +191,14 @@ public class MockDeviceFileEntry implements DeviceFileEntry {
     return myFileSystem.downloadFile(this, localPath, progress);
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> downloadFiles(@NotNull List<DeviceFileEntry> files,
+                                              @NotNull Path localDirectory,
+                                              @NotNull FileTransferProgress progress) {
+    return myFileSystem.downloadFiles(files, localDirectory, progress);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath, @NotNull String fileName, @NotNull FileTransferProgress progress) {
@@ -37,7 +37,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -53,6 +55,9 @@ public class MockDeviceFileSystem implements DeviceFileSystem {
   private Throwable myDownloadError;
   private Throwable myRootDirectoryError;
   private Throwable myUploadError;
+  private boolean myDownloadFilesSupported;
+  private Throwable myDownloadFilesError;
+  @NotNull private final List<List<String>> myDownloadedBatches = new CopyOnWriteArrayList<>();
   private FutureCallbackExecutor myTaskExectuor;
 
   public MockDeviceFileSystem(@NotNull MockDeviceFileSystemService service, @NotNull String name, @NotNull Executor taskExecutor) {
@@ -166,6 +171,26 @@ public class MockDeviceFileSystem implements DeviceFileSystem {
     return new DownloadWorker((MockDeviceFileEntry)entry, localPath, progress).myFutureResult;
   }
 
+  @NotNull
+  public ListenableFuture<Void> downloadFiles(@NotNull List<DeviceFileEntry> entries,
+                                              @NotNull Path localDirectoryPath,
+                                              @NotNull FileTransferProgress progress) {
+    if (!myDownloadFilesSupported) {
+      return FutureUtils.delayedError(new UnsupportedOperationException("Batched downloads are not supported"),
+                                      MockDeviceFileSystemService.OPERATION_TIMEOUT_MILLIS);
+    }
+    if (myDownloadFilesError != null) {
+      return FutureUtils.delayedError(myDownloadFilesError, MockDeviceFileSystemService.OPERATION_TIMEOUT_MILLIS);
+    }
+    return FutureUtils.delayedOperation(() -> {
+      for (DeviceFileEntry entry : entries) {
+        Files.write(localDirectoryPath.resolve(entry.getName()), new byte[(int)entry.getSize()]);
+      }
+      myDownloadedBatches.add(entries.stream().map(DeviceFileEntry::getName).collect(Collectors.toList()));
+      return null;
+    }, MockDeviceFileSystemService.OPERATION_TIMEOUT_MILLIS);
+  }
+
   @NotNull
   public ListenableFuture<Void> uploadFile(@NotNull Path localFilePath,
                                            @NotNull DeviceFileEntry remoteDirectory,
@@ -198,6 +223,22 @@ public class MockDeviceFileSystem implements DeviceFileSystem {
     myDownloadError = t;
   }
 
+  public void setDownloadFilesSupported(boolean supported) {
+    myDownloadFilesSupported = supported;
+  }
+
+  public void setDownloadFilesError(@Nullable Throwable t) {
+    myDownloadFilesError = t;
+  }
+
+  /**
+   * Returns the names of the files of each successful batched download, see {@link DeviceFileEntry#downloadFiles}.
+   */
+  @NotNull
+  public List<List<String>> getDownloadedBatches() {
+    return myDownloadedBatches;
+  }
+
   public void setRootDirectoryError(@Nullable Throwable t) {
     myRootDirectoryError = t;
   }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data
+
+import com.android.tools.idea.gradle.project.sync.GradleSyncInvoker
+import com.android.tools.idea.gradle.project.sync.GradleSyncListener
+import com.android.tools.idea.gradle.project.sync.GradleSyncState
+import com.android.tools.idea.testing.AndroidGradleTestCase
+import com.intellij.openapi.externalSystem.model.DataNode
+import com.intellij.openapi.externalSystem.model.ProjectKeys
+import com.intellij.openapi.externalSystem.model.project.ProjectData
+import com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil
+import com.intellij.openapi.project.Project
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+/**
+ * Tests for [GradleModelCache].
+ */
+class GradleModelCacheTest : AndroidGradleTestCase() {
+  fun testHeaderMatchesSameContentHash() {
+    assertTrue(GradleModelCache.readHeader(readerOf(headerFor("abc")), "abc"))
+  }
+
+  fun testHeaderDoesNotMatchDifferentContentHash() {
+    assertFalse(GradleModelCache.readHeader(readerOf(headerFor("abc")), "abd"))
+  }
+
+  fun testModelsSurviveRoundTrip() {
+    loadSimpleApplication()
+    val projectData = DataNodeCaches.getInstance(project).cachedProjectData!!
+
+    GradleModelCache.saveToDisk(project, projectData, "abc")
+    val loaded = GradleModelCache.loadFromDisk(project, "abc")
+
+    assertNotNull(loaded)
+    assertFalse(DataNodeCaches.getInstance(project).isCacheMissingModels(loaded!!))
+    assertEquals(moduleNames(projectData), moduleNames(loaded))
+  }
+
+  fun testModelsWithStaleContentHashAreNotLoaded() {
+    loadSimpleApplication()
+    val projectData = DataNodeCaches.getInstance(project).cachedProjectData!!
+
+    GradleModelCache.saveToDisk(project, projectData, "abc")
+
+    assertNull(GradleModelCache.loadFromDisk(project, "abd"))
+  }
+
+  fun testSyncFallsBackToModelsOnDisk() {
+    loadSimpleApplication()
+    // Drop the IDE's copy of the models, the ones saved to disk by the last sync must be used instead.
+    DataNodeCaches.getInstance(project).clearCaches()
+
+    assertTrue(syncWithCachedModels())
+  }
+
+  fun testSyncIgnoresModelsOnDiskWithStaleContentHash() {
+    loadSimpleApplication()
+    GradleModelCache.saveToDisk(project, DataNodeCaches.getInstance(project).cachedProjectData!!, "stale")
+    DataNodeCaches.getInstance(project).clearCaches()
+
+    assertFalse(syncWithCachedModels())
+  }
+
+  /**
+   * Requests a sync that can use cached models and returns whether it was skipped, i.e. the project was set up from cached models.
+   */
+  private fun syncWithCachedModels(): Boolean {
+    var skipped = false
+    GradleSyncState.subscribe(project, object : GradleSyncListener {
+      override fun syncSkipped(project: Project) {
+        skipped = true
+      }
+    }, testRootDisposable)
+
+    val request = GradleSyncInvoker.Request.testRequest()
+    request.useCachedGradleModels = true
+    requestSyncAndWait(request)
+    return skipped
+  }
+
+  private fun moduleNames(projectData: DataNode<ProjectData>) =
+    ExternalSystemApiUtil.findAll(projectData, ProjectKeys.MODULE).map { it.data.externalName }.sorted()
+
+  private fun headerFor(contentHash: String): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { GradleModelCache.writeHeader(it, contentHash) }
+    return bytes.toByteArray()
+  }
+
+  private fun readerOf(bytes: ByteArray) = DataInputStream(bytes.inputStream())
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.gradle.project.sync.idea.data.service;
 
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
@@ -25,12 +26,14 @@ import com.android.tools.idea.gradle.project.sync.setup.module.android.Dependenc
 import com.android.tools.idea.gradle.project.sync.validation.android.AndroidModuleValidator;
 import com.android.tools.idea.testing.AndroidGradleTestCase;
 import com.android.tools.idea.testing.ProjectFiles;
+import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.externalSystem.model.DataNode;
 import com.intellij.openapi.externalSystem.model.project.ProjectData;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProviderImpl;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 
 import java.util.Collections;
@@ -86,6 +89,58 @@ public class AndroidModuleModelDataServiceTest extends AndroidGradleTestCase {
     verify(myValidator).fixAndReportFoundIssues();
   }
 
+  public void testImportDataPreparesModulesBeforeSettingThemUp() throws Exception {
+    loadSimpleApplication();
+    Module appModule = myModules.getAppModule();
+
+    AndroidModuleModel androidModel = AndroidModuleModel.get(appModule);
+    assertNotNull(androidModel);
+
+    DataNode<AndroidModuleModel> dataNode = new DataNode<>(ANDROID_MODEL, androidModel, null);
+    Project project = getProject();
+    IdeModifiableModelsProvider modelsProvider = new IdeModifiableModelsProviderImpl(project);
+
+    StudioFlags.PARALLEL_MODULE_SETUP.override(true);
+    try {
+      when(myModuleSetupContextFactory.create(appModule, modelsProvider)).thenReturn(myModuleSetupContext);
+      myService.importData(Collections.singletonList(dataNode), mock(ProjectData.class), project, modelsProvider);
+
+      // The context prepared in a worker thread is the one used to set up the module.
+      InOrder inOrder = inOrder(myModuleSetup);
+      inOrder.verify(myModuleSetup).prepareModule(myModuleSetupContext, androidModel);
+      inOrder.verify(myModuleSetup).setUpModule(myModuleSetupContext, androidModel);
+      verify(myModuleSetupContextFactory, times(1)).create(appModule, modelsProvider);
+    }
+    finally {
+      StudioFlags.PARALLEL_MODULE_SETUP.clearOverride();
+    }
+  }
+
+  public void testImportDataDoesNotPrepareModulesInWriteAction() throws Exception {
+    loadSimpleApplication();
+    Module appModule = myModules.getAppModule();
+
+    AndroidModuleModel androidModel = AndroidModuleModel.get(appModule);
+    assertNotNull(androidModel);
+
+    DataNode<AndroidModuleModel> dataNode = new DataNode<>(ANDROID_MODEL, androidModel, null);
+    Project project = getProject();
+    IdeModifiableModelsProvider modelsProvider = new IdeModifiableModelsProviderImpl(project);
+
+    StudioFlags.PARALLEL_MODULE_SETUP.override(true);
+    try {
+      when(myModuleSetupContextFactory.create(appModule, modelsProvider)).thenReturn(myModuleSetupContext);
+      WriteAction.runAndWait(
+        () -> myService.importData(Collections.singletonList(dataNode), mock(ProjectData.class), project, modelsProvider));
+
+      verify(myModuleSetup, never()).prepareModule(myModuleSetupContext, androidModel);
+      verify(myModuleSetup).setUpModule(myModuleSetupContext, androidModel);
+    }
+    finally {
+      StudioFlags.PARALLEL_MODULE_SETUP.clearOverride();
+    }
+  }
+
   public void testImportDataWithoutModels() {
     Module appModule = ProjectFiles.createModule(getProject(), "app");
     IdeModifiableModelsProvider modelsProvider = new IdeModifiableModelsProviderImpl(getProject());
@@ -176,6 +176,40 @@ public class AndroidLogFilterModelTest {
     assertThat(result.isApplicable()).isFalse();
   }
 
+  @Test
+  public void queryUsesLogLevelAndSelectedProcess() {
+    myFilterModel.setMinimumLevel(LogLevel.WARN);
+    myFilterModel.updateLogcatFilter(new SelectedProcessFilter(1234));
+
+    LogcatQuery query = myFilterModel.createQuery();
+
+    assertThat(query.getMinLevel()).isEqualTo(LogLevel.WARN);
+    assertThat(query.getPid()).isEqualTo(1234);
+    assertThat(query.getText()).isNull();
+  }
+
+  @Test
+  public void queryUsesCustomPatternOnlyIfItSearchesForAWord() {
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("Dummy", false));
+    assertThat(myFilterModel.createQuery().getText()).isEqualTo("Dummy");
+
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("Dummy_Tag", true));
+    assertThat(myFilterModel.createQuery().getText()).isEqualTo("Dummy_Tag");
+
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("Dummy.*", true));
+    assertThat(myFilterModel.createQuery().getText()).isNull();
+
+    // These could match the header of a line.
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("I/DummyTag", false));
+    assertThat(myFilterModel.createQuery().getText()).isNull();
+
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("1234", false));
+    assertThat(myFilterModel.createQuery().getText()).isNull();
+
+    myFilterModel.updateCustomPattern(RegexFilterComponent.pattern("I", false));
+    assertThat(myFilterModel.createQuery().getText()).isNull();
+  }
+
   private static final class TestFilterModel extends AndroidLogFilterModel {
     @NotNull private LogLevel myMinimumLevel = LogLevel.VERBOSE; // Allow all messages by default
 
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogcatMessageStoreTest {
+  private LogcatMessageStore myStore;
+
+  @Before
+  public void setUp() {
+    myStore = new LogcatMessageStore(64);
+  }
+
+  @Test
+  public void getMessagesReturnsAllLines() {
+    LogCatHeader header = new LogCatHeader(LogLevel.WARN, 1493, 1595, "com.example", "DummyFirst", Instant.ofEpochSecond(1534635551, 439));
+    myStore.add(new LogCatMessage(header, "First Line1"));
+    myStore.add(new LogCatMessage(header, "First Line2"));
+    myStore.add(new LogCatMessage(newHeader(LogLevel.INFO, 1493, "DummySecond"), "Second Line1 é"));
+
+    List<LogCatMessage> messages = myStore.getMessages();
+
+    assertThat(messages.stream().map(LogCatMessage::toString).collect(Collectors.toList()))
+      .containsExactly(new LogCatMessage(header, "First Line1").toString(),
+                       new LogCatMessage(header, "First Line2").toString(),
+                       new LogCatMessage(newHeader(LogLevel.INFO, 1493, "DummySecond"), "Second Line1 é").toString())
+      .inOrder();
+    assertThat(messages.get(0).getHeader()).isSameAs(messages.get(1).getHeader());
+    assertThat(messages.get(1).getHeader()).isNotSameAs(messages.get(2).getHeader());
+    assertThat(messages.get(0).getHeader().getTimestampInstant()).isEqualTo(Instant.ofEpochSecond(1534635551, 439));
+  }
+
+  @Test
+  public void queryByLevelAndPid() {
+    for (int i = 0; i < 200; i++) {
+      add(i % 3 == 0 ? LogLevel.ERROR : LogLevel.DEBUG, 100 + i % 2, "Tag", "message " + i);
+    }
+
+    assertThat(getTexts(new LogcatQuery.Builder().setMinLevel(LogLevel.WARN).build())).hasSize(67);
+    assertThat(getTexts(new LogcatQuery.Builder().setPid(101).build())).hasSize(100);
+    List<String> texts = getTexts(new LogcatQuery.Builder().setMinLevel(LogLevel.ERROR).setPid(101).build());
+    assertThat(texts).hasSize(33);
+    assertThat(texts.subList(0, 3)).containsExactly("message 3", "message 9", "message 15").inOrder();
+    assertThat(getTexts(new LogcatQuery.Builder().setPid(102).build())).isEmpty();
+  }
+
+  @Test
+  public void queryByTextIgnoresCase() {
+    add(LogLevel.INFO, 1, "Tag", "Activity started");
+    add(LogLevel.INFO, 1, "Tag", "Nothing to see");
+    add(LogLevel.INFO, 1, "ActivityManager", "Process died");
+
+    assertThat(getTexts(new LogcatQuery.Builder().setText("aCTIVITY").build()))
+      .containsExactly("Activity started", "Process died")
+      .inOrder();
+    assertThat(getTexts(new LogcatQuery.Builder().setText("missing").build())).isEmpty();
+  }
+
+  @Test
+  public void queryReturnsAllLinesOfAMatchingMessage() {
+    LogCatHeader header = newHeader(LogLevel.ERROR, 1, "Tag");
+    myStore.add(new LogCatMessage(header, "java.lang.RuntimeException"));
+    myStore.add(new LogCatMessage(header, "  at Foo.bar"));
+    myStore.add(new LogCatMessage(header, "  at Foo.main"));
+    add(LogLevel.ERROR, 1, "Tag", "Unrelated");
+
+    assertThat(getTexts(new LogcatQuery.Builder().setText("Foo.bar").build()))
+      .containsExactly("java.lang.RuntimeException", "  at Foo.bar", "  at Foo.main").inOrder();
+  }
+
+  @Test
+  public void trimToSizeRemovesOldestLines() {
+    for (int i = 0; i < 1000; i++) {
+      add(LogLevel.INFO, 1, "Tag", String.format("%04d", i));
+    }
+    assertThat(myStore.getByteCount()).isEqualTo(4000);
+
+    myStore.trimToSize(400);
+
+    assertThat(myStore.size()).isEqualTo(100);
+    assertThat(myStore.getByteCount()).isEqualTo(400);
+    List<String> texts = getTexts(LogcatQuery.ALL);
+    assertThat(texts.get(0)).isEqualTo("0900");
+    assertThat(texts.get(99)).isEqualTo("0999");
+    assertThat(getTexts(new LogcatQuery.Builder().setText("0950").build())).containsExactly("0950");
+
+    add(LogLevel.INFO, 1, "Tag", "1000");
+    assertThat(getTexts(LogcatQuery.ALL)).hasSize(101);
+  }
+
+  @Test
+  public void clearRemovesAllLines() {
+    add(LogLevel.INFO, 1, "Tag", "message");
+    myStore.clear();
+
+    assertThat(myStore.getMessages()).isEmpty();
+    assertThat(myStore.getByteCount()).isEqualTo(0);
+
+    add(LogLevel.INFO, 1, "Tag", "message");
+    assertThat(getTexts(LogcatQuery.ALL)).containsExactly("message");
+  }
+
+  private void add(@NotNull LogLevel level, int pid, @NotNull String tag, @NotNull String message) {
+    myStore.add(new LogCatMessage(newHeader(level, pid, tag), message));
+  }
+
+  @NotNull
+  private List<String> getTexts(@NotNull LogcatQuery query) {
+    return myStore.getMessages(query).stream().map(LogCatMessage::getMessage).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static LogCatHeader newHeader(@NotNull LogLevel level, int pid, @NotNull String tag) {
+    return new LogCatHeader(level, pid, pid, "com.example", tag, Instant.ofEpochSecond(1534635551));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.rendering.RenderExecutor.Priority;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class RenderExecutorTest extends TestCase {
+  private RenderExecutor myExecutor;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myExecutor = new RenderExecutor(4);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myExecutor.shutdownNow();
+      myExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testActionsWithTheSameKeyRunOnTheSameThread() throws ExecutionException, InterruptedException {
+    Object key = new Object();
+    Thread first = myExecutor.supplyAsync(Thread::currentThread, key, Priority.HIGH).get();
+    Thread second = myExecutor.supplyAsync(Thread::currentThread, key, Priority.LOW).get();
+
+    assertSame(first, second);
+    assertSame(first, myExecutor.getThread(key));
+  }
+
+  public void testHighPriorityActionsRunFirst() throws ExecutionException, InterruptedException {
+    CountDownLatch blocker = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    myExecutor.runAsync(() -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+    }, null, Priority.HIGH);
+    CompletableFuture<Void> low1 = myExecutor.runAsync(() -> order.add("low1"), null, Priority.LOW);
+    CompletableFuture<Void> high1 = myExecutor.runAsync(() -> order.add("high1"), null, Priority.HIGH);
+    CompletableFuture<Void> low2 = myExecutor.runAsync(() -> order.add("low2"), null, Priority.LOW);
+    CompletableFuture<Void> high2 = myExecutor.runAsync(() -> order.add("high2"), null, Priority.HIGH);
+    assertEquals(4, myExecutor.getQueuedActionCount());
+
+    blocker.countDown();
+    CompletableFuture.allOf(low1, high1, low2, high2).get();
+    assertEquals(Arrays.asList("high1", "high2", "low1", "low2"), order);
+  }
+
+  public void testCancelledActionsDoNotRun() throws ExecutionException, InterruptedException {
+    CountDownLatch blocker = new CountDownLatch(1);
+    myExecutor.runAsync(() -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+    }, null, Priority.HIGH);
+    List<String> runs = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> stale = myExecutor.runAsync(() -> runs.add("stale"), null, Priority.HIGH);
+    CompletableFuture<Void> fresh = myExecutor.runAsync(() -> runs.add("fresh"), null, Priority.HIGH);
+    stale.cancel(false);
+
+    blocker.countDown();
+    fresh.get();
+    assertEquals(Collections.singletonList("fresh"), runs);
+  }
+
+  public void testRunningActionsAreNotCancelled() throws ExecutionException, InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    CompletableFuture<String> running = myExecutor.supplyAsync(() -> {
+      started.countDown();
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return "done";
+    }, null, Priority.LOW);
+    started.await();
+
+    assertFalse(running.cancel(false));
+    blocker.countDown();
+    assertEquals("done", running.get());
+  }
+
+  public void testExceptionsCompleteTheFuture() throws InterruptedException {
+    CompletableFuture<Object> future = myExecutor.supplyAsync(() -> {
+      throw new IllegalStateException("failed");
+    }, null, Priority.HIGH);
+
+    try {
+      future.get();
+      fail("The future should have failed");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    // The render thread survives the exception.
+    assertNotNull(myExecutor.getThread(null));
+    assertTrue(myExecutor.getThread(null).isAlive());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import junit.framework.TestCase;
+import org.jetbrains.android.uipreview.ModuleClassLoader.ClassModificationTimestamp;
+import org.jetbrains.annotations.NotNull;
+
+public class RenderResultCacheTest extends TestCase {
+  private static final String CLASS_URL = "file:///project/build/classes/com/example/CustomView.class";
+
+  private Path myDir;
+  private final Map<String, ClassModificationTimestamp> myClassFiles = new HashMap<>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = Files.createTempDirectory("renderResultCache");
+    myClassFiles.put(CLASS_URL, new ClassModificationTimestamp(1000, 200));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      try (Stream<Path> files = Files.list(myDir)) {
+        for (Path file : (Iterable<Path>)files::iterator) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testPutAndGet() throws IOException {
+    RenderResultCache cache = open(RenderResultCache.DEFAULT_MAX_ENTRIES);
+    assertNull(cache.getImage("a"));
+    cache.putImage("a", createImage(0xFFFF0000), Collections.emptyMap());
+
+    BufferedImage image = cache.getImage("a");
+    assertNotNull(image);
+    assertEquals(0xFFFF0000, image.getRGB(5, 5));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    // Callers get their own copy of the image.
+    image.setRGB(5, 5, 0xFF00FF00);
+    assertEquals(0xFFFF0000, cache.getImage("a").getRGB(5, 5));
+  }
+
+  public void testEntriesArePersisted() throws IOException {
+    open(RenderResultCache.DEFAULT_MAX_ENTRIES).putImage("a", createImage(0xFF0000FF), ImmutableMap.copyOf(myClassFiles));
+
+    RenderResultCache cache = open(RenderResultCache.DEFAULT_MAX_ENTRIES);
+    BufferedImage image = cache.getImage("a");
+    assertNotNull(image);
+    assertEquals(10, image.getWidth());
+    assertEquals(0xFF0000FF, image.getRGB(0, 0));
+  }
+
+  public void testEntryWithoutClassesIsIgnored() throws IOException {
+    open(RenderResultCache.DEFAULT_MAX_ENTRIES).putImage("a", createImage(0xFF0000FF), ImmutableMap.copyOf(myClassFiles));
+    try (Stream<Path> files = Files.list(myDir)) {
+      // Only the renamed files are left.
+      assertEquals(ImmutableSet.of("a.png", "a.classes"), files.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+    }
+
+    // An image whose list of classes has not been renamed yet is not used.
+    Files.delete(myDir.resolve("a.classes"));
+    assertNull(open(RenderResultCache.DEFAULT_MAX_ENTRIES).getImage("a"));
+  }
+
+  public void testChangedClassInvalidatesEntry() throws IOException {
+    RenderResultCache cache = open(RenderResultCache.DEFAULT_MAX_ENTRIES);
+    cache.putImage("a", createImage(0xFFFF0000), ImmutableMap.copyOf(myClassFiles));
+    assertNotNull(cache.getImage("a"));
+
+    myClassFiles.put(CLASS_URL, new ClassModificationTimestamp(2000, 200));
+    assertNull(cache.getImage("a"));
+    assertNull(open(RenderResultCache.DEFAULT_MAX_ENTRIES).getImage("a"));
+
+    myClassFiles.remove(CLASS_URL);
+    assertNull(cache.getImage("a"));
+  }
+
+  public void testLeastRecentlyUsedEntriesAreDeleted() throws IOException {
+    RenderResultCache cache = open(4);
+    long time = System.currentTimeMillis() - 100_000;
+    for (String key : new String[]{"a", "b", "c", "d"}) {
+      cache.putImage(key, createImage(0xFFFF0000), Collections.emptyMap());
+      Files.setLastModifiedTime(myDir.resolve(key + ".png"), FileTime.fromMillis(time += 1000));
+    }
+    // Reading an entry from the disk makes it the most recently used one.
+    assertNotNull(open(4).getImage("a"));
+
+    cache.putImage("e", createImage(0xFFFF0000), Collections.emptyMap());
+    cache = open(4);
+    assertNotNull(cache.getImage("a"));
+    assertNull(cache.getImage("b"));
+    assertNull(cache.getImage("c"));
+    assertNotNull(cache.getImage("d"));
+    assertNotNull(cache.getImage("e"));
+  }
+
+  @NotNull
+  private RenderResultCache open(int maxEntries) throws IOException {
+    return new RenderResultCache(myDir, maxEntries, myClassFiles::get);
+  }
+
+  @NotNull
+  private static BufferedImage createImage(int color) {
+    //noinspection UndesirableClassUsage
+    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < 10; x++) {
+      for (int y = 0; y < 10; y++) {
+        image.setRGB(x, y, color);
+      }
+    }
+    return image;
+  }
+}
@@ -77,7 +77,7 @@ public class RenderServiceTest extends TestCase {
       called.set(true);
 
       return null;
-    });
+    }, new Object(), RenderExecutor.Priority.HIGH);
 
     assertFalse(called.get());
     countDownLatch.countDown();
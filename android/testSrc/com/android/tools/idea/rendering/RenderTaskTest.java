@@ -55,6 +55,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.imageio.ImageIO;
 import javax.tools.ToolProvider;
 import org.intellij.lang.annotations.Language;
@@ -294,6 +295,37 @@ public class RenderTaskTest extends AndroidTestCase {
     }
   }
 
+  public void testDisposeCancelsQueuedLowPriorityActions() throws Exception {
+    VirtualFile layoutFile = myFixture.addFileToProject("res/layout/foo.xml", "").getVirtualFile();
+    Configuration configuration = RenderTestUtil.getConfiguration(myModule, layoutFile);
+    RenderLogger logger = mock(RenderLogger.class);
+
+    RenderTask task = RenderTestUtil.createRenderTask(myFacet, layoutFile, configuration, logger);
+    task.setPriority(RenderExecutor.Priority.LOW);
+    Semaphore semaphore = new Semaphore(0);
+    AtomicBoolean staleActionRan = new AtomicBoolean();
+    task.runAsyncRenderAction(() -> {
+      try {
+        semaphore.acquire();
+      }
+      catch (InterruptedException e) {
+        fail("Failed to acquire semaphore");
+      }
+      return null;
+    });
+    CompletableFuture<Object> stale = task.runAsyncRenderAction(() -> {
+      staleActionRan.set(true);
+      return null;
+    });
+
+    Future<?> disposeFuture = task.dispose();
+    semaphore.release();
+    disposeFuture.get(5, TimeUnit.SECONDS);
+
+    assertTrue(stale.isCancelled());
+    assertFalse(staleActionRan.get());
+  }
+
   public void testAaptGradient() throws Exception {
     @Language("XML")
     final String content = "<vector xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
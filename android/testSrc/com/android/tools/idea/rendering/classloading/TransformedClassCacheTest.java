@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+public class TransformedClassCacheTest extends TestCase {
+  private static final byte[] CLASS_A = {1, 2, 3};
+  private static final byte[] CLASS_B = {4, 5, 6, 7};
+
+  private Path myDir;
+  private final AtomicInteger myTransformCount = new AtomicInteger();
+  private final Function<byte[], byte[]> myTransform = data -> {
+    myTransformCount.incrementAndGet();
+    byte[] result = Arrays.copyOf(data, data.length + 1);
+    result[data.length] = 42;
+    return result;
+  };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = Files.createTempDirectory("transformedClassCache");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      try (Stream<Path> files = Files.list(myDir)) {
+        for (Path file : (Iterable<Path>)files::iterator) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testTransformsOnce() throws IOException {
+    TransformedClassCache cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    try {
+      byte[] first = cache.getOrTransform(CLASS_A, "v1", myTransform);
+      byte[] second = cache.getOrTransform(CLASS_A, "v1", myTransform);
+
+      assertEquals(1, myTransformCount.get());
+      assertTrue(Arrays.equals(new byte[]{1, 2, 3, 42}, first));
+      assertTrue(Arrays.equals(first, second));
+      assertEquals(1, cache.getHitCount());
+
+      // A different transformation id does not reuse the entry.
+      cache.getOrTransform(CLASS_A, "v2", myTransform);
+      assertEquals(2, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testEntriesArePersisted() throws IOException {
+    TransformedClassCache cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    cache.getOrTransform(CLASS_A, "v1", myTransform);
+    cache.getOrTransform(CLASS_B, "v1", myTransform);
+    cache.close();
+
+    cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    try {
+      assertTrue(Arrays.equals(new byte[]{4, 5, 6, 7, 42}, cache.getOrTransform(CLASS_B, "v1", myTransform)));
+      assertTrue(Arrays.equals(new byte[]{1, 2, 3, 42}, cache.getOrTransform(CLASS_A, "v1", myTransform)));
+      assertEquals(2, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testTruncatedEntryIsDropped() throws IOException {
+    TransformedClassCache cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    cache.getOrTransform(CLASS_A, "v1", myTransform);
+    cache.getOrTransform(CLASS_B, "v1", myTransform);
+    cache.close();
+    Path file = myDir.resolve("classes.pack");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 2);
+    }
+
+    cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    try {
+      cache.getOrTransform(CLASS_A, "v1", myTransform);
+      assertEquals(2, myTransformCount.get());
+      // The truncated entry is transformed again and written in its place.
+      assertTrue(Arrays.equals(new byte[]{4, 5, 6, 7, 42}, cache.getOrTransform(CLASS_B, "v1", myTransform)));
+      assertEquals(3, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+
+    cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    try {
+      cache.getOrTransform(CLASS_B, "v1", myTransform);
+      assertEquals(3, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testCorruptedEntryIsRejected() throws IOException {
+    TransformedClassCache cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    cache.getOrTransform(CLASS_A, "v1", myTransform);
+    cache.getOrTransform(CLASS_B, "v1", myTransform);
+    cache.close();
+    // Simulate an append that was torn without changing the size of the file.
+    Path file = myDir.resolve("classes.pack");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{0}), channel.size() - 1);
+    }
+
+    cache = open(TransformedClassCache.DEFAULT_MAX_SIZE);
+    try {
+      assertTrue(Arrays.equals(new byte[]{1, 2, 3, 42}, cache.getOrTransform(CLASS_A, "v1", myTransform)));
+      assertEquals(2, myTransformCount.get());
+      // The corrupted entry is transformed again instead of being returned.
+      assertTrue(Arrays.equals(new byte[]{4, 5, 6, 7, 42}, cache.getOrTransform(CLASS_B, "v1", myTransform)));
+      assertEquals(3, myTransformCount.get());
+      assertTrue(Arrays.equals(new byte[]{4, 5, 6, 7, 42}, cache.getOrTransform(CLASS_B, "v1", myTransform)));
+      assertEquals(3, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testFullCacheIsDiscardedWhenOpened() throws IOException {
+    TransformedClassCache cache = open(40);
+    cache.getOrTransform(CLASS_A, "v1", myTransform);
+    cache.getOrTransform(CLASS_B, "v1", myTransform);
+    // The first entry filled the cache so the second one was not added.
+    cache.getOrTransform(CLASS_B, "v1", myTransform);
+    assertEquals(3, myTransformCount.get());
+    cache.close();
+
+    cache = open(40);
+    try {
+      cache.getOrTransform(CLASS_A, "v1", myTransform);
+      assertEquals(4, myTransformCount.get());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @NotNull
+  private TransformedClassCache open(long maxSize) throws IOException {
+    return new TransformedClassCache(myDir.resolve("classes.pack"), maxSize);
+  }
+}
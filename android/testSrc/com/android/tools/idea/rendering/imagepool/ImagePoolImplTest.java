@@ -153,6 +153,71 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testByteBudget() {
+    // 40x40 images go into the 50x50 bucket, so each one uses 10000 bytes and the budget fits two of them.
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500}, (w, h) -> (type) -> 10, 25_000);
+    try {
+      ImagePoolImpl.ImageImpl image1 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image2 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image3 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      BufferedImage internalPtr2 = image2.myBuffer;
+      BufferedImage internalPtr3 = image3.myBuffer;
+      image1.dispose();
+      image2.dispose();
+      image3.dispose();
+
+      // The least recently returned image was dropped
+      ImagePool.Stats stats = pool.getStats();
+      assertEquals(25_000, stats.maxBytesPooled());
+      assertEquals(20_000, stats.totalBytesPooled());
+      assertEquals(1, stats.getBucketStats().length);
+      ImagePool.BucketStats bucketStats = stats.getBucketStats()[0];
+      assertEquals(1, bucketStats.evictions());
+      assertEquals(20_000, bucketStats.bytesHeld());
+
+      assertEquals(internalPtr2, pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+      assertEquals(internalPtr3, pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+      assertEquals(0, stats.totalBytesPooled());
+      assertEquals(0, bucketStats.bytesHeld());
+      assertEquals(0.4, bucketStats.hitRate(), 0.001);
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
+  @Test
+  public void testClearedImagesAreRemovedFromByteBudget() {
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500}, (w, h) -> (type) -> 10, 25_000);
+    try {
+      ImagePoolImpl.ImageImpl image1 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image2 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      BufferedImage internalPtr1 = image1.myBuffer;
+      image1.dispose();
+      image2.dispose();
+
+      ImagePool.Stats stats = pool.getStats();
+      assertEquals(20_000, stats.totalBytesPooled());
+      assertEquals(20_000, stats.totalBytesAllocated());
+
+      pool.clearPooledImageReferences();
+      assertEquals(0, stats.totalBytesPooled());
+      assertEquals(0, stats.totalBytesAllocated());
+      assertEquals(0, stats.getBucketStats()[0].bytesHeld());
+
+      // The budget is available again for new free images
+      ImagePoolImpl.ImageImpl image3 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      assertNotEquals(internalPtr1, image3.myBuffer);
+      image3.dispose();
+      assertEquals(10_000, stats.totalBytesPooled());
+      assertEquals(0, stats.getBucketStats()[0].evictions());
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
@@ -462,6 +462,47 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     }
   }
 
+  public void testSnapshots() {
+    VirtualFile layoutOverlay = myFixture.copyFileToProject(LAYOUT_OVERLAY, "res2/layout/layout1.xml");
+    VirtualFile res1 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml").getParent().getParent();
+    myFixture.copyFileToProject(LAYOUT, "res/layout/layout3.xml");
+    VirtualFile res2 = layoutOverlay.getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res2, res1), RES_AUTO, null);
+
+    assertTrue(resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout1"));
+    List<ResourceItem> unaffectedItems = resources.getResources(RES_AUTO, ResourceType.LAYOUT, "layout3");
+    assertThat(unaffectedItems).hasSize(1);
+    long misses = resources.getSnapshotMissCount();
+    long hits = resources.getSnapshotHitCount();
+    long merges = resources.getMergeCount();
+    assertItemIsInDir(res2, getSingleItem(resources, ResourceType.LAYOUT, "layout1"));
+    assertFalse(resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout2"));
+    // Repeated reads are served from the snapshot without merging again.
+    assertThat(resources.getSnapshotMissCount()).isEqualTo(misses);
+    assertThat(resources.getSnapshotHitCount()).isEqualTo(hits + 2);
+    assertThat(resources.getMergeCount()).isEqualTo(merges);
+
+    WriteCommandAction.runWriteCommandAction(null, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          layoutOverlay.rename(this, "layout2.xml");
+        }
+        catch (IOException e) {
+          fail(e.toString());
+        }
+      }
+    });
+
+    // The change invalidates the snapshot of the layouts.
+    assertTrue(resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout2"));
+    assertItemIsInDir(res1, getSingleItem(resources, ResourceType.LAYOUT, "layout1"));
+    assertThat(resources.getSnapshotMissCount()).isGreaterThan(misses);
+    assertThat(resources.getMergeCount()).isGreaterThan(merges);
+    // Entries of resources that didn't change are kept in the refreshed snapshot.
+    assertSame(unaffectedItems, resources.getResources(RES_AUTO, ResourceType.LAYOUT, "layout3"));
+  }
+
   public void testAllowEmpty() {
     assertTrue(Lint.assertionsEnabled()); // This test should be run with assertions enabled!
     LocalResourceRepository repository = ModuleResourceRepository.createForTest(myFacet, Collections.emptyList(), RES_AUTO, null);
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.intellij.util.io.ByteBufferUtil;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compares two APKs entry by entry, using their {@link ApkIndex indexes}.
+ * <p>
+ * Entries with the same CRC and size in both APKs are considered unchanged and are never read. Only the entries that changed, or that
+ * are in a single APK, are inflated to estimate their download size, in parallel. The estimated sizes are stored in the
+ * {@link ApkIndexCache} so that the entries of an APK are inflated at most once.
+ */
+public final class ApkDiffEngine {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private ApkDiffEngine() {
+  }
+
+  /**
+   * Returns the tree of the files of both APKs, with {@link ApkIndexDiffEntry} user objects. Children are sorted by decreasing size
+   * difference.
+   */
+  @NotNull
+  public static DefaultMutableTreeNode createTreeNode(@NotNull Path oldApk,
+                                                      @NotNull Path newApk,
+                                                      @NotNull ApkIndexCache cache,
+                                                      @NotNull ExecutorService executor) throws IOException, InterruptedException {
+    ApkIndex oldIndex = ApkIndex.read(oldApk);
+    ApkIndex newIndex = ApkIndex.read(newApk);
+
+    Set<String> names = new LinkedHashSet<>();
+    oldIndex.getEntries().forEach(entry -> names.add(entry.getName()));
+    newIndex.getEntries().forEach(entry -> names.add(entry.getName()));
+
+    Map<String, Long> oldDownloadSizes = cache.loadDownloadSizes(oldIndex);
+    Map<String, Long> newDownloadSizes = cache.loadDownloadSizes(newIndex);
+    List<ApkIndex.Entry> oldChanged = new ArrayList<>();
+    List<ApkIndex.Entry> newChanged = new ArrayList<>();
+    for (String name : names) {
+      ApkIndex.Entry oldEntry = oldIndex.getEntry(name);
+      ApkIndex.Entry newEntry = newIndex.getEntry(name);
+      if (oldEntry != null && newEntry != null && oldEntry.hasSameContent(newEntry)) {
+        continue;
+      }
+      if (oldEntry != null && !oldDownloadSizes.containsKey(name)) {
+        oldChanged.add(oldEntry);
+      }
+      if (newEntry != null && !newDownloadSizes.containsKey(name)) {
+        newChanged.add(newEntry);
+      }
+    }
+
+    if (!oldChanged.isEmpty()) {
+      oldDownloadSizes.putAll(estimateDownloadSizes(oldIndex, oldChanged, executor));
+      cache.saveDownloadSizes(oldIndex, oldDownloadSizes);
+    }
+    if (!newChanged.isEmpty()) {
+      newDownloadSizes.putAll(estimateDownloadSizes(newIndex, newChanged, executor));
+      cache.saveDownloadSizes(newIndex, newDownloadSizes);
+    }
+
+    ApkIndexDiffEntry rootEntry = new ApkIndexDiffEntry(newApk.getFileName().toString(), "/");
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode(rootEntry);
+    Map<String, DefaultMutableTreeNode> folders = new HashMap<>();
+    for (String name : names) {
+      ApkIndex.Entry oldEntry = oldIndex.getEntry(name);
+      ApkIndex.Entry newEntry = newIndex.getEntry(name);
+      // Uncompressed sizes, like the ones shown by ApkDiffParser when an APK cannot be indexed.
+      long oldSize = oldEntry != null ? oldEntry.getSize() : 0;
+      long newSize = newEntry != null ? newEntry.getSize() : 0;
+      long downloadSizeDiff = 0;
+      if (oldEntry == null || newEntry == null || !oldEntry.hasSameContent(newEntry)) {
+        downloadSizeDiff = newDownloadSizes.getOrDefault(name, 0L) - oldDownloadSizes.getOrDefault(name, 0L);
+      }
+
+      DefaultMutableTreeNode parent = root;
+      rootEntry.add(oldSize, newSize, downloadSizeDiff);
+      int start = 0;
+      for (int end = name.indexOf('/'); end >= 0; start = end + 1, end = name.indexOf('/', start)) {
+        String folderPath = name.substring(0, end + 1);
+        DefaultMutableTreeNode folder = folders.get(folderPath);
+        if (folder == null) {
+          folder = new DefaultMutableTreeNode(new ApkIndexDiffEntry(name.substring(start, end), "/" + folderPath));
+          folders.put(folderPath, folder);
+          parent.add(folder);
+        }
+        ((ApkIndexDiffEntry)folder.getUserObject()).add(oldSize, newSize, downloadSizeDiff);
+        parent = folder;
+      }
+      ApkIndexDiffEntry entry = new ApkIndexDiffEntry(name.substring(start), "/" + name);
+      entry.add(oldSize, newSize, downloadSizeDiff);
+      parent.add(new DefaultMutableTreeNode(entry, false));
+    }
+    sort(root);
+    return root;
+  }
+
+  private static void sort(@NotNull DefaultMutableTreeNode node) {
+    if (node.getChildCount() == 0) {
+      return;
+    }
+    List<DefaultMutableTreeNode> children = new ArrayList<>(node.getChildCount());
+    for (int i = 0; i < node.getChildCount(); i++) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode)node.getChildAt(i);
+      sort(child);
+      children.add(child);
+    }
+    children.sort(Comparator.comparing((DefaultMutableTreeNode child) -> ((ApkIndexDiffEntry)child.getUserObject()).getSizeDiff())
+                    .reversed()
+                    .thenComparing(child -> ((ApkIndexDiffEntry)child.getUserObject()).getName()));
+    node.removeAllChildren();
+    children.forEach(node::add);
+  }
+
+  @NotNull
+  private static Map<String, Long> estimateDownloadSizes(@NotNull ApkIndex index,
+                                                         @NotNull List<ApkIndex.Entry> entries,
+                                                         @NotNull ExecutorService executor) throws IOException, InterruptedException {
+    MappedByteBuffer apk;
+    try (FileChannel channel = FileChannel.open(index.getPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("File too large: " + index.getPath());
+      }
+      apk = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    List<Callable<Long>> tasks = new ArrayList<>(entries.size());
+    for (ApkIndex.Entry entry : entries) {
+      tasks.add(() -> estimateDownloadSize(ApkIndex.getStoredData(apk, entry), entry.getMethod()));
+    }
+    // If this thread is interrupted, the cancelled tasks may still be reading the mapping. It is then left to the garbage collector instead
+    // of being unmapped.
+    List<Future<Long>> results = executor.invokeAll(tasks);
+    try {
+      Map<String, Long> sizes = new HashMap<>();
+      for (int i = 0; i < entries.size(); i++) {
+        sizes.put(entries.get(i).getName(), getResult(results.get(i)));
+      }
+      return sizes;
+    }
+    finally {
+      ByteBufferUtil.cleanBuffer(apk);
+    }
+  }
+
+  private static long getResult(@NotNull Future<Long> result) throws IOException, InterruptedException {
+    try {
+      return result.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+    }
+  }
+
+  /**
+   * Estimates the download size of an entry as the size of its content compressed with the best compression level.
+   *
+   * @param data the data of the entry, as stored in the APK
+   * @param method the compression method of the entry
+   */
+  static long estimateDownloadSize(@NotNull ByteBuffer data, int method) throws IOException {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    Inflater inflater = method == ApkIndex.Entry.DEFLATED ? new Inflater(true) : null;
+    if (inflater == null && method != ApkIndex.Entry.STORED) {
+      throw new IOException("Unsupported compression method: " + method);
+    }
+    try {
+      byte[] input = new byte[BUFFER_SIZE];
+      byte[] inflated = new byte[BUFFER_SIZE];
+      byte[] output = new byte[BUFFER_SIZE];
+      long compressedSize = 0;
+      while (data.hasRemaining()) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException();
+        }
+        int length = Math.min(input.length, data.remaining());
+        data.get(input, 0, length);
+        if (inflater == null) {
+          compressedSize += deflate(deflater, input, length, output);
+          continue;
+        }
+        inflater.setInput(input, 0, length);
+        compressedSize += inflateAndDeflate(inflater, inflated, deflater, output);
+      }
+      if (inflater != null && !inflater.finished()) {
+        // An inflater created with "nowrap" may need an extra byte to finish.
+        inflater.setInput(new byte[1]);
+        compressedSize += inflateAndDeflate(inflater, inflated, deflater, output);
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        compressedSize += deflater.deflate(output);
+      }
+      return compressedSize;
+    }
+    finally {
+      deflater.end();
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  private static long inflateAndDeflate(@NotNull Inflater inflater,
+                                        @NotNull byte[] inflated,
+                                        @NotNull Deflater deflater,
+                                        @NotNull byte[] output) throws IOException {
+    long compressedSize = 0;
+    try {
+      while (!inflater.finished()) {
+        int length = inflater.inflate(inflated);
+        if (length == 0) {
+          break;
+        }
+        compressedSize += deflate(deflater, inflated, length, output);
+      }
+    }
+    catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    return compressedSize;
+  }
+
+  private static long deflate(@NotNull Deflater deflater, @NotNull byte[] input, int length, @NotNull byte[] output) {
+    long compressedSize = 0;
+    deflater.setInput(input, 0, length);
+    while (!deflater.needsInput()) {
+      compressedSize += deflater.deflate(output);
+    }
+    return compressedSize;
+  }
+}
@@ -28,6 +28,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
@@ -46,6 +47,8 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import static com.android.tools.idea.apk.viewer.ApkViewPanel.getHumanizedSize;
 
@@ -107,8 +110,17 @@ public class ApkDiffPanel {
   private void constructDiffTree(){
     // construct the main tree
     ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
+      Path oldApk = VfsUtilCore.virtualToIoFile(myOldApk).toPath();
+      Path newApk = VfsUtilCore.virtualToIoFile(myNewApk).toPath();
+      try {
+        return ApkDiffEngine.createTreeNode(oldApk, newApk, ApkIndexCache.getInstance(), PooledThreadExecutor.INSTANCE);
+      }
+      catch (IOException e) {
+        // E.g. ZIP64 archives, which the index does not support.
+        Logger.getInstance(ApkDiffPanel.class).info("Unable to index " + oldApk + " and " + newApk + ", comparing the archives", e);
+      }
+      try (ArchiveContext archiveContext1 = Archives.open(oldApk);
+           ArchiveContext archiveContext2 = Archives.open(newApk)) {
         return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
       }
     });
@@ -132,6 +144,11 @@ public class ApkDiffPanel {
     Convertor<TreePath, String> convertor = new Convertor<TreePath, String>() {
       @Override
       public String convert(TreePath path) {
+        ApkIndexDiffEntry indexEntry = ApkIndexDiffEntry.fromNode(path.getLastPathComponent());
+        if (indexEntry != null) {
+          return indexEntry.getPath();
+        }
+
         ApkEntry e = ApkEntry.fromNode(path.getLastPathComponent());
         if (e == null) {
           return null;
@@ -153,17 +170,22 @@ public class ApkDiffPanel {
                    .setName("Old Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize, ApkIndexDiffEntry::getOldSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("New Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize, ApkIndexDiffEntry::getNewSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("Diff Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkEntry::getSize)));
+                   .setRenderer(new SizeRenderer(ApkEntry::getSize, ApkIndexDiffEntry::getSizeDiff)))
+      .addColumn(new ColumnTreeBuilder.ColumnBuilder()
+                   .setName("Download Diff")
+                   .setPreferredWidth(150)
+                   .setHeaderAlignment(SwingConstants.TRAILING)
+                   .setRenderer(new SizeRenderer(entry -> null, ApkIndexDiffEntry::getDownloadSizeDiff)));
     myColumnTreePane = builder.build();
   }
 
@@ -180,8 +202,7 @@ public class ApkDiffPanel {
   private void setRootNode(@NotNull DefaultMutableTreeNode root) {
     myTreeModel = new DefaultTreeModel(root);
 
-    ApkEntry entry = ApkEntry.fromNode(root);
-    assert entry != null;
+    assert ApkEntry.fromNode(root) != null || ApkIndexDiffEntry.fromNode(root) != null;
 
     myTree.setPaintBusy(false);
     myTree.setRootVisible(true);
@@ -192,9 +213,11 @@ public class ApkDiffPanel {
   // Duplicated from ApkViewPanel.SizeRenderer until the diff entries are unified into the ArchiveEntry data class.
   public static class SizeRenderer extends ColoredTreeCellRenderer {
     private Function<ApkEntry, Long> mySizeMapper;
+    private Function<ApkIndexDiffEntry, Long> myIndexSizeMapper;
 
-    public SizeRenderer(Function<ApkEntry, Long> sizeMapper) {
+    public SizeRenderer(Function<ApkEntry, Long> sizeMapper, Function<ApkIndexDiffEntry, Long> indexSizeMapper) {
       mySizeMapper = sizeMapper;
+      myIndexSizeMapper = indexSizeMapper;
       setTextAlign(SwingConstants.RIGHT);
     }
 
@@ -206,6 +229,12 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ApkIndexDiffEntry indexEntry = ApkIndexDiffEntry.fromNode(value);
+      if (indexEntry != null) {
+        append(getHumanizedSize(myIndexSizeMapper.fun(indexEntry)));
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
@@ -213,7 +242,10 @@ public class ApkDiffPanel {
         return;
       }
 
-      append(getHumanizedSize(mySizeMapper.fun(entry)));
+      Long size = mySizeMapper.fun(entry);
+      if (size != null) {
+        append(getHumanizedSize(size));
+      }
     }
   }
 
@@ -229,6 +261,12 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ApkIndexDiffEntry indexEntry = ApkIndexDiffEntry.fromNode(value);
+      if (indexEntry != null) {
+        append(indexEntry.getName());
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
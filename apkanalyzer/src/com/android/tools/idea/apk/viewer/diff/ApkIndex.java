@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.util.io.ByteBufferUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The entries of an APK, as listed by its ZIP central directory.
+ * <p>
+ * Only the end of the file and the central directory are read, so creating the index of an APK does not depend on the size of its
+ * content. The index is identified by a {@link #getKey() key} computed from the central directory, which holds the CRC and the sizes of
+ * all the entries.
+ */
+public final class ApkIndex {
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int EOCD_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  @NotNull private final Path myPath;
+  @NotNull private final String myKey;
+  @NotNull private final Map<String, Entry> myEntries;
+
+  private ApkIndex(@NotNull Path path, @NotNull String key, @NotNull Map<String, Entry> entries) {
+    myPath = path;
+    myKey = key;
+    myEntries = entries;
+  }
+
+  /**
+   * Reads the central directory of the given APK.
+   *
+   * @throws IOException if the file cannot be read, is not a ZIP file or is a ZIP64 file.
+   */
+  @NotNull
+  public static ApkIndex read(@NotNull Path path) throws IOException {
+    MappedByteBuffer tailBuffer = null;
+    MappedByteBuffer directoryBuffer = null;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      long tailSize = Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+      tailBuffer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - tailSize, tailSize);
+      ByteBuffer tail = tailBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      int eocd = findEndOfCentralDirectory(tail);
+      if (eocd < 0) {
+        throw new IOException("Not a ZIP file: " + path);
+      }
+      int entryCount = Short.toUnsignedInt(tail.getShort(eocd + 10));
+      long directorySize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+      long directoryOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+      if (entryCount == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) {
+        throw new IOException("ZIP64 files are not supported: " + path);
+      }
+      if (directoryOffset + directorySize > fileSize) {
+        throw new IOException("Invalid central directory: " + path);
+      }
+
+      directoryBuffer = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset, directorySize);
+      ByteBuffer directory = directoryBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      Hasher hasher = Hashing.sha256().newHasher();
+      hasher.putLong(fileSize);
+      hasher.putBytes(directory.duplicate());
+      tail.position(eocd);
+      hasher.putBytes(tail);
+
+      Map<String, Entry> entries = new LinkedHashMap<>(entryCount * 2);
+      int position = 0;
+      for (int i = 0; i < entryCount; i++) {
+        if (position + CENTRAL_DIRECTORY_HEADER_SIZE > directorySize || directory.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new IOException("Invalid central directory entry " + i + ": " + path);
+        }
+        int method = Short.toUnsignedInt(directory.getShort(position + 10));
+        int crc = directory.getInt(position + 16);
+        long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+        long size = Integer.toUnsignedLong(directory.getInt(position + 24));
+        int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+        int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+        int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+        long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+        byte[] nameBytes = new byte[nameLength];
+        ByteBuffer name = directory.duplicate();
+        name.position(position + CENTRAL_DIRECTORY_HEADER_SIZE);
+        name.get(nameBytes);
+        String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+        if (!entryName.endsWith("/")) {
+          entries.put(entryName, new Entry(entryName, method, crc, compressedSize, size, localHeaderOffset));
+        }
+        position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+      }
+      return new ApkIndex(path, hasher.hash().toString(), Collections.unmodifiableMap(entries));
+    }
+    finally {
+      // Release the mappings right away, they would otherwise keep the file locked on Windows until collected.
+      if (tailBuffer != null) {
+        ByteBufferUtil.cleanBuffer(tailBuffer);
+      }
+      if (directoryBuffer != null) {
+        ByteBufferUtil.cleanBuffer(directoryBuffer);
+      }
+    }
+  }
+
+  private static int findEndOfCentralDirectory(@NotNull ByteBuffer tail) {
+    for (int i = tail.limit() - EOCD_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == EOCD_SIGNATURE && Short.toUnsignedInt(tail.getShort(i + 20)) == tail.limit() - EOCD_SIZE - i) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the data of the given entry, as stored in the APK, from a buffer mapping the whole APK.
+   */
+  @NotNull
+  static ByteBuffer getStoredData(@NotNull MappedByteBuffer apk, @NotNull Entry entry) throws IOException {
+    ByteBuffer buffer = apk.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int header = Math.toIntExact(entry.myLocalHeaderOffset);
+    if (header + LOCAL_HEADER_SIZE > buffer.limit() || buffer.getInt(header) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local header for " + entry.getName());
+    }
+    int dataStart = header + LOCAL_HEADER_SIZE +
+                    Short.toUnsignedInt(buffer.getShort(header + 26)) + Short.toUnsignedInt(buffer.getShort(header + 28));
+    int dataEnd = Math.toIntExact(dataStart + entry.getCompressedSize());
+    if (dataEnd > buffer.limit()) {
+      throw new IOException("Truncated data for " + entry.getName());
+    }
+    buffer.position(dataStart);
+    buffer.limit(dataEnd);
+    return buffer.slice();
+  }
+
+  @NotNull
+  public Path getPath() {
+    return myPath;
+  }
+
+  /**
+   * Returns a hash of the central directory of the APK. Two APKs with the same key have entries with the same names, CRCs and sizes.
+   */
+  @NotNull
+  public String getKey() {
+    return myKey;
+  }
+
+  @NotNull
+  public Collection<Entry> getEntries() {
+    return myEntries.values();
+  }
+
+  @Nullable
+  public Entry getEntry(@NotNull String name) {
+    return myEntries.get(name);
+  }
+
+  public static final class Entry {
+    /** Compression method of entries stored without compression. */
+    static final int STORED = 0;
+    /** Compression method of entries compressed with deflate. */
+    static final int DEFLATED = 8;
+
+    @NotNull private final String myName;
+    private final int myMethod;
+    private final int myCrc;
+    private final long myCompressedSize;
+    private final long mySize;
+    private final long myLocalHeaderOffset;
+
+    Entry(@NotNull String name, int method, int crc, long compressedSize, long size, long localHeaderOffset) {
+      myName = name;
+      myMethod = method;
+      myCrc = crc;
+      myCompressedSize = compressedSize;
+      mySize = size;
+      myLocalHeaderOffset = localHeaderOffset;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    public int getMethod() {
+      return myMethod;
+    }
+
+    public int getCrc() {
+      return myCrc;
+    }
+
+    /**
+     * Returns the size of the entry in the APK.
+     */
+    public long getCompressedSize() {
+      return myCompressedSize;
+    }
+
+    /**
+     * Returns the size of the content of the entry.
+     */
+    public long getSize() {
+      return mySize;
+    }
+
+    /**
+     * Returns whether the given entry, of another APK, has the same content as this one.
+     */
+    public boolean hasSameContent(@NotNull Entry other) {
+      return myCrc == other.myCrc && mySize == other.mySize;
+    }
+  }
+}
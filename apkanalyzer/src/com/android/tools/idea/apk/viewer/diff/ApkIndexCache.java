@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * On-disk store of the estimated download sizes of the entries of APKs, keyed by {@link ApkIndex#getKey()}, so that comparing an APK
+ * again, e.g. against the next build, does not inflate its entries again.
+ * <p>
+ * A stored size is only used for an entry with the same name, CRC and size as the one it was computed for. The least recently used
+ * APKs are removed when more than {@code maxApks} are stored.
+ */
+public final class ApkIndexCache {
+  private static final Logger LOG = Logger.getInstance(ApkIndexCache.class);
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String CACHE_DIR = "apk-diff-index";
+  private static final String FILE_EXTENSION = ".bin";
+  private static final int DEFAULT_MAX_APKS = 50;
+
+  private static ApkIndexCache ourInstance;
+
+  @NotNull private final Path myDirectory;
+  private final int myMaxApks;
+
+  public ApkIndexCache(@NotNull Path directory, int maxApks) {
+    myDirectory = directory;
+    myMaxApks = maxApks;
+  }
+
+  @NotNull
+  public static synchronized ApkIndexCache getInstance() {
+    if (ourInstance == null) {
+      ourInstance = new ApkIndexCache(Paths.get(PathManager.getSystemPath()).resolve(CACHE_DIR), DEFAULT_MAX_APKS);
+    }
+    return ourInstance;
+  }
+
+  /**
+   * Returns the download sizes stored for the given APK, by entry name. Sizes of entries whose content changed are not returned.
+   */
+  @NotNull
+  public Map<String, Long> loadDownloadSizes(@NotNull ApkIndex index) {
+    Path file = getFile(index);
+    Map<String, Long> sizes = new HashMap<>();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (input.readInt() != FORMAT_VERSION) {
+        return sizes;
+      }
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = input.readUTF();
+        int crc = input.readInt();
+        long size = input.readLong();
+        long downloadSize = input.readLong();
+        ApkIndex.Entry entry = index.getEntry(name);
+        if (entry != null && entry.getCrc() == crc && entry.getSize() == size) {
+          sizes.put(name, downloadSize);
+        }
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+    catch (NoSuchFileException ignored) {
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to read the cached index of " + index.getPath(), e);
+      sizes.clear();
+    }
+    return sizes;
+  }
+
+  /**
+   * Stores the download sizes of the entries of the given APK, replacing the ones previously stored for it.
+   */
+  public void saveDownloadSizes(@NotNull ApkIndex index, @NotNull Map<String, Long> downloadSizes) {
+    Path file = getFile(index);
+    try {
+      Files.createDirectories(myDirectory);
+      Path tempFile = Files.createTempFile(myDirectory, index.getKey(), ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(downloadSizes.size());
+        for (Map.Entry<String, Long> size : downloadSizes.entrySet()) {
+          ApkIndex.Entry entry = index.getEntry(size.getKey());
+          assert entry != null;
+          output.writeUTF(entry.getName());
+          output.writeInt(entry.getCrc());
+          output.writeLong(entry.getSize());
+          output.writeLong(size.getValue());
+        }
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      prune();
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to cache the index of " + index.getPath(), e);
+    }
+  }
+
+  private void prune() throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.list(myDirectory)) {
+      files = stream.filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION)).collect(Collectors.toList());
+    }
+    if (files.size() <= myMaxApks) {
+      return;
+    }
+    Map<Path, Long> lastUse = new HashMap<>();
+    for (Path path : files) {
+      lastUse.put(path, path.toFile().lastModified());
+    }
+    files.sort(Comparator.comparing(lastUse::get));
+    for (Path path : files.subList(0, files.size() - myMaxApks)) {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  @NotNull
+  private Path getFile(@NotNull ApkIndex index) {
+    return myDirectory.resolve(index.getKey() + FILE_EXTENSION);
+  }
+}
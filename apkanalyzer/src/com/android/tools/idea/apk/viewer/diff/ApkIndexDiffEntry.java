@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A file or folder of the tree created by {@link ApkDiffEngine}. The sizes of a folder are the sums of the sizes of its files.
+ */
+public final class ApkIndexDiffEntry {
+  @NotNull private final String myName;
+  @NotNull private final String myPath;
+  private long myOldSize;
+  private long myNewSize;
+  private long myDownloadSizeDiff;
+
+  ApkIndexDiffEntry(@NotNull String name, @NotNull String path) {
+    myName = name;
+    myPath = path;
+  }
+
+  @Nullable
+  public static ApkIndexDiffEntry fromNode(@Nullable Object node) {
+    if (!(node instanceof DefaultMutableTreeNode)) {
+      return null;
+    }
+    Object userObject = ((DefaultMutableTreeNode)node).getUserObject();
+    return userObject instanceof ApkIndexDiffEntry ? (ApkIndexDiffEntry)userObject : null;
+  }
+
+  void add(long oldSize, long newSize, long downloadSizeDiff) {
+    myOldSize += oldSize;
+    myNewSize += newSize;
+    myDownloadSizeDiff += downloadSizeDiff;
+  }
+
+  @NotNull
+  public String getName() {
+    return myName;
+  }
+
+  /**
+   * Returns the path of the entry in the APKs, "/" for the root.
+   */
+  @NotNull
+  public String getPath() {
+    return myPath;
+  }
+
+  /**
+   * Returns the uncompressed size of the entry in the old APK.
+   */
+  public long getOldSize() {
+    return myOldSize;
+  }
+
+  /**
+   * Returns the uncompressed size of the entry in the new APK.
+   */
+  public long getNewSize() {
+    return myNewSize;
+  }
+
+  public long getSizeDiff() {
+    return myNewSize - myOldSize;
+  }
+
+  /**
+   * Returns the estimated change of the download size of the entry.
+   */
+  public long getDownloadSizeDiff() {
+    return myDownloadSizeDiff;
+  }
+
+  @Override
+  public String toString() {
+    return myName;
+  }
+}
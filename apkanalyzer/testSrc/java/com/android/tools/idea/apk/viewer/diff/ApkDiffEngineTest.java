@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApkDiffEngineTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private ExecutorService myExecutor;
+  private ApkIndexCache myCache;
+
+  @Before
+  public void setUp() throws IOException {
+    myExecutor = Executors.newFixedThreadPool(2);
+    myCache = new ApkIndexCache(myTemporaryFolder.newFolder("cache").toPath(), 10);
+  }
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void indexListsEntries() throws IOException {
+    Path apk = createApk("old.apk", "classes.dex", "dex", "res/layout/main.xml", "<layout/>");
+
+    ApkIndex index = ApkIndex.read(apk);
+
+    assertEquals(2, index.getEntries().size());
+    ApkIndex.Entry entry = index.getEntry("res/layout/main.xml");
+    assertNotNull(entry);
+    assertEquals("<layout/>".length(), entry.getSize());
+    CRC32 crc = new CRC32();
+    crc.update("<layout/>".getBytes(StandardCharsets.UTF_8));
+    assertEquals((int)crc.getValue(), entry.getCrc());
+  }
+
+  @Test
+  public void indexKeyDependsOnContent() throws IOException {
+    Path apk1 = createApk("1.apk", "classes.dex", "dex");
+    Path apk2 = createApk("2.apk", "classes.dex", "dex");
+    Path apk3 = createApk("3.apk", "classes.dex", "dex2");
+
+    assertEquals(ApkIndex.read(apk1).getKey(), ApkIndex.read(apk2).getKey());
+    assertNotEquals(ApkIndex.read(apk1).getKey(), ApkIndex.read(apk3).getKey());
+  }
+
+  @Test
+  public void diffComparesEntries() throws Exception {
+    String unchanged = repeat("unchanged", 100);
+    Path oldApk = createApk("old.apk", "classes.dex", repeat("a", 100), "res/raw/same.txt", unchanged, "res/raw/removed.txt", "x");
+    Path newApk = createApk("new.apk", "classes.dex", repeat("ab", 500), "res/raw/same.txt", unchanged, "res/raw/added.txt", "y");
+
+    DefaultMutableTreeNode root = ApkDiffEngine.createTreeNode(oldApk, newApk, myCache, myExecutor);
+
+    ApkIndexDiffEntry rootEntry = (ApkIndexDiffEntry)root.getUserObject();
+    assertEquals("new.apk", rootEntry.getName());
+    assertEquals(findEntry(root, "/classes.dex").getNewSize() - findEntry(root, "/classes.dex").getOldSize(),
+                 rootEntry.getSizeDiff() - findEntry(root, "/res/").getSizeDiff());
+
+    ApkIndexDiffEntry same = findEntry(root, "/res/raw/same.txt");
+    assertNotNull(same);
+    assertEquals(0, same.getSizeDiff());
+    assertEquals(0, same.getDownloadSizeDiff());
+
+    ApkIndexDiffEntry dex = findEntry(root, "/classes.dex");
+    assertNotNull(dex);
+    assertEquals(repeat("ab", 500).length(), dex.getNewSize());
+    assertTrue(dex.getSizeDiff() > 0);
+    assertTrue(dex.getDownloadSizeDiff() > 0);
+
+    ApkIndexDiffEntry removed = findEntry(root, "/res/raw/removed.txt");
+    assertNotNull(removed);
+    assertEquals(0, removed.getNewSize());
+    assertTrue(removed.getDownloadSizeDiff() < 0);
+
+    ApkIndexDiffEntry raw = findEntry(root, "/res/raw/");
+    assertNotNull(raw);
+    assertEquals(same.getOldSize() + removed.getOldSize() + findEntry(root, "/res/raw/added.txt").getOldSize(), raw.getOldSize());
+    assertNull(findEntry(root, "/res/raw/missing.txt"));
+  }
+
+  @Test
+  public void downloadSizesOfChangedEntriesAreCached() throws Exception {
+    Path oldApk = createApk("old.apk", "classes.dex", repeat("a", 100), "res/raw/same.txt", "same");
+    Path newApk = createApk("new.apk", "classes.dex", repeat("b", 100), "res/raw/same.txt", "same");
+
+    DefaultMutableTreeNode root = ApkDiffEngine.createTreeNode(oldApk, newApk, myCache, myExecutor);
+
+    Map<String, Long> cachedSizes = myCache.loadDownloadSizes(ApkIndex.read(newApk));
+    assertEquals(1, cachedSizes.size());
+    assertTrue(cachedSizes.containsKey("classes.dex"));
+
+    // A second comparison gives the same result from the cached sizes.
+    DefaultMutableTreeNode root2 = ApkDiffEngine.createTreeNode(oldApk, newApk, myCache, myExecutor);
+    assertEquals(findEntry(root, "/classes.dex").getDownloadSizeDiff(), findEntry(root2, "/classes.dex").getDownloadSizeDiff());
+  }
+
+  @Test
+  public void downloadSizeOfStoredAndDeflatedEntriesAreEqual() throws Exception {
+    byte[] content = repeat("content", 1000).getBytes(StandardCharsets.UTF_8);
+    Path apk = createApk("old.apk", "deflated.txt", new String(content, StandardCharsets.UTF_8));
+    ApkIndex index = ApkIndex.read(apk);
+    ApkIndex.Entry entry = index.getEntry("deflated.txt");
+    assertNotNull(entry);
+
+    long stored = ApkDiffEngine.estimateDownloadSize(ByteBuffer.wrap(content), ApkIndex.Entry.STORED);
+    long fromDeflated;
+    try (FileChannel channel = FileChannel.open(apk)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      fromDeflated = ApkDiffEngine.estimateDownloadSize(ApkIndex.getStoredData(buffer, entry), entry.getMethod());
+    }
+    assertEquals(stored, fromDeflated);
+    assertTrue(stored < content.length);
+  }
+
+  @NotNull
+  private Path createApk(@NotNull String name, @NotNull String... namesAndContents) throws IOException {
+    Path apk = myTemporaryFolder.getRoot().toPath().resolve(name);
+    try (OutputStream stream = Files.newOutputStream(apk); ZipOutputStream zip = new ZipOutputStream(stream)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+        zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return apk;
+  }
+
+  @NotNull
+  private static String repeat(@NotNull String text, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(text).append(i);
+    }
+    return builder.toString();
+  }
+
+  @Nullable
+  private static ApkIndexDiffEntry findEntry(@NotNull DefaultMutableTreeNode node, @NotNull String path) {
+    for (int i = 0; i < node.getChildCount(); i++) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode)node.getChildAt(i);
+      ApkIndexDiffEntry entry = (ApkIndexDiffEntry)child.getUserObject();
+      if (entry.getPath().equals(path)) {
+        return entry;
+      }
+      if (entry.getPath().endsWith("/") && path.startsWith(entry.getPath())) {
+        return findEntry(child, path);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.tools.idea.rendering.RenderLogger
+import com.android.tools.idea.rendering.parsers.LayoutPsiPullParser
+import com.intellij.psi.xml.XmlFile
+import org.jetbrains.android.AndroidTestCase
+import org.xmlpull.v1.XmlPullParser
+
+private const val ROWS = 20
+private const val COLUMNS = 10
+
+/**
+ * Measures the [LayoutPsiPullParser], which snapshots the PSI of a layout for every render of the layout editor.
+ */
+class LayoutPsiPullParserMicrobenchmark : AndroidTestCase() {
+  private val benchmark = Microbenchmark("Layout PSI Pull Parser",
+                                         "Average time to parse a layout of ${ROWS * COLUMNS} views (ns).")
+  private lateinit var layoutFile: XmlFile
+
+  override fun setUp() {
+    super.setUp()
+    val rows = (0 until ROWS).joinToString("\n") { row ->
+      val columns = (0 until COLUMNS).joinToString("\n") { column ->
+        """
+        <TextView
+            android:id="@+id/text_${row}_$column"
+            android:layout_width="0dp"
+            android:layout_height="wrap_content"
+            android:layout_weight="1"
+            android:padding="4dp"
+            android:text="Item $row.$column"
+            android:textColor="#FF000000"
+            tools:text="Sample $row.$column" />"""
+      }
+      """
+      <LinearLayout
+          android:layout_width="match_parent"
+          android:layout_height="wrap_content"
+          android:orientation="horizontal">$columns
+      </LinearLayout>"""
+    }
+    val layout = """<?xml version="1.0" encoding="utf-8"?>
+      <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android"
+          xmlns:tools="http://schemas.android.com/tools"
+          android:layout_width="match_parent"
+          android:layout_height="match_parent"
+          android:orientation="vertical">$rows
+      </LinearLayout>"""
+    layoutFile = myFixture.addFileToProject("res/layout/benchmark.xml", layout) as XmlFile
+  }
+
+  fun testCreate() {
+    val logger = RenderLogger("benchmark", myModule)
+    benchmark.measure("psi_pull_parser_create") { LayoutPsiPullParser.create(layoutFile, logger) }
+  }
+
+  fun testParse() {
+    val logger = RenderLogger("benchmark", myModule)
+    benchmark.measure("psi_pull_parser_parse") {
+      val parser = LayoutPsiPullParser.create(layoutFile, logger)
+      var attributes = 0
+      while (parser.next() != XmlPullParser.END_DOCUMENT) {
+        if (parser.eventType == XmlPullParser.START_TAG) {
+          for (i in 0 until parser.attributeCount) {
+            if (parser.getAttributeValue(i) != null) {
+              attributes++
+            }
+          }
+        }
+      }
+      attributes
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.tools.adtui.chart.linechart.DefaultLineChartReducer
+import com.android.tools.adtui.chart.linechart.LineConfig
+import com.android.tools.adtui.model.SeriesData
+import org.junit.Test
+import java.awt.Color
+import java.awt.geom.Path2D
+import java.util.Random
+
+private const val POINT_COUNT = 20_000
+private const val CHART_WIDTH = 1000f
+private const val CHART_HEIGHT = 200f
+
+/**
+ * Measures the [DefaultLineChartReducer], which runs for every line of the profiler charts on each frame.
+ */
+class LineChartReducerMicrobenchmark {
+  private val benchmark = Microbenchmark("Line Chart Reducer", "Average time to reduce a line of $POINT_COUNT points (ns).")
+  private val reducer = DefaultLineChartReducer()
+
+  /** A random walk that stays on the same value for a few points at a time, like most of the profiler data. */
+  private val data: List<SeriesData<Long>> = Random(42).let { random ->
+    var value = 100L
+    List(POINT_COUNT) { i ->
+      if (random.nextInt(4) == 0) {
+        value = (value + random.nextInt(21) - 10).coerceIn(0, 200)
+      }
+      SeriesData(i.toLong(), value)
+    }
+  }
+
+  @Test
+  fun reduceData() {
+    val config = LineConfig(Color.RED)
+    benchmark.measure("reduce_data") { reducer.reduceData(data, config) }
+  }
+
+  @Test
+  fun reduceDataStepped() {
+    val config = LineConfig(Color.RED).setStepped(true)
+    benchmark.measure("reduce_data_stepped") { reducer.reduceData(data, config) }
+  }
+
+  @Test
+  fun reducePath() {
+    // As in LineChart, the points are in screen coordinates, many of them falling in the same pixel.
+    val path = Path2D.Float()
+    data.forEachIndexed { i, point ->
+      val x = i * CHART_WIDTH / POINT_COUNT
+      val y = CHART_HEIGHT - point.value
+      if (i == 0) path.moveTo(x, y) else path.lineTo(x, y)
+    }
+    val config = LineConfig(Color.RED)
+    benchmark.measure("reduce_path") { reducer.reducePath(path, config) }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import java.io.File
+import java.time.Instant
+import java.util.Properties
+import java.util.concurrent.TimeUnit
+import kotlin.math.roundToLong
+import kotlin.math.sqrt
+
+const val MICROBENCHMARK_PERFGATE_PROJECT_NAME = "Android Studio Design Tools Microbenchmarks"
+
+/** System property with the path of a file the results are written to, for use as the baseline of a later run. */
+private const val RESULTS_FILE_PROPERTY = "microbenchmark.results"
+
+/** System property with the path of a results file written by a previous run, which the results are compared to. */
+private const val BASELINE_FILE_PROPERTY = "microbenchmark.baseline"
+
+/**
+ * Sink for the results of the benchmarked operations, so that the JIT can not eliminate them as dead code.
+ */
+object Blackhole {
+  @Volatile
+  private var sink: Any? = null
+
+  fun consume(value: Any?) {
+    sink = value
+  }
+}
+
+/**
+ * How a [Microbenchmark] measures an operation. Like with JMH, the operation is first called in a loop for [warmupIterations]
+ * iterations of [iterationTimeMs] that are not measured, so that the JIT compiles it, and then for [measurementIterations] iterations
+ * that each report the average time of one call.
+ */
+data class MicrobenchmarkOptions(
+  val warmupIterations: Int = 5,
+  val measurementIterations: Int = 10,
+  val iterationTimeMs: Long = 500
+)
+
+/**
+ * Average time of one call of an operation in each measured iteration, in nanoseconds.
+ */
+class MicrobenchmarkResult(val name: String, val samplesNs: List<Double>) {
+  val meanNs: Double = samplesNs.average()
+  val medianNs: Double = samplesNs.sorted().let { (it[(it.size - 1) / 2] + it[it.size / 2]) / 2 }
+  val stdDevNs: Double = sqrt(samplesNs.sumByDouble { (it - meanNs) * (it - meanNs) } / (samplesNs.size - 1).coerceAtLeast(1))
+
+  override fun toString() = "%-50s %12.1f ± %8.1f ns/op (median %.1f, %d iterations)".format(name, meanNs, stdDevNs, medianNs,
+                                                                                           samplesNs.size)
+}
+
+/**
+ * Measures operations that run per frame or per keystroke, and records their average time per call in perfgate where each metric is
+ * compared with its previous runs.
+ *
+ * The results can also be compared locally: running with `-Dmicrobenchmark.results=<file>` writes them to the given file, and a
+ * later run with `-Dmicrobenchmark.baseline=<file>` prints the change of each metric from that file.
+ */
+class Microbenchmark(private val name: String, description: String, private val options: MicrobenchmarkOptions = MicrobenchmarkOptions()) {
+  private val benchmark = Benchmark.Builder(name)
+    .setDescription(description)
+    .setProject(MICROBENCHMARK_PERFGATE_PROJECT_NAME)
+    .build()
+
+  /**
+   * Measures [operation] and records the result in the [metricName] metric. [setUp] is called before each iteration, outside of the
+   * measured time. The value returned by [operation] is consumed by the [Blackhole].
+   */
+  fun measure(metricName: String, setUp: () -> Unit = {}, operation: () -> Any?): MicrobenchmarkResult {
+    System.gc()
+    repeat(options.warmupIterations) {
+      setUp()
+      runIteration(operation)
+    }
+    val samples = ArrayList<Double>(options.measurementIterations)
+    repeat(options.measurementIterations) {
+      setUp()
+      samples.add(runIteration(operation))
+    }
+
+    val result = MicrobenchmarkResult(metricName, samples)
+    println(result)
+    record(result)
+    return result
+  }
+
+  /**
+   * Calls [operation] until the iteration time is over and returns the average time of one call in nanoseconds.
+   */
+  private fun runIteration(operation: () -> Any?): Double {
+    val iterationTimeNs = TimeUnit.MILLISECONDS.toNanos(options.iterationTimeMs)
+    var calls = 0L
+    val start = System.nanoTime()
+    var elapsed: Long
+    do {
+      Blackhole.consume(operation())
+      calls++
+      elapsed = System.nanoTime() - start
+    }
+    while (elapsed < iterationTimeNs)
+    return elapsed.toDouble() / calls
+  }
+
+  private fun record(result: MicrobenchmarkResult) {
+    val timestamp = Instant.now().toEpochMilli()
+    Metric(result.name).apply {
+      addSamples(benchmark, *result.samplesNs.map { Metric.MetricSample(timestamp, it.roundToLong()) }.toTypedArray())
+      setAnalyzers(benchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                      .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                      .build()))
+      commit()
+    }
+
+    val key = "$name.${result.name}"
+    System.getProperty(BASELINE_FILE_PROPERTY)?.let { File(it) }?.takeIf { it.isFile }?.let { file ->
+      val baseline = loadProperties(file).getProperty(key)?.toDoubleOrNull() ?: return@let
+      println("%-50s %+11.1f%% from baseline (%.1f ns/op)".format(result.name, (result.meanNs - baseline) * 100 / baseline, baseline))
+    }
+    System.getProperty(RESULTS_FILE_PROPERTY)?.let { File(it) }?.let { file ->
+      val results = if (file.isFile) loadProperties(file) else Properties()
+      results.setProperty(key, result.meanNs.toString())
+      file.outputStream().use { results.store(it, null) }
+    }
+  }
+
+  private fun loadProperties(file: File) = Properties().apply { file.inputStream().use { load(it) } }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.testutils.JarTestSuiteRunner
+import com.android.tools.tests.IdeaTestSuiteBase
+import org.junit.runner.RunWith
+
+@RunWith(JarTestSuiteRunner::class)
+@JarTestSuiteRunner.ExcludeClasses(MicrobenchmarkTestSuite::class)  // a suite must not contain itself
+class MicrobenchmarkTestSuite : IdeaTestSuiteBase() {
+  companion object {
+    init {
+      symlinkToIdeaHome(
+        "prebuilts/studio/layoutlib",
+        "prebuilts/studio/jdk",
+        "prebuilts/studio/sdk",
+        "tools/adt/idea/android/annotations",
+        "tools/adt/idea/android/testData",
+        "tools/adt/idea/designer/testData",
+        "tools/idea/java"
+      )
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.resources.ResourceType
+import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.res.ResourceRepositoryManager
+import org.jetbrains.android.AndroidTestCase
+
+private const val STRING_COUNT = 1000
+private const val ALIAS_COUNT = 1000
+
+/**
+ * Measures the lookup of resources in the app resources, a [com.android.tools.idea.res.MultiResourceRepository], and their resolution
+ * by the resource resolver of a configuration, which happen for every attribute of every view rendered or shown in the editors.
+ */
+class ResourceResolutionMicrobenchmark : AndroidTestCase() {
+  private val benchmark = Microbenchmark("Resource Resolution",
+                                         "Average time to look up or resolve ${STRING_COUNT + ALIAS_COUNT} resources (ns).")
+
+  override fun setUp() {
+    super.setUp()
+    val strings = (0 until STRING_COUNT).joinToString("\n") { """  <string name="string_$it">String $it</string>""" }
+    // Each alias points to a string through another alias, so that resolving it follows a chain of references.
+    val aliases = (0 until ALIAS_COUNT).joinToString("\n") {
+      val target = if (it % 2 == 0) "string_$it" else "alias_${it - 1}"
+      """  <string name="alias_$it">@string/$target</string>"""
+    }
+    myFixture.addFileToProject("res/values/strings.xml", "<resources>\n$strings\n$aliases\n</resources>")
+    myFixture.addFileToProject("res/values-fr/strings.xml", "<resources>\n$strings\n</resources>")
+  }
+
+  fun testAppResourcesLookup() {
+    val repository = ResourceRepositoryManager.getAppResources(myFacet)
+    val namespace = ResourceRepositoryManager.getInstance(myFacet).namespace
+    val names = (0 until STRING_COUNT).map { "string_$it" } + (0 until ALIAS_COUNT).map { "alias_$it" }
+    benchmark.measure("app_resources_lookup") {
+      var count = 0
+      for (name in names) {
+        count += repository.getResources(namespace, ResourceType.STRING, name).size
+      }
+      count
+    }
+  }
+
+  fun testResolveReferences() {
+    val layout = myFixture.addFileToProject("res/layout/layout.xml", "<FrameLayout/>").virtualFile
+    val resolver = ConfigurationManager.getOrCreateInstance(myFacet).getConfiguration(layout).resourceResolver
+    val references = (0 until STRING_COUNT).map { "@string/string_$it" } + (0 until ALIAS_COUNT).map { "@string/alias_$it" }
+    benchmark.measure("resolve_references") {
+      var resolved = 0
+      for (reference in references) {
+        if (resolver.resolveResValue(resolver.findResValue(reference, false))?.value != null) {
+          resolved++
+        }
+      }
+      resolved
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.microbenchmarks
+
+import com.android.SdkConstants.CONSTRAINT_LAYOUT
+import com.android.SdkConstants.TEXT_VIEW
+import com.android.tools.idea.common.fixtures.ModelBuilder
+import com.android.tools.idea.common.scene.draw.DisplayList
+import com.android.tools.idea.uibuilder.scene.SceneTest
+import com.android.tools.idea.uibuilder.scout.Scout
+
+private const val ROWS = 10
+private const val COLUMNS = 5
+
+/**
+ * Measures the work done by the layout editor for each frame and edit of a constraint layout: updating the scene from the model, laying
+ * it out and building its [DisplayList], and inferring constraints.
+ */
+class SceneMicrobenchmark : SceneTest() {
+  private val benchmark = Microbenchmark("Scene", "Average time of the scene operations on a layout of ${ROWS * COLUMNS} views (ns).")
+
+  override fun createModel(): ModelBuilder {
+    // A grid of views that do not overlap, so that constraints can be inferred for all of them.
+    val children = (0 until ROWS * COLUMNS).map { i ->
+      val x = 20 + (i % COLUMNS) * 200
+      val y = 20 + (i / COLUMNS) * 100
+      component(TEXT_VIEW)
+        .id("@+id/text$i")
+        .withBounds(x * 2, y * 2, 200, 80)
+        .width("100dp")
+        .height("40dp")
+        .withAttribute("tools:layout_editor_absoluteX", "${x}dp")
+        .withAttribute("tools:layout_editor_absoluteY", "${y}dp")
+    }
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT.defaultName())
+                   .id("@+id/root")
+                   .withBounds(0, 0, 2200, 2200)
+                   .width("1100dp")
+                   .height("1100dp")
+                   .children(*children.toTypedArray()))
+  }
+
+  fun testUpdateScene() {
+    benchmark.measure("scene_update") { mySceneManager.update() }
+  }
+
+  fun testBuildDisplayList() {
+    benchmark.measure("scene_display_list") {
+      val displayList = DisplayList()
+      myScene.buildDisplayList(displayList, 0)
+      displayList
+    }
+  }
+
+  fun testInferConstraints() {
+    // The inferred constraints are only set in attribute transactions that are not committed, so each call starts from the same XML.
+    val root = myModel.components[0]
+    benchmark.measure("scout_infer_constraints") { Scout.inferConstraints(root) }
+  }
+}
@@ -18,12 +18,14 @@ package com.android.tools.idea.common.model;
 import android.view.View;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.tools.idea.rendering.parsers.AttributeSnapshot;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.uibuilder.handlers.constraint.ComponentModification;
 import com.android.tools.idea.uibuilder.model.LayoutParamsManager;
 import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -105,7 +107,7 @@ public class AttributesTransaction implements NlAttributesHolder {
   /**
    * Triggers a re-layout of the given {@link View}. This might happen asynchronously.
    */
-  private static void triggerViewRelayout(@NotNull View view) {
+  private static void triggerViewRelayout(@NotNull View view, @NotNull Module module) {
     try {
       // We run the re-layout as a render action to avoid a render happening at the same time as the re-layout since that
       // might cause problems.
@@ -113,7 +115,7 @@ public class AttributesTransaction implements NlAttributesHolder {
       RenderService.runAsyncRenderAction(() -> {
         view.setLayoutParams(view.getLayoutParams());
         view.forceLayout();
-      });
+      }, module, RenderExecutor.Priority.HIGH);
     }
     catch (Exception ignore) {
     }
@@ -206,7 +208,7 @@ public class AttributesTransaction implements NlAttributesHolder {
       applyAllPendingAttributesToView(viewInfo);
       if (hasPendingRelayout) {
         hasLayoutAttributeChanged = true;
-        triggerViewRelayout((View)viewInfo.getViewObject());
+        triggerViewRelayout((View)viewInfo.getViewObject(), myModel.getModule());
       }
     }
   }
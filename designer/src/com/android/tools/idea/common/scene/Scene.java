@@ -104,6 +104,7 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  private long myComponentsVersion = 1;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -1073,6 +1074,22 @@ public class Scene implements SelectionListener, Disposable {
     return myDisplayListVersion;
   }
 
+  /**
+   * Returns the version of the components of the scene, which is incremented by {@link #componentsChanged()}. Draw commands that only
+   * depend on the draw state, bounds and version of a component can be reused while they do not change.
+   */
+  public long getComponentsVersion() {
+    return myComponentsVersion;
+  }
+
+  /**
+   * Marks the components as changed, e.g. their attributes or their render results, and the display list as dirty.
+   */
+  public void componentsChanged() {
+    myComponentsVersion++;
+    needsRebuildList();
+  }
+
   // TODO: reduce visibility? Probably the modified SceneComponents should do this rather than
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
@@ -144,7 +144,7 @@ abstract public class SceneManager implements Disposable {
     oldComponents.removeIf(component -> component instanceof TemporarySceneComponent);
     oldComponents.forEach(scene::removeComponent);
 
-    scene.needsRebuildList();
+    scene.componentsChanged();
   }
 
   @NotNull
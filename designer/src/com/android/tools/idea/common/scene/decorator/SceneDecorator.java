@@ -15,14 +15,19 @@
  */
 package com.android.tools.idea.common.scene.decorator;
 
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.common.scene.TemporarySceneComponent;
+import com.android.tools.idea.common.scene.draw.ColorSet;
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.scene.draw.DrawComponentBackground;
 import com.android.tools.idea.common.scene.draw.DrawComponentFrame;
 import com.android.tools.idea.uibuilder.scene.decorator.DecoratorUtilities;
 import java.awt.Rectangle;
+import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -31,6 +36,12 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * The generic Scene Decorator
  */
 public class SceneDecorator {
+  /**
+   * Key returned by {@link #getContentCacheKey} by the decorators whose commands do not depend on anything else than the component
+   * bounds, state and model, and the scene context.
+   */
+  protected static final Object NO_CONTENT_INPUTS = new Object();
+
   private SceneFrameFactory myFrameFactory = (list, component, sceneContext) -> {
     Rectangle rect = new Rectangle();
     component.fillRect(rect); // get the rectangle from the component
@@ -61,11 +72,58 @@ public class SceneDecorator {
       buildListChildren(list, time, sceneContext, component);
       return;
     }
-    buildListComponent(list, time, sceneContext, component);
+    buildListComponentCached(list, time, sceneContext, component);
     buildListTargets(list, time, sceneContext, component);
     buildListChildren(list, time, sceneContext, component);
   }
 
+  /**
+   * Adds the commands of {@link #buildListComponent}, reusing the ones built for the previous display list if the component did not
+   * change. Unlike its targets and children, the component itself is usually unchanged when the list is rebuilt, e.g. on hover.
+   */
+  private void buildListComponentCached(@NotNull DisplayList list,
+                                        long time,
+                                        @NotNull SceneContext sceneContext,
+                                        @NotNull SceneComponent component) {
+    Object key = getCacheKey(sceneContext, component);
+    if (key == null) {
+      buildListComponent(list, time, sceneContext, component);
+      return;
+    }
+    if (!list.addCachedCommands(component, key)) {
+      int start = list.getCommands().size();
+      buildListComponent(list, time, sceneContext, component);
+      list.cacheCommands(component, key, start);
+    }
+  }
+
+  /**
+   * Returns the state the commands built by {@link #buildListComponent} for the given component depend on, or null if they can not be
+   * reused, e.g. while the component is animated or if the decorator does not know its inputs.
+   */
+  @Nullable
+  private Object getCacheKey(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    if (component instanceof TemporarySceneComponent || component.isAnimating() || component.isDragging()) {
+      return null;
+    }
+    Object contentKey = getContentCacheKey(sceneContext, component);
+    return contentKey != null ? new ComponentCacheKey(this, sceneContext, component, contentKey) : null;
+  }
+
+  /**
+   * Returns the inputs of the commands this decorator builds in {@link #buildListComponent} for the given component, other than the
+   * component bounds, draw state and selection, the modification count of the model and the scale and colors of the scene context.
+   * Returns null if they are not known, in which case the commands are built again every time. Decorators whose commands depend on
+   * anything else, like resolved resources or a rendered thumbnail, must override this method to return it, or to return null.
+   * <p>
+   * The base decorator does not draw any content and returns {@link #NO_CONTENT_INPUTS}. Subclasses return null unless they override
+   * this method.
+   */
+  @Nullable
+  protected Object getContentCacheKey(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    return getClass() == SceneDecorator.class ? NO_CONTENT_INPUTS : null;
+  }
+
   public void buildListComponent(@NotNull DisplayList list,
                                  long time,
                                  @NotNull SceneContext sceneContext,
@@ -144,4 +202,71 @@ public class SceneDecorator {
                                   @NotNull SceneComponent component) {
     component.getTargets().forEach(target -> target.render(list, sceneContext));
   }
+
+  private static final class ComponentCacheKey {
+    @NotNull private final SceneDecorator myDecorator;
+    @NotNull private final SceneFrameFactory myFrameFactory;
+    @NotNull private final ColorSet myColorSet;
+    private final long myComponentsVersion;
+    private final long myModelVersion;
+    private final double myScale;
+    @SwingCoordinate private final int myOriginX;
+    @SwingCoordinate private final int myOriginY;
+    @NotNull private final Rectangle myBounds = new Rectangle();
+    @NotNull private final SceneComponent.DrawState myDrawState;
+    private final boolean myIsSelected;
+    private final boolean myIsToolLocked;
+    @Nullable private final Integer myTryingToConnectState;
+    @NotNull private final Object myContentKey;
+
+    ComponentCacheKey(@NotNull SceneDecorator decorator,
+                      @NotNull SceneContext sceneContext,
+                      @NotNull SceneComponent component,
+                      @NotNull Object contentKey) {
+      myDecorator = decorator;
+      myFrameFactory = decorator.myFrameFactory;
+      myColorSet = sceneContext.getColorSet();
+      myComponentsVersion = component.getScene().getComponentsVersion();
+      myModelVersion = component.getNlComponent().getModel().getModificationCount();
+      myScale = sceneContext.getScale();
+      myOriginX = sceneContext.getSwingXDip(0);
+      myOriginY = sceneContext.getSwingYDip(0);
+      component.fillRect(myBounds);
+      myDrawState = component.getDrawState();
+      myIsSelected = component.isSelected();
+      myIsToolLocked = component.isToolLocked();
+      myTryingToConnectState = DecoratorUtilities.getTryingToConnectState(component.getAuthoritativeNlComponent());
+      myContentKey = contentKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ComponentCacheKey)) {
+        return false;
+      }
+      ComponentCacheKey other = (ComponentCacheKey)o;
+      return myDecorator == other.myDecorator &&
+             myFrameFactory == other.myFrameFactory &&
+             myColorSet == other.myColorSet &&
+             myComponentsVersion == other.myComponentsVersion &&
+             myModelVersion == other.myModelVersion &&
+             myScale == other.myScale &&
+             myOriginX == other.myOriginX &&
+             myOriginY == other.myOriginY &&
+             myBounds.equals(other.myBounds) &&
+             myDrawState == other.myDrawState &&
+             myIsSelected == other.myIsSelected &&
+             myIsToolLocked == other.myIsToolLocked &&
+             Objects.equals(myTryingToConnectState, other.myTryingToConnectState) &&
+             myContentKey.equals(other.myContentKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myComponentsVersion, myModelVersion, myBounds, myDrawState, myIsSelected);
+    }
+  }
 }
@@ -34,8 +34,11 @@ import java.awt.*;
 import java.awt.geom.GeneralPath;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.function.Function;
 
 
@@ -48,10 +51,33 @@ public class DisplayList {
   private final static boolean DEBUG = false;
   private ArrayList<DrawCommand> myCommands = new ArrayList<>();
   private Stack<UNClip> myUnClipStack = new Stack<>();
+  /** The commands sorted for painting, kept until the list changes. */
+  @Nullable private CommandSet mySortedCommands;
+
+  /** Commands cached with {@link #cacheCommands} since the list was last cleared, by owner. */
+  private Map<Object, CachedCommands> myCachedCommands = new IdentityHashMap<>();
+  /** Commands cached before the list was last cleared, which can be reused with {@link #addCachedCommands}. */
+  private Map<Object, CachedCommands> myPreviousCachedCommands = new IdentityHashMap<>();
+
+  private static final class CachedCommands {
+    @NotNull final Object key;
+    @NotNull final DrawCommand[] commands;
+
+    CachedCommands(@NotNull Object key, @NotNull DrawCommand[] commands) {
+      this.key = key;
+      this.commands = commands;
+    }
+  }
 
   public void clear() {
     myCommands.clear();
     myUnClipStack.clear();
+    mySortedCommands = null;
+
+    Map<Object, CachedCommands> previous = myPreviousCachedCommands;
+    previous.clear();
+    myPreviousCachedCommands = myCachedCommands;
+    myCachedCommands = previous;
   }
 
   public ArrayList<DrawCommand> getCommands() {
@@ -344,6 +370,33 @@ public class DisplayList {
 
   public void add(DrawCommand cmd) {
     myCommands.add(cmd);
+    mySortedCommands = null;
+  }
+
+  /**
+   * Adds the commands cached for the given owner by {@link #cacheCommands} in the previous build of this list, if they were cached with
+   * a key equal to the given one. Returns false, without adding anything, if there are no such commands.
+   * <p>
+   * This allows building the list again without building the commands of the parts of the scene that did not change.
+   */
+  public boolean addCachedCommands(@NotNull Object owner, @NotNull Object key) {
+    CachedCommands cached = myPreviousCachedCommands.get(owner);
+    if (cached == null || !cached.key.equals(key)) {
+      return false;
+    }
+    Collections.addAll(myCommands, cached.commands);
+    mySortedCommands = null;
+    myCachedCommands.put(owner, cached);
+    return true;
+  }
+
+  /**
+   * Caches the commands added since the given index for the given owner, so that the next build of this list can reuse them with
+   * {@link #addCachedCommands} when the owner still has an equal key. The commands must not depend on anything else than the key.
+   */
+  public void cacheCommands(@NotNull Object owner, @NotNull Object key, int fromIndex) {
+    DrawCommand[] commands = myCommands.subList(fromIndex, myCommands.size()).toArray(new DrawCommand[0]);
+    myCachedCommands.put(owner, new CachedCommands(key, commands));
   }
 
   public void pushClip(@NotNull SceneContext context, @Nullable @AndroidDpCoordinate Rectangle r) {
@@ -356,7 +409,7 @@ public class DisplayList {
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
     Clip c = new Clip(l, t, w, h);
-    myCommands.add(c);
+    add(c);
     myUnClipStack.add(new UNClip(c));
   }
 
@@ -369,7 +422,7 @@ public class DisplayList {
       return false;
     }
     if (!(c instanceof EmptyUNClip)) {
-      myCommands.add(c);
+      add(c);
     }
     return true;
   }
@@ -379,7 +432,7 @@ public class DisplayList {
     int t = context.getSwingYDip(r.y);
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
-    myCommands.add(new Rect(l, t, w, h, color));
+    add(new Rect(l, t, w, h, color));
   }
 
   public void addRect(SceneContext context,
@@ -579,9 +632,13 @@ public class DisplayList {
       System.out.println("<");
     }
     Graphics2D g = (Graphics2D)g2.create();
-    DrawCommand[] array = myCommands.toArray(new DrawCommand[0]);
-    CommandSet set = new CommandSet(array, 0, array.length - 1);
-    set.sort();
+    CommandSet set = mySortedCommands;
+    if (set == null) {
+      DrawCommand[] array = myCommands.toArray(new DrawCommand[0]);
+      set = new CommandSet(array, 0, array.length - 1);
+      set.sort();
+      mySortedCommands = set;
+    }
     if (DEBUG) {
       set.print(">");
       System.out.println("-end-");
@@ -32,6 +32,7 @@ import com.android.tools.idea.uibuilder.scene.decorator.DecoratorUtilities;
 import java.awt.Rectangle;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This defines the decorator
@@ -173,6 +174,13 @@ public class ConstraintLayoutDecorator extends SceneDecorator {
     child.myCache.put(dirType, ConnectionType.SAME);
   }
 
+  @Nullable
+  @Override
+  protected Object getContentCacheKey(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    // The layout itself is drawn with the default background and frame, its constraints are drawn by the children.
+    return NO_CONTENT_INPUTS;
+  }
+
   /**
    * This is responsible for setting the clip and building the list for this component's children
    *
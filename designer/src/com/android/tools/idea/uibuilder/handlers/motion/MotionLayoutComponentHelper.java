@@ -24,15 +24,18 @@ import com.android.resources.ResourceType;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.res.ResourceIdManager;
 import com.android.tools.idea.uibuilder.handlers.constraint.ComponentModification;
 import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
 import com.android.utils.Pair;
+import com.intellij.openapi.module.Module;
 import com.intellij.util.ArrayUtil;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
 import java.util.WeakHashMap;
 import org.jetbrains.annotations.NotNull;
 
@@ -73,6 +76,8 @@ public final class MotionLayoutComponentHelper {
 
   private final Object myDesignTool;
   private final NlComponent myMotionLayoutComponent;
+  /** Module of the MotionLayout, used to run the design tool calls on the render thread that inflated its views. */
+  private final Module myModule;
   private final boolean DEBUG = false;
   private static boolean mShowPaths = true;
 
@@ -101,20 +106,23 @@ public final class MotionLayoutComponentHelper {
     if (info == null) {
       myDesignTool = null;
       myMotionLayoutComponent = null;
+      myModule = null;
       return;
     }
     Object instance = info.getViewObject();
     if (instance == null) {
       myDesignTool = null;
       myMotionLayoutComponent = null;
+      myModule = null;
       return;
     }
+    myModule = component.getModel().getModule();
     Object designInstance = null;
     try {
       Method accessor = instance.getClass().getMethod("getDesignTool");
       if (accessor != null) {
         try {
-          designInstance = RenderService.runRenderAction(() -> accessor.invoke(instance));
+          designInstance = runRenderAction(() -> accessor.invoke(instance));
         }
         catch (Exception e) {
           if (DEBUG) {
@@ -154,7 +162,7 @@ public final class MotionLayoutComponentHelper {
     if (myGetAnimationPathMethod != null) {
       try {
 
-        return (Integer)RenderService.runRenderAction(() -> {
+        return (Integer)runRenderAction(() -> {
           try {
             ViewInfo info = NlComponentHelperKt.getViewInfo(nlComponent);
             if (info == null) {
@@ -204,7 +212,7 @@ public final class MotionLayoutComponentHelper {
 
     if (myGetKeyframeAtLocationMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return runRenderAction(() -> {
           try {
             return myGetKeyframeAtLocationMethod.invoke(myDesignTool, view, x, y);
           }
@@ -227,6 +235,20 @@ public final class MotionLayoutComponentHelper {
     return null;
   }
 
+  /**
+   * Runs the given action on the render thread of the MotionLayout's module.
+   */
+  private <T> T runRenderAction(@NotNull Callable<T> action) throws Exception {
+    return RenderService.runRenderAction(action, myModule, RenderExecutor.Priority.HIGH);
+  }
+
+  /**
+   * Runs the given action on the render thread of the MotionLayout's module.
+   */
+  private void runRenderAction(@NotNull Runnable action) throws Exception {
+    RenderService.runRenderAction(action, myModule, RenderExecutor.Priority.HIGH);
+  }
+
   /**
    * Utility class for invoking methods
    * @param <T>
@@ -260,7 +282,7 @@ public final class MotionLayoutComponentHelper {
     public T invoke(Object... parameters) {
       if (myMethod != null) {
         try {
-          return RenderService.runRenderAction(() -> {
+          return runRenderAction(() -> {
             try {
               T result = (T) myMethod.invoke(myDesignTool, parameters);
               return result;
@@ -301,7 +323,7 @@ public final class MotionLayoutComponentHelper {
 
     if (myGetPositionKeyframeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return runRenderAction(() -> {
           try {
             return myGetPositionKeyframeMethod.invoke(myDesignTool, keyframe, view, x, y, attributes, values);
           }
@@ -342,7 +364,7 @@ public final class MotionLayoutComponentHelper {
 
     if (myGetKeyframeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return runRenderAction(() -> {
           try {
             return myGetKeyframeMethod.invoke(myDesignTool, type, target, position);
           }
@@ -383,7 +405,7 @@ public final class MotionLayoutComponentHelper {
 
     if (mySetKeyframeMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             mySetKeyframeMethod.invoke(myDesignTool, keyframe, tag, value);
           }
@@ -420,7 +442,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (mySetAttributesMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             mySetAttributesMethod.invoke(myDesignTool, dpiValue, constraintSetId, view, attributes);
           }
@@ -458,7 +480,7 @@ public final class MotionLayoutComponentHelper {
     final boolean[] didUpdate = {false};
     if (mySetKeyframePositionMethod != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             didUpdate[0] = (boolean)mySetKeyframePositionMethod.invoke(myDesignTool, view, Integer.valueOf(position),
                                                                        Integer.valueOf(type), Float.valueOf(x), Float.valueOf(y));
@@ -500,7 +522,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallSetTransitionPosition != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             myCallSetTransitionPosition.invoke(myDesignTool, Float.valueOf(position));
           }
@@ -557,7 +579,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallSetTransition != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             myCallSetTransition.invoke(myDesignTool, start, end);
           }
@@ -600,7 +622,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallSetState != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             myCallSetState.invoke(myDesignTool, state);
           }
@@ -644,7 +666,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallDisableAutoTransition != null) {
       try {
-        RenderService.runRenderAction(() -> {
+        runRenderAction(() -> {
           try {
             myCallDisableAutoTransition.invoke(myDesignTool, disable);
           }
@@ -683,7 +705,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallGetState != null) {
       try {
-        state = RenderService.runRenderAction(() -> {
+        state = runRenderAction(() -> {
           try {
             return (String)myCallGetState.invoke(myDesignTool);
           }
@@ -724,7 +746,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallGetStartState != null) {
       try {
-        state = RenderService.runRenderAction(() -> {
+        state = runRenderAction(() -> {
           try {
             return (String)myCallGetStartState.invoke(myDesignTool);
           }
@@ -765,7 +787,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallGetEndState != null) {
       try {
-        state = RenderService.runRenderAction(() -> {
+        state = runRenderAction(() -> {
           try {
             return (String)myCallGetEndState.invoke(myDesignTool);
           }
@@ -806,7 +828,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallGetProgress != null) {
       try {
-        progress = RenderService.runRenderAction(() -> {
+        progress = runRenderAction(() -> {
           try {
             return (Float)myCallGetProgress.invoke(myDesignTool);
           }
@@ -847,7 +869,7 @@ public final class MotionLayoutComponentHelper {
     }
     if (myCallIsInTransition != null) {
       try {
-        isInTransition = RenderService.runRenderAction(() -> {
+        isInTransition = runRenderAction(() -> {
           try {
             return (Boolean)myCallIsInTransition.invoke(myDesignTool);
           }
@@ -886,7 +908,7 @@ public final class MotionLayoutComponentHelper {
 
     if (myGetMaxTimeMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return runRenderAction(() -> {
           try {
             return (long)myGetMaxTimeMethod.invoke(myDesignTool);
           }
@@ -1034,7 +1056,7 @@ public final class MotionLayoutComponentHelper {
 
     if (myGetKeyFramePositionsMethod != null) {
       try {
-        return RenderService.runRenderAction(() -> {
+        return runRenderAction(() -> {
           try {
             return (Integer)myGetKeyFramePositionsMethod.invoke(myDesignTool, info.getViewObject(), type, pos);
           }
@@ -38,6 +38,7 @@ import java.awt.Rectangle;
 import java.util.HashMap;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This defines the decorator for MotionLayout
@@ -333,6 +334,13 @@ public class MotionLayoutDecorator extends SceneDecorator {
     child.myCache.put(dirType, ConnectionType.SAME);
   }
 
+  @Nullable
+  @Override
+  protected Object getContentCacheKey(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    // The layout itself is drawn with the default background and frame, its constraints are drawn by the children.
+    return NO_CONTENT_INPUTS;
+  }
+
   /**
    * This is responsible for setting the clip and building the list for this component's children
    *
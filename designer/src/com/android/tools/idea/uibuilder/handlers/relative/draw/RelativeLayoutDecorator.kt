@@ -66,6 +66,9 @@ import java.awt.geom.Path2D
  */
 class RelativeLayoutDecorator : SceneDecorator() {
 
+  // The layout itself is drawn with the default background and frame, its relations are drawn with the children.
+  override fun getContentCacheKey(sceneContext: SceneContext, component: SceneComponent): Any? = NO_CONTENT_INPUTS
+
   override fun buildListChildren(list: DisplayList, time: Long, sceneContext: SceneContext, component: SceneComponent) {
     val rect = Rectangle()
     component.fillRect(rect)
@@ -29,6 +29,7 @@ import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
@@ -260,6 +261,7 @@ public class PreviewProvider implements Disposable {
       RenderLogger logger = renderService.createLogger(facet);
       myRenderTask = renderService.taskBuilder(facet, configuration)
         .withLogger(logger)
+        .withPriority(RenderExecutor.Priority.LOW)
         .buildSynchronously();
     }
 
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_LAYOUT_HEIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_BOTTOM;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_END;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_LEFT;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_RIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_START;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_TOP;
+import static com.android.SdkConstants.ATTR_LAYOUT_RESOURCE_PREFIX;
+import static com.android.SdkConstants.ATTR_LAYOUT_WEIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_WIDTH;
+
+import android.view.View;
+import android.view.ViewGroup;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.rendering.parsers.AttributeSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.uibuilder.model.LayoutParamsManager;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.xml.XmlTag;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Changes made to the layout params attributes of the components of an {@link NlModel} since the model was last inflated.
+ * <p/>
+ * Some layout params attributes can be set directly on the {@code LayoutParams} of the views of the current render session; only the
+ * views whose params changed then need to be measured and laid out again before the next render. Any other change, like adding a
+ * component, changing a view attribute or a layout params attribute that is only interpreted when the params are created, still
+ * requires the layout to be inflated again.
+ */
+final class IncrementalLayoutUpdate {
+  /**
+   * The layout params attributes that can be applied to existing params with the same result as inflating them. Other attributes, like
+   * the constraints of a {@code ConstraintLayout} or flag values, are resolved by the constructors of the params.
+   */
+  private static final ImmutableSet<String> SUPPORTED_ATTRIBUTES = ImmutableSet.of(
+    ATTR_LAYOUT_WIDTH, ATTR_LAYOUT_HEIGHT, ATTR_LAYOUT_WEIGHT, ATTR_LAYOUT_MARGIN_LEFT, ATTR_LAYOUT_MARGIN_TOP, ATTR_LAYOUT_MARGIN_RIGHT,
+    ATTR_LAYOUT_MARGIN_BOTTOM, ATTR_LAYOUT_MARGIN_START, ATTR_LAYOUT_MARGIN_END);
+
+  /**
+   * Margins that are set on fields of {@code MarginLayoutParams}, which then need to be flagged as defined through
+   * {@link ViewGroup.MarginLayoutParams#setMargins}.
+   */
+  private static final ImmutableSet<String> ABSOLUTE_MARGIN_ATTRIBUTES = ImmutableSet.of(
+    ATTR_LAYOUT_MARGIN_LEFT, ATTR_LAYOUT_MARGIN_TOP, ATTR_LAYOUT_MARGIN_RIGHT, ATTR_LAYOUT_MARGIN_BOTTOM);
+
+  /**
+   * The tag name and attributes of a component as they were when the layout was inflated.
+   */
+  static final class RenderedTag {
+    @NotNull private final String myTagName;
+    @NotNull private final Map<String, AttributeSnapshot> myAttributes;
+
+    private RenderedTag(@NotNull String tagName, @NotNull Map<String, AttributeSnapshot> attributes) {
+      myTagName = tagName;
+      myAttributes = attributes;
+    }
+  }
+
+  private static final class AttributeChange {
+    @NotNull final NlComponent component;
+    /** The attribute as it is now, or as it was rendered if it was removed. */
+    @NotNull final AttributeSnapshot attribute;
+    /** The new value, or null if the attribute was removed. */
+    @Nullable final String value;
+
+    private AttributeChange(@NotNull NlComponent component, @NotNull AttributeSnapshot attribute, @Nullable String value) {
+      this.component = component;
+      this.attribute = attribute;
+      this.value = value;
+    }
+  }
+
+  @NotNull private final List<AttributeChange> myChanges;
+
+  private IncrementalLayoutUpdate(@NotNull List<AttributeChange> changes) {
+    myChanges = changes;
+  }
+
+  /**
+   * Records the tags of the components of the given model as they were just inflated. Returns null if a component does not have a
+   * snapshot, in which case no incremental update can be computed.
+   */
+  @Nullable
+  static Map<NlComponent, RenderedTag> recordRenderedTags(@NotNull NlModel model) {
+    Map<NlComponent, RenderedTag> renderedTags = new HashMap<>();
+    for (NlComponent component : model.flattenComponents().collect(Collectors.toList())) {
+      TagSnapshot snapshot = component.getSnapshot();
+      if (snapshot == null) {
+        return null;
+      }
+      renderedTags.put(component, new RenderedTag(snapshot.tagName, toMap(snapshot.attributes)));
+    }
+    return renderedTags;
+  }
+
+  /**
+   * Compares the XML of the components of the given model with the tags they were rendered from. Returns null if anything other than
+   * the supported layout params attributes changed, or if a margin was removed.
+   * <p/>
+   * This method must be called from a read action.
+   */
+  @Nullable
+  static IncrementalLayoutUpdate compute(@NotNull NlModel model, @NotNull Map<NlComponent, RenderedTag> renderedTags) {
+    List<NlComponent> components = model.flattenComponents().collect(Collectors.toList());
+    if (components.size() != renderedTags.size()) {
+      return null;
+    }
+
+    List<AttributeChange> changes = new ArrayList<>();
+    for (NlComponent component : components) {
+      RenderedTag renderedTag = renderedTags.get(component);
+      XmlTag tag = component.getTag();
+      if (renderedTag == null || tag == null || !renderedTag.myTagName.equals(tag.getName()) ||
+          tag.getSubTags().length != component.getChildCount()) {
+        return null;
+      }
+
+      Map<String, AttributeSnapshot> attributes = toMap(AttributeSnapshot.createAttributesForTag(tag));
+      Set<String> keys = new HashSet<>(attributes.keySet());
+      keys.addAll(renderedTag.myAttributes.keySet());
+      for (String key : keys) {
+        AttributeSnapshot attribute = attributes.get(key);
+        AttributeSnapshot renderedAttribute = renderedTag.myAttributes.get(key);
+        String value = attribute != null ? attribute.value : null;
+        if (renderedAttribute != null && Objects.equals(value, renderedAttribute.value)) {
+          continue;
+        }
+        AttributeSnapshot changed = attribute != null ? attribute : renderedAttribute;
+        if (!isSupportedAttribute(changed) || (value == null && !ATTR_LAYOUT_WEIGHT.equals(changed.name))) {
+          // A removed width or height is an error, and a removed margin needs to be undefined again rather than zero.
+          return null;
+        }
+        changes.add(new AttributeChange(component, changed, value));
+      }
+    }
+    return new IncrementalLayoutUpdate(changes);
+  }
+
+  boolean isEmpty() {
+    return myChanges.isEmpty();
+  }
+
+  @VisibleForTesting
+  @NotNull
+  List<String> getChangedAttributes() {
+    return myChanges.stream().map(change -> change.attribute.name).collect(Collectors.toList());
+  }
+
+  /**
+   * Sets the changed attributes on the layout params of the rendered views and requests a new layout of those views. Returns false if
+   * one of the changes could not be applied, in which case the layout needs to be inflated again.
+   * <p/>
+   * Once set, the params go through the same steps as inflated ones: absolute margins are flagged as defined, {@code validate()} is
+   * called on params that have one, like the {@code ConstraintLayout} ones, and {@link View#setLayoutParams} resolves the relative
+   * margins against the layout direction of the view.
+   * <p/>
+   * This method must be called from the render thread of the model.
+   */
+  boolean applyToViews(@NotNull NlModel model) {
+    Set<View> changedViews = new LinkedHashSet<>();
+    Set<View> changedMarginViews = new HashSet<>();
+    for (AttributeChange change : myChanges) {
+      ViewInfo viewInfo = NlComponentHelperKt.getViewInfo(change.component);
+      Object viewObject = viewInfo != null ? viewInfo.getViewObject() : null;
+      Object layoutParams = viewInfo != null ? viewInfo.getLayoutParamsObject() : null;
+      if (!(viewObject instanceof View) || layoutParams == null) {
+        return false;
+      }
+      String name = StringUtil.trimStart(change.attribute.name, ATTR_LAYOUT_RESOURCE_PREFIX);
+      if (!LayoutParamsManager.setAttribute(layoutParams, name, change.value, model.getModule(), model.getConfiguration())) {
+        return false;
+      }
+      changedViews.add((View)viewObject);
+      if (ABSOLUTE_MARGIN_ATTRIBUTES.contains(change.attribute.name)) {
+        changedMarginViews.add((View)viewObject);
+      }
+    }
+
+    for (View view : changedViews) {
+      ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
+      if (changedMarginViews.contains(view) && layoutParams instanceof ViewGroup.MarginLayoutParams) {
+        ViewGroup.MarginLayoutParams marginParams = (ViewGroup.MarginLayoutParams)layoutParams;
+        marginParams.setMargins(marginParams.leftMargin, marginParams.topMargin, marginParams.rightMargin, marginParams.bottomMargin);
+      }
+      if (!validate(layoutParams)) {
+        return false;
+      }
+      view.setLayoutParams(layoutParams);
+      view.forceLayout();
+    }
+    return true;
+  }
+
+  /**
+   * Calls the public {@code validate()} method of the given layout params, if there is one. Returns false if it failed.
+   */
+  private static boolean validate(@NotNull Object layoutParams) {
+    Method validate;
+    try {
+      validate = layoutParams.getClass().getMethod("validate");
+    }
+    catch (NoSuchMethodException e) {
+      return true;
+    }
+    try {
+      validate.invoke(layoutParams);
+      return true;
+    }
+    catch (IllegalAccessException | InvocationTargetException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Updates the snapshots of the components, which the render results are matched against, and returns the rendered tags including
+   * the applied changes.
+   */
+  @NotNull
+  Map<NlComponent, RenderedTag> applyToSnapshots(@NotNull Map<NlComponent, RenderedTag> renderedTags) {
+    Map<NlComponent, RenderedTag> updatedTags = new HashMap<>(renderedTags);
+    for (AttributeChange change : myChanges) {
+      AttributeSnapshot attribute = change.attribute;
+      TagSnapshot snapshot = change.component.getSnapshot();
+      if (snapshot != null) {
+        snapshot.setAttribute(attribute.name, attribute.namespace, attribute.prefix, change.value);
+      }
+      RenderedTag renderedTag = updatedTags.get(change.component);
+      Map<String, AttributeSnapshot> attributes = new HashMap<>(renderedTag.myAttributes);
+      String key = attributeKey(attribute.namespace, attribute.name);
+      if (change.value != null) {
+        attributes.put(key, attribute);
+      }
+      else {
+        attributes.remove(key);
+      }
+      updatedTags.put(change.component, new RenderedTag(renderedTag.myTagName, Collections.unmodifiableMap(attributes)));
+    }
+    return updatedTags;
+  }
+
+  private static boolean isSupportedAttribute(@NotNull AttributeSnapshot attribute) {
+    // Tools attributes, including the layout_editor ones, are interpreted by layoutlib when inflating.
+    return ANDROID_URI.equals(attribute.namespace) && SUPPORTED_ATTRIBUTES.contains(attribute.name);
+  }
+
+  @NotNull
+  private static Map<String, AttributeSnapshot> toMap(@NotNull List<AttributeSnapshot> attributes) {
+    Map<String, AttributeSnapshot> map = new HashMap<>();
+    for (AttributeSnapshot attribute : attributes) {
+      map.put(attributeKey(attribute.namespace, attribute.name), attribute);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  @NotNull
+  private static String attributeKey(@Nullable String namespace, @NotNull String name) {
+    return namespace + ':' + name;
+  }
+}
@@ -47,7 +47,9 @@ import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.common.type.DesignerEditorFileType;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
@@ -73,6 +75,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.wireless.android.sdk.stats.LayoutEditorRenderResult;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.DumbService;
@@ -182,6 +185,12 @@ public class LayoutlibSceneManager extends SceneManager {
    */
   private final AtomicBoolean myForceInflate = new AtomicBoolean(false);
 
+  /**
+   * The tags of the components as they were last inflated, used to apply layout params edits without inflating the layout again. Null
+   * while an inflation is in progress or if the last one failed.
+   */
+  @Nullable private volatile Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> myRenderedTags;
+
   protected static LayoutEditorRenderResult.Trigger getTriggerFromChangeType(@Nullable NlModel.ChangeType changeType) {
     if (changeType == null) {
       return null;
@@ -831,6 +840,7 @@ public class LayoutlibSceneManager extends SceneManager {
     // Record the current version we're rendering from; we'll use that in #activate to make sure we're picking up any
     // external changes
     AndroidFacet facet = getModel().getFacet();
+    myRenderedTags = null;
     myRenderedVersion = resourceNotificationManager.getCurrentVersion(facet, getModel().getFile(), configuration);
 
     RenderService renderService = RenderService.getInstance(getModel().getProject());
@@ -875,6 +885,9 @@ public class LayoutlibSceneManager extends SceneManager {
               }
 
               updateHierarchy(result);
+              if (result.getRenderResult().isSuccess()) {
+                myRenderedTags = IncrementalLayoutUpdate.recordRenderedTags(getModel());
+              }
               myRenderResultLock.writeLock().lock();
               try {
                 updateCachedRenderResult(result);
@@ -946,15 +959,56 @@ public class LayoutlibSceneManager extends SceneManager {
   }
 
   /**
-   * Asynchronously update the model. This will inflate the layout and notify the listeners using
-   * {@link ModelListener#modelDerivedDataChanged(NlModel)}.
+   * Asynchronously update the model. This will inflate the layout, unless only layout params changed and they could be applied to the
+   * current render session, and notify the listeners using {@link ModelListener#modelDerivedDataChanged(NlModel)}.
    */
   protected CompletableFuture<Void> updateModel() {
-    return inflate(true)
+    return applyIncrementalUpdate()
+      .thenCompose(applied -> applied ? CompletableFuture.completedFuture(false) : inflate(true))
       .whenCompleteAsync((result, exception) -> notifyListenersModelUpdateComplete(), PooledThreadExecutor.INSTANCE)
       .thenApply(result -> null);
   }
 
+  /**
+   * Applies the layout params edits made since the last inflation to the views of the current render session. The next render will
+   * then only measure and lay out the views that changed.
+   *
+   * @return a future that completes with true if the changes were applied, or with false if the layout needs to be inflated again
+   */
+  @NotNull
+  private CompletableFuture<Boolean> applyIncrementalUpdate() {
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = myRenderedTags;
+    NlModel model = getModel();
+    if (!StudioFlags.NELE_INCREMENTAL_RENDER.get() || renderedTags == null || myForceInflate.get() ||
+        model.getLastChangeType() != NlModel.ChangeType.EDIT) {
+      return CompletableFuture.completedFuture(false);
+    }
+    synchronized (myRenderingTaskLock) {
+      if (myRenderTask == null || myRenderTask.isDisposed()) {
+        return CompletableFuture.completedFuture(false);
+      }
+    }
+
+    IncrementalLayoutUpdate update = ReadAction.compute(() -> IncrementalLayoutUpdate.compute(model, renderedTags));
+    if (update == null) {
+      return CompletableFuture.completedFuture(false);
+    }
+    if (update.isEmpty()) {
+      return CompletableFuture.completedFuture(true);
+    }
+    return RenderService.runAsyncRenderAction(() -> update.applyToViews(model), model.getModule(), RenderExecutor.Priority.HIGH)
+      .thenApply(applied -> {
+        if (applied) {
+          myRenderedTags = update.applyToSnapshots(renderedTags);
+        }
+        return applied;
+      })
+      .exceptionally(exception -> {
+        Logger.getInstance(LayoutlibSceneManager.class).warn(exception);
+        return false;
+      });
+  }
+
   protected void notifyListenersModelLayoutComplete(boolean animate) {
     getModel().notifyListenersModelChangedOnLayout(animate);
   }
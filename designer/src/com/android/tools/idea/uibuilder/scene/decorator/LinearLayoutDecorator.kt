@@ -72,6 +72,9 @@ class LinearLayoutDecorator : SceneDecorator() {
     }
   }
 
+  // The orientation is an attribute of the layout, so the background only changes with the model.
+  override fun getContentCacheKey(sceneContext: SceneContext, component: SceneComponent): Any? = NO_CONTENT_INPUTS
+
   override fun addBackground(list: DisplayList,
                              sceneContext: SceneContext,
                              component: SceneComponent) {
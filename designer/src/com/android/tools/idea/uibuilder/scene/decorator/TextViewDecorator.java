@@ -26,14 +26,32 @@ import com.android.tools.idea.common.scene.SceneContext;
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.scene.draw.DrawTextRegion;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * Support Progress Bar
  */
 public class TextViewDecorator extends SceneDecorator {
   private static final String DEFAULT_DIM = "14sp";
+
+  /**
+   * The text is resolved against the resources, which can change without changing the model.
+   */
+  @Nullable
+  @Override
+  protected Object getContentCacheKey(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    NlComponent nlc = component.getNlComponent();
+    return Arrays.asList(ConstraintUtilities.getResolvedText(nlc),
+                         DrawTextRegion.getFont(nlc, DEFAULT_DIM),
+                         nlc.getAttribute(SdkConstants.ANDROID_URI, SdkConstants.ATTR_TEXT_ALIGNMENT),
+                         nlc.getAttribute(SdkConstants.ANDROID_URI, SdkConstants.ATTR_SINGLE_LINE),
+                         component.getScene().isInRTL(),
+                         component.getBaseline());
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     @AndroidDpCoordinate Rectangle rect = new Rectangle();
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_LAYOUT_HEIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_LEFT;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_START;
+import static com.android.SdkConstants.ATTR_LAYOUT_MARGIN_TOP;
+import static com.android.SdkConstants.ATTR_LAYOUT_WEIGHT;
+import static com.android.SdkConstants.ATTR_LAYOUT_WIDTH;
+import static com.android.SdkConstants.ATTR_TEXT;
+import static com.android.SdkConstants.BUTTON;
+import static com.android.SdkConstants.LINEAR_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.common.SyncNlModel;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.xml.XmlTag;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+public class IncrementalLayoutUpdateTest extends LayoutTestCase {
+  public void testNoChanges() {
+    NlModel model = createModel();
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = IncrementalLayoutUpdate.recordRenderedTags(model);
+    assertThat(renderedTags).isNotNull();
+
+    IncrementalLayoutUpdate update = IncrementalLayoutUpdate.compute(model, renderedTags);
+    assertThat(update).isNotNull();
+    assertThat(update.isEmpty()).isTrue();
+  }
+
+  public void testLayoutParamsChanges() {
+    NlModel model = createModel();
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = IncrementalLayoutUpdate.recordRenderedTags(model);
+    XmlTag textView = model.find(component -> TEXT_VIEW.equals(component.getTagName())).getTag();
+    XmlTag button = model.find(component -> BUTTON.equals(component.getTagName())).getTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      textView.setAttribute(ATTR_LAYOUT_WIDTH, ANDROID_URI, "50dp");
+      button.setAttribute(ATTR_LAYOUT_WEIGHT, ANDROID_URI, null);
+    });
+
+    IncrementalLayoutUpdate update = IncrementalLayoutUpdate.compute(model, renderedTags);
+    assertThat(update).isNotNull();
+    assertThat(update.getChangedAttributes()).containsExactly(ATTR_LAYOUT_WIDTH, ATTR_LAYOUT_WEIGHT);
+
+    // Once the changes are applied, the same edits are not reported again.
+    renderedTags = update.applyToSnapshots(renderedTags);
+    assertThat(IncrementalLayoutUpdate.compute(model, renderedTags).isEmpty()).isTrue();
+    NlComponent textViewComponent = model.find(component -> TEXT_VIEW.equals(component.getTagName()));
+    assertThat(textViewComponent.getSnapshot().getAttribute(ATTR_LAYOUT_WIDTH, ANDROID_URI)).isEqualTo("50dp");
+  }
+
+  public void testViewAttributeChangesNeedInflation() {
+    NlModel model = createModel();
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = IncrementalLayoutUpdate.recordRenderedTags(model);
+    XmlTag textView = model.find(component -> TEXT_VIEW.equals(component.getTagName())).getTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute(ATTR_TEXT, ANDROID_URI, "Hello"));
+    assertThat(IncrementalLayoutUpdate.compute(model, renderedTags)).isNull();
+  }
+
+  public void testStructureChangesNeedInflation() {
+    NlModel model = createModel();
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = IncrementalLayoutUpdate.recordRenderedTags(model);
+    XmlTag root = model.getComponents().get(0).getTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> root.addSubTag(root.createChildTag(BUTTON, null, null, false), false));
+    assertThat(IncrementalLayoutUpdate.compute(model, renderedTags)).isNull();
+  }
+
+  public void testUnsupportedLayoutParamsChangesNeedInflation() {
+    NlModel model = createModel();
+    Map<NlComponent, IncrementalLayoutUpdate.RenderedTag> renderedTags = IncrementalLayoutUpdate.recordRenderedTags(model);
+    XmlTag textView = model.find(component -> TEXT_VIEW.equals(component.getTagName())).getTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute("layout_gravity", ANDROID_URI, "center"));
+    assertThat(IncrementalLayoutUpdate.compute(model, renderedTags)).isNull();
+  }
+
+  public void testIncrementalUpdateMatchesInflation() {
+    StudioFlags.NELE_INCREMENTAL_RENDER.override(true);
+    try {
+      SyncNlModel model = createModel();
+      // Avoid rendering any other components (nav bar and similar) so we do not have dependencies on the Material theme
+      model.getConfiguration().setTheme("android:Theme.NoTitleBar.Fullscreen");
+      LayoutlibSceneManager manager = (LayoutlibSceneManager)model.getSurface().getSceneManager();
+      manager.requestRender().join();
+      List<String> inflatedBounds = getBounds(manager);
+      Object rootView = manager.getRenderResult().getRootViews().get(0).getViewObject();
+
+      XmlTag textView = model.find(component -> TEXT_VIEW.equals(component.getTagName())).getTag();
+      XmlTag button = model.find(component -> BUTTON.equals(component.getTagName())).getTag();
+      WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+        textView.setAttribute(ATTR_LAYOUT_WIDTH, ANDROID_URI, "50dp");
+        textView.setAttribute(ATTR_LAYOUT_MARGIN_LEFT, ANDROID_URI, "10dp");
+        textView.setAttribute(ATTR_LAYOUT_MARGIN_TOP, ANDROID_URI, "20dp");
+        button.setAttribute(ATTR_LAYOUT_MARGIN_START, ANDROID_URI, "30dp");
+        button.setAttribute(ATTR_LAYOUT_HEIGHT, ANDROID_URI, "0dp");
+        button.setAttribute(ATTR_LAYOUT_WEIGHT, ANDROID_URI, "2.0");
+      });
+      model.notifyModified(NlModel.ChangeType.EDIT);
+      manager.requestRender().join();
+      List<String> incrementalBounds = getBounds(manager);
+      // The views of the previous inflation were updated in place
+      assertThat(manager.getRenderResult().getRootViews().get(0).getViewObject()).isSameAs(rootView);
+      assertThat(incrementalBounds).isNotEqualTo(inflatedBounds);
+
+      manager.forceReinflate();
+      manager.requestRender().join();
+      assertThat(manager.getRenderResult().getRootViews().get(0).getViewObject()).isNotSameAs(rootView);
+      assertThat(getBounds(manager)).containsExactlyElementsIn(incrementalBounds).inOrder();
+    }
+    finally {
+      StudioFlags.NELE_INCREMENTAL_RENDER.clearOverride();
+    }
+  }
+
+  @NotNull
+  private static List<String> getBounds(@NotNull LayoutlibSceneManager manager) {
+    List<String> bounds = new ArrayList<>();
+    addBounds(manager.getRenderResult().getRootViews(), bounds);
+    return bounds;
+  }
+
+  private static void addBounds(@NotNull List<ViewInfo> views, @NotNull List<String> bounds) {
+    for (ViewInfo view : views) {
+      bounds.add(view.getClassName() + " " + view.getLeft() + "," + view.getTop() + "," + view.getRight() + "," + view.getBottom());
+      addBounds(view.getChildren(), bounds);
+    }
+  }
+
+  @NotNull
+  private SyncNlModel createModel() {
+    return model("linear.xml", component(LINEAR_LAYOUT)
+      .withBounds(0, 0, 1000, 1000)
+      .matchParentWidth()
+      .matchParentHeight()
+      .children(
+        component(TEXT_VIEW)
+          .withBounds(100, 100, 100, 100)
+          .width("100dp")
+          .height("100dp"),
+        component(BUTTON)
+          .withBounds(100, 200, 100, 100)
+          .width("100dp")
+          .height("100dp")
+          .withAttribute("android:layout_weight", "1.0")
+      )).build();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.common.scene.SceneComponent;
+import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+public class SceneDisplayListCacheTest extends SceneTest {
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT.defaultName())
+                   .id("@id/root")
+                   .withBounds(0, 0, 2000, 2000)
+                   .width("1000dp")
+                   .height("1000dp")
+                   .children(
+                     component(TEXT_VIEW)
+                       .id("@id/button")
+                       .withBounds(900, 980, 200, 40)
+                       .width("100dp")
+                       .height("20dp")
+                       .withAttribute("app:layout_constraintLeft_toLeftOf", "parent")
+                       .withAttribute("app:layout_constraintTop_toTopOf", "parent")
+                   ));
+  }
+
+  public void testUnchangedComponentCommandsAreReused() {
+    DisplayList list = myInteraction.getDisplayList();
+    String serialized = list.serialize();
+    List<DrawCommand> commands = new ArrayList<>(list.getCommands());
+
+    myInteraction.repaint();
+    assertEquals(serialized, list.serialize());
+    // The frames of the root and of the text view, and the background and text of the text view are reused.
+    assertSame(commands.get(0), list.getCommands().get(0));
+    assertSame(commands.get(2), list.getCommands().get(2));
+    assertSame(commands.get(3), list.getCommands().get(3));
+    assertSame(commands.get(4), list.getCommands().get(4));
+  }
+
+  public void testChangedComponentCommandsAreRebuilt() {
+    DisplayList list = myInteraction.getDisplayList();
+    String serialized = list.serialize();
+    List<DrawCommand> commands = new ArrayList<>(list.getCommands());
+
+    myScene.getSceneComponent("button").setDrawState(SceneComponent.DrawState.HOVER);
+    myInteraction.repaint();
+    assertFalse(serialized.equals(list.serialize()));
+    assertSame(commands.get(0), list.getCommands().get(0));
+    assertNotSame(commands.get(4), list.getCommands().get(4));
+
+    // Matches a list built without the cache.
+    DisplayList uncachedList = new DisplayList();
+    myScene.buildDisplayList(uncachedList, System.currentTimeMillis());
+    assertEquals(uncachedList.serialize(), list.serialize());
+  }
+
+  public void testSceneUpdateRebuildsCommands() {
+    DisplayList list = myInteraction.getDisplayList();
+    List<DrawCommand> commands = new ArrayList<>(list.getCommands());
+
+    mySceneManager.update();
+    myInteraction.repaint();
+    assertNotSame(commands.get(0), list.getCommands().get(0));
+    assertNotSame(commands.get(4), list.getCommands().get(4));
+  }
+}
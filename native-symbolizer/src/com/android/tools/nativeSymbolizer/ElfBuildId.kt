@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+private const val MAX_NOTE_SECTION_SIZE = 64 * 1024
+private const val MAX_SECTION_COUNT = 0xffff
+
+/**
+ * Reads the GNU build id of an ELF file, as written by the linker in a note section.
+ *
+ * @return the build id as a hex string, or null if the file is not an ELF file or has no build id
+ */
+fun readElfBuildId(file: File): String? {
+  try {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+      val header = read(channel, 0, 64) ?: return null
+      if (header.getInt(0) != 0x7f454c46) { // "\u007fELF"
+        return null
+      }
+      val is64Bit = when (header.get(4).toInt()) {
+        1 -> false
+        2 -> true
+        else -> return null
+      }
+      header.order(if (header.get(5).toInt() == 2) ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN)
+
+      val sectionHeadersOffset = if (is64Bit) header.getLong(0x28) else header.getInt(0x20).toLong() and 0xffffffffL
+      val sectionHeaderSize = header.getShort(if (is64Bit) 0x3A else 0x2E).toInt() and 0xffff
+      val sectionCount = header.getShort(if (is64Bit) 0x3C else 0x30).toInt() and 0xffff
+      if (sectionHeadersOffset <= 0 || sectionCount == 0 || sectionCount > MAX_SECTION_COUNT) {
+        return null
+      }
+      val sectionHeaders = read(channel, sectionHeadersOffset, sectionHeaderSize * sectionCount)?.order(header.order()) ?: return null
+
+      for (i in 0 until sectionCount) {
+        val section = i * sectionHeaderSize
+        if (sectionHeaders.getInt(section + 4) != SHT_NOTE) {
+          continue
+        }
+        val offset = if (is64Bit) sectionHeaders.getLong(section + 0x18) else sectionHeaders.getInt(section + 0x10).toLong() and 0xffffffffL
+        val size = if (is64Bit) sectionHeaders.getLong(section + 0x20) else sectionHeaders.getInt(section + 0x14).toLong() and 0xffffffffL
+        if (size <= 0 || size > MAX_NOTE_SECTION_SIZE) {
+          continue
+        }
+        val notes = read(channel, offset, size.toInt())?.order(header.order()) ?: continue
+        findBuildId(notes)?.let { return it }
+      }
+      return null
+    }
+  }
+  catch (e: IOException) {
+    getLogger().warn("Unable to read the build id of $file", e)
+    return null
+  }
+}
+
+private fun findBuildId(notes: ByteBuffer): String? {
+  var position = 0
+  while (position + 12 <= notes.limit()) {
+    val nameSize = notes.getInt(position)
+    val descriptorSize = notes.getInt(position + 4)
+    val type = notes.getInt(position + 8)
+    if (nameSize < 0 || descriptorSize < 0) {
+      return null
+    }
+    val name = position + 12
+    val descriptor = name + align4(nameSize)
+    val next = descriptor + align4(descriptorSize)
+    if (next > notes.limit()) {
+      return null
+    }
+    if (type == NT_GNU_BUILD_ID && nameSize == 4 && notes.getInt(name) == gnuName(notes.order())) {
+      val buildId = StringBuilder(2 * descriptorSize)
+      for (i in descriptor until descriptor + descriptorSize) {
+        buildId.append(String.format("%02x", notes.get(i)))
+      }
+      return buildId.toString()
+    }
+    position = next
+  }
+  return null
+}
+
+/** The name of GNU notes, "GNU\0", read as an int. */
+private fun gnuName(order: ByteOrder): Int {
+  return ByteBuffer.wrap(byteArrayOf('G'.toByte(), 'N'.toByte(), 'U'.toByte(), 0)).order(order).int
+}
+
+private fun align4(size: Int) = (size + 3) and 3.inv()
+
+private fun read(channel: FileChannel, offset: Long, size: Int): ByteBuffer? {
+  if (offset < 0 || offset + size > channel.size()) {
+    return null
+  }
+  val buffer = ByteBuffer.allocate(size)
+  while (buffer.hasRemaining()) {
+    if (channel.read(buffer, offset + buffer.position()) < 0) {
+      return null
+    }
+  }
+  buffer.flip()
+  return buffer
+}
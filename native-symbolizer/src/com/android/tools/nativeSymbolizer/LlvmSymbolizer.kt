@@ -38,21 +38,69 @@ import java.util.concurrent.*
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
                      private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+  companion object {
+    private const val MAX_REQUESTS_LENGTH = 2048
+  }
 
   private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private var executor : ExecutorService? = null
 
   override fun symbolize(abiArch: String, module: String, offset: Long): Symbol? {
-    val symFiles = symLocator.findSymbolFiles(abiArch, module)
+    return symbolize(abiArch, module, listOf(offset))[0]
+  }
 
-    for (symFile in symFiles) {
-      val request = formatRequest(symFile, offset)
+  override fun symbolize(abiArch: String, module: String, offsets: List<Long>): List<Symbol?> {
+    val result = arrayOfNulls<Symbol>(offsets.size)
+    var pending = offsets.indices.toList()
+    for (symFile in symLocator.findSymbolFiles(abiArch, module)) {
+      if (pending.isEmpty()) {
+        break
+      }
+      val symbols = symbolize(symFile, module, pending.map { offsets[it] }) ?: continue
+      pending = pending.filterIndexed { i, offsetIndex ->
+        result[offsetIndex] = symbols[i]
+        symbols[i] == null
+      }
+    }
+    return result.asList()
+  }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
+  /**
+   * Symbolizes offsets of a given symbol file. Requests are sent in batches rather than one at a time.
+   *
+   * @return the symbols of the offsets, null for offsets without a symbol, or null if llvm-symbolizer failed to respond
+   */
+  @Throws(IOException::class)
+  fun symbolize(symFile: File, module: String, offsets: List<Long>): List<Symbol?>? {
+    val result = ArrayList<Symbol?>(offsets.size)
+    while (result.size < offsets.size) {
+      // Write at most MAX_REQUESTS_LENGTH characters before reading the responses, so that writing never blocks on a full pipe while
+      // llvm-symbolizer itself waits for its responses to be read.
+      val requests = StringBuilder()
+      var count = 0
+      while (result.size + count < offsets.size) {
+        val request = formatRequest(symFile, offsets[result.size + count])
+        if (count > 0 && requests.length + request.length > MAX_REQUESTS_LENGTH) {
+          break
+        }
+        requests.append(request)
+        count++
+      }
 
+      val responses = sendRequests(requests.toString(), count) ?: return null
+      responses.mapTo(result) { parseResponse(it, module) }
+    }
+    return result
+  }
+
+  private fun sendRequests(requests: String, count: Int): List<List<String>>? {
+    val holder = getProcHolder()
+    val future = getExecutor().submit(Callable<List<List<String>>> {
+      holder.stdin.write(requests)
+      holder.stdin.flush()
+
+      val responses: MutableList<List<String>> = mutableListOf()
+      while (responses.size < count) {
         val response: MutableList<String> = mutableListOf()
         var responseLine: String?
         while (true) {
@@ -62,26 +110,22 @@ class LlvmSymbolizer(private val symbolizerExe: String,
           }
           response.add(responseLine)
         }
-        response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
+        responses.add(response)
+        if (responseLine == null) {
+          throw IOException("llvm-symbolizer closed its output")
+        }
       }
-
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+      responses
+    })
+    try {
+      return future.get(timeoutMsc, TimeUnit.MILLISECONDS)
+    } catch (e: TimeoutException) {
+      getLogger().warn("llvm-symbolizer timed out", e)
+      stop()
+    } catch (e: ExecutionException) {
+      getLogger().warn("llvm-symbolizer communication failed", e)
+      stop()
     }
-
     return null
   }
 
@@ -94,6 +138,10 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return holder
   }
 
+  private fun getExecutor() : ExecutorService {
+    return executor ?: Executors.newSingleThreadExecutor().also { executor = it }
+  }
+
   private fun formatRequest(symFile: File, offset: Long): String {
     val escapedPath = symFile.path.replace("\\", "\\\\").replace("\"", "\\\"")
     return java.lang.String.format("\"%s\" 0x%x\n", escapedPath, offset)
@@ -144,6 +192,9 @@ class LlvmSymbolizer(private val symbolizerExe: String,
   override fun stop() {
     procHolder?.dispose()
     procHolder = null
+    // The thread talking to the process is started again with the next process.
+    executor?.shutdownNow()
+    executor = null
   }
 
   private class ProcessHolder(val process: Process,
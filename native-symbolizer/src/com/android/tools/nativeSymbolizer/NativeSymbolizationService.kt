@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * [NativeSymbolizer] that symbolizes the offsets of a module with a pool of llvm-symbolizer processes, and keeps the symbols it finds in a
+ * [SymbolCache].
+ *
+ * The offsets that are not cached are split between the processes of the pool, which are each sent their offsets in batches. Symbols are
+ * cached by the build id and the size of the symbol file they are found in, so that they are still used after the file is rebuilt without
+ * changes and are not used any more once it changes. The size tells a stripped library from the unstripped one with the same build id.
+ */
+class NativeSymbolizationService(symbolizerExe: String,
+                                 private val symLocator: SymbolFilesLocator,
+                                 private val cache: SymbolCache,
+                                 poolSize: Int = getDefaultPoolSize(),
+                                 timeoutMsc: Long = 5000) : NativeSymbolizer {
+  private val symbolizers: List<LlvmSymbolizer> = List(poolSize) { LlvmSymbolizer(symbolizerExe, symLocator, timeoutMsc) }
+  private val idleSymbolizers: BlockingQueue<LlvmSymbolizer> = ArrayBlockingQueue(poolSize, false, symbolizers)
+  private var executor: ExecutorService? = null
+  private val cacheKeys = ConcurrentHashMap<File, CacheKey>()
+
+  override fun symbolize(abiArch: String, module: String, offset: Long): Symbol? {
+    return symbolize(abiArch, module, listOf(offset))[0]
+  }
+
+  override fun symbolize(abiArch: String, module: String, offsets: List<Long>): List<Symbol?> {
+    val found = HashMap<Long, Symbol>()
+    var pending: Set<Long> = offsets.toSet()
+    for (symFile in symLocator.findSymbolFiles(abiArch, module)) {
+      if (pending.isEmpty()) {
+        break
+      }
+      val key = getCacheKey(symFile)
+      val symbols = HashMap(cache.getSymbols(key, module, pending))
+      val missing = pending.filter { !symbols.containsKey(it) }
+      if (missing.isNotEmpty()) {
+        val resolved = symbolizeInParallel(symFile, module, missing)
+        cache.putSymbols(key, resolved)
+        symbols.putAll(resolved)
+      }
+      for ((offset, symbol) in symbols) {
+        if (symbol != null) {
+          found[offset] = symbol
+        }
+      }
+      pending = pending.filterTo(HashSet()) { !found.containsKey(it) }
+    }
+    return offsets.map { found[it] }
+  }
+
+  /**
+   * Returns the symbols of the offsets that llvm-symbolizer responded for, null for offsets without a symbol.
+   */
+  private fun symbolizeInParallel(symFile: File, module: String, offsets: List<Long>): Map<Long, Symbol?> {
+    val sliceSize = Math.max(MIN_SLICE_SIZE, (offsets.size + symbolizers.size - 1) / symbolizers.size)
+    val slices = offsets.chunked(sliceSize)
+    val executor = getExecutor()
+    val futures = slices.map { slice -> executor.submit(Callable { withSymbolizer { it.symbolize(symFile, module, slice) } }) }
+
+    val result = HashMap<Long, Symbol?>()
+    for ((slice, future) in slices.zip(futures)) {
+      val symbols = try {
+        future.get()
+      }
+      catch (e: ExecutionException) {
+        throw e.cause as? IOException ?: IOException(e.cause)
+      }
+      symbols?.forEachIndexed { i, symbol -> result[slice[i]] = symbol }
+    }
+    return result
+  }
+
+  @Synchronized
+  private fun getExecutor(): ExecutorService {
+    return executor ?: Executors.newFixedThreadPool(symbolizers.size).also { executor = it }
+  }
+
+  private fun <T> withSymbolizer(action: (LlvmSymbolizer) -> T): T {
+    val symbolizer = idleSymbolizers.take()
+    try {
+      return action(symbolizer)
+    }
+    finally {
+      idleSymbolizers.put(symbolizer)
+    }
+  }
+
+  private fun getCacheKey(symFile: File): String {
+    val length = symFile.length()
+    val lastModified = symFile.lastModified()
+    val key = cacheKeys[symFile]
+    if (key != null && key.length == length && key.lastModified == lastModified) {
+      return key.value
+    }
+    // Files without a build id are identified by their path and timestamp.
+    val buildId = readElfBuildId(symFile) ?: "${symFile.name}-${Integer.toHexString(symFile.absolutePath.hashCode())}-$lastModified"
+    val value = "$buildId-$length"
+    cacheKeys[symFile] = CacheKey(value, length, lastModified)
+    return value
+  }
+
+  override fun stop() {
+    synchronized(this) {
+      executor?.shutdownNow()
+      executor = null
+    }
+    symbolizers.forEach { it.stop() }
+  }
+
+  private class CacheKey(val value: String, val length: Long, val lastModified: Long)
+
+  companion object {
+    /** Slices of fewer offsets are not worth the start of another llvm-symbolizer process. */
+    private const val MIN_SLICE_SIZE = 64
+
+    private fun getDefaultPoolSize() = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, 4))
+  }
+}
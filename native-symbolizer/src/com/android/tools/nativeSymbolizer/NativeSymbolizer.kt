@@ -39,6 +39,14 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: String, offset: Long): Symbol?
+
+  /**
+   * Same as [symbolize] for several offsets of a given module, which is much faster than symbolizing them one at a time.
+   * @return the symbols of the offsets, in the same order, null for offsets that cannot be symbolized
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, module: String, offsets: List<Long>): List<Symbol?>
+
   fun stop()
 }
 
@@ -51,7 +59,7 @@ fun createNativeSymbolizer(project: Project): NativeSymbolizer {
     log.debug("Native symbolizer paths for $arch is [$dirs]")
   }
   val symLocator = SymbolFilesLocator(symDirMap)
-  return LlvmSymbolizer(symbolizerPath, symLocator)
+  return NativeSymbolizationService(symbolizerPath, symLocator, SymbolCache.instance)
 }
 
 /**
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.intellij.openapi.application.PathManager
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
+import kotlin.streams.toList
+
+/**
+ * On-disk cache of the symbols found by llvm-symbolizer, keyed by the build id of a symbol file and an offset in it, so that the
+ * frames of a capture are symbolized at most once, across captures, profilers and IDE restarts.
+ *
+ * The symbols of a build id are stored in their own file, to which new symbols are appended. Offsets without a symbol are stored too,
+ * so that they are not sent to llvm-symbolizer again. The files of the least recently used build ids are deleted when there are more than
+ * [maxBuildIds] of them. This class is thread safe.
+ */
+class SymbolCache(private val directory: Path,
+                  private val maxBuildIds: Int = DEFAULT_MAX_BUILD_IDS,
+                  private val maxLoadedBuildIds: Int = DEFAULT_MAX_LOADED_BUILD_IDS) {
+  /** Symbols of the recently used build ids, by offset. Symbols are stored with an empty module. */
+  private val loaded = object : LinkedHashMap<String, MutableMap<Long, Symbol?>>(16, 0.75f, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, MutableMap<Long, Symbol?>>): Boolean {
+      return size > maxLoadedBuildIds
+    }
+  }
+
+  /**
+   * Returns the cached symbols of the given offsets of a symbol file, with [module] as their module. Offsets that are not cached are not
+   * in the returned map, offsets without a symbol are mapped to null.
+   */
+  @Synchronized
+  fun getSymbols(buildId: String, module: String, offsets: Collection<Long>): Map<Long, Symbol?> {
+    val symbols = getLoadedSymbols(buildId)
+    val result = HashMap<Long, Symbol?>()
+    for (offset in offsets) {
+      if (symbols.containsKey(offset)) {
+        result[offset] = symbols[offset]?.copy(module = module)
+      }
+    }
+    return result
+  }
+
+  /**
+   * Adds the symbols of offsets of a symbol file, null for offsets that do not have a symbol.
+   */
+  @Synchronized
+  fun putSymbols(buildId: String, symbols: Map<Long, Symbol?>) {
+    val cached = getLoadedSymbols(buildId)
+    val added = symbols.filterKeys { !cached.containsKey(it) }
+    if (added.isEmpty()) {
+      return
+    }
+    for ((offset, symbol) in added) {
+      cached[offset] = symbol?.copy(module = "")
+    }
+
+    val file = getFile(buildId)
+    try {
+      Files.createDirectories(directory)
+      val isNew = !Files.exists(file)
+      DataOutputStream(BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))).use {
+        if (isNew) {
+          it.writeInt(FORMAT_VERSION)
+        }
+        for ((offset, symbol) in added) {
+          it.writeLong(offset)
+          it.writeBoolean(symbol != null)
+          if (symbol != null) {
+            it.writeUTF(symbol.name)
+            it.writeUTF(symbol.sourceFile)
+            it.writeInt(symbol.lineNumber)
+          }
+        }
+      }
+      if (isNew) {
+        prune()
+      }
+    }
+    catch (e: IOException) {
+      getLogger().warn("Unable to cache the symbols of $buildId", e)
+    }
+  }
+
+  private fun getLoadedSymbols(buildId: String): MutableMap<Long, Symbol?> {
+    return loaded.getOrPut(buildId) { load(buildId) }
+  }
+
+  private fun load(buildId: String): MutableMap<Long, Symbol?> {
+    val file = getFile(buildId)
+    val symbols = HashMap<Long, Symbol?>()
+    try {
+      val isValid = DataInputStream(BufferedInputStream(Files.newInputStream(file))).use { input ->
+        input.readInt() == FORMAT_VERSION && readSymbols(input, symbols)
+      }
+      if (isValid) {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()))
+      }
+      else {
+        // Symbols are appended to the file, it must not end with a partial entry.
+        Files.delete(file)
+      }
+    }
+    catch (ignored: NoSuchFileException) {
+    }
+    catch (e: IOException) {
+      getLogger().warn("Unable to read the cached symbols of $buildId", e)
+    }
+    return symbols
+  }
+
+  /**
+   * Reads the symbols of a file, returns false if it ends with a partial entry, e.g. when the IDE was closed while writing it.
+   */
+  private fun readSymbols(input: DataInputStream, symbols: MutableMap<Long, Symbol?>): Boolean {
+    while (true) {
+      try {
+        val offset = try {
+          input.readLong()
+        }
+        catch (e: EOFException) {
+          return true
+        }
+        symbols[offset] = if (input.readBoolean()) Symbol(input.readUTF(), "", input.readUTF(), input.readInt()) else null
+      }
+      catch (e: EOFException) {
+        return false
+      }
+    }
+  }
+
+  private fun prune() {
+    val files = Files.list(directory).use { stream -> stream.filter { it.fileName.toString().endsWith(FILE_EXTENSION) }.toList() }
+    if (files.size <= maxBuildIds) {
+      return
+    }
+    val lastUse = files.associateWith { it.toFile().lastModified() }
+    for (file in files.sortedBy { lastUse[it] }.take(files.size - maxBuildIds)) {
+      Files.deleteIfExists(file)
+      loaded.remove(file.fileName.toString().removeSuffix(FILE_EXTENSION))
+    }
+  }
+
+  private fun getFile(buildId: String): Path = directory.resolve(buildId + FILE_EXTENSION)
+
+  companion object {
+    private const val FORMAT_VERSION = 1
+    private const val CACHE_DIR = "native-symbols"
+    private const val FILE_EXTENSION = ".bin"
+    private const val DEFAULT_MAX_BUILD_IDS = 200
+    private const val DEFAULT_MAX_LOADED_BUILD_IDS = 32
+
+    @JvmStatic
+    val instance: SymbolCache by lazy { SymbolCache(Paths.get(PathManager.getSystemPath()).resolve(CACHE_DIR)) }
+  }
+}
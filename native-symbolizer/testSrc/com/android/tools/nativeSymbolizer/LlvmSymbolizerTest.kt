@@ -158,6 +158,53 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val tempDir = FileUtil.createTempDirectory("llvm-symbolizer", "cache-test", true)
+    val symbolizer =
+      NativeSymbolizationService(getLlvmSymbolizerPath(), SymbolFilesLocator(getSymDirMap()), SymbolCache(tempDir.toPath()), 2)
+    for (arch in architectures) {
+      val expectedSymbolsFile = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile()
+      val expectedNames = expectedSymbolsFile.readLines().map { it.split('|')[1] }
+      val offsets = expectedSymbolsFile.readLines().map { it.split('|')[0].toLong(16) + 1 } + 0xffffffffff
+      val module = "/path/to/device/modules/" + LIB_FILE_NAME
+
+      // The second call is answered from the cache.
+      for (i in 0..1) {
+        val symbols = symbolizer.symbolize(arch, module, offsets)
+        Assert.assertEquals(offsets.size, symbols.size)
+        Assert.assertEquals(expectedNames, symbols.dropLast(1).map { it!!.name })
+        Assert.assertNull(symbols.last())
+      }
+    }
+    symbolizer.stop()
+  }
+
+  @Test
+  fun testSymbolizeBatchAfterStop() {
+    val tempDir = FileUtil.createTempDirectory("llvm-symbolizer", "cache-test", true)
+    val symbolizer =
+      NativeSymbolizationService(getLlvmSymbolizerPath(), SymbolFilesLocator(getSymDirMap()), SymbolCache(tempDir.toPath()), 2)
+    // Each architecture has its own symbol file, so the symbols of the second one are not cached when the pool is started again.
+    for (arch in architectures.take(2)) {
+      val expectedSymbolsFile = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile()
+      val expectedNames = expectedSymbolsFile.readLines().map { it.split('|')[1] }
+      val offsets = expectedSymbolsFile.readLines().map { it.split('|')[0].toLong(16) + 1 }
+      val module = "/path/to/device/modules/" + LIB_FILE_NAME
+
+      Assert.assertEquals(expectedNames, symbolizer.symbolize(arch, module, offsets).map { it!!.name })
+      symbolizer.stop()
+    }
+  }
+
+  @Test
+  fun testReadElfBuildId() {
+    Assert.assertEquals("463de9a467d1bc1453c0e1f494308df8a8616b48", readElfBuildId(Paths.get(testDataDir, "arm", LIB_FILE_NAME).toFile()))
+    Assert.assertEquals("415446799bd7b2495e1056857fc6dfc724ffc002",
+                        readElfBuildId(Paths.get(testDataDir, "x86_64", LIB_FILE_NAME).toFile()))
+    Assert.assertNull(readElfBuildId(Paths.get(testDataDir, "arm", EXPECTED_SYMBOLS_FILE_NAME).toFile()))
+  }
+
   @Test
   fun testUnknownSymbols() {
     val symbolizer = createSymbolizer()
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.Path
+
+class SymbolCacheTest {
+  private lateinit var directory: Path
+
+  @Before
+  fun setUp() {
+    directory = FileUtil.createTempDirectory("symbol-cache", null, true).toPath()
+  }
+
+  @Test
+  fun getSymbolsReturnsCachedOffsetsOnly() {
+    val cache = SymbolCache(directory)
+    cache.putSymbols("abcd", mapOf(10L to Symbol("foo", "", "foo.cpp", 12), 20L to null))
+
+    val symbols = cache.getSymbols("abcd", "libfoo.so", listOf(10L, 20L, 30L))
+
+    Assert.assertEquals(mapOf(10L to Symbol("foo", "libfoo.so", "foo.cpp", 12), 20L to null), symbols)
+    Assert.assertTrue(cache.getSymbols("efgh", "libfoo.so", listOf(10L)).isEmpty())
+  }
+
+  @Test
+  fun symbolsArePersisted() {
+    SymbolCache(directory).putSymbols("abcd", mapOf(10L to Symbol("foo", "", "foo.cpp", 12)))
+    SymbolCache(directory).putSymbols("abcd", mapOf(20L to null))
+
+    val symbols = SymbolCache(directory).getSymbols("abcd", "libfoo.so", listOf(10L, 20L))
+
+    Assert.assertEquals(mapOf(10L to Symbol("foo", "libfoo.so", "foo.cpp", 12), 20L to null), symbols)
+  }
+
+  @Test
+  fun truncatedFileIsDropped() {
+    SymbolCache(directory).putSymbols("abcd", mapOf(10L to Symbol("foo", "", "foo.cpp", 12)))
+    val file = directory.resolve("abcd.bin")
+    RandomAccessFile(file.toFile(), "rw").use { it.setLength(it.length() - 1) }
+
+    Assert.assertTrue(SymbolCache(directory).getSymbols("abcd", "libfoo.so", listOf(10L)).isEmpty())
+    Assert.assertFalse(Files.exists(file))
+  }
+
+  @Test
+  fun leastRecentlyUsedBuildIdsArePruned() {
+    val cache = SymbolCache(directory, 2)
+    cache.putSymbols("first", mapOf(1L to null))
+    directory.resolve("first.bin").toFile().setLastModified(1000)
+    cache.putSymbols("second", mapOf(1L to null))
+    directory.resolve("second.bin").toFile().setLastModified(2000)
+    cache.putSymbols("third", mapOf(1L to null))
+
+    Assert.assertFalse(Files.exists(directory.resolve("first.bin")))
+    Assert.assertTrue(Files.exists(directory.resolve("second.bin")))
+    Assert.assertTrue(Files.exists(directory.resolve("third.bin")))
+    Assert.assertTrue(cache.getSymbols("first", "libfoo.so", listOf(1L)).isEmpty())
+  }
+}
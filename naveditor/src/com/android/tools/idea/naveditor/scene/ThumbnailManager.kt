@@ -19,7 +19,9 @@ import com.google.common.annotations.VisibleForTesting
 import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.ImageUtils
 import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.rendering.RenderExecutor
 import com.android.tools.idea.rendering.RenderResult
+import com.android.tools.idea.rendering.RenderResultCache
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.android.tools.idea.res.LocalResourceRepository
@@ -42,6 +44,9 @@ import java.util.concurrent.TimeUnit
 
 private val KEY = Key.create<ThumbnailManager>(ThumbnailManager::class.java.name)
 
+/** Identifies the options of [ThumbnailManager.createTask] in the keys of the [RenderResultCache]. */
+private const val RENDER_OPTIONS = "navThumbnail:noDecorations"
+
 data class RefinableImage(val image: BufferedImage? = null, val refined: CompletableFuture<RefinableImage?>? = null) {
   val lastCompleted
     get() = generateSequence(this) { if (it.refined?.isDone == true) it.refined.get() else null }.last()
@@ -225,16 +230,26 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   }
 
   private fun getImage(xmlFile: XmlFile, file: VirtualFile, configuration: Configuration): BufferedImage? {
-    val renderService = RenderService.getInstance(module.project)
-    val task = createTask(facet, xmlFile, configuration, renderService)
-    var renderResult: CompletableFuture<RenderResult>? = null
-    if (task != null) {
-      renderResult = task.render()
+    val resultCache = RenderResultCache.getInstance()
+    val cacheKey = resultCache?.let { RenderResultCache.computeKey(facet, xmlFile, configuration, RENDER_OPTIONS) }
+    var image: BufferedImage? = cacheKey?.let { resultCache.getImage(it) }
+    if (image == null) {
+      val renderService = RenderService.getInstance(module.project)
+      val task = createTask(facet, xmlFile, configuration, renderService)
+      var renderResult: CompletableFuture<RenderResult>? = null
+      if (task != null) {
+        renderResult = task.render()
+      }
+      if (renderResult != null) {
+        // This should also be done in a listener if task.render() were actually async.
+        val result = renderResult.get()
+        image = result.renderedImage.copy
+        if (cacheKey != null && image != null && RenderResultCache.isCacheable(result)) {
+          resultCache.putImage(cacheKey, image, task!!.layoutlibCallback.loadedClassFiles)
+        }
+      }
     }
-    var image: BufferedImage? = null
-    if (renderResult != null) {
-      // This should also be done in a listener if task.render() were actually async.
-      image = renderResult.get().renderedImage.copy
+    if (image != null) {
       myImages.put(file, configuration, SoftReference<BufferedImage>(image))
       myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
       myRenderModStamps.put(file, configuration, file.timeStamp)
@@ -248,6 +263,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
                                 renderService: RenderService): RenderTask? {
     val task = renderService.taskBuilder(facet, configuration)
       .withPsiFile(file)
+      .withPriority(RenderExecutor.Priority.LOW)
       .buildSynchronously()
     task?.setDecorations(false)
     return task
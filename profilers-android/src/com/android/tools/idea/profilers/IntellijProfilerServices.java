@@ -249,6 +249,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
         return StudioFlags.PROFILER_TRACK_JNI_REFS.get();
       }
 
+      @Override
+      public boolean isLazyHeapDumpAnalysisEnabled() {
+        return StudioFlags.PROFILER_LAZY_HEAP_DUMP_ANALYSIS.get();
+      }
+
       @Override
       public boolean isLiveAllocationsEnabled() {
         return StudioFlags.PROFILER_USE_LIVE_ALLOCATIONS.get();
@@ -264,6 +269,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
         return StudioFlags.PROFILER_MEMORY_SNAPSHOT.get();
       }
 
+      @Override
+      public boolean isParallelHeapDumpDominatorsEnabled() {
+        return StudioFlags.PROFILER_PARALLEL_HEAP_DUMP_DOMINATORS.get();
+      }
+
       @Override
       public boolean isPerfettoEnabled() { return StudioFlags.PROFILER_USE_PERFETTO.get(); }
 
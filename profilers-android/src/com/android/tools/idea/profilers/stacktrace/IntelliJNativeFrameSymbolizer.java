@@ -21,7 +21,13 @@ import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -52,7 +58,45 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return createFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
+
+  /**
+   * Symbolizes the frames of each module together.
+   */
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    Map<String, List<Integer>> framesByModule = new LinkedHashMap<>();
+    for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+      framesByModule.computeIfAbsent(unsymbolizedFrames.get(i).getModuleName(), module -> new ArrayList<>()).add(i);
+    }
 
+    NativeCallStack.NativeFrame[] frames = new NativeCallStack.NativeFrame[unsymbolizedFrames.size()];
+    for (Map.Entry<String, List<Integer>> entry : framesByModule.entrySet()) {
+      List<Long> instructionOffsets = new ArrayList<>(entry.getValue().size());
+      for (int i : entry.getValue()) {
+        instructionOffsets.add(getOffsetOfPreviousInstruction(unsymbolizedFrames.get(i).getModuleOffset()));
+      }
+      List<Symbol> symbols = null;
+      try {
+        symbols = mySymbolizer.symbolize(abi, entry.getKey(), instructionOffsets);
+      }
+      catch (IOException | RuntimeException e) {
+        getLogger().warn(e);
+      }
+      for (int j = 0; j < entry.getValue().size(); j++) {
+        int i = entry.getValue().get(j);
+        frames[i] = createFrame(unsymbolizedFrames.get(i), instructionOffsets.get(j), symbols != null ? symbols.get(j) : null);
+      }
+    }
+    return Arrays.asList(frames);
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame createFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                         long instructionOffset,
+                                                         @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
@@ -67,7 +111,7 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     return builder.build();
   }
 
-  private long getOffsetOfPreviousInstruction(long offset) {
+  private static long getOffsetOfPreviousInstruction(long offset) {
     // In non-bottom frames native backtrace contains addresses where the execution will
     // continue after a function call. After symbolization such addresses often resolved
     // to the source line immediately following the function call.
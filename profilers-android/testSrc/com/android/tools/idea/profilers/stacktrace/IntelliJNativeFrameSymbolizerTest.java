@@ -21,6 +21,9 @@ import static com.google.common.truth.Truth.assertThat;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -58,6 +61,20 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeBatch() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+    NativeCallStack.NativeFrame frame1 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test1").setModuleOffset(100).build();
+    NativeCallStack.NativeFrame frame2 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(200).build();
+    NativeCallStack.NativeFrame frame3 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test1").setModuleOffset(300).build();
+
+    List<NativeCallStack.NativeFrame> frames = frameSymbolizer.symbolize("arm", Arrays.asList(frame1, frame2, frame3));
+
+    assertThat(frames).containsExactly(frameSymbolizer.symbolize("arm", frame1),
+                                       frameSymbolizer.symbolize("arm", frame2),
+                                       frameSymbolizer.symbolize("arm", frame3)).inOrder();
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     @Nullable
     @Override
@@ -71,6 +88,12 @@ public class IntelliJNativeFrameSymbolizerTest {
       }
     }
 
+    @NotNull
+    @Override
+    public List<Symbol> symbolize(@NotNull String abiArch, @NotNull String module, @NotNull List<Long> offsets) {
+      return offsets.stream().map(offset -> symbolize(abiArch, module, offset)).collect(Collectors.toList());
+    }
+
     @Override
     public void stop() {
     }
@@ -25,9 +25,11 @@ public interface FeatureConfig {
   boolean isCpuNewRecordingWorkflowEnabled();
   boolean isEnergyProfilerEnabled();
   boolean isJniReferenceTrackingEnabled();
+  boolean isLazyHeapDumpAnalysisEnabled();
   boolean isLiveAllocationsEnabled();
   boolean isLiveAllocationsSamplingEnabled();
   boolean isMemorySnapshotEnabled();
+  boolean isParallelHeapDumpDominatorsEnabled();
   boolean isPerfettoEnabled();
   boolean isPerformanceMonitoringEnabled();
   boolean isAuditsEnabled();
@@ -114,12 +114,12 @@ public class CaptureNode implements HNode<CaptureNode> {
 
   @Override
   public long getStart() {
-    return myClockType == ClockType.THREAD ? myStartThread : myStartGlobal;
+    return getClockType() == ClockType.THREAD ? getStartThread() : getStartGlobal();
   }
 
   @Override
   public long getEnd() {
-    return myClockType == ClockType.THREAD ? myEndThread : myEndGlobal;
+    return getClockType() == ClockType.THREAD ? getEndThread() : getEndGlobal();
   }
 
   @Override
@@ -163,12 +163,22 @@ public class CaptureNode implements HNode<CaptureNode> {
     myClockType = clockType;
   }
 
+  /**
+   * Sets the clock type of this node and of all its descendants.
+   */
+  public void setSubtreeClockType(@NotNull ClockType clockType) {
+    setClockType(clockType);
+    for (CaptureNode child : getChildren()) {
+      child.setSubtreeClockType(clockType);
+    }
+  }
+
   /**
    * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
    */
   public double threadGlobalRatio() {
-    long durationThread = myEndThread - myStartThread;
-    long durationGlobal = myEndGlobal - myStartGlobal;
+    long durationThread = getEndThread() - getStartThread();
+    long durationGlobal = getEndGlobal() - getStartGlobal();
     return (double)durationThread / durationGlobal;
   }
 
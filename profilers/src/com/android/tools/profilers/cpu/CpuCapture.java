@@ -160,17 +160,9 @@ public class CpuCapture implements ConfigurableDurationData {
     myClockType = clockType;
 
     for (CaptureNode tree : getCaptureNodes()) {
-      updateClockType(tree, clockType);
-    }
-  }
-
-  private static void updateClockType(@Nullable CaptureNode node, @NotNull ClockType clockType) {
-    if (node == null) {
-      return;
-    }
-    node.setClockType(clockType);
-    for (CaptureNode child : node.getChildren()) {
-      updateClockType(child, clockType);
+      if (tree != null) {
+        tree.setSubtreeClockType(clockType);
+      }
     }
   }
 
@@ -23,10 +23,13 @@ import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongIntHashMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -42,14 +45,19 @@ public class ArtTraceHandler implements VmTraceHandler {
   private final Map<Integer, String> myThreads = new HashMap<>();
 
   /**
-   * Map from method id to method model.
+   * Map from method id to the index of the method model in {@link #myMethods}.
    */
-  private final Map<Long, CaptureNodeModel> myMethods = new HashMap<>();
+  private final TLongIntHashMap myMethodIndices = new TLongIntHashMap();
 
   /**
-   * Map from thread id to per thread stack call constructor.
+   * Method models, by index.
    */
-  private final Map<Integer, CaptureNodeConstructor> myNodeConstructors = new HashMap<>();
+  private final List<CaptureNodeModel> myMethods = new ArrayList<>();
+
+  /**
+   * Map from thread id to per thread call tree builder.
+   */
+  private final TIntObjectHashMap<CallTreeBuilder> myCallTreeBuilders = new TIntObjectHashMap<>();
 
   @Nullable
   private Map<CpuThreadInfo, CaptureNode> myThreadsGraph;
@@ -61,38 +69,36 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   @Override
   public void addMethod(long id, MethodInfo info) {
-    myMethods.put(id, new JavaMethodModel(info.methodName, info.className, info.signature));
+    JavaMethodModel model = new JavaMethodModel(info.methodName, info.className, info.signature);
+    if (myMethodIndices.containsKey(id)) {
+      myMethods.set(myMethodIndices.get(id), model);
+    }
+    else {
+      myMethodIndices.put(id, myMethods.size());
+      myMethods.add(model);
+    }
   }
 
   @Override
   public void addMethodAction(int threadId, long methodId, TraceAction methodAction,
                               int threadTime, int globalTime) {
-    // create thread info if it doesn't exist
-    if (!myThreads.containsKey(threadId)) {
-      myThreads.put(threadId, String.format("Thread id: %1$d", threadId));
+    CallTreeBuilder builder = myCallTreeBuilders.get(threadId);
+    if (builder == null) {
+      // create thread info if it doesn't exist
+      if (!myThreads.containsKey(threadId)) {
+        myThreads.put(threadId, String.format("Thread id: %1$d", threadId));
+      }
+      builder = new CallTreeBuilder(new SingleNameModel(myThreads.get(threadId)));
+      myCallTreeBuilders.put(threadId, builder);
     }
 
     // create method info if it doesn't exist
-    if (!myMethods.containsKey(methodId)) {
-      myMethods.put(methodId, new SingleNameModel("unknown"));
+    if (!myMethodIndices.containsKey(methodId)) {
+      myMethodIndices.put(methodId, myMethods.size());
+      myMethods.add(new SingleNameModel("unknown"));
     }
 
-    CaptureNodeConstructor constructor = myNodeConstructors.get(threadId);
-    if (constructor == null) {
-      CaptureNodeModel topLevelModel = createUniqueMethodForThread(threadId);
-      constructor = new CaptureNodeConstructor(topLevelModel);
-      myNodeConstructors.put(threadId, constructor);
-    }
-    constructor.addTraceAction(myMethods.get(methodId), methodAction, threadTime, globalTime);
-  }
-
-  private CaptureNodeModel createUniqueMethodForThread(int threadId) {
-    long id = Long.MAX_VALUE - threadId;
-    assert myMethods.get(id) == null :
-      "Unexpected error while attempting to create a unique key - key already exists";
-    CaptureNodeModel model = new SingleNameModel(myThreads.get(threadId));
-    myMethods.put(id, model);
-    return model;
+    builder.addTraceAction(myMethodIndices.get(methodId), methodAction, threadTime, globalTime);
   }
 
   public Map<CpuThreadInfo, CaptureNode> getThreadsGraph() {
@@ -104,56 +110,23 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   @NotNull
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
-
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
-      final int id = entry.getKey();
-      final String name = entry.getValue();
-
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
-      }
-
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
-      CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
-
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
-
-      threadsGraph.put(info, topLevelCall);
+    int[] threadIds = myCallTreeBuilders.keys();
+    // The tree of a thread only depends on the actions of that thread, so the trees of all threads are built in parallel.
+    CallTree[] trees = new CallTree[threadIds.length];
+    IntStream.range(0, threadIds.length).parallel().forEach(
+      i -> trees[i] = myCallTreeBuilders.get(threadIds[i]).build(myMethods, myStartTimeUs));
+    myCallTreeBuilders.clear();
+
+    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(threadIds.length);
+    for (int i = 0; i < threadIds.length; i++) {
+      String name = myThreads.get(threadIds[i]);
+      CpuThreadInfo info = new CpuThreadInfo(threadIds[i], name, name.equals(MAIN_THREAD_NAME));
+      threadsGraph.put(info, trees[i].getRoot());
     }
 
     return threadsGraph;
   }
 
-  /**
-   * Adjusts global and thread time from relative to absolute time and the depth of nodes.
-   */
-  private void adjustNodesTimeAndDepth(CaptureNode node, long topLevelStart) {
-    Deque<CaptureNode> stack = new ArrayDeque<>();
-    stack.push(node);
-
-    while (!stack.isEmpty()) {
-      CaptureNode current = stack.pop();
-
-      current.setStartGlobal(myStartTimeUs + current.getStartGlobal());
-      current.setEndGlobal(myStartTimeUs + current.getEndGlobal());
-      CaptureNode parent = current.getParent();
-      current.setDepth(parent == null ? 0 : parent.getDepth() + 1);
-      // Timestamps of ClockType.THREAD are stored in a different way: the first event on the thread is considered as the base
-      // and the subsequent events timestamps are stored in 32 bits relative to that base. We sum this timestamps to topLevelStart,
-      // so the first entry timestamp (represented as 0) is aligned (in wall clock time) with the top-level call start timestamp.
-      current.setStartThread(topLevelStart + current.getStartThread());
-      current.setEndThread(topLevelStart + current.getEndThread());
-
-      for (CaptureNode callee : current.getChildren()) {
-        stack.push(callee);
-      }
-    }
-  }
-
   public long getElapsedTimeUs() {
     return myElapsedTimeUs;
   }
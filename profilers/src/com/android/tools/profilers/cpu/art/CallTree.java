@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.adtui.model.filter.FilterResult;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNode.FilterType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Call tree of a thread, stored as a struct of arrays: the node {@code i} is described by the {@code i}-th element of each array. The
+ * children of a node are linked through {@link #myFirstChild} and {@link #myNextSibling}, in call order.
+ *
+ * This takes a fraction of the memory of a tree of {@link CaptureNode}s, which are only created as views of the nodes that are accessed,
+ * starting from {@link #getRoot()}. The clock and filter types of the nodes are kept in the arrays too, so that they can be updated for
+ * a whole tree without creating views.
+ */
+final class CallTree {
+  static final int NO_NODE = -1;
+
+  private static final ClockType[] CLOCK_TYPES = ClockType.values();
+  private static final FilterType[] FILTER_TYPES = FilterType.values();
+
+  private final int myRootIndex;
+  @NotNull private final CaptureNodeModel[] myModels;
+  @NotNull private final int[] myParent;
+  @NotNull private final int[] myFirstChild;
+  @NotNull private final int[] myNextSibling;
+  @NotNull private final int[] myDepth;
+  @NotNull private final long[] myStartGlobal;
+  @NotNull private final long[] myEndGlobal;
+  @NotNull private final long[] myStartThread;
+  @NotNull private final long[] myEndThread;
+  // Ordinals of the ClockType and FilterType of each node.
+  @NotNull private final byte[] myClockTypes;
+  @NotNull private final byte[] myFilterTypes;
+
+  private CaptureNode myRoot;
+  // Whether nodes that are not in the arrays were added under a view, see CallTreeNode#addChild.
+  private volatile boolean myHasAddedNodes;
+
+  CallTree(int rootIndex,
+           @NotNull CaptureNodeModel[] models,
+           @NotNull int[] parent,
+           @NotNull int[] firstChild,
+           @NotNull int[] nextSibling,
+           @NotNull int[] depth,
+           @NotNull long[] startGlobal,
+           @NotNull long[] endGlobal,
+           @NotNull long[] startThread,
+           @NotNull long[] endThread) {
+    myRootIndex = rootIndex;
+    myModels = models;
+    myParent = parent;
+    myFirstChild = firstChild;
+    myNextSibling = nextSibling;
+    myDepth = depth;
+    myStartGlobal = startGlobal;
+    myEndGlobal = endGlobal;
+    myStartThread = startThread;
+    myEndThread = endThread;
+    myClockTypes = new byte[models.length];
+    Arrays.fill(myClockTypes, (byte)ClockType.GLOBAL.ordinal());
+    myFilterTypes = new byte[models.length];
+    Arrays.fill(myFilterTypes, (byte)FilterType.MATCH.ordinal());
+  }
+
+  /**
+   * Returns the view of the root of the tree, under which all the calls of the thread are nested.
+   */
+  @NotNull
+  synchronized CaptureNode getRoot() {
+    if (myRoot == null) {
+      myRoot = new CallTreeNode(this, myRootIndex, null);
+    }
+    return myRoot;
+  }
+
+  int size() {
+    return myModels.length;
+  }
+
+  boolean hasAddedNodes() {
+    return myHasAddedNodes;
+  }
+
+  void setHasAddedNodes() {
+    myHasAddedNodes = true;
+  }
+
+  @NotNull
+  CaptureNodeModel getModel(int node) {
+    return myModels[node];
+  }
+
+  int getParent(int node) {
+    return myParent[node];
+  }
+
+  int getFirstChild(int node) {
+    return myFirstChild[node];
+  }
+
+  int getNextSibling(int node) {
+    return myNextSibling[node];
+  }
+
+  int getDepth(int node) {
+    return myDepth[node];
+  }
+
+  void setDepth(int node, int depth) {
+    myDepth[node] = depth;
+  }
+
+  /**
+   * Returns the greatest depth of a node and its descendants, see {@link HNode#getMaxDepth()}.
+   */
+  int getMaxDepth(int node) {
+    int maxDepth = myDepth[node];
+    for (int current = nextInSubtree(node, node); current != NO_NODE; current = nextInSubtree(node, current)) {
+      maxDepth = Math.max(maxDepth, myDepth[current]);
+    }
+    return maxDepth;
+  }
+
+  long getStartGlobal(int node) {
+    return myStartGlobal[node];
+  }
+
+  void setStartGlobal(int node, long startGlobal) {
+    myStartGlobal[node] = startGlobal;
+  }
+
+  long getEndGlobal(int node) {
+    return myEndGlobal[node];
+  }
+
+  void setEndGlobal(int node, long endGlobal) {
+    myEndGlobal[node] = endGlobal;
+  }
+
+  long getStartThread(int node) {
+    return myStartThread[node];
+  }
+
+  void setStartThread(int node, long startThread) {
+    myStartThread[node] = startThread;
+  }
+
+  long getEndThread(int node) {
+    return myEndThread[node];
+  }
+
+  void setEndThread(int node, long endThread) {
+    myEndThread[node] = endThread;
+  }
+
+  @NotNull
+  ClockType getClockType(int node) {
+    return CLOCK_TYPES[myClockTypes[node]];
+  }
+
+  void setClockType(int node, @NotNull ClockType clockType) {
+    myClockTypes[node] = (byte)clockType.ordinal();
+  }
+
+  /**
+   * Sets the clock type of a node and of all its descendants, see {@link CaptureNode#setSubtreeClockType(ClockType)}.
+   */
+  void setSubtreeClockType(int node, @NotNull ClockType clockType) {
+    byte value = (byte)clockType.ordinal();
+    for (int current = node; current != NO_NODE; current = nextInSubtree(node, current)) {
+      myClockTypes[current] = value;
+    }
+  }
+
+  /**
+   * Returns the node after {@code current} in a pre-order walk of the subtree of {@code node}, or {@link #NO_NODE} at the end of the walk.
+   */
+  private int nextInSubtree(int node, int current) {
+    if (myFirstChild[current] != NO_NODE) {
+      return myFirstChild[current];
+    }
+    // Go back up to the first ancestor with a next sibling, without leaving the subtree.
+    while (current != node && myNextSibling[current] == NO_NODE) {
+      current = myParent[current];
+    }
+    return current == node ? NO_NODE : myNextSibling[current];
+  }
+
+  @NotNull
+  FilterType getFilterType(int node) {
+    return FILTER_TYPES[myFilterTypes[node]];
+  }
+
+  void setFilterType(int node, @NotNull FilterType filterType) {
+    myFilterTypes[node] = (byte)filterType.ordinal();
+  }
+
+  /**
+   * Applies a filter to a node and its descendants, like {@link CaptureNode#applyFilter(Filter)}.
+   *
+   * @param matches whether an ancestor of the node matches the filter
+   */
+  @NotNull
+  FilterResult applyFilter(int node, @NotNull Filter filter, boolean matches) {
+    int matchCount = 0;
+    int totalCount = 0;
+    boolean nodeExactMatch = filter.matches(myModels[node].getFullName());
+    matches = matches || nodeExactMatch;
+    if (nodeExactMatch) {
+      ++matchCount;
+    }
+    ++totalCount;
+
+    boolean allChildrenUnmatch = true;
+    for (int child = myFirstChild[node]; child != NO_NODE; child = myNextSibling[child]) {
+      FilterResult result = applyFilter(child, filter, matches);
+      matchCount += result.getMatchCount();
+      totalCount += result.getTotalCount();
+      if (getFilterType(child) != FilterType.UNMATCH) {
+        allChildrenUnmatch = false;
+      }
+    }
+
+    if (!matches && allChildrenUnmatch) {
+      setFilterType(node, FilterType.UNMATCH);
+    }
+    else if (nodeExactMatch && !filter.isEmpty()) {
+      setFilterType(node, FilterType.EXACT_MATCH);
+    }
+    else {
+      setFilterType(node, FilterType.MATCH);
+    }
+    return new FilterResult(matchCount, totalCount, !filter.isEmpty());
+  }
+}
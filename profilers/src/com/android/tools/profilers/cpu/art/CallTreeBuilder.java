@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import gnu.trove.TIntArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Builds the {@link CallTree} of a thread from its method trace actions.
+ *
+ * Actions are only buffered in primitive columns while the trace is read, as parsing the trace is sequential. The tree is built by
+ * {@link #build}, which can run on any thread, so the trees of all threads are built in parallel once the whole trace is read.
+ */
+class CallTreeBuilder {
+  /**
+   * Method index of the top level node under which all calls are nested.
+   */
+  private static final int TOP_LEVEL_METHOD = -1;
+
+  /**
+   * Method model corresponding to the top level node under which all calls are nested.
+   */
+  @NotNull private final CaptureNodeModel myTopLevelNodeModel;
+
+  /**
+   * Buffered actions: the index of the method shifted left by one with the lowest bit set for exits, and the timestamps of the actions.
+   */
+  @NotNull private final TIntArrayList myActions = new TIntArrayList();
+  @NotNull private final TIntArrayList myThreadTimes = new TIntArrayList();
+  @NotNull private final TIntArrayList myGlobalTimes = new TIntArrayList();
+
+  // Nodes of the tree being built, see CallTree.
+  private int mySize;
+  private int[] myMethods;
+  private int[] myParent;
+  private int[] myFirstChild;
+  private int[] myLastChild;
+  private int[] myNextSibling;
+  private long[] myStartGlobal;
+  private long[] myEndGlobal;
+  private long[] myStartThread;
+  private long[] myEndThread;
+
+  /**
+   * Nodes currently assumed to be at stack depth 0 (called from the top level).
+   */
+  private final TIntArrayList myTopLevelNodes = new TIntArrayList();
+
+  /**
+   * The current node, i.e it is updated when we enter or exit a method.
+   */
+  private int myCurrentNode = CallTree.NO_NODE;
+
+  CallTreeBuilder(@NotNull CaptureNodeModel topLevelNodeModel) {
+    myTopLevelNodeModel = topLevelNodeModel;
+  }
+
+  void addTraceAction(int method, @NotNull TraceAction action, int threadTime, int globalTime) {
+    myActions.add(method << 1 | (action == TraceAction.METHOD_ENTER ? 0 : 1));
+    myThreadTimes.add(threadTime);
+    myGlobalTimes.add(globalTime);
+  }
+
+  /**
+   * Builds the tree of the buffered actions. The global timestamps of the nodes are made absolute by adding {@code startTimeUs} to them.
+   *
+   * @param methods models of the methods, by index
+   */
+  @NotNull
+  CallTree build(@NotNull List<CaptureNodeModel> methods, long startTimeUs) {
+    allocate(myActions.size() / 2 + 2);
+    for (int i = 0; i < myActions.size(); i++) {
+      int action = myActions.get(i);
+      if ((action & 1) == 0) {
+        enterMethod(action >> 1, myThreadTimes.get(i), myGlobalTimes.get(i));
+      }
+      else {
+        exitMethod(methods, action >> 1, myThreadTimes.get(i), myGlobalTimes.get(i));
+      }
+    }
+    myActions.clear();
+    myThreadTimes.clear();
+    myGlobalTimes.clear();
+    int root = fixUpCallStacks(methods);
+
+    CaptureNodeModel[] models = new CaptureNodeModel[mySize];
+    for (int i = 0; i < mySize; i++) {
+      models[i] = myMethods[i] == TOP_LEVEL_METHOD ? myTopLevelNodeModel : methods.get(myMethods[i]);
+    }
+
+    // Global time is relative to the start of the trace. Timestamps of ClockType.THREAD are stored in a different way: the first event on
+    // the thread is considered as the base and the subsequent events timestamps are stored in 32 bits relative to that base. We sum these
+    // timestamps to the start of the top level node, so the first entry timestamp (represented as 0) is aligned (in wall clock time) with
+    // the top-level call start timestamp.
+    long topLevelStart = myStartGlobal[root] + startTimeUs;
+    for (int i = 0; i < mySize; i++) {
+      myStartGlobal[i] += startTimeUs;
+      myEndGlobal[i] += startTimeUs;
+      myStartThread[i] += topLevelStart;
+      myEndThread[i] += topLevelStart;
+    }
+
+    CallTree tree = new CallTree(root, models, Arrays.copyOf(myParent, mySize), Arrays.copyOf(myFirstChild, mySize),
+                                 Arrays.copyOf(myNextSibling, mySize), computeDepths(root), Arrays.copyOf(myStartGlobal, mySize),
+                                 Arrays.copyOf(myEndGlobal, mySize), Arrays.copyOf(myStartThread, mySize),
+                                 Arrays.copyOf(myEndThread, mySize));
+    release();
+    return tree;
+  }
+
+  private void enterMethod(int method, long threadTime, long globalTime) {
+    int node = newNode(method);
+    myStartGlobal[node] = globalTime;
+    myStartThread[node] = threadTime;
+
+    if (myCurrentNode == CallTree.NO_NODE) {
+      myTopLevelNodes.add(node);
+    }
+    else {
+      addChild(myCurrentNode, node);
+    }
+
+    myCurrentNode = node;
+  }
+
+  private void exitMethod(@NotNull List<CaptureNodeModel> methods, int method, long threadTime, long globalTime) {
+    if (myCurrentNode != CallTree.NO_NODE) {
+      if (myMethods[myCurrentNode] != method) {
+        String msg = String
+          .format("Error during call stack reconstruction. Attempt to exit from method %s while in method %s",
+                  getModel(methods, myMethods[myCurrentNode]).getId(), getModel(methods, method).getId());
+        throw new RuntimeException(msg);
+      }
+
+      myEndGlobal[myCurrentNode] = globalTime;
+      myEndThread[myCurrentNode] = threadTime;
+      myCurrentNode = myParent[myCurrentNode];
+    }
+    else {
+      // We are exiting out of a method that was entered into before tracing was started.
+      // In such a case, create this method
+      int node = newNode(method);
+      // All the previous nodes at the top level are now assumed to have been called from
+      // this method. So mark this method as having called all of those methods, and reset
+      // the top level to only include this method
+      for (int i = 0; i < myTopLevelNodes.size(); i++) {
+        addChild(node, myTopLevelNodes.get(i));
+      }
+      myTopLevelNodes.clear();
+      myTopLevelNodes.add(node);
+
+      myEndGlobal[node] = globalTime;
+      myEndThread[node] = threadTime;
+
+      // We don't know this method's entry times, so we try to guess:
+      // If it has at least 1 child, then we know it must've been at least before that child's
+      // start time. If there are no children, then we just assume that it was just before its
+      // exit time.
+      long entryThreadTime = threadTime - 1;
+      long entryGlobalTime = globalTime - 1;
+
+      int first = myFirstChild[node];
+      if (first != CallTree.NO_NODE) {
+        entryThreadTime = Math.max(myStartThread[first] - 1, 0);
+        entryGlobalTime = Math.max(myStartGlobal[first] - 1, 0);
+      }
+      myStartGlobal[node] = entryGlobalTime;
+      myStartThread[node] = entryThreadTime;
+    }
+  }
+
+  /**
+   * Generates a trace action equivalent to exiting from the given method.
+   *
+   * @param method          method from which we are exiting
+   * @param entryThreadTime method's thread entry time
+   * @param entryGlobalTime method's global entry time
+   * @param lastChild       last method called by the method that we are exiting, or {@link CallTree#NO_NODE}
+   */
+  private void exitMethod(@NotNull List<CaptureNodeModel> methods, int method, long entryThreadTime, long entryGlobalTime, int lastChild) {
+    long lastExitThreadTime;
+    long lastExitGlobalTime;
+
+    if (lastChild == CallTree.NO_NODE) {
+      // if the call doesn't have any children, we assume that it just ran for 1us.
+      lastExitThreadTime = entryThreadTime + 1;
+      lastExitGlobalTime = entryGlobalTime + 1;
+    }
+    else {
+      // if it did call other methods, we assume that this call exited 1us after
+      // its last child exited
+      lastExitThreadTime = myEndThread[lastChild] + 1;
+      lastExitGlobalTime = myEndGlobal[lastChild] + 1;
+    }
+
+    exitMethod(methods, method, lastExitThreadTime, lastExitGlobalTime);
+  }
+
+  /**
+   * Closes the methods that are still on the call stack and nests all calls under a single top level node, which is returned.
+   */
+  private int fixUpCallStacks(@NotNull List<CaptureNodeModel> methods) {
+    // If there are any methods still on the call stack, then the trace doesn't have
+    // exit trace action for them, so clean those up
+    while (myCurrentNode != CallTree.NO_NODE) {
+      exitMethod(methods, myMethods[myCurrentNode], myStartThread[myCurrentNode], myStartGlobal[myCurrentNode],
+                 myLastChild[myCurrentNode]);
+    }
+
+    // Now that we have parsed the entire call stack, let us move all of it under a single
+    // top level call.
+    int lastTopLevel = myTopLevelNodes.isEmpty() ? CallTree.NO_NODE : myTopLevelNodes.get(myTopLevelNodes.size() - 1);
+    exitMethod(methods, TOP_LEVEL_METHOD, 0, 0, lastTopLevel);
+
+    // Now that we've added the top level call, there should be only 1 top level call
+    assert myTopLevelNodes.size() == 1;
+    return myTopLevelNodes.get(0);
+  }
+
+  @NotNull
+  private int[] computeDepths(int root) {
+    int[] depths = new int[mySize];
+    int[] stack = new int[mySize];
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      for (int child = myFirstChild[node]; child != CallTree.NO_NODE; child = myNextSibling[child]) {
+        depths[child] = depths[node] + 1;
+        stack[top++] = child;
+      }
+    }
+    return depths;
+  }
+
+  @NotNull
+  private CaptureNodeModel getModel(@NotNull List<CaptureNodeModel> methods, int method) {
+    return method == TOP_LEVEL_METHOD ? myTopLevelNodeModel : methods.get(method);
+  }
+
+  private void addChild(int parent, int child) {
+    if (myLastChild[parent] == CallTree.NO_NODE) {
+      myFirstChild[parent] = child;
+    }
+    else {
+      myNextSibling[myLastChild[parent]] = child;
+    }
+    myLastChild[parent] = child;
+    myParent[child] = parent;
+  }
+
+  private int newNode(int method) {
+    if (mySize == myMethods.length) {
+      allocate(mySize * 2);
+    }
+    int node = mySize++;
+    myMethods[node] = method;
+    myParent[node] = CallTree.NO_NODE;
+    myFirstChild[node] = CallTree.NO_NODE;
+    myLastChild[node] = CallTree.NO_NODE;
+    myNextSibling[node] = CallTree.NO_NODE;
+    return node;
+  }
+
+  private void release() {
+    mySize = 0;
+    myMethods = null;
+    myParent = null;
+    myFirstChild = null;
+    myLastChild = null;
+    myNextSibling = null;
+    myStartGlobal = null;
+    myEndGlobal = null;
+    myStartThread = null;
+    myEndThread = null;
+  }
+
+  private void allocate(int capacity) {
+    myMethods = myMethods == null ? new int[capacity] : Arrays.copyOf(myMethods, capacity);
+    myParent = myParent == null ? new int[capacity] : Arrays.copyOf(myParent, capacity);
+    myFirstChild = myFirstChild == null ? new int[capacity] : Arrays.copyOf(myFirstChild, capacity);
+    myLastChild = myLastChild == null ? new int[capacity] : Arrays.copyOf(myLastChild, capacity);
+    myNextSibling = myNextSibling == null ? new int[capacity] : Arrays.copyOf(myNextSibling, capacity);
+    myStartGlobal = myStartGlobal == null ? new long[capacity] : Arrays.copyOf(myStartGlobal, capacity);
+    myEndGlobal = myEndGlobal == null ? new long[capacity] : Arrays.copyOf(myEndGlobal, capacity);
+    myStartThread = myStartThread == null ? new long[capacity] : Arrays.copyOf(myStartThread, capacity);
+    myEndThread = myEndThread == null ? new long[capacity] : Arrays.copyOf(myEndThread, capacity);
+  }
+}
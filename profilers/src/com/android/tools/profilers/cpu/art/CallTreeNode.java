@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.adtui.model.filter.FilterResult;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.CaptureNode;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link CaptureNode} view of a node of a {@link CallTree}. The views of the children of a node are created the first time they are
+ * accessed, so parts of a trace that are never looked at stay in the arrays of the tree. Clock types, filters and the maximum depth are
+ * applied to or read from the arrays directly, without creating the views of the descendants.
+ */
+final class CallTreeNode extends CaptureNode {
+  @NotNull private final CallTree myTree;
+  private final int myIndex;
+  @Nullable private final CallTreeNode myParentNode;
+  private volatile boolean myChildrenCreated;
+
+  CallTreeNode(@NotNull CallTree tree, int index, @Nullable CallTreeNode parent) {
+    super(tree.getModel(index));
+    myTree = tree;
+    myIndex = index;
+    myParentNode = parent;
+  }
+
+  @NotNull
+  @Override
+  public List<CaptureNode> getChildren() {
+    if (!myChildrenCreated) {
+      synchronized (this) {
+        if (!myChildrenCreated) {
+          for (int child = myTree.getFirstChild(myIndex); child != CallTree.NO_NODE; child = myTree.getNextSibling(child)) {
+            myChildren.add(new CallTreeNode(myTree, child, this));
+          }
+          myChildrenCreated = true;
+        }
+      }
+    }
+    return myChildren;
+  }
+
+  /**
+   * Adds a node that is not part of the call tree after the children from the tree. Once a node is added, the operations on whole subtrees
+   * go through the views instead of only the arrays, so that they reach the added nodes too.
+   */
+  @Override
+  public void addChild(CaptureNode node) {
+    getChildren();
+    myTree.setHasAddedNodes();
+    synchronized (this) {
+      super.addChild(node);
+    }
+  }
+
+  @Override
+  public int getChildCount() {
+    return getChildren().size();
+  }
+
+  @NotNull
+  @Override
+  public CaptureNode getChildAt(int index) {
+    return getChildren().get(index);
+  }
+
+  @Nullable
+  @Override
+  public CaptureNode getParent() {
+    return myParentNode;
+  }
+
+  @Override
+  public int getDepth() {
+    return myTree.getDepth(myIndex);
+  }
+
+  @Override
+  public void setDepth(int depth) {
+    myTree.setDepth(myIndex, depth);
+  }
+
+  @Override
+  public int getMaxDepth() {
+    return myTree.hasAddedNodes() ? super.getMaxDepth() : myTree.getMaxDepth(myIndex);
+  }
+
+  @Override
+  public long getStartGlobal() {
+    return myTree.getStartGlobal(myIndex);
+  }
+
+  @Override
+  public void setStartGlobal(long startGlobal) {
+    myTree.setStartGlobal(myIndex, startGlobal);
+  }
+
+  @Override
+  public long getEndGlobal() {
+    return myTree.getEndGlobal(myIndex);
+  }
+
+  @Override
+  public void setEndGlobal(long endGlobal) {
+    myTree.setEndGlobal(myIndex, endGlobal);
+  }
+
+  @Override
+  public long getStartThread() {
+    return myTree.getStartThread(myIndex);
+  }
+
+  @Override
+  public void setStartThread(long startThread) {
+    myTree.setStartThread(myIndex, startThread);
+  }
+
+  @Override
+  public long getEndThread() {
+    return myTree.getEndThread(myIndex);
+  }
+
+  @Override
+  public void setEndThread(long endThread) {
+    myTree.setEndThread(myIndex, endThread);
+  }
+
+  @NotNull
+  @Override
+  public ClockType getClockType() {
+    return myTree.getClockType(myIndex);
+  }
+
+  @Override
+  public void setClockType(@NotNull ClockType clockType) {
+    myTree.setClockType(myIndex, clockType);
+  }
+
+  @Override
+  public void setSubtreeClockType(@NotNull ClockType clockType) {
+    if (myTree.hasAddedNodes()) {
+      super.setSubtreeClockType(clockType);
+    }
+    else {
+      myTree.setSubtreeClockType(myIndex, clockType);
+    }
+  }
+
+  @NotNull
+  @Override
+  public FilterResult applyFilter(@NotNull Filter filter) {
+    return myTree.hasAddedNodes() ? super.applyFilter(filter) : myTree.applyFilter(myIndex, filter, false);
+  }
+
+  @NotNull
+  @Override
+  public FilterType getFilterType() {
+    return myTree.getFilterType(myIndex);
+  }
+
+  @Override
+  public void setFilterType(@NotNull FilterType type) {
+    myTree.setFilterType(myIndex, type);
+  }
+}
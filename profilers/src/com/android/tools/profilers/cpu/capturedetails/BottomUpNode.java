@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
@@ -33,6 +34,13 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
 
+  /**
+   * Nodes at the top of the call stack, see {@link #buildOuterNodes()}, and the clock type they were found with.
+   */
+  @Nullable private List<CaptureNode> myOuterNodes;
+  @NotNull private ClockType myOuterClockType = ClockType.GLOBAL;
+  @Nullable private IntervalIndex myOuterIndex;
+
   private BottomUpNode(String id) {
     super(id);
     myIsRoot = false;
@@ -132,13 +140,31 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     return true;
   }
 
+  @Override
+  protected void addNode(@NotNull CaptureNode node) {
+    super.addNode(node);
+    myOuterNodes = null;
+  }
+
   @Override
   public void update(@NotNull Range range) {
+    if (myOuterNodes == null || (!myNodes.isEmpty() && myNodes.get(0).getClockType() != myOuterClockType)) {
+      buildOuterNodes();
+    }
     // how much time was spent in this call stack path, and in the functions it called
-    myGlobalTotal = 0;
+    myGlobalTotal = myOuterIndex != null
+                    ? myOuterIndex.getIntersectionLength(range.getMin(), range.getMax())
+                    : getIntersection(range, myOuterNodes, ClockType.GLOBAL);
     // how much time was spent doing work directly in this call stack path
-    double self = 0;
+    double self = getNodesIntersection(range, ClockType.GLOBAL) - getChildrenIntersection(range, ClockType.GLOBAL);
+    myGlobalChildrenTotal = myGlobalTotal - self;
+  }
 
+  /**
+   * Finds the nodes at the top of the call stack, whose times are added up in the total time of this node. They do not depend on the
+   * range, only on the clock type of the nodes.
+   */
+  private void buildOuterNodes() {
     // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
     // then the second method can't be outerSoFarByParent.
     // It's used to exclude nodes which aren't at the top of the
@@ -146,6 +172,7 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
     // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
     HashMap<CaptureNode, CaptureNode> outerSoFarByParent = new HashMap<>();
+    myOuterNodes = new ArrayList<>();
 
     // myNodes is sorted by CaptureNode#getStart() in increasing order,
     // if they are equal then ancestor comes first
@@ -155,24 +182,14 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
       CaptureNode root = findRootNode(node);
       CaptureNode outerSoFar = outerSoFarByParent.getOrDefault(root, null);
       if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
-        if (outerSoFar != null) {
-          // |outerSoFarByParent| is at the top of the call stack
-          myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
-        }
+        // |node| is at the top of the call stack
+        myOuterNodes.add(node);
         outerSoFarByParent.put(root, node);
       }
-
-      self += getIntersection(range, node, ClockType.GLOBAL);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child, ClockType.GLOBAL);
-      }
     }
 
-    for(CaptureNode outerSoFar : outerSoFarByParent.values()) {
-      // |outerSoFarByParent| is at the top of the call stack
-      myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
-    }
-    myGlobalChildrenTotal = myGlobalTotal - self;
+    myOuterClockType = myNodes.isEmpty() ? ClockType.GLOBAL : myNodes.get(0).getClockType();
+    myOuterIndex = myOuterNodes.size() >= MIN_INDEXED_NODES ? IntervalIndex.of(myOuterNodes, ClockType.GLOBAL) : null;
   }
 
   @NotNull
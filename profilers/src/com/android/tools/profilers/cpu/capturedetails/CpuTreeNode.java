@@ -22,8 +22,14 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class CpuTreeNode<T extends CpuTreeNode> {
+  /**
+   * Minimum number of {@link CaptureNode}s for which an {@link IntervalIndex} is built, fewer nodes are cheaper to iterate on each update.
+   */
+  protected static final int MIN_INDEXED_NODES = 32;
+
   /**
    * References to {@link CaptureNode} that are used to extract information from to represent this CpuTreeNode,
    * such as {@link #getGlobalTotal()}, {@link #getGlobalChildrenTotal()}, etc...
@@ -37,6 +43,16 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myThreadTotal = 0;
   protected double myThreadChildrenTotal = 0;
 
+  /**
+   * Indices of the times of {@link #myNodes} and of their children, which are built on the first update so that the following updates,
+   * e.g. while the selection range is dragged, take logarithmic time. They are null when there are too few nodes to index.
+   */
+  @Nullable private IntervalIndex myGlobalIndex;
+  @Nullable private IntervalIndex myThreadIndex;
+  @Nullable private IntervalIndex myGlobalChildrenIndex;
+  @Nullable private IntervalIndex myThreadChildrenIndex;
+  private boolean myIndicesBuilt;
+
   public CpuTreeNode(String id) {
     myId = id;
   }
@@ -47,6 +63,7 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
 
   protected void addNode(@NotNull CaptureNode node) {
     myNodes.add(node);
+    myIndicesBuilt = false;
   }
 
   protected void addNodes(@NotNull List<CaptureNode> nodes) {
@@ -83,19 +100,74 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public void update(@NotNull Range range) {
-    myGlobalTotal = 0.0;
-    myGlobalChildrenTotal = 0;
-    myThreadTotal = 0.0;
-    myThreadChildrenTotal = 0;
+    myGlobalTotal = getNodesIntersection(range, ClockType.GLOBAL);
+    myThreadTotal = getNodesIntersection(range, ClockType.THREAD);
+    myGlobalChildrenTotal = getChildrenIntersection(range, ClockType.GLOBAL);
+    myThreadChildrenTotal = getChildrenIntersection(range, ClockType.THREAD);
+  }
+
+  /**
+   * Returns the total time of {@link #myNodes} within the given range.
+   */
+  protected double getNodesIntersection(@NotNull Range range, @NotNull ClockType type) {
+    buildIndices();
+    IntervalIndex index = type == ClockType.GLOBAL ? myGlobalIndex : myThreadIndex;
+    if (index != null) {
+      return index.getIntersectionLength(range.getMin(), range.getMax());
+    }
+    return getIntersection(range, myNodes, type);
+  }
 
+  /**
+   * Returns the total time of the children of {@link #myNodes} within the given range.
+   */
+  protected double getChildrenIntersection(@NotNull Range range, @NotNull ClockType type) {
+    buildIndices();
+    IntervalIndex index = type == ClockType.GLOBAL ? myGlobalChildrenIndex : myThreadChildrenIndex;
+    if (index != null) {
+      return index.getIntersectionLength(range.getMin(), range.getMax());
+    }
+    double total = 0;
     for (CaptureNode node : myNodes) {
-      myGlobalTotal += getIntersection(range, node, ClockType.GLOBAL);
-      myThreadTotal += getIntersection(range, node, ClockType.THREAD);
-      for (CaptureNode child : node.getChildren()) {
-        myGlobalChildrenTotal += getIntersection(range, child, ClockType.GLOBAL);
-        myThreadChildrenTotal += getIntersection(range, child, ClockType.THREAD);
-      }
+      total += getIntersection(range, node.getChildren(), type);
+    }
+    return total;
+  }
+
+  private void buildIndices() {
+    if (myIndicesBuilt) {
+      return;
+    }
+    myIndicesBuilt = true;
+
+    if (myNodes.size() >= MIN_INDEXED_NODES) {
+      myGlobalIndex = IntervalIndex.of(myNodes, ClockType.GLOBAL);
+      myThreadIndex = IntervalIndex.of(myNodes, ClockType.THREAD);
+    }
+    else {
+      myGlobalIndex = null;
+      myThreadIndex = null;
     }
+
+    List<CaptureNode> children = new ArrayList<>();
+    myNodes.forEach(node -> children.addAll(node.getChildren()));
+    // Many nodes without children are still indexed, so that they are not iterated on each update.
+    if (children.size() >= MIN_INDEXED_NODES || myNodes.size() >= MIN_INDEXED_NODES) {
+      myGlobalChildrenIndex = IntervalIndex.of(children, ClockType.GLOBAL);
+      myThreadChildrenIndex = IntervalIndex.of(children, ClockType.THREAD);
+    }
+    else {
+      myGlobalChildrenIndex = null;
+      myThreadChildrenIndex = null;
+    }
+  }
+
+  protected static double getIntersection(@NotNull Range range, @NotNull List<CaptureNode> nodes, @NotNull ClockType type) {
+    double total = 0;
+    for (CaptureNode node : nodes) {
+      total += getIntersection(range, node, type);
+    }
+    return total;
   }
 
   protected static double getIntersection(@NotNull Range range, @NotNull CaptureNode node, @NotNull ClockType type) {
@@ -105,6 +177,14 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public boolean inRange(Range range) {
+    if (!myNodes.isEmpty() && range.getMin() < range.getMax()) {
+      buildIndices();
+      // The start and end of the nodes are the times of their clock type, which is the same for all the nodes of a capture.
+      IntervalIndex index = myNodes.get(0).getClockType() == ClockType.GLOBAL ? myGlobalIndex : myThreadIndex;
+      if (index != null) {
+        return index.overlaps(range.getMin(), range.getMax());
+      }
+    }
     return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
   }
 
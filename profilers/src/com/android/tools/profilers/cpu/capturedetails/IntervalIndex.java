@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.CaptureNode;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Index of a fixed set of time intervals, which returns in logarithmic time the total length of their intersections with a range, and
+ * whether any of them overlaps a range.
+ *
+ * The total length of the intersections with [min, max] is {@code F(max) - F(min)}, where {@code F(x)} is the total length of the parts
+ * of the intervals before {@code x}: the sum of {@code x - start} over the intervals starting before {@code x}, minus the sum of
+ * {@code x - end} over the intervals ending before {@code x}. Both sums are computed from the sorted starts and ends of the intervals and
+ * their prefix sums.
+ */
+final class IntervalIndex {
+  /**
+   * Start and end of the intervals, sorted independently. They are relative to the smallest start, to keep the products computed as doubles
+   * accurate, and an end is never smaller than its start.
+   */
+  @NotNull private final long[] myStarts;
+  @NotNull private final long[] myEnds;
+
+  /**
+   * Prefix sums of {@link #myStarts} and {@link #myEnds}: {@code myStartSums[i]} is the sum of the {@code i} smallest starts.
+   */
+  @NotNull private final long[] myStartSums;
+  @NotNull private final long[] myEndSums;
+
+  private final long myOrigin;
+
+  private IntervalIndex(@NotNull long[] starts, @NotNull long[] ends) {
+    assert starts.length == ends.length;
+    Arrays.sort(starts);
+    myOrigin = starts.length == 0 ? 0 : starts[0];
+    for (int i = 0; i < ends.length; i++) {
+      ends[i] -= myOrigin;
+    }
+    Arrays.sort(ends);
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] -= myOrigin;
+    }
+    myStarts = starts;
+    myEnds = ends;
+    myStartSums = prefixSums(starts);
+    myEndSums = prefixSums(ends);
+  }
+
+  /**
+   * Returns an index of the times of the given nodes, with the given clock.
+   */
+  @NotNull
+  static IntervalIndex of(@NotNull List<CaptureNode> nodes, @NotNull ClockType type) {
+    long[] starts = new long[nodes.size()];
+    long[] ends = new long[nodes.size()];
+    for (int i = 0; i < nodes.size(); i++) {
+      CaptureNode node = nodes.get(i);
+      starts[i] = type == ClockType.GLOBAL ? node.getStartGlobal() : node.getStartThread();
+      // Intervals ending before they start do not intersect anything.
+      ends[i] = Math.max(starts[i], type == ClockType.GLOBAL ? node.getEndGlobal() : node.getEndThread());
+    }
+    return new IntervalIndex(starts, ends);
+  }
+
+  /**
+   * Returns the total length of the intersections of the intervals with [min, max], as the sum of
+   * {@link com.android.tools.adtui.model.Range#getIntersectionLength} over the intervals would.
+   */
+  double getIntersectionLength(double min, double max) {
+    if (max <= min || myStarts.length == 0) {
+      return 0;
+    }
+    return Math.max(0, getLengthBefore(max) - getLengthBefore(min));
+  }
+
+  /**
+   * Returns whether an interval starts before {@code max} and ends after {@code min}, which must be smaller than {@code max}.
+   */
+  boolean overlaps(double min, double max) {
+    assert min < max;
+    // The intervals ending before min all start before max, so the others are the ones that overlap.
+    return countBelow(myStarts, max - myOrigin) > countAtOrBelow(myEnds, min - myOrigin);
+  }
+
+  /**
+   * Returns the total length of the parts of the intervals before {@code x}.
+   */
+  private double getLengthBefore(double x) {
+    // Clamping x keeps the products finite, e.g. for a range ending at Double.MAX_VALUE.
+    double relative = Math.max(0, Math.min(x - myOrigin, myEnds[myEnds.length - 1]));
+    int started = countBelow(myStarts, relative);
+    int ended = countBelow(myEnds, relative);
+    // The intervals that started but have not ended contribute (x - start), the ones that ended contribute (end - start).
+    return (started - ended) * relative - (myStartSums[started] - myEndSums[ended]);
+  }
+
+  @NotNull
+  private static long[] prefixSums(@NotNull long[] values) {
+    long[] sums = new long[values.length + 1];
+    for (int i = 0; i < values.length; i++) {
+      sums[i + 1] = sums[i] + values[i];
+    }
+    return sums;
+  }
+
+  /**
+   * Returns the number of the sorted values that are smaller than {@code x}.
+   */
+  private static int countBelow(@NotNull long[] sorted, double x) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the number of the sorted values that are smaller than or equal to {@code x}.
+   */
+  private static int countAtOrBelow(@NotNull long[] sorted, double x) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.android.tools.profilers.memory;
 
+import com.android.tools.adtui.model.CachedMipmapDataSeries;
+import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
@@ -55,7 +57,7 @@ public class MemoryUsage extends LineChartModel {
                                                             @NotNull Function<MemorySample, Long> getter) {
     MemoryServiceGrpc.MemoryServiceBlockingStub client = profilers.getClient().getMemoryClient();
     MemoryDataSeries series = new MemoryDataSeries(client, profilers.getSession(), getter);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    return createCachedRangedSeries(profilers, name, range, series);
   }
 
   protected RangedContinuousSeries createRangedSeries(@NotNull StudioProfilers profilers,
@@ -70,7 +72,17 @@ public class MemoryUsage extends LineChartModel {
                                                                        Common.Event.Kind.MEMORY_USAGE,
                                                                        groupId,
                                                                        dataExtractor);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    return createCachedRangedSeries(profilers, name, range, series);
+  }
+
+  @NotNull
+  private static RangedContinuousSeries createCachedRangedSeries(@NotNull StudioProfilers profilers,
+                                                                 @NotNull String name,
+                                                                 @NotNull Range range,
+                                                                 @NotNull DataSeries<Long> series) {
+    Range dataRange = profilers.getTimeline().getDataRange();
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, new CachedMipmapDataSeries(series, dataRange),
+                                      dataRange);
   }
 
   @NotNull
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Dominator tree, retained sizes and distances to the GC roots of an object graph whose nodes are identified by dense int indices. The
+ * graph is passed in compressed sparse row form: the predecessors of node {@code i} are
+ * {@code predecessors[predecessorOffsets[i]]} to {@code predecessors[predecessorOffsets[i + 1] - 1]}. All GC roots are treated as the
+ * children of a virtual root, which dominates every reachable node.
+ *
+ * Immediate dominators are computed with the semi-NCA algorithm over primitive arrays. Its DFS and semi-dominator passes are inherently
+ * sequential, so the passes over the whole graph around them (inverting the edges and the breadth-first search for the distances to the
+ * roots) are split across the given {@link ForkJoinPool}.
+ */
+public final class DominatorTree {
+  /**
+   * Immediate dominator of the GC roots and of the nodes that are only dominated by the virtual root.
+   */
+  public static final int VIRTUAL_ROOT = -1;
+  /**
+   * Immediate dominator of the nodes that cannot be reached from the GC roots.
+   */
+  public static final int UNREACHABLE = -2;
+
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  @NotNull private final int[] myImmediateDominators;
+  @NotNull private final long[] myRetainedSizes;
+  @NotNull private final int[] myDepths;
+
+  private DominatorTree(@NotNull int[] immediateDominators, @NotNull long[] retainedSizes, @NotNull int[] depths) {
+    myImmediateDominators = immediateDominators;
+    myRetainedSizes = retainedSizes;
+    myDepths = depths;
+  }
+
+  /**
+   * @param nodeCount          number of nodes in the graph.
+   * @param roots              the nodes that are GC roots. Duplicates are allowed.
+   * @param predecessorOffsets {@code nodeCount + 1} offsets into {@code predecessors}.
+   * @param predecessors       the nodes holding a reference to each node, in the order given by {@code predecessorOffsets}.
+   * @param shallowSizes       the shallow size of each node.
+   */
+  @NotNull
+  public static DominatorTree compute(int nodeCount,
+                                      @NotNull int[] roots,
+                                      @NotNull int[] predecessorOffsets,
+                                      @NotNull int[] predecessors,
+                                      @NotNull long[] shallowSizes,
+                                      @NotNull ForkJoinPool pool) {
+    int[] successorOffsets = new int[nodeCount + 1];
+    int[] successors = new int[predecessors.length];
+    invert(nodeCount, predecessorOffsets, predecessors, successorOffsets, successors, pool);
+
+    // Preorder numbers start at 1, since 0 is taken by the virtual root.
+    int[] preorder = new int[nodeCount];
+    int[] vertices = new int[nodeCount + 1];
+    int[] parents = new int[nodeCount + 1];
+    int count = depthFirstSearch(nodeCount, roots, successorOffsets, successors, preorder, vertices, parents);
+
+    boolean[] isRoot = new boolean[nodeCount];
+    for (int root : roots) {
+      isRoot[root] = true;
+    }
+    int[] semi = computeSemiDominators(count, vertices, parents, preorder, isRoot, predecessorOffsets, predecessors);
+
+    // The NCA pass: the immediate dominator is the nearest DFS ancestor whose preorder number is not above the semi-dominator of the node.
+    int[] idom = parents;
+    for (int i = 1; i < count; i++) {
+      int dominator = idom[i];
+      while (dominator > semi[i]) {
+        dominator = idom[dominator];
+      }
+      idom[i] = dominator;
+    }
+
+    // Dominators precede the nodes they dominate in preorder, so a reverse pass accumulates each subtree before its root is reached.
+    long[] retainedByPreorder = new long[count];
+    for (int i = 1; i < count; i++) {
+      retainedByPreorder[i] = shallowSizes[vertices[i]];
+    }
+    for (int i = count - 1; i > 0; i--) {
+      retainedByPreorder[idom[i]] += retainedByPreorder[i];
+    }
+
+    int[] immediateDominators = new int[nodeCount];
+    long[] retainedSizes = new long[nodeCount];
+    parallelFor(pool, 0, nodeCount, node -> {
+      int i = preorder[node];
+      if (i == 0) {
+        immediateDominators[node] = UNREACHABLE;
+      }
+      else {
+        immediateDominators[node] = idom[i] == 0 ? VIRTUAL_ROOT : vertices[idom[i]];
+        retainedSizes[node] = retainedByPreorder[i];
+      }
+    });
+    return new DominatorTree(immediateDominators, retainedSizes, computeDepths(nodeCount, roots, successorOffsets, successors, pool));
+  }
+
+  /**
+   * @return the immediate dominator of the node, {@link #VIRTUAL_ROOT} or {@link #UNREACHABLE}.
+   */
+  public int getImmediateDominator(int node) {
+    return myImmediateDominators[node];
+  }
+
+  /**
+   * @return the total shallow size of the nodes dominated by the given node, including itself, or 0 if the node is unreachable.
+   */
+  public long getRetainedSize(int node) {
+    return myRetainedSizes[node];
+  }
+
+  /**
+   * @return the number of references on the shortest path from a GC root to the node, or {@link Integer#MAX_VALUE} if it is unreachable.
+   */
+  public int getDepth(int node) {
+    return myDepths[node];
+  }
+
+  private static void invert(int nodeCount,
+                             @NotNull int[] offsets,
+                             @NotNull int[] edges,
+                             @NotNull int[] invertedOffsets,
+                             @NotNull int[] invertedEdges,
+                             @NotNull ForkJoinPool pool) {
+    AtomicIntegerArray counts = new AtomicIntegerArray(nodeCount);
+    parallelFor(pool, 0, nodeCount, node -> {
+      for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+        counts.incrementAndGet(edges[e]);
+      }
+    });
+    for (int node = 0; node < nodeCount; node++) {
+      invertedOffsets[node + 1] = invertedOffsets[node] + counts.get(node);
+    }
+    AtomicIntegerArray cursors = counts;
+    parallelFor(pool, 0, nodeCount, node -> cursors.set(node, invertedOffsets[node]));
+    parallelFor(pool, 0, nodeCount, node -> {
+      for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+        invertedEdges[cursors.getAndIncrement(edges[e])] = node;
+      }
+    });
+  }
+
+  /**
+   * Numbers the nodes reachable from the roots in DFS preorder, filling in {@code vertices} (node by preorder number), {@code preorder}
+   * (preorder number by node, 0 if unreachable) and {@code parents} (preorder number of the DFS parent by preorder number).
+   *
+   * @return the number of preorder numbers assigned, including the one of the virtual root.
+   */
+  private static int depthFirstSearch(int nodeCount,
+                                      @NotNull int[] roots,
+                                      @NotNull int[] successorOffsets,
+                                      @NotNull int[] successors,
+                                      @NotNull int[] preorder,
+                                      @NotNull int[] vertices,
+                                      @NotNull int[] parents) {
+    int[] stack = new int[nodeCount];
+    int[] edgeCursors = new int[nodeCount];
+    int count = 1;
+    for (int root : roots) {
+      if (preorder[root] != 0) {
+        continue;
+      }
+      preorder[root] = count;
+      vertices[count] = root;
+      parents[count] = 0;
+      count++;
+      int depth = 0;
+      stack[0] = root;
+      edgeCursors[0] = successorOffsets[root];
+      while (depth >= 0) {
+        int node = stack[depth];
+        if (edgeCursors[depth] == successorOffsets[node + 1]) {
+          depth--;
+          continue;
+        }
+        int child = successors[edgeCursors[depth]++];
+        if (preorder[child] == 0) {
+          preorder[child] = count;
+          vertices[count] = child;
+          parents[count] = preorder[node];
+          count++;
+          stack[++depth] = child;
+          edgeCursors[depth] = successorOffsets[child];
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Computes the semi-dominator of each preorder number, processing them in reverse preorder and evaluating the minimum semi-dominator on
+   * forest paths with path compression.
+   */
+  @NotNull
+  private static int[] computeSemiDominators(int count,
+                                             @NotNull int[] vertices,
+                                             @NotNull int[] parents,
+                                             @NotNull int[] preorder,
+                                             @NotNull boolean[] isRoot,
+                                             @NotNull int[] predecessorOffsets,
+                                             @NotNull int[] predecessors) {
+    int[] semi = new int[count];
+    int[] labels = new int[count];
+    int[] ancestors = new int[count];
+    int[] path = new int[count];
+    for (int i = 0; i < count; i++) {
+      semi[i] = i;
+      labels[i] = i;
+      ancestors[i] = -1;
+    }
+
+    for (int i = count - 1; i > 0; i--) {
+      int node = vertices[i];
+      // A root is referenced by the virtual root, whose preorder number is the lowest possible semi-dominator.
+      int semiDominator = isRoot[node] ? 0 : parents[i];
+      for (int e = predecessorOffsets[node]; e < predecessorOffsets[node + 1] && semiDominator > 0; e++) {
+        int predecessor = preorder[predecessors[e]];
+        if (predecessor == 0) {
+          continue;
+        }
+        if (ancestors[predecessor] != -1) {
+          compress(predecessor, ancestors, labels, semi, path);
+          predecessor = labels[predecessor];
+        }
+        semiDominator = Math.min(semiDominator, semi[predecessor]);
+      }
+      semi[i] = semiDominator;
+      ancestors[i] = parents[i];
+    }
+    return semi;
+  }
+
+  private static void compress(int v, @NotNull int[] ancestors, @NotNull int[] labels, @NotNull int[] semi, @NotNull int[] path) {
+    int size = 0;
+    while (ancestors[ancestors[v]] != -1) {
+      path[size++] = v;
+      v = ancestors[v];
+    }
+    // Unwind from the node closest to the forest root, as the recursive formulation would.
+    while (size > 0) {
+      int node = path[--size];
+      int ancestor = ancestors[node];
+      if (semi[labels[ancestor]] < semi[labels[node]]) {
+        labels[node] = labels[ancestor];
+      }
+      ancestors[node] = ancestors[ancestor];
+    }
+  }
+
+  /**
+   * Level-synchronous breadth-first search from the roots, expanding each level in parallel.
+   */
+  @NotNull
+  private static int[] computeDepths(int nodeCount,
+                                     @NotNull int[] roots,
+                                     @NotNull int[] successorOffsets,
+                                     @NotNull int[] successors,
+                                     @NotNull ForkJoinPool pool) {
+    AtomicIntegerArray depths = new AtomicIntegerArray(nodeCount);
+    parallelFor(pool, 0, nodeCount, node -> depths.set(node, Integer.MAX_VALUE));
+    int[] frontier = new int[nodeCount];
+    int frontierSize = 0;
+    for (int root : roots) {
+      if (depths.compareAndSet(root, Integer.MAX_VALUE, 0)) {
+        frontier[frontierSize++] = root;
+      }
+    }
+
+    int[] next = new int[nodeCount];
+    AtomicInteger nextSize = new AtomicInteger();
+    for (int depth = 1; frontierSize > 0; depth++) {
+      int[] currentFrontier = frontier;
+      int[] nextFrontier = next;
+      int nextDepth = depth;
+      nextSize.set(0);
+      parallelFor(pool, 0, frontierSize, i -> {
+        int node = currentFrontier[i];
+        for (int e = successorOffsets[node]; e < successorOffsets[node + 1]; e++) {
+          int child = successors[e];
+          if (depths.compareAndSet(child, Integer.MAX_VALUE, nextDepth)) {
+            nextFrontier[nextSize.getAndIncrement()] = child;
+          }
+        }
+      });
+      frontierSize = nextSize.get();
+      frontier = next;
+      next = currentFrontier;
+    }
+
+    int[] result = new int[nodeCount];
+    parallelFor(pool, 0, nodeCount, node -> result[node] = depths.get(node));
+    return result;
+  }
+
+  private static void parallelFor(@NotNull ForkJoinPool pool, int from, int to, @NotNull IntConsumer body) {
+    if (to - from <= PARALLEL_THRESHOLD) {
+      for (int i = from; i < to; i++) {
+        body.accept(i);
+      }
+      return;
+    }
+    pool.invoke(new RangeAction(from, to, body));
+  }
+
+  private static final class RangeAction extends RecursiveAction {
+    private final int myFrom;
+    private final int myTo;
+    @NotNull private final IntConsumer myBody;
+
+    RangeAction(int from, int to, @NotNull IntConsumer body) {
+      myFrom = from;
+      myTo = to;
+      myBody = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom <= PARALLEL_THRESHOLD) {
+        for (int i = myFrom; i < myTo; i++) {
+          myBody.accept(i);
+        }
+        return;
+      }
+      int middle = (myFrom + myTo) >>> 1;
+      invokeAll(new RangeAction(myFrom, middle, myBody), new RangeAction(middle, myTo, myBody));
+    }
+  }
+}
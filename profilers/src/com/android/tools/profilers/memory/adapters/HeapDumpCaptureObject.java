@@ -24,15 +24,19 @@ import static com.android.tools.profilers.memory.adapters.ClassDb.JAVA_LANG_CLAS
 
 import com.android.tools.adtui.model.Range;
 import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.protobuf.CodedInputStream;
+import com.android.tools.idea.protobuf.WireFormat;
 import com.android.tools.perflib.heap.ClassObj;
 import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.RootObj;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor;
-import com.android.tools.perflib.heap.io.InMemoryBuffer;
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo;
 import com.android.tools.profiler.proto.Transport;
+import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.android.tools.profilers.ProfilerClient;
 import com.android.tools.profilers.analytics.FeatureTracker;
 import com.android.tools.profilers.memory.MemoryProfiler;
@@ -45,8 +49,21 @@ import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import gnu.trove.TLongIntHashMap;
 import gnu.trove.TLongObjectHashMap;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCalls;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -58,8 +75,11 @@ import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -93,6 +113,16 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  /**
+   * Set once the dominators have been computed by {@link DominatorTree}, in which case it replaces the depth and retained size that
+   * perflib keeps on each {@link Instance}. {@link #myNodeIndices} maps instance ids to the node indices of the tree.
+   */
+  @Nullable
+  private volatile DominatorTree myDominatorTree;
+
+  @NotNull
+  private final TLongIntHashMap myNodeIndices = new TLongIntHashMap();
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
@@ -107,6 +137,13 @@ public class HeapDumpCaptureObject implements CaptureObject {
   private final ExecutorService myExecutorService =
     Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-instancefilters").build());
 
+  /**
+   * The memory-mapped heap dump and the temporary file it maps, kept until {@link #unload()} releases them. Guarded by this object.
+   */
+  @Nullable private MemoryMappedFileBuffer myBuffer;
+  @Nullable private File myHprofFile;
+  private boolean myIsUnloaded;
+
   public HeapDumpCaptureObject(@NotNull ProfilerClient client,
                                @NotNull Common.Session session,
                                @NotNull HeapDumpInfo heapDumpInfo,
@@ -197,28 +234,43 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myClassDb;
   }
 
+  /**
+   * Parses the heap dump from a memory-mapped temporary file, so the dump itself never lives on the Java heap while it is analyzed. If
+   * {@link com.android.tools.profilers.FeatureConfig#isLazyHeapDumpAnalysisEnabled()} is on and a {@code queryJoiner} is provided, the
+   * class histograms are made available as soon as the dump is parsed, and the heap sets are refreshed with the depth and retained size
+   * of the instances once the dominators have been computed in the background.
+   */
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
-    Transport.BytesResponse response = myClient.getTransportClient().getBytes(Transport.BytesRequest.newBuilder()
-                                                                                .setStreamId(mySession.getStreamId())
-                                                                                .setId(Long.toString(myHeapDumpInfo.getStartTime()))
-                                                                                .build());
+    File hprofFile = spillToFile();
+    if (hprofFile == null) {
+      myIsLoadingError = true;
+      return false;
+    }
 
-    if (response.getContents() == ByteString.EMPTY) {
+    MemoryMappedFileBuffer buffer;
+    try {
+      buffer = new MemoryMappedFileBuffer(hprofFile);
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to map heap dump " + hprofFile, e);
+      hprofFile.delete();
       myIsLoadingError = true;
       return false;
     }
+    if (!retain(buffer, hprofFile)) {
+      // Unloaded while the dump was being fetched.
+      return false;
+    }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getContents().asReadOnlyByteBuffer());
-    Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
-    if (myProguardMap != null) {
-      snapshot = Snapshot.createSnapshot(buffer, myProguardMap, Collections.singletonList(nativeRegistryPostProcessor));
-    }
-    else {
-      snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Collections.singletonList(nativeRegistryPostProcessor));
+    Snapshot snapshot = Snapshot.createSnapshot(buffer, myProguardMap != null ? myProguardMap : new ProguardMap(),
+                                                Collections.singletonList(nativeRegistryPostProcessor));
+    boolean analyzeLazily =
+      queryJoiner != null && myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isLazyHeapDumpAnalysisEnabled();
+    if (!analyzeLazily) {
+      computeDominators(snapshot);
     }
-    snapshot.computeDominators();
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
     mySnapshot = snapshot;
 
@@ -277,9 +329,72 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
     myStage.refreshSelectedHeap();
 
+    if (analyzeLazily) {
+      // Instance filters run on the same executor, so they only see instances whose depth is known.
+      myExecutorService.submit(() -> {
+        computeDominators(snapshot);
+        queryJoiner.execute(() -> {
+          // Classifier sets accumulate the retained sizes of their instances when they are added, so re-add them now that those are known.
+          Set<InstanceObject> currentInstances = getInstances().collect(Collectors.toSet());
+          myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATING);
+          for (HeapSet heap : myHeapSets.values()) {
+            heap.clearClassifierSets();
+          }
+          currentInstances.forEach(instance -> myHeapSets.get(instance.getHeapId()).addDeltaInstanceObject(instance));
+          myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
+          myStage.refreshSelectedHeap();
+        });
+      });
+    }
+
     return true;
   }
 
+  /**
+   * Writes the heap dump to a temporary file, which is deleted by {@link #unload()} or on exit. The contents of the response are copied
+   * from the gRPC message into the file as they are parsed, so the dump is never held in a {@link ByteString} on the Java heap.
+   *
+   * @return the file, or null if the heap dump is unavailable.
+   */
+  @Nullable
+  private File spillToFile() {
+    Transport.BytesRequest request = Transport.BytesRequest.newBuilder()
+      .setStreamId(mySession.getStreamId())
+      .setId(Long.toString(myHeapDumpInfo.getStartTime()))
+      .build();
+    File hprofFile;
+    try {
+      hprofFile = FileUtil.createTempFile(String.format("heap_dump_%d", myHeapDumpInfo.getStartTime()), ".hprof", true);
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to create a temporary file for the heap dump", e);
+      return null;
+    }
+
+    TransportServiceGrpc.TransportServiceBlockingStub stub = myClient.getTransportClient();
+    MethodDescriptor<Transport.BytesRequest, Long> getBytesToFile = TransportServiceGrpc.METHOD_GET_BYTES
+      .toBuilder(TransportServiceGrpc.METHOD_GET_BYTES.getRequestMarshaller(), new BytesToFileMarshaller(hprofFile))
+      .build();
+    long size;
+    try {
+      size = ClientCalls.blockingUnaryCall(stub.getChannel(), getBytesToFile, stub.getCallOptions(), request);
+    }
+    catch (StatusRuntimeException e) {
+      getLogger().warn("Unable to write heap dump to a temporary file", e);
+      size = 0;
+    }
+    if (size == 0) {
+      hprofFile.delete();
+      return null;
+    }
+    return hprofFile;
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -290,9 +405,61 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myIsLoadingError;
   }
 
+  /**
+   * Keeps the mapped heap dump and its file to be released by {@link #unload()}, or releases them right away if it already ran.
+   *
+   * @return false if the capture has been unloaded.
+   */
+  private boolean retain(@NotNull MemoryMappedFileBuffer buffer, @NotNull File hprofFile) {
+    synchronized (this) {
+      if (!myIsUnloaded) {
+        myBuffer = buffer;
+        myHprofFile = hprofFile;
+        return true;
+      }
+    }
+    buffer.dispose();
+    hprofFile.delete();
+    return false;
+  }
+
   @Override
   public void unload() {
     myExecutorService.shutdownNow();
+    MemoryMappedFileBuffer buffer;
+    File hprofFile;
+    synchronized (this) {
+      myIsUnloaded = true;
+      buffer = myBuffer;
+      hprofFile = myHprofFile;
+      myBuffer = null;
+      myHprofFile = null;
+    }
+    if (buffer == null || hprofFile == null) {
+      return;
+    }
+    // The dominators may still be computed from the mapped dump in the background, so only unmap it once the executor is done with it.
+    myStage.getStudioProfilers().getIdeServices().getPoolExecutor().execute(() -> {
+      try {
+        while (!myExecutorService.awaitTermination(1, TimeUnit.SECONDS)) {
+          getLogger().debug("Waiting for the heap dump analysis to stop before releasing " + hprofFile);
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // Leave the mapping to the garbage collector rather than unmapping it while it may still be read.
+        hprofFile.deleteOnExit();
+        return;
+      }
+      buffer.dispose();
+      hprofFile.delete();
+    });
+  }
+
+  @VisibleForTesting
+  @Nullable
+  synchronized File getHprofFile() {
+    return myHprofFile;
   }
 
   @NotNull
@@ -313,6 +480,68 @@ public class HeapDumpCaptureObject implements CaptureObject {
              .asList(InstanceAttribute.LABEL, InstanceAttribute.DEPTH, InstanceAttribute.SHALLOW_SIZE, InstanceAttribute.RETAINED_SIZE);
   }
 
+  int getDepth(@NotNull Instance instance) {
+    DominatorTree dominatorTree = myDominatorTree;
+    return dominatorTree != null && myNodeIndices.containsKey(instance.getId())
+           ? dominatorTree.getDepth(myNodeIndices.get(instance.getId()))
+           : instance.getDistanceToGcRoot();
+  }
+
+  long getRetainedSize(@NotNull Instance instance) {
+    DominatorTree dominatorTree = myDominatorTree;
+    return dominatorTree != null && myNodeIndices.containsKey(instance.getId())
+           ? dominatorTree.getRetainedSize(myNodeIndices.get(instance.getId()))
+           : instance.getTotalRetainedSize();
+  }
+
+  private void computeDominators(@NotNull Snapshot snapshot) {
+    if (!myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isParallelHeapDumpDominatorsEnabled()) {
+      snapshot.computeDominators();
+      return;
+    }
+
+    List<Instance> nodes = new ArrayList<>();
+    for (Heap heap : snapshot.getHeaps()) {
+      nodes.addAll(heap.getClasses());
+      heap.forEachInstance(instance -> {
+        nodes.add(instance);
+        return true;
+      });
+    }
+    int nodeCount = nodes.size();
+    for (int i = 0; i < nodeCount; i++) {
+      myNodeIndices.put(nodes.get(i).getId(), i);
+    }
+
+    // Collect the hard references of every instance into primitive arrays. The index is only read from here on.
+    int[] predecessorOffsets = new int[nodeCount + 1];
+    IntStream.range(0, nodeCount).parallel().forEach(
+      i -> predecessorOffsets[i + 1] = (int)nodes.get(i).getHardReverseReferences().stream()
+        .filter(reference -> myNodeIndices.containsKey(reference.getId())).count());
+    for (int i = 0; i < nodeCount; i++) {
+      predecessorOffsets[i + 1] += predecessorOffsets[i];
+    }
+    int[] predecessors = new int[predecessorOffsets[nodeCount]];
+    long[] shallowSizes = new long[nodeCount];
+    IntStream.range(0, nodeCount).parallel().forEach(i -> {
+      int offset = predecessorOffsets[i];
+      for (Instance reference : nodes.get(i).getHardReverseReferences()) {
+        if (myNodeIndices.containsKey(reference.getId())) {
+          predecessors[offset++] = myNodeIndices.get(reference.getId());
+        }
+      }
+      shallowSizes[i] = nodes.get(i).getSize();
+    });
+    int[] roots = snapshot.getGCRoots().stream()
+      .map(RootObj::getReferredInstance)
+      .filter(instance -> instance != null && myNodeIndices.containsKey(instance.getId()))
+      .mapToInt(instance -> myNodeIndices.get(instance.getId()))
+      .toArray();
+
+    myDominatorTree =
+      DominatorTree.compute(nodeCount, roots, predecessorOffsets, predecessors, shallowSizes, ForkJoinPool.commonPool());
+  }
+
   @Nullable
   public InstanceObject findInstanceObject(@NotNull Instance instance) {
     if (mySnapshot == null) {
@@ -423,4 +652,49 @@ public class HeapDumpCaptureObject implements CaptureObject {
                                                                                 .build());
     return MemoryProfilerStage.canSafelyLoadHprof(response.getSerializedSize());
   }
+
+  /**
+   * Parses a {@link Transport.BytesResponse} by copying its contents into a file as they are read from the message, instead of into a
+   * {@link ByteString}. Parsing returns the number of bytes written.
+   */
+  private static final class BytesToFileMarshaller implements MethodDescriptor.Marshaller<Long> {
+    private static final int COPY_CHUNK_SIZE = 1 << 16;
+
+    @NotNull private final File myFile;
+
+    private BytesToFileMarshaller(@NotNull File file) {
+      myFile = file;
+    }
+
+    @Override
+    public InputStream stream(Long value) {
+      throw new UnsupportedOperationException("Only responses are parsed to a file");
+    }
+
+    @Override
+    public Long parse(InputStream stream) {
+      long size = 0;
+      try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(myFile))) {
+        CodedInputStream input = CodedInputStream.newInstance(stream);
+        input.setSizeLimit(Integer.MAX_VALUE);
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+          // Serialized responses contain the field at most once.
+          if (WireFormat.getTagFieldNumber(tag) != Transport.BytesResponse.CONTENTS_FIELD_NUMBER || size > 0) {
+            input.skipField(tag);
+            continue;
+          }
+          for (int remaining = input.readRawVarint32(); remaining > 0; ) {
+            byte[] chunk = input.readRawBytes(Math.min(remaining, COPY_CHUNK_SIZE));
+            outputStream.write(chunk);
+            remaining -= chunk.length;
+            size += chunk.length;
+          }
+        }
+      }
+      catch (IOException e) {
+        throw Status.INTERNAL.withDescription("Unable to write heap dump to " + myFile).withCause(e).asRuntimeException();
+      }
+      return size;
+    }
+  }
 }
\ No newline at end of file
@@ -33,7 +33,6 @@ import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.
 class HeapDumpInstanceObject implements InstanceObject {
   private static final String NAME_FORMATTER = "%s@%d (0x%x)";
   private static final int MAX_VALUE_TEXT_LENGTH = 1024;
-  private static final Comparator<Instance> DEPTH_COMPARATOR = Comparator.comparingInt(Instance::getDistanceToGcRoot);
   private static final String INVALID_STRING_VALUE = " ...<invalid string value>...";
   private static final Map<Type, ValueType> VALUE_TYPE_MAP = ImmutableMap.<Type, ValueObject.ValueType>builder()
     .put(Type.BOOLEAN, BOOLEAN)
@@ -150,7 +149,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public int getDepth() {
-    return myInstance.getDistanceToGcRoot();
+    return myCaptureObject.getDepth(myInstance);
   }
 
   @Override
@@ -165,7 +164,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public long getRetainedSize() {
-    return myInstance.getTotalRetainedSize();
+    return myCaptureObject.getRetainedSize(myInstance);
   }
 
   @Override
@@ -303,13 +302,14 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull
   public List<ReferenceObject> extractReferences() {
     // Sort hard referrers to appear first.
+    Comparator<Instance> depthComparator = Comparator.comparingInt(myCaptureObject::getDepth);
     List<Instance> sortedReferences = new ArrayList<>(myInstance.getHardReverseReferences());
-    sortedReferences.sort(DEPTH_COMPARATOR);
+    sortedReferences.sort(depthComparator);
 
     // Sort soft referrers to appear second.
     if (myInstance.getSoftReverseReferences() != null) {
       List<Instance> sortedSoftReferences = new ArrayList<>(myInstance.getSoftReverseReferences());
-      sortedSoftReferences.sort(DEPTH_COMPARATOR);
+      sortedSoftReferences.sort(depthComparator);
       sortedReferences.addAll(sortedSoftReferences);
     }
 
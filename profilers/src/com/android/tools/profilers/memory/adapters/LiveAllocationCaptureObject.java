@@ -50,6 +50,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntHashSet;
 import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TLongObjectHashMap;
 import java.io.IOException;
@@ -92,7 +94,8 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   @VisibleForTesting final ExecutorService myExecutorService;
   private final ClassDb myClassDb;
-  private final TIntObjectHashMap<LiveAllocationInstanceObject> myInstanceMap;
+  // Replaced on reset rather than cleared, so that views handed out for the previous range keep their data.
+  @NotNull private LiveAllocationRecords myRecords;
   private final TIntObjectHashMap<Memory.AllocationStack> myCallstackMap;
   // Mapping from unsymbolized addresses to symbolized native frames
   @NotNull private final TLongObjectHashMap<NativeCallStack.NativeFrame> myNativeFrameMap;
@@ -131,7 +134,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
 
     myClassDb = new ClassDb();
-    myInstanceMap = new TIntObjectHashMap<>();
+    myRecords = new LiveAllocationRecords();
     myCallstackMap = new TIntObjectHashMap<>();
     myNativeFrameMap = new TLongObjectHashMap<>();
     myMethodIdMap = new TLongObjectHashMap<>();
@@ -357,7 +360,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         // Clear and recreate the instance/heap sets if previous range does not intersect with the new one
         boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
         if (clear) {
-          myInstanceMap.clear();
+          myRecords = new LiveAllocationRecords();
           // If we are resetting, then first establish the object snapshot at the query range's start point.
           queryJavaInstanceSnapshot(newStartTimeNs, snapshotList);
           queryJniReferencesSnapshot(newStartTimeNs, snapshotList);
@@ -451,35 +454,42 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
   }
 
+  @Nullable
+  AllocationStack getCallstack(int stackId) {
+    if (stackId == 0) {
+      return null;
+    }
+    assert myCallstackMap.containsKey(stackId);
+    return myCallstackMap.get(stackId);
+  }
+
   @NotNull
-  private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
-    LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
-    if (instance == null) {
-      ClassDb.ClassEntry entry = myClassDb.getEntry(classTag);
-      AllocationStack callstack = null;
-      if (stackId != 0) {
-        assert myCallstackMap.containsKey(stackId);
-        callstack = myCallstackMap.get(stackId);
-      }
-      ThreadId thread = null;
-      if (threadId != 0) {
-        assert myThreadIdMap.containsKey(threadId);
-        thread = myThreadIdMap.get(threadId);
-      }
-      instance = new LiveAllocationInstanceObject(this, entry, thread, callstack, size, heapId);
-      myInstanceMap.put(tag, instance);
+  ThreadId getThreadId(int threadId) {
+    if (threadId == 0) {
+      return ThreadId.INVALID_THREAD_ID;
     }
+    assert myThreadIdMap.containsKey(threadId);
+    return myThreadIdMap.get(threadId);
+  }
 
-    return instance;
+  @NotNull
+  private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
+    return getInstanceObject(myRecords.getOrAddRow(tag, classTag, stackId, threadId, size, heapId));
+  }
+
+  @NotNull
+  private LiveAllocationInstanceObject getInstanceObject(int row) {
+    return new LiveAllocationInstanceObject(this, myRecords, row, myClassDb.getEntry(myRecords.getClassTag(row)));
   }
 
   @Nullable
   private JniReferenceInstanceObject getOrCreateJniRefObject(int tag, long refValue) {
-    LiveAllocationInstanceObject referencedObject = myInstanceMap.get(tag);
-    if (referencedObject == null) {
+    int row = myRecords.getRow(tag);
+    if (row == LiveAllocationRecords.NO_ROW) {
       // If a Java object can't be found by a given tag, nothing is known about the JNI reference and we can't track it.
       return null;
     }
+    LiveAllocationInstanceObject referencedObject = getInstanceObject(row);
     JniReferenceInstanceObject result = referencedObject.getJniRefByValue(refValue);
     if (result == null) {
       result = new JniReferenceInstanceObject(this, referencedObject, tag, refValue);
@@ -495,29 +505,36 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     // Retrieve all the event samples from the start of the session until the snapshot time.
     long sessionStartNs = mySession.getStartTimestamp();
     List<Memory.BatchAllocationEvents> eventsList = getAllocationEvents(sessionStartNs, snapshotTimeNs);
-    Map<Integer, LiveAllocationInstanceObject> liveInstanceMap = new LinkedHashMap<>();
+    // Rows of the allocations replayed so far. No view exists for these rows until the end of the replay, so the row of an allocation
+    // freed before the snapshot time can be reused by a later allocation right away.
+    TIntArrayList liveRows = new TIntArrayList();
+    TIntHashSet freedRows = new TIntHashSet();
     for (Memory.BatchAllocationEvents events : eventsList) {
       // Only consider events up to but excluding the snapshot time.
       Iterator<AllocationEvent> itr = events.getEventsList().stream().filter(evt -> evt.getTimestamp() < snapshotTimeNs)
         .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp)).iterator();
       while (itr.hasNext()) {
         AllocationEvent event = itr.next();
-        LiveAllocationInstanceObject instance;
         switch (event.getEventCase()) {
           case ALLOC_DATA:
-            // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
+            // Allocation - add a row. This might be released later if there is a corresponding FREE_DATA event.
             AllocationEvent.Allocation allocation = event.getAllocData();
-            instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
-                                                 allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
-            instance.setAllocationTime(event.getTimestamp());
-            liveInstanceMap.put(allocation.getTag(), instance);
+            boolean isNew = myRecords.getRow(allocation.getTag()) == LiveAllocationRecords.NO_ROW;
+            int row = myRecords.getOrAddRow(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
+                                            allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
+            myRecords.setAllocTime(row, event.getTimestamp());
+            if (isNew && !freedRows.remove(row)) {
+              liveRows.add(row);
+            }
             break;
           case FREE_DATA:
-            // Deallocation - there should be a matching InstanceObject.
+            // Deallocation - don't keep deallocated objects around to avoid bloating memory.
             AllocationEvent.Deallocation deallocation = event.getFreeData();
-            liveInstanceMap.remove(deallocation.getTag());
-            // Don't keep deallocated objects around in the cache to avoid bloating memory.
-            myInstanceMap.remove(deallocation.getTag());
+            int freedRow = myRecords.getRow(deallocation.getTag());
+            if (freedRow != LiveAllocationRecords.NO_ROW) {
+              myRecords.releaseTag(deallocation.getTag());
+              freedRows.add(freedRow);
+            }
             break;
           case CLASS_DATA:
             // ignore CLASS_DATA as they are handled via context updates.
@@ -526,7 +543,12 @@ public class LiveAllocationCaptureObject implements CaptureObject {
       }
     }
 
-    snapshotList.addAll(liveInstanceMap.values());
+    for (int i = 0; i < liveRows.size(); i++) {
+      int row = liveRows.get(i);
+      if (!freedRows.contains(row)) {
+        snapshotList.add(getInstanceObject(row));
+      }
+    }
   }
 
   private void queryJniReferencesSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
@@ -570,8 +592,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           case DELETE_GLOBAL_REF:
             refObject = instanceMap.remove(event.getRefValue());
             // If the referencing instance object is still around, remove the added JNI ref.
-            if (refObject != null && myInstanceMap.containsKey(event.getObjectTag())) {
-              myInstanceMap.get(event.getObjectTag()).removeJniRef(refObject);
+            int row = myRecords.getRow(event.getObjectTag());
+            if (refObject != null && row != LiveAllocationRecords.NO_ROW) {
+              myRecords.removeJniRef(row, refObject);
             }
             break;
         }
@@ -625,8 +648,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           case FREE_DATA:
             // New deallocation - there should be a matching InstanceObject.
             AllocationEvent.Deallocation deallocation = event.getFreeData();
-            assert myInstanceMap.containsKey(deallocation.getTag());
-            instance = myInstanceMap.get(deallocation.getTag());
+            int row = myRecords.getRow(deallocation.getTag());
+            assert row != LiveAllocationRecords.NO_ROW;
+            instance = getInstanceObject(row);
             instance.setDeallocTime(resetInstance ? Long.MAX_VALUE : event.getTimestamp());
             deallocationList.add(instance);
             break;
@@ -710,7 +734,8 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
 
 
-    NativeCallStack.Builder builder = NativeCallStack.newBuilder();
+    // Symbolize all the new frames of the backtrace together.
+    List<NativeCallStack.NativeFrame> unsymbolizedFrames = new ArrayList<>();
     for (long address : backtrace.getAddressesList()) {
       if (!myNativeFrameMap.containsKey(address)) {
         String module = "";
@@ -722,13 +747,22 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           offset = region.getFileOffset() + (address - region.getStartAddress());
         }
 
-        NativeCallStack.NativeFrame unsymbolizedFrame = NativeCallStack.NativeFrame.newBuilder()
-          .setAddress(address).setModuleName(module).setModuleOffset(offset).build();
-        NativeCallStack.NativeFrame symbolizedFrame = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
-          .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrame);
-        myNativeFrameMap.put(address, symbolizedFrame);
+        unsymbolizedFrames.add(NativeCallStack.NativeFrame.newBuilder()
+                                 .setAddress(address).setModuleName(module).setModuleOffset(offset).build());
+        // Backtraces of recursive calls have the same address several times.
+        myNativeFrameMap.put(address, unsymbolizedFrames.get(unsymbolizedFrames.size() - 1));
+      }
+    }
+    if (!unsymbolizedFrames.isEmpty()) {
+      List<NativeCallStack.NativeFrame> symbolizedFrames = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
+        .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrames);
+      for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+        myNativeFrameMap.put(unsymbolizedFrames.get(i).getAddress(), symbolizedFrames.get(i));
       }
+    }
 
+    NativeCallStack.Builder builder = NativeCallStack.newBuilder();
+    for (long address : backtrace.getAddressesList()) {
       builder.addFrames(myNativeFrameMap.get(address));
     }
     return builder.build();
@@ -20,66 +20,50 @@ import com.android.tools.profiler.proto.MemoryProfiler.StackFrameInfoRequest;
 import com.android.tools.profiler.proto.MemoryProfiler.StackFrameInfoResponse;
 import com.android.tools.profilers.stacktrace.CodeLocation;
 import com.android.tools.profilers.stacktrace.ThreadId;
-import gnu.trove.TLongObjectHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A view over a row of {@link LiveAllocationRecords}. Views are created on demand for the allocations handed to the UI, and two views of
+ * the same row are equal.
+ */
 public class LiveAllocationInstanceObject implements InstanceObject {
   @NotNull private final LiveAllocationCaptureObject myCaptureObject;
+  @NotNull private final LiveAllocationRecords myRecords;
+  private final int myRow;
   @NotNull private final ClassDb.ClassEntry myClassEntry;
-  @NotNull private final ValueType myValueType;
-  private long myAllocTime = Long.MIN_VALUE;
-  private long myDeallocTime = Long.MAX_VALUE;
-  private final long mySize;
-  private final int myHeapId;
-  @Nullable private AllocationStack myCallstack;
-  @Nullable private final ThreadId myThreadId;
-  @Nullable private TLongObjectHashMap<JniReferenceInstanceObject> myJniRefs = null;
-
-  public LiveAllocationInstanceObject(@NotNull LiveAllocationCaptureObject captureObject,
-                                      @NotNull ClassDb.ClassEntry classEntry,
-                                      @Nullable ThreadId threadId,
-                                      @Nullable AllocationStack callstack,
-                                      long size,
-                                      int heapId) {
+
+  LiveAllocationInstanceObject(@NotNull LiveAllocationCaptureObject captureObject,
+                               @NotNull LiveAllocationRecords records,
+                               int row,
+                               @NotNull ClassDb.ClassEntry classEntry) {
     myCaptureObject = captureObject;
+    myRecords = records;
+    myRow = row;
     myClassEntry = classEntry;
-    mySize = size;
-    myHeapId = heapId;
-    myThreadId = threadId == null ? ThreadId.INVALID_THREAD_ID : threadId;
-    myCallstack = callstack;
-    if ("java.lang.String".equals(classEntry.getClassName())) {
-      myValueType = ValueType.STRING;
-    }
-    else if (classEntry.getClassName().endsWith("[]")) {
-      myValueType = ValueType.ARRAY;
-    }
-    else {
-      myValueType = ValueType.OBJECT;
-    }
   }
 
   @Override
   public long getAllocTime() {
-    return myAllocTime;
+    return myRecords.getAllocTime(myRow);
   }
 
   // Set deallocTime as Long.MAX_VALUE when no deallocation event can be found
   public void setDeallocTime(long deallocTime) {
-    myDeallocTime = deallocTime;
+    myRecords.setDeallocTime(myRow, deallocTime);
   }
 
   // Set allocTime as Long.MIN_VALUE when no allocation event can be found
   public void setAllocationTime(long allocTime) {
-    myAllocTime = allocTime;
+    myRecords.setAllocTime(myRow, allocTime);
   }
 
   @Override
   public long getDeallocTime() {
-    return myDeallocTime;
+    return myRecords.getDeallocTime(myRow);
   }
 
   @Override
@@ -89,12 +73,12 @@ public class LiveAllocationInstanceObject implements InstanceObject {
 
   @Override
   public boolean hasAllocTime() {
-    return myAllocTime != Long.MIN_VALUE;
+    return getAllocTime() != Long.MIN_VALUE;
   }
 
   @Override
   public boolean hasDeallocTime() {
-    return myDeallocTime != Long.MAX_VALUE;
+    return getDeallocTime() != Long.MAX_VALUE;
   }
 
   @NotNull
@@ -105,27 +89,28 @@ public class LiveAllocationInstanceObject implements InstanceObject {
 
   @Override
   public int getHeapId() {
-    return myHeapId;
+    return myRecords.getHeapId(myRow);
   }
 
   @Override
   public int getShallowSize() {
     // TODO upgrade to long
-    return (int)mySize;
+    return (int)myRecords.getSize(myRow);
   }
 
   @Nullable
   @Override
   public AllocationStack getAllocationCallStack() {
-    return myCallstack;
+    return myCaptureObject.getCallstack(myRecords.getStackId(myRow));
   }
 
   @NotNull
   @Override
   public List<CodeLocation> getAllocationCodeLocations() {
     List<CodeLocation> codeLocations = new ArrayList<>();
-    if (myCallstack != null && myCallstack.getFrameCase() == AllocationStack.FrameCase.ENCODED_STACK) {
-      AllocationStack.EncodedFrameWrapper encodedFrames = myCallstack.getEncodedStack();
+    AllocationStack callstack = getAllocationCallStack();
+    if (callstack != null && callstack.getFrameCase() == AllocationStack.FrameCase.ENCODED_STACK) {
+      AllocationStack.EncodedFrameWrapper encodedFrames = callstack.getEncodedStack();
       for (AllocationStack.EncodedFrame frame : encodedFrames.getFramesList()) {
         AllocationStack.StackFrame resolvedFrame = myCaptureObject.getStackFrame(frame.getMethodId());
         CodeLocation.Builder builder = new CodeLocation.Builder(resolvedFrame.getClassName())
@@ -141,7 +126,7 @@ public class LiveAllocationInstanceObject implements InstanceObject {
   @NotNull
   @Override
   public ThreadId getAllocationThreadId() {
-    return myThreadId;
+    return myCaptureObject.getThreadId(myRecords.getThreadId(myRow));
   }
 
   @NotNull
@@ -153,7 +138,13 @@ public class LiveAllocationInstanceObject implements InstanceObject {
   @NotNull
   @Override
   public ValueType getValueType() {
-    return myValueType;
+    if ("java.lang.String".equals(myClassEntry.getClassName())) {
+      return ValueType.STRING;
+    }
+    else if (myClassEntry.getClassName().endsWith("[]")) {
+      return ValueType.ARRAY;
+    }
+    return ValueType.OBJECT;
   }
 
   @NotNull
@@ -164,22 +155,31 @@ public class LiveAllocationInstanceObject implements InstanceObject {
 
   @Nullable
   public JniReferenceInstanceObject getJniRefByValue(long refValue) {
-    if (myJniRefs == null) return null;
-    return myJniRefs.get(refValue);
+    return myRecords.getJniRef(myRow, refValue);
   }
 
   public void addJniRef(@NotNull JniReferenceInstanceObject ref) {
-    if (myJniRefs == null) {
-      myJniRefs = new TLongObjectHashMap<>();
-    }
-    myJniRefs.put(ref.getRefValue(), ref);
+    myRecords.addJniRef(myRow, ref);
   }
 
   public void removeJniRef(@NotNull JniReferenceInstanceObject ref) {
-    if (myJniRefs == null) {
-      return;
+    myRecords.removeJniRef(myRow, ref);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
     }
+    if (!(obj instanceof LiveAllocationInstanceObject)) {
+      return false;
+    }
+    LiveAllocationInstanceObject other = (LiveAllocationInstanceObject)obj;
+    return myRecords == other.myRecords && myRow == other.myRow;
+  }
 
-    myJniRefs.remove(ref.getRefValue());
+  @Override
+  public int hashCode() {
+    return 31 * System.identityHashCode(myRecords) + myRow;
   }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongObjectHashMap;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Struct-of-arrays store for the allocations tracked by a {@link LiveAllocationCaptureObject}. Each allocation is a row of primitive
+ * columns held in fixed-size chunks, so tracking an allocation costs a few dozen bytes and no object for the GC to trace.
+ * {@link LiveAllocationInstanceObject}s are lightweight views over a row and are only created for the allocations handed to the UI.
+ *
+ * A view keeps describing the same allocation after its tag is removed, unless the row is explicitly released for reuse by a caller that
+ * knows no view of it exists. The store is written by the capture's loading thread only, and rows are handed to the UI through the query
+ * joiner after they have been written.
+ */
+final class LiveAllocationRecords {
+  static final int NO_ROW = -1;
+
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  @NotNull private final TIntIntHashMap myRowsByTag = new TIntIntHashMap();
+  @NotNull private int[][] myClassTags = new int[0][];
+  @NotNull private int[][] myStackIds = new int[0][];
+  @NotNull private int[][] myThreadIds = new int[0][];
+  @NotNull private int[][] myHeapIds = new int[0][];
+  @NotNull private long[][] mySizes = new long[0][];
+  @NotNull private long[][] myAllocTimes = new long[0][];
+  @NotNull private long[][] myDeallocTimes = new long[0][];
+  // JNI references are rare, so they are kept in a sparse map keyed by row.
+  @NotNull private final TIntObjectHashMap<TLongObjectHashMap<JniReferenceInstanceObject>> myJniRefs = new TIntObjectHashMap<>();
+  @NotNull private final TIntArrayList myReleasedRows = new TIntArrayList();
+  private int myRowCount;
+
+  /**
+   * @return the row of the allocation with the given tag, adding it if the tag is not tracked.
+   */
+  int getOrAddRow(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
+    if (myRowsByTag.containsKey(tag)) {
+      return myRowsByTag.get(tag);
+    }
+    int row = myReleasedRows.isEmpty() ? myRowCount++ : myReleasedRows.remove(myReleasedRows.size() - 1);
+    int chunk = row >>> CHUNK_SHIFT;
+    if (chunk == myClassTags.length) {
+      myClassTags = grow(myClassTags);
+      myStackIds = grow(myStackIds);
+      myThreadIds = grow(myThreadIds);
+      myHeapIds = grow(myHeapIds);
+      mySizes = grow(mySizes);
+      myAllocTimes = grow(myAllocTimes);
+      myDeallocTimes = grow(myDeallocTimes);
+    }
+    int offset = row & CHUNK_MASK;
+    myClassTags[chunk][offset] = classTag;
+    myStackIds[chunk][offset] = stackId;
+    myThreadIds[chunk][offset] = threadId;
+    myHeapIds[chunk][offset] = heapId;
+    mySizes[chunk][offset] = size;
+    myAllocTimes[chunk][offset] = Long.MIN_VALUE;
+    myDeallocTimes[chunk][offset] = Long.MAX_VALUE;
+    myRowsByTag.put(tag, row);
+    return row;
+  }
+
+  /**
+   * @return the row of the allocation with the given tag, or {@link #NO_ROW} if the tag is not tracked.
+   */
+  int getRow(int tag) {
+    return myRowsByTag.containsKey(tag) ? myRowsByTag.get(tag) : NO_ROW;
+  }
+
+  /**
+   * Stops tracking the given tag. Its row stays readable by existing views.
+   */
+  void removeTag(int tag) {
+    myRowsByTag.remove(tag);
+  }
+
+  /**
+   * Stops tracking the given tag and lets its row be reused by the next allocation. Must only be called if no view of the row exists.
+   */
+  void releaseTag(int tag) {
+    if (myRowsByTag.containsKey(tag)) {
+      int row = myRowsByTag.remove(tag);
+      myJniRefs.remove(row);
+      myReleasedRows.add(row);
+    }
+  }
+
+  /**
+   * @return the number of rows holding a tracked allocation.
+   */
+  int getTrackedCount() {
+    return myRowsByTag.size();
+  }
+
+  int getClassTag(int row) {
+    return myClassTags[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  int getStackId(int row) {
+    return myStackIds[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  int getThreadId(int row) {
+    return myThreadIds[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  int getHeapId(int row) {
+    return myHeapIds[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  long getSize(int row) {
+    return mySizes[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  long getAllocTime(int row) {
+    return myAllocTimes[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  void setAllocTime(int row, long allocTime) {
+    myAllocTimes[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = allocTime;
+  }
+
+  long getDeallocTime(int row) {
+    return myDeallocTimes[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  void setDeallocTime(int row, long deallocTime) {
+    myDeallocTimes[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = deallocTime;
+  }
+
+  @Nullable
+  JniReferenceInstanceObject getJniRef(int row, long refValue) {
+    TLongObjectHashMap<JniReferenceInstanceObject> refs = myJniRefs.get(row);
+    return refs == null ? null : refs.get(refValue);
+  }
+
+  void addJniRef(int row, @NotNull JniReferenceInstanceObject ref) {
+    TLongObjectHashMap<JniReferenceInstanceObject> refs = myJniRefs.get(row);
+    if (refs == null) {
+      refs = new TLongObjectHashMap<>();
+      myJniRefs.put(row, refs);
+    }
+    refs.put(ref.getRefValue(), ref);
+  }
+
+  void removeJniRef(int row, @NotNull JniReferenceInstanceObject ref) {
+    TLongObjectHashMap<JniReferenceInstanceObject> refs = myJniRefs.get(row);
+    if (refs != null) {
+      refs.remove(ref.getRefValue());
+    }
+  }
+
+  @NotNull
+  private static int[][] grow(@NotNull int[][] chunks) {
+    int[][] grown = Arrays.copyOf(chunks, chunks.length + 1);
+    grown[chunks.length] = new int[CHUNK_SIZE];
+    return grown;
+  }
+
+  @NotNull
+  private static long[][] grow(@NotNull long[][] chunks) {
+    long[][] grown = Arrays.copyOf(chunks, chunks.length + 1);
+    grown[chunks.length] = new long[CHUNK_SIZE];
+    return grown;
+  }
+}
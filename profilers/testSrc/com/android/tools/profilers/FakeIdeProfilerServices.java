@@ -83,6 +83,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myIsJniReferenceTrackingEnabled = false;
 
+  /**
+   * Toggle for computing the dominators of heap dumps after their class histograms are shown.
+   */
+  private boolean myLazyHeapDumpAnalysisEnabled = false;
+
   /**
    * Toggle for faking live allocation tracking support in tests.
    */
@@ -93,6 +98,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myMemorySnapshotEnabled = true;
 
+  /**
+   * Toggle for computing heap dump dominators with {@link com.android.tools.profilers.memory.adapters.DominatorTree} instead of perflib.
+   */
+  private boolean myParallelHeapDumpDominatorsEnabled = false;
+
   /**
    * Whether a native CPU profiling configuration is preferred over a Java one.
    */
@@ -259,6 +269,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
       @Override
       public boolean isJniReferenceTrackingEnabled() { return myIsJniReferenceTrackingEnabled; }
 
+      @Override
+      public boolean isLazyHeapDumpAnalysisEnabled() {
+        return myLazyHeapDumpAnalysisEnabled;
+      }
+
       @Override
       public boolean isLiveAllocationsEnabled() {
         return myLiveTrackingEnabled;
@@ -274,6 +289,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return myMemorySnapshotEnabled;
       }
 
+      @Override
+      public boolean isParallelHeapDumpDominatorsEnabled() {
+        return myParallelHeapDumpDominatorsEnabled;
+      }
+
       @Override
       public boolean isPerfettoEnabled() { return myPerfettoEnabled; }
 
@@ -397,6 +417,14 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
 
   public void enableJniReferenceTracking(boolean enabled) { myIsJniReferenceTrackingEnabled = enabled; }
 
+  public void enableLazyHeapDumpAnalysis(boolean enabled) {
+    myLazyHeapDumpAnalysisEnabled = enabled;
+  }
+
+  public void enableParallelHeapDumpDominators(boolean enabled) {
+    myParallelHeapDumpDominatorsEnabled = enabled;
+  }
+
   public void enableLiveAllocationTracking(boolean enabled) {
     myLiveTrackingEnabled = enabled;
   }
@@ -15,13 +15,24 @@
  */
 package com.android.tools.profilers.cpu.art;
 
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.perflib.vmtrace.MethodInfo;
+import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.perflib.vmtrace.VmTraceHandler;
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -97,6 +108,146 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void testTreesMatchCaptureNodeConstructor() throws IOException {
+    for (String trace : new String[]{"basic.trace", "valid_trace.trace"}) {
+      Map<Integer, CaptureNode> expectedTrees = parseReferenceTrees(trace);
+      Map<Integer, CaptureNode> trees = parseTrees(trace);
+
+      assertEquals(expectedTrees.keySet(), trees.keySet());
+      for (int threadId : trees.keySet()) {
+        assertSameTree(expectedTrees.get(threadId), trees.get(threadId));
+      }
+    }
+  }
+
+  @Test
+  public void testFilterAndClockTypeMatchCaptureNodeConstructor() throws IOException {
+    Map<Integer, CaptureNode> expectedTrees = parseReferenceTrees("valid_trace.trace");
+    Map<Integer, CaptureNode> trees = parseTrees("valid_trace.trace");
+
+    for (int threadId : trees.keySet()) {
+      CaptureNode expected = expectedTrees.get(threadId);
+      CaptureNode tree = trees.get(threadId);
+      for (String filterString : new String[]{"android", "Thread.run", ""}) {
+        Filter filter = new Filter(filterString);
+        assertEquals(expected.applyFilter(filter), tree.applyFilter(filter));
+        assertSameTree(expected, tree);
+      }
+      for (ClockType clockType : new ClockType[]{ClockType.THREAD, ClockType.GLOBAL}) {
+        expected.setSubtreeClockType(clockType);
+        tree.setSubtreeClockType(clockType);
+        assertSameTree(expected, tree);
+      }
+    }
+  }
+
+  private static void assertSameTree(@NotNull CaptureNode expected, @NotNull CaptureNode actual) {
+    Deque<CaptureNode[]> stack = new ArrayDeque<>();
+    stack.push(new CaptureNode[]{expected, actual});
+    while (!stack.isEmpty()) {
+      CaptureNode[] nodes = stack.pop();
+      CaptureNode expectedNode = nodes[0];
+      CaptureNode node = nodes[1];
+      assertEquals(expectedNode.getData().getFullName(), node.getData().getFullName());
+      assertEquals(expectedNode.getDepth(), node.getDepth());
+      assertEquals(expectedNode.getStartGlobal(), node.getStartGlobal());
+      assertEquals(expectedNode.getEndGlobal(), node.getEndGlobal());
+      assertEquals(expectedNode.getStartThread(), node.getStartThread());
+      assertEquals(expectedNode.getEndThread(), node.getEndThread());
+      assertEquals(expectedNode.getClockType(), node.getClockType());
+      assertEquals(expectedNode.getStart(), node.getStart());
+      assertEquals(expectedNode.getEnd(), node.getEnd());
+      assertEquals(expectedNode.getFilterType(), node.getFilterType());
+      assertEquals(expectedNode.getChildCount(), node.getChildCount());
+      for (int i = 0; i < node.getChildCount(); i++) {
+        assertSame(node, node.getChildAt(i).getParent());
+        stack.push(new CaptureNode[]{expectedNode.getChildAt(i), node.getChildAt(i)});
+      }
+    }
+  }
+
+  @NotNull
+  private static Map<Integer, CaptureNode> parseTrees(@NotNull String trace) throws IOException {
+    ArtTraceHandler handler = new ArtTraceHandler();
+    new VmTraceParser(CpuProfilerTestUtils.getTraceFile(trace), handler).parse();
+    Map<Integer, CaptureNode> trees = new HashMap<>();
+    handler.getThreadsGraph().forEach((thread, tree) -> trees.put(thread.getId(), tree));
+    return trees;
+  }
+
+  @NotNull
+  private static Map<Integer, CaptureNode> parseReferenceTrees(@NotNull String trace) throws IOException {
+    CaptureNodeConstructorHandler handler = new CaptureNodeConstructorHandler();
+    new VmTraceParser(CpuProfilerTestUtils.getTraceFile(trace), handler).parse();
+    return handler.getTrees();
+  }
+
+  /**
+   * Builds the trees of the threads of a trace with {@link CaptureNodeConstructor}, like {@link ArtTraceHandler} used to.
+   */
+  private static class CaptureNodeConstructorHandler implements VmTraceHandler {
+    private final Map<Integer, String> myThreads = new HashMap<>();
+    private final Map<Long, CaptureNodeModel> myMethods = new HashMap<>();
+    private final Map<Integer, CaptureNodeConstructor> myNodeConstructors = new HashMap<>();
+    private long myStartTimeUs;
+
+    @Override
+    public void addThread(int id, String name) {
+      myThreads.put(id, name);
+    }
+
+    @Override
+    public void addMethod(long id, MethodInfo info) {
+      myMethods.put(id, new JavaMethodModel(info.methodName, info.className, info.signature));
+    }
+
+    @Override
+    public void addMethodAction(int threadId, long methodId, TraceAction methodAction, int threadTime, int globalTime) {
+      myThreads.putIfAbsent(threadId, String.format("Thread id: %1$d", threadId));
+      myMethods.putIfAbsent(methodId, new SingleNameModel("unknown"));
+      CaptureNodeConstructor constructor =
+        myNodeConstructors.computeIfAbsent(threadId, id -> new CaptureNodeConstructor(new SingleNameModel(myThreads.get(id))));
+      constructor.addTraceAction(myMethods.get(methodId), methodAction, threadTime, globalTime);
+    }
+
+    @Override
+    public void setStartTimeUs(long startTimeUs) {
+      myStartTimeUs = startTimeUs;
+    }
+
+    @Override
+    public void setProperty(String key, String value) {
+    }
+
+    @Override
+    public void setVersion(int version) {
+    }
+
+    @NotNull
+    Map<Integer, CaptureNode> getTrees() {
+      Map<Integer, CaptureNode> trees = new HashMap<>();
+      myNodeConstructors.forEach((threadId, constructor) -> {
+        CaptureNode topLevel = constructor.getTopLevel();
+        long topLevelStart = topLevel.getStartGlobal() + myStartTimeUs;
+        Deque<CaptureNode> stack = new ArrayDeque<>();
+        stack.push(topLevel);
+        while (!stack.isEmpty()) {
+          CaptureNode node = stack.pop();
+          node.setStartGlobal(myStartTimeUs + node.getStartGlobal());
+          node.setEndGlobal(myStartTimeUs + node.getEndGlobal());
+          CaptureNode parent = node.getParent();
+          node.setDepth(parent == null ? 0 : parent.getDepth() + 1);
+          node.setStartThread(topLevelStart + node.getStartThread());
+          node.setEndThread(topLevelStart + node.getEndThread());
+          node.getChildren().forEach(stack::push);
+        }
+        trees.put(threadId, topLevel);
+      });
+      return trees;
+    }
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("basic.trace"), handler);
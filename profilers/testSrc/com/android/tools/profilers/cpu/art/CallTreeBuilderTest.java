@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CallTreeBuilderTest {
+  private static final List<CaptureNodeModel> METHODS = Arrays.asList(new SingleNameModel("a"), new SingleNameModel("b"));
+
+  @Test
+  public void callsAreNestedUnderTopLevel() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(0, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 1, 12);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 2, 14);
+    builder.addTraceAction(0, TraceAction.METHOD_EXIT, 3, 16);
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 4, 18);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 5, 20);
+
+    CaptureNode root = builder.build(METHODS, 1000).getRoot();
+
+    assertEquals("thread", root.getData().getId());
+    assertEquals(1009, root.getStartGlobal());
+    assertEquals(1021, root.getEndGlobal());
+    assertEquals(2, root.getChildCount());
+
+    CaptureNode a = root.getChildAt(0);
+    assertEquals("a", a.getData().getId());
+    assertSame(root, a.getParent());
+    assertEquals(1, a.getDepth());
+    assertEquals(1010, a.getStartGlobal());
+    assertEquals(1016, a.getEndGlobal());
+    // Thread time is relative to the start of the top level node.
+    assertEquals(1009, a.getStartThread());
+    assertEquals(1012, a.getEndThread());
+
+    CaptureNode b = a.getChildAt(0);
+    assertEquals("b", b.getData().getId());
+    assertSame(a, b.getParent());
+    assertEquals(2, b.getDepth());
+    assertEquals(0, b.getChildCount());
+    assertEquals("b", root.getChildAt(1).getData().getId());
+  }
+
+  @Test
+  public void exitWithoutEnterAdoptsPreviousCalls() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 1, 12);
+    builder.addTraceAction(0, TraceAction.METHOD_EXIT, 2, 14);
+
+    CaptureNode root = builder.build(METHODS, 0).getRoot();
+
+    assertEquals(1, root.getChildCount());
+    CaptureNode a = root.getChildAt(0);
+    assertEquals("a", a.getData().getId());
+    assertEquals(9, a.getStartGlobal());
+    assertEquals(14, a.getEndGlobal());
+    assertEquals(1, a.getChildCount());
+    assertEquals("b", a.getChildAt(0).getData().getId());
+    assertEquals(2, a.getChildAt(0).getDepth());
+  }
+
+  @Test
+  public void unfinishedCallsAreClosed() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(0, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 1, 12);
+
+    CaptureNode root = builder.build(METHODS, 0).getRoot();
+
+    CaptureNode a = root.getChildAt(0);
+    CaptureNode b = a.getChildAt(0);
+    assertEquals(13, b.getEndGlobal());
+    assertEquals(14, a.getEndGlobal());
+    assertEquals(15, root.getEndGlobal());
+  }
+
+  @Test
+  public void maxDepthIsReadFromTree() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(0, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 1, 12);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 2, 14);
+    builder.addTraceAction(0, TraceAction.METHOD_EXIT, 3, 16);
+    builder.addTraceAction(1, TraceAction.METHOD_ENTER, 4, 18);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 5, 20);
+
+    CaptureNode root = builder.build(METHODS, 0).getRoot();
+
+    assertEquals(2, root.getMaxDepth());
+    assertEquals(2, root.getChildAt(0).getMaxDepth());
+    assertEquals(1, root.getChildAt(1).getMaxDepth());
+  }
+
+  @Test
+  public void addedChildrenFollowTreeChildren() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(0, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(0, TraceAction.METHOD_EXIT, 1, 12);
+    CaptureNode root = builder.build(METHODS, 0).getRoot();
+
+    CaptureNode added = new CaptureNode(new SingleNameModel("added"));
+    added.setDepth(3);
+    root.addChild(added);
+
+    assertEquals(2, root.getChildCount());
+    assertEquals("a", root.getChildAt(0).getData().getId());
+    assertSame(added, root.getChildAt(1));
+    assertSame(root, added.getParent());
+    assertEquals(3, root.getMaxDepth());
+    root.setSubtreeClockType(ClockType.THREAD);
+    assertEquals(ClockType.THREAD, root.getChildAt(0).getClockType());
+    assertEquals(ClockType.THREAD, added.getClockType());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void exitFromAnotherMethodFails() {
+    CallTreeBuilder builder = new CallTreeBuilder(new SingleNameModel("thread"));
+    builder.addTraceAction(0, TraceAction.METHOD_ENTER, 0, 10);
+    builder.addTraceAction(1, TraceAction.METHOD_EXIT, 1, 12);
+
+    builder.build(METHODS, 0);
+  }
+}
@@ -26,6 +26,9 @@ import java.util.List;
 /**
  * {@link CaptureNodeConstructor} helps in constructing per thread call stacks from a sequence of
  * trace events (method entry/exit events).
+ *
+ * This is how {@link ArtTraceHandler} built its trees of {@link CaptureNode}s before {@link CallTreeBuilder}, kept as a reference for
+ * the trees it builds.
  */
 class CaptureNodeConstructor {
   /**
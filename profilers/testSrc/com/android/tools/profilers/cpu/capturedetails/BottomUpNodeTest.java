@@ -19,11 +19,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.VisualNodeCaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
@@ -336,6 +342,69 @@ public class BottomUpNodeTest {
     traverseAndCheck(root, expectedNodes);
   }
 
+  /**
+   * Checks the times of a bottom up tree of multiple threads, whose nodes are merged and interlaced, against the times of the nodes which
+   * are not nested in another node of the same bottom up node.
+   */
+  @Test
+  public void testIndexedTimesOfMergedThreadsMatchNodeTimes() {
+    Random random = new Random(42);
+    List<CaptureNode> threads = new ArrayList<>();
+    // The same way as multiple threads are selected in CaptureDetails.BottomUp.
+    CaptureNode root = new VisualNodeCaptureNode(new SingleNameModel(""));
+    root.setStartGlobal(0);
+    root.setEndGlobal(1000);
+    for (int i = 0; i < 3; ++i) {
+      CaptureNode thread = TopDownNodeTest.newNode("main", 0, 1000);
+      TopDownNodeTest.addRandomChildren(thread, 5, random);
+      threads.add(thread);
+      root.addChild(thread);
+    }
+
+    List<BottomUpNode> nodes = new ArrayList<>();
+    traverse(new BottomUpNode(root), nodes);
+    // Make sure that some of the nodes have enough outer nodes to be indexed.
+    assertTrue(nodes.stream().anyMatch(node -> getOuterNodes(node).size() >= CpuTreeNode.MIN_INDEXED_NODES));
+
+    for (ClockType clockType : ClockType.values()) {
+      threads.forEach(thread -> thread.setSubtreeClockType(clockType));
+      for (int i = 0; i < 100; ++i) {
+        Range range = TopDownNodeTest.randomRange(random, root);
+        for (BottomUpNode node : nodes) {
+          node.update(range);
+          double total = CpuTreeNode.getIntersection(range, getOuterNodes(node), ClockType.GLOBAL);
+          double self = CpuTreeNode.getIntersection(range, node.getNodes(), ClockType.GLOBAL);
+          for (CaptureNode captureNode : node.getNodes()) {
+            self -= CpuTreeNode.getIntersection(range, captureNode.getChildren(), ClockType.GLOBAL);
+          }
+          assertEquals(total, node.getGlobalTotal(), EPS);
+          assertEquals(total - self, node.getGlobalChildrenTotal(), EPS);
+          assertEquals(TopDownNodeTest.nodesInRange(node.getNodes(), range), node.inRange(range));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the nodes of the given bottom up node which are not nested in another of its nodes, i.e. which are at the top of the call
+   * stack.
+   */
+  private static List<CaptureNode> getOuterNodes(BottomUpNode node) {
+    Set<CaptureNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    nodes.addAll(node.getNodes());
+    List<CaptureNode> outerNodes = new ArrayList<>();
+    for (CaptureNode captureNode : node.getNodes()) {
+      CaptureNode ancestor = captureNode.getParent();
+      while (ancestor != null && !nodes.contains(ancestor)) {
+        ancestor = ancestor.getParent();
+      }
+      if (ancestor == null) {
+        outerNodes.add(captureNode);
+      }
+    }
+    return outerNodes;
+  }
+
   private static void traverseAndCheck(CaptureNode root, List<ExpectedNode> expectedNodes) {
     List<BottomUpNode> traverseOrder = new ArrayList<>();
     traverse(new BottomUpNode(root), traverseOrder);
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class IntervalIndexTest {
+  private final static double EPS = 1e-5;
+
+  @Test
+  public void intersectionLength() {
+    IntervalIndex index = IntervalIndex.of(Arrays.asList(newNode(0, 10), newNode(5, 20), newNode(30, 40)), ClockType.GLOBAL);
+
+    assertEquals(35, index.getIntersectionLength(0, Double.MAX_VALUE), EPS);
+    assertEquals(35, index.getIntersectionLength(-100, 100), EPS);
+    assertEquals(10, index.getIntersectionLength(5, 10), EPS);
+    assertEquals(4.5, index.getIntersectionLength(18.5, 33), EPS);
+    assertEquals(0, index.getIntersectionLength(20, 30), EPS);
+    assertEquals(0, index.getIntersectionLength(10, 5), EPS);
+  }
+
+  @Test
+  public void intersectionLengthOfThreadTime() {
+    CaptureNode node = newNode(0, 100);
+    node.setStartThread(10);
+    node.setEndThread(30);
+    IntervalIndex index = IntervalIndex.of(Collections.singletonList(node), ClockType.THREAD);
+
+    assertEquals(20, index.getIntersectionLength(0, 100), EPS);
+    assertEquals(5, index.getIntersectionLength(25, 100), EPS);
+  }
+
+  @Test
+  public void overlaps() {
+    IntervalIndex index = IntervalIndex.of(Arrays.asList(newNode(0, 10), newNode(30, 40)), ClockType.GLOBAL);
+
+    assertTrue(index.overlaps(5, 6));
+    assertTrue(index.overlaps(-5, 1));
+    assertTrue(index.overlaps(20, 31));
+    assertFalse(index.overlaps(10, 30));
+    assertFalse(index.overlaps(40, 50));
+  }
+
+  @Test
+  public void emptyIndex() {
+    IntervalIndex index = IntervalIndex.of(Collections.emptyList(), ClockType.GLOBAL);
+
+    assertEquals(0, index.getIntersectionLength(0, 100), EPS);
+    assertFalse(index.overlaps(0, 100));
+  }
+
+  @Test
+  public void matchesSumOfIntersections() {
+    Random random = new Random(42);
+    List<CaptureNode> nodes = new ArrayList<>();
+    long base = 1_600_000_000_000_000L;
+    for (int i = 0; i < 1000; i++) {
+      long start = base + random.nextInt(100_000);
+      nodes.add(newNode(start, start + random.nextInt(1000)));
+    }
+    IntervalIndex index = IntervalIndex.of(nodes, ClockType.GLOBAL);
+
+    for (int i = 0; i < 100; i++) {
+      double min = base + random.nextInt(110_000) - 5000;
+      Range range = new Range(min, min + random.nextInt(20_000));
+      double expected = 0;
+      boolean overlaps = false;
+      for (CaptureNode node : nodes) {
+        expected += range.getIntersectionLength(node.getStartGlobal(), node.getEndGlobal());
+        overlaps |= node.getStartGlobal() < range.getMax() && range.getMin() < node.getEndGlobal();
+      }
+      assertEquals(expected, index.getIntersectionLength(range.getMin(), range.getMax()), EPS);
+      if (range.getMin() < range.getMax()) {
+        assertEquals(overlaps, index.overlaps(range.getMin(), range.getMax()));
+      }
+    }
+  }
+
+  @NotNull
+  private static CaptureNode newNode(long start, long end) {
+    CaptureNode node = new CaptureNode(new SingleNameModel("node"));
+    node.setStartGlobal(start);
+    node.setEndGlobal(end);
+    return node;
+  }
+}
@@ -16,10 +16,14 @@
 package com.android.tools.profilers.cpu.capturedetails;
 
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
@@ -142,6 +146,89 @@ public class TopDownNodeTest {
     assertEquals(0, topDown.getThreadTotal(), 0);
   }
 
+  @Test
+  public void testIndexedTimesMatchNodeTimes() {
+    Random random = new Random(42);
+    CaptureNode root = newNode("main", 0, 2000);
+    addRandomChildren(root, 4, random);
+
+    List<TopDownNode> nodes = new ArrayList<>();
+    traverse(new TopDownNode(root), nodes);
+    // Make sure that some of the nodes have enough nodes and children to be indexed.
+    assertTrue(nodes.stream().anyMatch(node -> node.getNodes().size() >= CpuTreeNode.MIN_INDEXED_NODES));
+
+    for (ClockType clockType : ClockType.values()) {
+      root.setSubtreeClockType(clockType);
+      for (int i = 0; i < 100; ++i) {
+        Range range = randomRange(random, root);
+        for (TopDownNode node : nodes) {
+          node.update(range);
+          double globalChildrenTotal = 0;
+          double threadChildrenTotal = 0;
+          for (CaptureNode captureNode : node.getNodes()) {
+            globalChildrenTotal += CpuTreeNode.getIntersection(range, captureNode.getChildren(), ClockType.GLOBAL);
+            threadChildrenTotal += CpuTreeNode.getIntersection(range, captureNode.getChildren(), ClockType.THREAD);
+          }
+          assertEquals(CpuTreeNode.getIntersection(range, node.getNodes(), ClockType.GLOBAL), node.getGlobalTotal(), 0);
+          assertEquals(CpuTreeNode.getIntersection(range, node.getNodes(), ClockType.THREAD), node.getThreadTotal(), 0);
+          assertEquals(globalChildrenTotal, node.getGlobalChildrenTotal(), 0);
+          assertEquals(threadChildrenTotal, node.myThreadChildrenTotal, 0);
+          assertEquals(nodesInRange(node.getNodes(), range), node.inRange(range));
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds consecutive children with random methods and times to the given node, and then to those children, up to the given depth.
+   */
+  static void addRandomChildren(@NotNull CaptureNode parent, int depth, @NotNull Random random) {
+    if (depth == 0) {
+      return;
+    }
+    String[] methods = {"A", "B", "C"};
+    long start = parent.getStartGlobal();
+    while (true) {
+      long childStart = start + random.nextInt(5);
+      long childEnd = childStart + 2 + random.nextInt(20);
+      if (childEnd > parent.getEndGlobal()) {
+        return;
+      }
+      CaptureNode child = newNode(methods[random.nextInt(methods.length)], childStart, childEnd);
+      parent.addChild(child);
+      addRandomChildren(child, depth - 1, random);
+      start = childEnd;
+    }
+  }
+
+  /**
+   * Returns a random range around the given node, which may be empty or only partially overlap with the node.
+   */
+  @NotNull
+  static Range randomRange(@NotNull Random random, @NotNull CaptureNode node) {
+    long length = node.getEndGlobal() - node.getStartGlobal();
+    double min = node.getStartGlobal() - 10 + random.nextInt((int)length + 20);
+    double max = random.nextInt(10) == 0 ? min : min + random.nextInt((int)length / 4);
+    return new Range(min, max);
+  }
+
+  /**
+   * Checks whether any of the given nodes overlaps with the range, without an index.
+   */
+  static boolean nodesInRange(@NotNull List<CaptureNode> nodes, @NotNull Range range) {
+    for (CaptureNode node : nodes) {
+      if (node.getStart() < range.getMax() && range.getMin() < node.getEnd()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void traverse(@NotNull TopDownNode node, @NotNull List<TopDownNode> nodes) {
+    nodes.add(node);
+    node.getChildren().forEach(child -> traverse(child, nodes));
+  }
+
   /**
    * Creates a test to be used for testing. The shape of the tree is as follows:
    *              0123456789012345678901234567890
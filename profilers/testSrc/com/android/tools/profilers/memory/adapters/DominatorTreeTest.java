@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.ForkJoinPool;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class DominatorTreeTest {
+
+  @Test
+  public void testDiamondWithTail() {
+    // 0 -> 1, 0 -> 2, 1 -> 3, 2 -> 3, 3 -> 4
+    DominatorTree tree = compute(5, new int[]{0}, new int[][]{{0, 1}, {0, 2}, {1, 3}, {2, 3}, {3, 4}});
+
+    assertThat(tree.getImmediateDominator(0)).isEqualTo(DominatorTree.VIRTUAL_ROOT);
+    assertThat(tree.getImmediateDominator(1)).isEqualTo(0);
+    assertThat(tree.getImmediateDominator(2)).isEqualTo(0);
+    assertThat(tree.getImmediateDominator(3)).isEqualTo(0);
+    assertThat(tree.getImmediateDominator(4)).isEqualTo(3);
+
+    assertThat(tree.getRetainedSize(0)).isEqualTo(1 + 2 + 3 + 4 + 5);
+    assertThat(tree.getRetainedSize(1)).isEqualTo(2);
+    assertThat(tree.getRetainedSize(3)).isEqualTo(4 + 5);
+
+    assertThat(tree.getDepth(0)).isEqualTo(0);
+    assertThat(tree.getDepth(3)).isEqualTo(2);
+    assertThat(tree.getDepth(4)).isEqualTo(3);
+  }
+
+  @Test
+  public void testNodesReachableFromSeveralRootsAreDominatedByTheVirtualRoot() {
+    // 0 -> 2, 1 -> 2, 2 -> 3, 1 -> 0
+    DominatorTree tree = compute(4, new int[]{0, 1}, new int[][]{{0, 2}, {1, 2}, {2, 3}, {1, 0}});
+
+    assertThat(tree.getImmediateDominator(0)).isEqualTo(DominatorTree.VIRTUAL_ROOT);
+    assertThat(tree.getImmediateDominator(1)).isEqualTo(DominatorTree.VIRTUAL_ROOT);
+    assertThat(tree.getImmediateDominator(2)).isEqualTo(DominatorTree.VIRTUAL_ROOT);
+    assertThat(tree.getImmediateDominator(3)).isEqualTo(2);
+    assertThat(tree.getRetainedSize(0)).isEqualTo(1);
+    assertThat(tree.getRetainedSize(2)).isEqualTo(3 + 4);
+  }
+
+  @Test
+  public void testCycles() {
+    // 0 -> 1 -> 2 -> 3 -> 1, 0 -> 3
+    DominatorTree tree = compute(4, new int[]{0}, new int[][]{{0, 1}, {1, 2}, {2, 3}, {3, 1}, {0, 3}});
+
+    assertThat(tree.getImmediateDominator(1)).isEqualTo(0);
+    assertThat(tree.getImmediateDominator(2)).isEqualTo(1);
+    assertThat(tree.getImmediateDominator(3)).isEqualTo(0);
+    assertThat(tree.getRetainedSize(1)).isEqualTo(2 + 3);
+    assertThat(tree.getDepth(3)).isEqualTo(1);
+  }
+
+  @Test
+  public void testUnreachableNodes() {
+    // 0 -> 1, 2 -> 1, 2 -> 3
+    DominatorTree tree = compute(4, new int[]{0}, new int[][]{{0, 1}, {2, 1}, {2, 3}});
+
+    assertThat(tree.getImmediateDominator(1)).isEqualTo(0);
+    assertThat(tree.getImmediateDominator(2)).isEqualTo(DominatorTree.UNREACHABLE);
+    assertThat(tree.getImmediateDominator(3)).isEqualTo(DominatorTree.UNREACHABLE);
+    assertThat(tree.getRetainedSize(0)).isEqualTo(1 + 2);
+    assertThat(tree.getRetainedSize(2)).isEqualTo(0);
+    assertThat(tree.getDepth(2)).isEqualTo(Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testLongChainIsProcessedWithoutRecursion() {
+    int nodeCount = 100_000;
+    int[][] edges = new int[nodeCount - 1][];
+    for (int i = 0; i < nodeCount - 1; i++) {
+      edges[i] = new int[]{i, i + 1};
+    }
+    DominatorTree tree = compute(nodeCount, new int[]{0}, edges);
+
+    assertThat(tree.getImmediateDominator(nodeCount - 1)).isEqualTo(nodeCount - 2);
+    assertThat(tree.getDepth(nodeCount - 1)).isEqualTo(nodeCount - 1);
+    assertThat(tree.getRetainedSize(nodeCount - 2)).isEqualTo((nodeCount - 1) + nodeCount);
+  }
+
+  /**
+   * Builds the predecessor arrays of the given edges, each an array of {from, to}, and gives node {@code i} a shallow size of
+   * {@code i + 1}.
+   */
+  @NotNull
+  private static DominatorTree compute(int nodeCount, @NotNull int[] roots, @NotNull int[][] edges) {
+    int[] offsets = new int[nodeCount + 1];
+    for (int[] edge : edges) {
+      offsets[edge[1] + 1]++;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] predecessors = new int[edges.length];
+    int[] cursors = new int[nodeCount];
+    for (int[] edge : edges) {
+      predecessors[offsets[edge[1]] + cursors[edge[1]]++] = edge[0];
+    }
+    long[] sizes = new long[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      sizes[i] = i + 1;
+    }
+    return DominatorTree.compute(nodeCount, roots, offsets, predecessors, sizes, ForkJoinPool.commonPool());
+  }
+}
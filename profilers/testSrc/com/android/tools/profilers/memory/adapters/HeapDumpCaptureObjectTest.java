@@ -178,6 +178,92 @@ public class HeapDumpCaptureObjectTest {
     assertNotNull(defaultHeap);
   }
 
+  @Test
+  public void testLazyAnalysisUpdatesHeapSetsAfterDominatorsAreComputed() throws Exception {
+    myIdeProfilerServices.enableLazyHeapDumpAnalysis(true);
+    long startTimeNs = 3;
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(startTimeNs).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(), myStage);
+
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(startTimeNs), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    capture.load(null, Runnable::run);
+    // The class histogram is available before the dominators are computed.
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    assertEquals(6, testHeap.getInstancesCount());
+
+    // Wait for the analysis to finish on the off-main-thread executor.
+    CountDownLatch analysisLatch = new CountDownLatch(1);
+    capture.getInstanceFilterExecutor().submit(analysisLatch::countDown);
+    analysisLatch.await();
+
+    assertEquals(6, testHeap.getInstancesCount());
+    long retainedSize = capture.getInstances().mapToLong(InstanceObject::getRetainedSize).filter(size -> size > 0).sum();
+    assertTrue(retainedSize > 0);
+    assertEquals(retainedSize, testHeap.getTotalRetainedSize());
+    ClassifierSet.Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(
+      Collections.emptyList(), testHeap.getInstancesStream().collect(HashSet::new, HashSet::add, HashSet::addAll));
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    verifyInstance(instance1, "Class1@2 (0x2)", 1, 0, 1);
+  }
+
+  @Test
+  public void testParallelDominators() throws Exception {
+    myIdeProfilerServices.enableParallelHeapDumpDominators(true);
+    long startTimeNs = 3;
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(startTimeNs).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(), myStage);
+
+    // 1 holds the only reference to 2, so it retains it.
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(startTimeNs), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    capture.load(null, null);
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    ClassifierSet.Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(
+      Collections.emptyList(), testHeap.getInstancesStream().collect(HashSet::new, HashSet::add, HashSet::addAll));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    verifyInstance(instance0, "Class0@1 (0x1)", 0, 1, 0);
+    verifyInstance(instance1, "Class1@2 (0x2)", 1, 0, 1);
+    assertEquals(instance0.getShallowSize() + instance1.getShallowSize(), instance0.getRetainedSize());
+    assertEquals(instance1.getShallowSize(), instance1.getRetainedSize());
+    assertEquals(instance1.getDepth(), instance0.getFields().get(0).getDepth());
+  }
+
+  @Test
+  public void testUnloadDeletesHeapDumpFile() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA, dumpInfo,
+                                null, myIdeProfilerServices.getFeatureTracker(), myStage);
+    myTransportService.addFile("3", ByteString.copyFrom(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer()));
+    capture.load(null, null);
+    File hprofFile = capture.getHprofFile();
+    assertNotNull(hprofFile);
+    assertTrue(hprofFile.exists());
+
+    capture.unload();
+    assertNull(capture.getHprofFile());
+    assertFalse(hprofFile.exists());
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
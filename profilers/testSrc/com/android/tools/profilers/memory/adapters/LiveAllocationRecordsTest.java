@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class LiveAllocationRecordsTest {
+
+  @Test
+  public void testRowsKeepTheirColumns() {
+    LiveAllocationRecords records = new LiveAllocationRecords();
+    int row = records.getOrAddRow(1, 2, 3, 4, 5, 6);
+
+    assertThat(records.getRow(1)).isEqualTo(row);
+    assertThat(records.getClassTag(row)).isEqualTo(2);
+    assertThat(records.getStackId(row)).isEqualTo(3);
+    assertThat(records.getThreadId(row)).isEqualTo(4);
+    assertThat(records.getSize(row)).isEqualTo(5);
+    assertThat(records.getHeapId(row)).isEqualTo(6);
+    assertThat(records.getAllocTime(row)).isEqualTo(Long.MIN_VALUE);
+    assertThat(records.getDeallocTime(row)).isEqualTo(Long.MAX_VALUE);
+
+    records.setAllocTime(row, 10);
+    records.setDeallocTime(row, 20);
+    assertThat(records.getAllocTime(row)).isEqualTo(10);
+    assertThat(records.getDeallocTime(row)).isEqualTo(20);
+
+    // Adding a tracked tag again returns the existing row untouched.
+    assertThat(records.getOrAddRow(1, 7, 7, 7, 7, 7)).isEqualTo(row);
+    assertThat(records.getClassTag(row)).isEqualTo(2);
+    assertThat(records.getTrackedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRowsSpanSeveralChunks() {
+    LiveAllocationRecords records = new LiveAllocationRecords();
+    int count = 10_000;
+    for (int tag = 0; tag < count; tag++) {
+      records.getOrAddRow(tag, tag, 0, 0, tag * 8L, 0);
+    }
+
+    assertThat(records.getTrackedCount()).isEqualTo(count);
+    for (int tag = 0; tag < count; tag++) {
+      int row = records.getRow(tag);
+      assertThat(records.getClassTag(row)).isEqualTo(tag);
+      assertThat(records.getSize(row)).isEqualTo(tag * 8L);
+    }
+  }
+
+  @Test
+  public void testRemovedTagKeepsItsRow() {
+    LiveAllocationRecords records = new LiveAllocationRecords();
+    int row = records.getOrAddRow(1, 2, 0, 0, 16, 0);
+    records.removeTag(1);
+
+    assertThat(records.getRow(1)).isEqualTo(LiveAllocationRecords.NO_ROW);
+    assertThat(records.getSize(row)).isEqualTo(16);
+    assertThat(records.getOrAddRow(3, 4, 0, 0, 32, 0)).isNotEqualTo(row);
+  }
+
+  @Test
+  public void testReleasedRowIsReused() {
+    LiveAllocationRecords records = new LiveAllocationRecords();
+    int row = records.getOrAddRow(1, 2, 0, 0, 16, 0);
+    records.setAllocTime(row, 10);
+    records.releaseTag(1);
+
+    assertThat(records.getRow(1)).isEqualTo(LiveAllocationRecords.NO_ROW);
+    assertThat(records.getTrackedCount()).isEqualTo(0);
+    assertThat(records.getOrAddRow(3, 4, 0, 0, 32, 0)).isEqualTo(row);
+    assertThat(records.getClassTag(row)).isEqualTo(4);
+    assertThat(records.getSize(row)).isEqualTo(32);
+    assertThat(records.getAllocTime(row)).isEqualTo(Long.MIN_VALUE);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.profilers.memory.adapters.DominatorTree
+import org.junit.Test
+import java.time.Instant
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Times [DominatorTree] over synthetic heap graphs: a spanning tree in which every object is allocated by a random earlier object, plus
+ * random cross references, which is roughly the shape of an app heap with a few long-lived caches.
+ */
+class DominatorTreePerformanceTest {
+  companion object {
+    private const val WARM_UP_ITERATIONS = 2
+    private const val ITERATIONS = 5
+    private const val CROSS_REFERENCES_PER_OBJECT = 2
+    private const val ROOT_COUNT = 1000
+  }
+
+  private val benchmark = Benchmark.Builder("Heap Dump Dominators (Millis)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun runPerformanceTest() {
+    for (objectCount in listOf(100_000, 1_000_000)) {
+      val graph = SyntheticHeapGraph(objectCount, Random(objectCount.toLong()))
+      for (parallelism in listOf(1, Runtime.getRuntime().availableProcessors())) {
+        val pool = ForkJoinPool(parallelism)
+        val metric = Metric("Dominators-$objectCount-Objects-$parallelism-Threads")
+        repeat(WARM_UP_ITERATIONS + ITERATIONS) { iteration ->
+          val startTime = System.nanoTime()
+          DominatorTree.compute(objectCount, graph.roots, graph.predecessorOffsets, graph.predecessors, graph.shallowSizes, pool)
+          if (iteration >= WARM_UP_ITERATIONS) {
+            metric.addSamples(benchmark, Metric.MetricSample(Instant.now().toEpochMilli(), (System.nanoTime() - startTime) / 1_000_000))
+          }
+        }
+        pool.shutdown()
+        metric.setAnalyzers(benchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                               .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                               .build()))
+        metric.commit()
+      }
+    }
+  }
+
+  private class SyntheticHeapGraph(objectCount: Int, random: Random) {
+    val roots = IntArray(ROOT_COUNT) { it }
+    val predecessorOffsets = IntArray(objectCount + 1)
+    val predecessors: IntArray
+    val shallowSizes = LongArray(objectCount) { 16L + random.nextInt(64) * 8 }
+
+    init {
+      // Each object below the roots has one allocating parent and, for a third of them, a few extra referrers.
+      val referrerCounts = IntArray(objectCount) { if (it < ROOT_COUNT) 0 else if (it % 3 == 0) 1 + CROSS_REFERENCES_PER_OBJECT else 1 }
+      for (i in 0 until objectCount) {
+        predecessorOffsets[i + 1] = predecessorOffsets[i] + referrerCounts[i]
+      }
+      predecessors = IntArray(predecessorOffsets[objectCount])
+      for (i in ROOT_COUNT until objectCount) {
+        for (e in predecessorOffsets[i] until predecessorOffsets[i + 1]) {
+          predecessors[e] = random.nextInt(i)
+        }
+      }
+    }
+  }
+}
@@ -56,6 +56,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
@@ -326,6 +327,7 @@ public class AarSourceResourceRepository extends AbstractAarResourceRepository {
     Loader(@NotNull Path resourceDirectoryOrFile, @Nullable Collection<PathString> resourceFilesAndFolders,
            @NotNull ResourceNamespace namespace) {
       super(resourceDirectoryOrFile, resourceFilesAndFolders, namespace);
+      setParsingPool(ForkJoinPool.commonPool());
     }
 
     @Override
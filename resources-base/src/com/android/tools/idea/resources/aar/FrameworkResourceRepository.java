@@ -33,6 +33,7 @@ import com.android.tools.idea.resources.base.NamespaceResolver;
 import com.android.tools.idea.resources.base.RepositoryConfiguration;
 import com.android.tools.idea.resources.base.RepositoryLoader;
 import com.android.tools.idea.resources.base.ResourceSerializationUtil;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
@@ -54,6 +55,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -106,10 +108,22 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
   @NotNull
   public static FrameworkResourceRepository create(@NotNull Path resourceDirectoryOrFile, @Nullable Set<String> languagesToLoad,
                                                    @Nullable CachingData cachingData, boolean useCompiled9Patches) {
+    return create(resourceDirectoryOrFile, languagesToLoad, cachingData, useCompiled9Patches, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates an Android framework resource repository parsing resource files in the given pool, or sequentially
+   * if the pool is null.
+   */
+  @VisibleForTesting
+  @NotNull
+  static FrameworkResourceRepository create(@NotNull Path resourceDirectoryOrFile, @Nullable Set<String> languagesToLoad,
+                                            @Nullable CachingData cachingData, boolean useCompiled9Patches,
+                                            @Nullable ForkJoinPool parsingPool) {
     long start = LOG.isDebugEnabled() ? System.currentTimeMillis() : 0;
     Set<String> languageGroups = languagesToLoad == null ? null : getLanguageGroups(languagesToLoad);
 
-    Loader loader = new Loader(resourceDirectoryOrFile, languageGroups);
+    Loader loader = new Loader(resourceDirectoryOrFile, languageGroups, parsingPool);
     FrameworkResourceRepository repository = new FrameworkResourceRepository(loader, useCompiled9Patches);
 
     repository.load(null, cachingData, loader, languageGroups, loader.myLoadedLanguageGroups);
@@ -390,16 +404,18 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     @NotNull private final Set<String> myLoadedLanguageGroups;
     @Nullable private Set<String> myLanguageGroups;
 
-    Loader(@NotNull Path resourceDirectoryOrFile, @Nullable Set<String> languageGroups) {
+    Loader(@NotNull Path resourceDirectoryOrFile, @Nullable Set<String> languageGroups, @Nullable ForkJoinPool parsingPool) {
       super(resourceDirectoryOrFile, null, ANDROID_NAMESPACE);
       myLanguageGroups = languageGroups;
       myLoadedLanguageGroups = new TreeSet<>();
+      setParsingPool(parsingPool);
     }
 
     Loader(@NotNull FrameworkResourceRepository sourceRepository, @Nullable Set<String> languageGroups) {
       super(sourceRepository.myResourceDirectoryOrFile, null, ANDROID_NAMESPACE);
       myLanguageGroups = languageGroups;
       myLoadedLanguageGroups = new TreeSet<>(sourceRepository.myLanguageGroups);
+      setParsingPool(ForkJoinPool.commonPool());
     }
 
     @Override
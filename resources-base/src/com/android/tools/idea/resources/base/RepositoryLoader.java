@@ -106,6 +106,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -127,9 +130,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       AttributeFormat.INTEGER,
       AttributeFormat.REFERENCE,
       AttributeFormat.STRING);
+  /** The minimum number of files parsed by a single task when loading in parallel. */
+  private static final int MIN_FILES_PER_PARSING_TASK = 16;
   private final PatternBasedFileFilter myFileFilter = new PatternBasedFileFilter();
 
-  @NotNull private final Map<ResourceType, Set<String>> myPublicResources = new EnumMap<>(ResourceType.class);
+  @NotNull private final Map<ResourceType, Set<String>> myPublicResources;
   @NotNull private final ListMultimap<String, BasicAttrResourceItem> myAttrs = ArrayListMultimap.create();
   @NotNull private final ListMultimap<String, BasicAttrResourceItem> myAttrCandidates = ArrayListMultimap.create();
   @NotNull private final ListMultimap<String, BasicStyleableResourceItem> myStyleables = ArrayListMultimap.create();
@@ -150,6 +155,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull private final ResourceNamespace myNamespace;
   @Nullable private final Collection<PathString> myResourceFilesAndFolders;
   @Nullable protected ZipFile myZipFile;
+  @Nullable private ForkJoinPool myParsingPool;
+  /** The updates of the loading state that a {@link ParsingWorker} collects for its parent. Null for a loader that is not a worker. */
+  @Nullable private final ParsingResult<T> myParsingResult;
 
   public RepositoryLoader(@NotNull Path resourceDirectoryOrFile, @Nullable Collection<PathString> resourceFilesAndFolders,
                           @NotNull ResourceNamespace namespace) {
@@ -158,6 +166,22 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     myLoadingFromZipArchive = isZipArchive(resourceDirectoryOrFile);
     myNamespace = namespace;
     myResourceFilesAndFolders = resourceFilesAndFolders;
+    myPublicResources = new EnumMap<>(ResourceType.class);
+    myParsingResult = null;
+  }
+
+  /**
+   * Creates a parsing worker sharing the public resource names and the default visibility of the given loader.
+   */
+  private RepositoryLoader(@NotNull RepositoryLoader<T> parent) {
+    myResourceDirectoryOrFile = parent.myResourceDirectoryOrFile;
+    myResourceDirectoryOrFilePath = parent.myResourceDirectoryOrFilePath;
+    myLoadingFromZipArchive = parent.myLoadingFromZipArchive;
+    myNamespace = parent.myNamespace;
+    myResourceFilesAndFolders = null;
+    myPublicResources = parent.myPublicResources;
+    myDefaultVisibility = parent.myDefaultVisibility;
+    myParsingResult = new ParsingResult<>();
   }
 
   @NotNull
@@ -174,6 +198,18 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     return myNamespace;
   }
 
+  /**
+   * Makes {@link #loadFromResFolder} parse resource files on the given pool. The files are split into contiguous runs parsed by
+   * independent workers, and the results are merged in the canonical file order, so the loaded repository is the same as when loading
+   * sequentially. Subclasses that override {@link #createResourceSourceFile}, {@link #getInputStream}, {@link #handleParsingError} or
+   * {@link #getKeyForVisibilityLookup} have to make them thread-safe before enabling parallel parsing.
+   *
+   * @param parsingPool the pool to parse on, or null to parse sequentially
+   */
+  public final void setParsingPool(@Nullable ForkJoinPool parsingPool) {
+    myParsingPool = parsingPool;
+  }
+
   public void loadRepositoryContents(@NotNull T repository) {
     if (myLoadingFromZipArchive) {
       loadFromZip(repository);
@@ -219,8 +255,13 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
                                          ImmutableList.of(myResourceDirectoryOrFile) :
                                          myResourceFilesAndFolders.stream().map(PathString::toPath).collect(Collectors.toList());
       List<PathString> resourceFiles = findResourceFiles(sourceFilesAndFolders);
-      for (PathString file : resourceFiles) {
-        loadResourceFile(file, repository, shouldParseResourceIds);
+      if (myParsingPool == null || resourceFiles.size() < 2 * MIN_FILES_PER_PARSING_TASK) {
+        for (PathString file : resourceFiles) {
+          loadResourceFile(file, repository, shouldParseResourceIds);
+        }
+      }
+      else {
+        loadResourceFilesInParallel(resourceFiles, repository, shouldParseResourceIds, myParsingPool);
       }
     }
     catch (Exception e) {
@@ -241,6 +282,56 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     }
   }
 
+  private void loadResourceFilesInParallel(@NotNull List<PathString> files, @NotNull T repository, boolean shouldParseResourceIds,
+                                           @NotNull ForkJoinPool pool) {
+    // Folder information and configurations are resolved up front because their caches are not thread-safe.
+    int fileCount = files.size();
+    FolderInfo[] folderInfos = new FolderInfo[fileCount];
+    RepositoryConfiguration[] configurations = new RepositoryConfiguration[fileCount];
+    for (int i = 0; i < fileCount; i++) {
+      String folderName = files.get(i).getParentFileName();
+      FolderInfo folderInfo = folderName == null ? null : FolderInfo.create(folderName, myFolderConfigCache);
+      if (folderInfo != null) {
+        folderInfos[i] = folderInfo;
+        configurations[i] = getConfiguration(repository, folderInfo.configuration);
+      }
+    }
+
+    int filesPerTask = Math.max(MIN_FILES_PER_PARSING_TASK, fileCount / (pool.getParallelism() * 4));
+    List<ForkJoinTask<ParsingResult<T>>> tasks = new ArrayList<>();
+    for (int start = 0; start < fileCount; start += filesPerTask) {
+      int from = start;
+      int to = Math.min(start + filesPerTask, fileCount);
+      tasks.add(pool.submit(() -> {
+        RepositoryLoader<T> worker = new ParsingWorker<>(this);
+        for (int i = from; i < to; i++) {
+          if (folderInfos[i] != null) {
+            worker.loadResourceFile(files.get(i), folderInfos[i], configurations[i], shouldParseResourceIds);
+          }
+        }
+        return worker.myParsingResult;
+      }));
+    }
+
+    // Apply the results in the order of the files while later tasks are still running.
+    for (ForkJoinTask<ParsingResult<T>> task : tasks) {
+      task.join().mergeInto(this);
+    }
+  }
+
+  /**
+   * Defers the given update of the loading state to the parent loader if this loader is a {@link ParsingWorker}.
+   *
+   * @return true if the update was deferred, false if the caller should apply it
+   */
+  private boolean deferToParent(@NotNull Consumer<RepositoryLoader<T>> update) {
+    if (myParsingResult == null) {
+      return false;
+    }
+    myParsingResult.myUpdates.add(update);
+    return true;
+  }
+
   protected void finishLoading(@NotNull T repository) {
     processAttrsAndStyleables();
   }
@@ -508,6 +599,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   private void addValueResourceItem(@NotNull BasicValueResourceItemBase item) {
+    if (deferToParent(loader -> loader.addValueResourceItem(item))) {
+      return;
+    }
     ResourceType resourceType = item.getType();
     // Add attr and styleable resources to intermediate maps to post-process them in the processAttrsAndStyleables
     // method after all resources are loaded.
@@ -526,6 +620,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   protected final void addValueFileResources() {
+    if (deferToParent(RepositoryLoader::addValueFileResources)) {
+      return;
+    }
     for (BasicValueResourceItemBase item : myValueFileResources.values()) {
       addResourceItem(item);
     }
@@ -583,6 +680,10 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   protected final void addIdResourceItem(@NotNull String resourceName, @NotNull ResourceSourceFile sourceFile) {
+    // Whether the ID is already defined depends on the files loaded before, so the check is deferred together with the addition.
+    if (deferToParent(loader -> loader.addIdResourceItem(resourceName, sourceFile))) {
+      return;
+    }
     ResourceVisibility visibility = getVisibility(ResourceType.ID, resourceName);
     BasicValueResourceItem item = new BasicValueResourceItem(ResourceType.ID, resourceName, sourceFile, visibility, null);
     if (!resourceAlreadyDefined(item)) { // Don't create duplicate ID resources.
@@ -854,7 +955,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
           // The second condition is determined by the fact that the attr in the res-auto namespace may have an explicit definition
           // outside of this resource repository.
           if (attr.getNamespace().equals(myNamespace) && (myNamespace != ResourceNamespace.RES_AUTO || !attr.getFormats().isEmpty())) {
-            addAttr(attr, myAttrCandidates);
+            if (!deferToParent(loader -> addAttr(attr, loader.myAttrCandidates))) {
+              addAttr(attr, myAttrCandidates);
+            }
           }
         }
         catch (XmlSyntaxException e) {
@@ -1213,6 +1316,62 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     }
   }
 
+  /**
+   * The updates of the loading state collected by a {@link ParsingWorker}, in the order of the parsed files.
+   */
+  private static final class ParsingResult<T extends LoadableResourceRepository> {
+    @NotNull private final List<Consumer<RepositoryLoader<T>>> myUpdates = new ArrayList<>();
+
+    /** Applies the updates to the given loader. */
+    void mergeInto(@NotNull RepositoryLoader<T> loader) {
+      for (Consumer<RepositoryLoader<T>> update : myUpdates) {
+        update.accept(loader);
+      }
+    }
+  }
+
+  /**
+   * Parses a run of resource files on a pool thread with its own parser state. Instead of changing the loading state, the worker
+   * collects the updates in a {@link ParsingResult} for its parent loader to merge.
+   */
+  private static final class ParsingWorker<T extends LoadableResourceRepository> extends RepositoryLoader<T> {
+    @NotNull private final RepositoryLoader<T> myParent;
+
+    ParsingWorker(@NotNull RepositoryLoader<T> parent) {
+      super(parent);
+      myParent = parent;
+    }
+
+    @Override
+    protected void addResourceItem(@NotNull BasicResourceItem item, @NotNull T repository) {
+      // The item is added to the repository when the parent merges the parsing result.
+      super.deferToParent(loader -> loader.addResourceItem(item, repository));
+    }
+
+    @Override
+    @NotNull
+    protected ResourceSourceFile createResourceSourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration) {
+      return myParent.createResourceSourceFile(file, configuration);
+    }
+
+    @Override
+    @NotNull
+    protected InputStream getInputStream(@NotNull PathString file) throws IOException {
+      return myParent.getInputStream(file);
+    }
+
+    @Override
+    protected void handleParsingError(@NotNull PathString file, @NotNull Exception e) {
+      myParent.handleParsingError(file, e);
+    }
+
+    @Override
+    @NotNull
+    protected String getKeyForVisibilityLookup(@NotNull String resourceName) {
+      return myParent.getKeyForVisibilityLookup(resourceName);
+    }
+  }
+
   private static class XmlTextExtractor {
     @NotNull private final StringBuilder text = new StringBuilder();
     @NotNull private final StringBuilder rawXml = new StringBuilder();
@@ -34,6 +34,7 @@ import com.android.sdklib.IAndroidTarget;
 import com.android.utils.PathUtils;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Sets;
 import com.intellij.testFramework.PlatformTestCase;
 import java.io.IOException;
@@ -48,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import org.jetbrains.android.sdk.StudioEmbeddedRenderTarget;
 import org.jetbrains.annotations.NotNull;
@@ -306,6 +308,39 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
     }
   }
 
+  public void testParallelLoadingMatchesSequentialLoading() {
+    ForkJoinPool parsingPool = new ForkJoinPool(4);
+    try {
+      for (Set<String> languages : Arrays.asList(ImmutableSet.of("fr", "de"), null)) {
+        FrameworkResourceRepository sequential = FrameworkResourceRepository.create(myResourceFolder, languages, null, false, null);
+        FrameworkResourceRepository parallel = FrameworkResourceRepository.create(myResourceFolder, languages, null, false, parsingPool);
+        checkLanguages(parallel, languages);
+        compareContents(sequential, parallel);
+        checkContents(parallel);
+
+        // Resource items of each resource have to be in the same order, e.g. for resolution of overriding definitions.
+        for (ResourceType type : ResourceType.values()) {
+          ListMultimap<String, ResourceItem> expected = sequential.getResources(ResourceNamespace.ANDROID, type);
+          ListMultimap<String, ResourceItem> actual = parallel.getResources(ResourceNamespace.ANDROID, type);
+          assertWithMessage("Resource names don't match for type " + type.getName())
+              .that(actual.keySet()).containsExactlyElementsIn(expected.keySet()).inOrder();
+          for (String name : expected.keySet()) {
+            List<ResourceItem> expectedItems = expected.get(name);
+            List<ResourceItem> actualItems = actual.get(name);
+            assertWithMessage("Number of items doesn't match for " + type.getName() + "/" + name)
+                .that(actualItems.size()).isEqualTo(expectedItems.size());
+            for (int i = 0; i < expectedItems.size(); i++) {
+              assertThat(actualItems.get(i)).isEquivalentTo(expectedItems.get(i));
+            }
+          }
+        }
+      }
+    }
+    finally {
+      parsingPool.shutdown();
+    }
+  }
+
   public void testIncrementalLoadingFromJar() throws Exception {
     Path frameworkResJar = getFrameworkResJar();
     FrameworkResourceRepository withFrench = FrameworkResourceRepository.create(frameworkResJar, ImmutableSet.of("fr"), null, false);
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.lang.ref.WeakReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fixed-size ring of the paint events of one thread, stored in primitive arrays so that recording an event does not allocate.
+ * <p>
+ * Only the owning thread writes to the buffer. Other threads read it with {@link #copyTo}, which detects and drops the events that were
+ * overwritten while they were being copied.
+ */
+final class PaintEventBuffer {
+  /** Flag set in the event descriptor of the events that end a method. */
+  static final int END_FLAG = 1 << 31;
+
+  @NotNull private final WeakReference<Thread> myThread;
+  private final long myThreadId;
+  @NotNull private final String myThreadName;
+
+  private final int myMask;
+  @NotNull private final long[] myTimestamps;
+  /** The kind of method, the owner class and whether it is an end event, see {@link PaintEventRecorder#describe}. */
+  @NotNull private final int[] myEvents;
+  /**
+   * Number of events ever written. Written only by the owning thread, after the event itself, so that readers see complete events.
+   */
+  private volatile long myWriteCount;
+
+  /** Nesting depth of the methods being recorded. Only accessed by the owning thread. */
+  private int myDepth;
+  /** Start time of the outermost method being recorded. Only accessed by the owning thread. */
+  private long myRootStartTime;
+
+  /**
+   * @param capacity the number of events kept, must be a power of two
+   */
+  PaintEventBuffer(@NotNull Thread thread, int capacity) {
+    assert Integer.bitCount(capacity) == 1;
+    myThread = new WeakReference<>(thread);
+    myThreadId = thread.getId();
+    myThreadName = thread.getName();
+    myMask = capacity - 1;
+    myTimestamps = new long[capacity];
+    myEvents = new int[capacity];
+  }
+
+  @Nullable
+  Thread getThread() {
+    return myThread.get();
+  }
+
+  long getThreadId() {
+    return myThreadId;
+  }
+
+  @NotNull
+  String getThreadName() {
+    return myThreadName;
+  }
+
+  int getCapacity() {
+    return myTimestamps.length;
+  }
+
+  /**
+   * Returns true if a method started and did not end yet. Must be called from the owning thread.
+   */
+  boolean isRecordingMethod() {
+    return myDepth > 0;
+  }
+
+  /**
+   * Records the start of a method.
+   */
+  void begin(long timestamp, int event) {
+    if (myDepth++ == 0) {
+      myRootStartTime = timestamp;
+    }
+    write(timestamp, event);
+  }
+
+  /**
+   * Records the end of a method. Returns the start time of the method if it was the outermost one being recorded, -1 otherwise.
+   */
+  long end(long timestamp, int event) {
+    write(timestamp, event | END_FLAG);
+    if (myDepth == 0) {
+      // The method started before recording was enabled.
+      return -1;
+    }
+    return --myDepth == 0 ? myRootStartTime : -1;
+  }
+
+  private void write(long timestamp, int event) {
+    long count = myWriteCount;
+    int index = (int)count & myMask;
+    myTimestamps[index] = timestamp;
+    myEvents[index] = event;
+    myWriteCount = count + 1;
+  }
+
+  /**
+   * Copies the events recorded at or after the given time into the given arrays, oldest first, and returns the number of events copied.
+   * The arrays must have at least {@link #getCapacity()} elements.
+   */
+  int copyTo(long since, @NotNull long[] timestamps, @NotNull int[] events) {
+    long end = myWriteCount;
+    long start = Math.max(0, end - myTimestamps.length);
+    int count = 0;
+    for (long i = start; i < end; i++) {
+      int index = (int)i & myMask;
+      timestamps[count] = myTimestamps[index];
+      events[count] = myEvents[index];
+      count++;
+    }
+
+    // Drop the events that the owning thread may have overwritten, or started to, while they were copied.
+    long overwritten = myWriteCount - myTimestamps.length - start + 1;
+    int first = (int)Math.max(0, Math.min(count, overwritten));
+    while (first < count && timestamps[first] < since) {
+      first++;
+    }
+    if (first > 0) {
+      System.arraycopy(timestamps, first, timestamps, 0, count - first);
+      System.arraycopy(events, first, events, 0, count - first);
+    }
+    return count - first;
+  }
+}
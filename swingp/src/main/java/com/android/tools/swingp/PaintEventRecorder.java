@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Low overhead recorder of the paint methods instrumented by swingp, meant to be left enabled.
+ * <p>
+ * Unlike the call trees of {@link RenderStatsManager}, which are retained until they are serialized, the events are written to a
+ * fixed-size {@link PaintEventBuffer} per thread, overwriting the oldest ones, and recording an event does not allocate. The events can
+ * be captured at any time with {@link #snapshot}, and are captured automatically when a paint of the event dispatch thread takes
+ * longer than the threshold given to {@link #setSlowFrameListener}.
+ */
+public final class PaintEventRecorder {
+  public static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+
+  private static final int OWNER_BITS = 20;
+  private static final int MAX_OWNERS = 1 << OWNER_BITS;
+  private static final int MAX_KINDS = 1 << (31 - OWNER_BITS);
+
+  private static final ThreadLocal<PaintEventBuffer> ourBuffer = new ThreadLocal<>();
+  private static final List<PaintEventBuffer> ourBuffers = new CopyOnWriteArrayList<>();
+
+  /** Names of the {@link MethodStat} subclasses, indexed by the ids in the event descriptors. */
+  private static final List<String> ourKinds = new CopyOnWriteArrayList<>();
+  /** Names of the classes of the owners of the methods, indexed by the ids in the event descriptors. */
+  private static final List<String> ourOwners = new CopyOnWriteArrayList<>();
+  private static final ClassValue<Integer> ourKindIds = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      return register(ourKinds, type, MAX_KINDS);
+    }
+  };
+  private static final ClassValue<Integer> ourOwnerIds = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      return register(ourOwners, type, MAX_OWNERS);
+    }
+  };
+
+  private static volatile boolean ourIsEnabled = false;
+  private static volatile int ourBufferCapacity = DEFAULT_BUFFER_CAPACITY;
+  @Nullable private static volatile SlowFrameDetector ourSlowFrameDetector;
+
+  /**
+   * Listener notified on the event dispatch thread of the paints that took longer than the threshold. Implementations should hand the
+   * trace off to another thread to write it.
+   */
+  public interface SlowFrameListener {
+    void slowFrame(long durationNs, @NotNull PaintTrace trace);
+  }
+
+  private static final class SlowFrameDetector {
+    final long thresholdNs;
+    final long windowNs;
+    final long minIntervalNs;
+    @NotNull final SlowFrameListener listener;
+    /** End time of the last slow frame reported. Only accessed by the event dispatch thread. */
+    long lastReportTime = Long.MIN_VALUE;
+
+    SlowFrameDetector(long thresholdNs, long windowNs, long minIntervalNs, @NotNull SlowFrameListener listener) {
+      this.thresholdNs = thresholdNs;
+      this.windowNs = windowNs;
+      this.minIntervalNs = minIntervalNs;
+      this.listener = listener;
+    }
+  }
+
+  private PaintEventRecorder() {}
+
+  /**
+   * Enables or disables the recording of paint events. As with {@link RenderStatsManager#setIsEnabled}, the methods that are being
+   * recorded when it is disabled are still recorded until they end.
+   */
+  public static void setEnabled(boolean enabled) {
+    ourIsEnabled = enabled;
+  }
+
+  public static boolean isEnabled() {
+    return ourIsEnabled;
+  }
+
+  /**
+   * Sets the number of events kept for each thread, rounded up to a power of two. Only applies to the threads that did not record any
+   * event yet.
+   */
+  public static void setBufferCapacity(int capacity) {
+    ourBufferCapacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+  }
+
+  /**
+   * Sets the listener notified when a paint of the event dispatch thread takes longer than the given threshold, with the events of all
+   * threads recorded in the given window before the end of the slow paint. Slow paints are reported at most once per given interval.
+   * Passing a null listener disables the detection.
+   */
+  public static void setSlowFrameListener(long thresholdMs, long windowMs, long minIntervalMs, @Nullable SlowFrameListener listener) {
+    ourSlowFrameDetector = listener == null ? null : new SlowFrameDetector(TimeUnit.MILLISECONDS.toNanos(thresholdMs),
+                                                                           TimeUnit.MILLISECONDS.toNanos(windowMs),
+                                                                           TimeUnit.MILLISECONDS.toNanos(minIntervalMs),
+                                                                           listener);
+  }
+
+  /**
+   * Returns the events of all threads recorded at or after the given {@link System#nanoTime()}.
+   */
+  @NotNull
+  public static PaintTrace snapshot(long sinceNs) {
+    List<PaintTrace.ThreadEvents> threads = new ArrayList<>();
+    for (PaintEventBuffer buffer : ourBuffers) {
+      Thread thread = buffer.getThread();
+      if (thread == null || !thread.isAlive()) {
+        ourBuffers.remove(buffer); // Clean up once the thread is dead or has been GC'ed.
+      }
+      long[] timestamps = new long[buffer.getCapacity()];
+      int[] events = new int[buffer.getCapacity()];
+      int count = buffer.copyTo(sinceNs, timestamps, events);
+      if (count > 0) {
+        threads.add(new PaintTrace.ThreadEvents(buffer.getThreadId(), buffer.getThreadName(), timestamps, events, count));
+      }
+    }
+    return new PaintTrace(threads, new ArrayList<>(ourKinds), new ArrayList<>(ourOwners));
+  }
+
+  static void begin(@NotNull MethodStat methodStat) {
+    if (!ourIsEnabled) {
+      return;
+    }
+    PaintEventBuffer buffer = ourBuffer.get();
+    if (buffer == null) {
+      buffer = new PaintEventBuffer(Thread.currentThread(), ourBufferCapacity);
+      ourBuffer.set(buffer);
+      ourBuffers.add(buffer);
+    }
+    buffer.begin(methodStat.getStartTime(), describe(methodStat));
+  }
+
+  static void end(@NotNull MethodStat methodStat) {
+    PaintEventBuffer buffer = ourBuffer.get();
+    if (buffer == null || !ourIsEnabled && !buffer.isRecordingMethod()) {
+      return;
+    }
+    long endTime = methodStat.getEndTime();
+    long rootStartTime = buffer.end(endTime, describe(methodStat));
+    if (rootStartTime >= 0) {
+      checkSlowFrame(rootStartTime, endTime);
+    }
+  }
+
+  private static void checkSlowFrame(long startTime, long endTime) {
+    SlowFrameDetector detector = ourSlowFrameDetector;
+    if (detector == null || endTime - startTime < detector.thresholdNs || !EventQueue.isDispatchThread()) {
+      return;
+    }
+    if (detector.lastReportTime != Long.MIN_VALUE && endTime - detector.lastReportTime < detector.minIntervalNs) {
+      return;
+    }
+    detector.lastReportTime = endTime;
+    detector.listener.slowFrame(endTime - startTime, snapshot(endTime - detector.windowNs));
+  }
+
+  /**
+   * Returns the descriptor of the events of the given method: the id of its kind in the high bits and the id of the class of its owner
+   * in the low {@link #OWNER_BITS} bits. The sign bit is left for {@link PaintEventBuffer#END_FLAG}.
+   */
+  private static int describe(@NotNull MethodStat methodStat) {
+    Object owner = methodStat.myOwner.get();
+    int ownerId = owner != null ? ourOwnerIds.get(owner.getClass()) : 0;
+    return ourKindIds.get(methodStat.getClass()) << OWNER_BITS | ownerId;
+  }
+
+  static int getKindId(int event) {
+    return (event & ~PaintEventBuffer.END_FLAG) >>> OWNER_BITS;
+  }
+
+  static int getOwnerId(int event) {
+    return event & (MAX_OWNERS - 1);
+  }
+
+  private static int register(@NotNull List<String> names, @NotNull Class<?> type, int maxSize) {
+    synchronized (names) {
+      if (names.isEmpty()) {
+        names.add("unknown");
+      }
+      if (names.size() == maxSize) {
+        return 0;
+      }
+      names.add(type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName());
+      return names.size() - 1;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Paint events captured by {@link PaintEventRecorder#snapshot}, which can be written in the Perfetto trace format to be opened with
+ * the Perfetto UI or any other viewer supporting it.
+ */
+public final class PaintTrace {
+  private static final String CATEGORY = "swingp";
+
+  // Field numbers and values of the Perfetto trace protos (perfetto/trace/trace.proto).
+  private static final int TRACE_PACKET = 1;
+  private static final int PACKET_TIMESTAMP = 8;
+  private static final int PACKET_SEQUENCE_ID = 10;
+  private static final int PACKET_TRACK_EVENT = 11;
+  private static final int PACKET_SEQUENCE_FLAGS = 13;
+  private static final int PACKET_TRACK_DESCRIPTOR = 60;
+  private static final int SEQUENCE_INCREMENTAL_STATE_CLEARED = 1;
+  private static final int TRACK_UUID = 1;
+  private static final int TRACK_THREAD = 4;
+  private static final int THREAD_PID = 1;
+  private static final int THREAD_TID = 2;
+  private static final int THREAD_NAME = 5;
+  private static final int EVENT_TYPE = 9;
+  private static final int EVENT_TRACK_UUID = 11;
+  private static final int EVENT_CATEGORIES = 22;
+  private static final int EVENT_NAME = 23;
+  private static final int TYPE_SLICE_BEGIN = 1;
+  private static final int TYPE_SLICE_END = 2;
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_LENGTH_DELIMITED = 2;
+  private static final int SEQUENCE_ID = 1;
+
+  static final class ThreadEvents {
+    final long threadId;
+    @NotNull final String threadName;
+    @NotNull final long[] timestamps;
+    @NotNull final int[] events;
+    final int count;
+
+    ThreadEvents(long threadId, @NotNull String threadName, @NotNull long[] timestamps, @NotNull int[] events, int count) {
+      this.threadId = threadId;
+      this.threadName = threadName;
+      this.timestamps = timestamps;
+      this.events = events;
+      this.count = count;
+    }
+  }
+
+  @NotNull private final List<ThreadEvents> myThreads;
+  @NotNull private final List<String> myKinds;
+  @NotNull private final List<String> myOwners;
+
+  PaintTrace(@NotNull List<ThreadEvents> threads, @NotNull List<String> kinds, @NotNull List<String> owners) {
+    myThreads = threads;
+    myKinds = kinds;
+    myOwners = owners;
+  }
+
+  public int getEventCount() {
+    return myThreads.stream().mapToInt(thread -> thread.count).sum();
+  }
+
+  /**
+   * Writes the events as a Perfetto trace with a track per thread. Since the oldest events of a thread may have been overwritten, the
+   * end events without a matching start are skipped, and the methods that did not end yet are ended at the last event of the thread.
+   */
+  public void writePerfettoTrace(@NotNull OutputStream output) throws IOException {
+    int pid = getProcessId();
+    ProtoWriter packet = new ProtoWriter();
+    ProtoWriter message = new ProtoWriter();
+    ProtoWriter nested = new ProtoWriter();
+    boolean first = true;
+    for (ThreadEvents thread : myThreads) {
+      long trackUuid = thread.threadId + 1;
+
+      nested.reset();
+      nested.writeVarint(THREAD_PID, pid);
+      nested.writeVarint(THREAD_TID, thread.threadId);
+      nested.writeString(THREAD_NAME, thread.threadName);
+      message.reset();
+      message.writeVarint(TRACK_UUID, trackUuid);
+      message.writeMessage(TRACK_THREAD, nested);
+      packet.reset();
+      packet.writeVarint(PACKET_SEQUENCE_ID, SEQUENCE_ID);
+      if (first) {
+        packet.writeVarint(PACKET_SEQUENCE_FLAGS, SEQUENCE_INCREMENTAL_STATE_CLEARED);
+        first = false;
+      }
+      packet.writeMessage(PACKET_TRACK_DESCRIPTOR, message);
+      writePacket(output, packet);
+
+      int depth = 0;
+      for (int i = 0; i < thread.count; i++) {
+        int event = thread.events[i];
+        boolean isEnd = (event & PaintEventBuffer.END_FLAG) != 0;
+        if (isEnd && depth == 0) {
+          continue;
+        }
+        depth += isEnd ? -1 : 1;
+        writeEvent(output, packet, message, trackUuid, thread.timestamps[i], isEnd ? null : getName(event));
+      }
+      for (; depth > 0; depth--) {
+        writeEvent(output, packet, message, trackUuid, thread.timestamps[thread.count - 1], null);
+      }
+    }
+  }
+
+  private static void writeEvent(@NotNull OutputStream output,
+                                 @NotNull ProtoWriter packet,
+                                 @NotNull ProtoWriter message,
+                                 long trackUuid,
+                                 long timestamp,
+                                 @Nullable String beginName) throws IOException {
+    message.reset();
+    message.writeVarint(EVENT_TYPE, beginName != null ? TYPE_SLICE_BEGIN : TYPE_SLICE_END);
+    message.writeVarint(EVENT_TRACK_UUID, trackUuid);
+    if (beginName != null) {
+      message.writeString(EVENT_CATEGORIES, CATEGORY);
+      message.writeString(EVENT_NAME, beginName);
+    }
+    packet.reset();
+    packet.writeVarint(PACKET_TIMESTAMP, timestamp);
+    packet.writeVarint(PACKET_SEQUENCE_ID, SEQUENCE_ID);
+    packet.writeMessage(PACKET_TRACK_EVENT, message);
+    writePacket(output, packet);
+  }
+
+  private static void writePacket(@NotNull OutputStream output, @NotNull ProtoWriter packet) throws IOException {
+    ProtoWriter.writeTag(output, TRACE_PACKET, WIRE_LENGTH_DELIMITED);
+    ProtoWriter.writeRawVarint(output, packet.size());
+    packet.writeTo(output);
+  }
+
+  @NotNull
+  private String getName(int event) {
+    return getName(myKinds, PaintEventRecorder.getKindId(event)) + ": " + getName(myOwners, PaintEventRecorder.getOwnerId(event));
+  }
+
+  @NotNull
+  private static String getName(@NotNull List<String> names, int id) {
+    return id < names.size() ? names.get(id) : "unknown";
+  }
+
+  private static int getProcessId() {
+    // The name of the runtime is "pid@hostname" on the supported JVMs.
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+    try {
+      return Integer.parseInt(name.substring(0, name.indexOf('@')));
+    }
+    catch (RuntimeException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Minimal protobuf encoder for the few field types used by the trace.
+   */
+  private static final class ProtoWriter extends ByteArrayOutputStream {
+    void writeVarint(int field, long value) {
+      writeTag(this, field, WIRE_VARINT);
+      writeRawVarint(this, value);
+    }
+
+    void writeString(int field, @NotNull String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeTag(this, field, WIRE_LENGTH_DELIMITED);
+      writeRawVarint(this, bytes.length);
+      write(bytes, 0, bytes.length);
+    }
+
+    void writeMessage(int field, @NotNull ProtoWriter message) {
+      writeTag(this, field, WIRE_LENGTH_DELIMITED);
+      writeRawVarint(this, message.size());
+      write(message.buf, 0, message.size());
+    }
+
+    static void writeTag(@NotNull OutputStream output, int field, int wireType) {
+      writeRawVarint(output, (long)field << 3 | wireType);
+    }
+
+    static void writeRawVarint(@NotNull OutputStream output, long value) {
+      try {
+        while ((value & ~0x7FL) != 0) {
+          output.write((int)(value & 0x7F) | 0x80);
+          value >>>= 7;
+        }
+        output.write((int)value);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -132,9 +132,11 @@ public final class RenderStatsManager {
 
   static void push(@NotNull MethodStat methodStat) {
     ourThreadStat.get().pushMethod(methodStat);
+    PaintEventRecorder.begin(methodStat);
   }
 
   static void pop(@NotNull MethodStat verification) {
     ourThreadStat.get().popMethod(verification);
+    PaintEventRecorder.end(verification);
   }
 }
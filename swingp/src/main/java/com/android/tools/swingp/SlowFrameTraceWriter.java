@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link PaintEventRecorder.SlowFrameListener} writing the trace of each slow frame to a file of the given directory, off the event
+ * dispatch thread. The traces are dropped while a previous one is still being written.
+ */
+public final class SlowFrameTraceWriter implements PaintEventRecorder.SlowFrameListener {
+  private static final String WRITER_THREAD_NAME = "Slow Frame Trace Writer";
+
+  @NotNull private final Path myDirectory;
+  @NotNull private final ExecutorService myExecutor =
+    new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1), runnable -> {
+      Thread thread = new Thread(runnable, WRITER_THREAD_NAME);
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+  public SlowFrameTraceWriter(@NotNull Path directory) {
+    myDirectory = directory;
+  }
+
+  @Override
+  public void slowFrame(long durationNs, @NotNull PaintTrace trace) {
+    String fileName = String.format("slow-frame-%d-%dms.perfetto-trace", System.currentTimeMillis(),
+                                    TimeUnit.NANOSECONDS.toMillis(durationNs));
+    myExecutor.execute(() -> {
+      try {
+        Files.createDirectories(myDirectory);
+        try (OutputStream output = Files.newOutputStream(myDirectory.resolve(fileName))) {
+          trace.writePerfettoTrace(output);
+        }
+      }
+      catch (IOException e) {
+        System.out.println("Could not write slow frame trace: " + e);
+      }
+    });
+  }
+}
@@ -15,11 +15,28 @@
  */
 package com.android.tools.swingp.instrumenter;
 
+import com.android.tools.swingp.PaintEventRecorder;
+import com.android.tools.swingp.SlowFrameTraceWriter;
+
 import javax.swing.*;
 import java.awt.*;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Instrumentation agent of swingp.
+ * <p>
+ * The agent accepts comma separated {@code key=value} options, e.g. {@code -javaagent:swing-instrumenter.jar=slowFrameMs=100}. When
+ * {@code slowFrameMs} is given, the paint events are recorded by {@link PaintEventRecorder} from the start, and the events of the
+ * last {@code windowMs} (5000 by default) are written as a Perfetto trace to {@code traceDir} (the temporary directory by default)
+ * whenever a paint of the event dispatch thread takes longer than {@code slowFrameMs}.
+ */
 public class Agent {
+  private static final long DEFAULT_WINDOW_MS = 5000;
+  private static final long MIN_TRACE_INTERVAL_MS = 10000;
+
   public static void premain(String agentArgs, Instrumentation instrumentation) {
     System.out.println("Starting instrumentation agent.");
     agentmain(agentArgs, instrumentation);
@@ -28,6 +45,7 @@ public class Agent {
 
   public static void agentmain(String agentArgs, Instrumentation instrumentation) {
     try {
+      startPaintEventRecorder(parseOptions(agentArgs));
       instrumentation.addTransformer(new JComponentClassTransformer(), true);
       instrumentation.addTransformer(new RepaintManagerClassTransformer(), true);
       instrumentation.addTransformer(new WindowClassTransformer(), true);
@@ -41,4 +59,33 @@ public class Agent {
       System.out.println(e);
     }
   }
+
+  private static void startPaintEventRecorder(Map<String, String> options) {
+    String slowFrameMs = options.get("slowFrameMs");
+    if (slowFrameMs == null) {
+      return;
+    }
+    String windowMs = options.get("windowMs");
+    String traceDir = options.getOrDefault("traceDir", System.getProperty("java.io.tmpdir"));
+    PaintEventRecorder.setSlowFrameListener(Long.parseLong(slowFrameMs),
+                                            windowMs != null ? Long.parseLong(windowMs) : DEFAULT_WINDOW_MS,
+                                            MIN_TRACE_INTERVAL_MS,
+                                            new SlowFrameTraceWriter(Paths.get(traceDir)));
+    PaintEventRecorder.setEnabled(true);
+    System.out.println("Recording paint events, slow frame traces are written to " + traceDir);
+  }
+
+  private static Map<String, String> parseOptions(String agentArgs) {
+    Map<String, String> options = new HashMap<>();
+    if (agentArgs == null) {
+      return options;
+    }
+    for (String option : agentArgs.split(",")) {
+      int separator = option.indexOf('=');
+      if (separator > 0) {
+        options.put(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+      }
+    }
+    return options;
+  }
 }
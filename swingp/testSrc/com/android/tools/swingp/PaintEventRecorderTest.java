@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PaintEventRecorderTest {
+  @Before
+  public void setUp() {
+    PaintEventRecorder.setEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    PaintEventRecorder.setEnabled(false);
+    PaintEventRecorder.setSlowFrameListener(0, 0, 0, null);
+    PaintEventRecorder.setBufferCapacity(PaintEventRecorder.DEFAULT_BUFFER_CAPACITY);
+  }
+
+  @Test
+  public void bufferKeepsMostRecentEvents() {
+    PaintEventBuffer buffer = new PaintEventBuffer(Thread.currentThread(), 8);
+    for (int i = 0; i < 20; i++) {
+      buffer.begin(i, i);
+    }
+    long[] timestamps = new long[8];
+    int[] events = new int[8];
+    // The oldest slot is dropped since it may be overwritten while it is copied.
+    assertThat(buffer.copyTo(0, timestamps, events)).isEqualTo(7);
+    assertThat(timestamps[0]).isEqualTo(13);
+    assertThat(events[6]).isEqualTo(19);
+
+    assertThat(buffer.copyTo(17, timestamps, events)).isEqualTo(3);
+    assertThat(timestamps[0]).isEqualTo(17);
+  }
+
+  @Test
+  public void bufferReportsOutermostMethod() {
+    PaintEventBuffer buffer = new PaintEventBuffer(Thread.currentThread(), 8);
+    assertThat(buffer.end(1, 0)).isEqualTo(-1);
+    buffer.begin(10, 0);
+    buffer.begin(20, 0);
+    assertThat(buffer.end(30, 0)).isEqualTo(-1);
+    assertThat(buffer.isRecordingMethod()).isTrue();
+    assertThat(buffer.end(40, 0)).isEqualTo(10);
+    assertThat(buffer.isRecordingMethod()).isFalse();
+  }
+
+  @Test
+  public void snapshotContainsRecordedMethods() throws IOException {
+    long start = System.nanoTime();
+    new TestClass().paint();
+
+    PaintTrace trace = PaintEventRecorder.snapshot(start);
+    assertThat(trace.getEventCount()).isEqualTo(4);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    trace.writePerfettoTrace(output);
+    String names = String.join(",", readEventNames(output.toByteArray()));
+    assertThat(names).isEqualTo("TestMethodStat: TestClass,TestMethodStat: TestClass");
+  }
+
+  @Test
+  public void disabledRecorderDoesNotRecord() {
+    PaintEventRecorder.setEnabled(false);
+    long start = System.nanoTime();
+    new TestClass().paint();
+    assertThat(PaintEventRecorder.snapshot(start).getEventCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void slowFrameIsReported() throws Exception {
+    AtomicLong duration = new AtomicLong();
+    AtomicReference<PaintTrace> slowTrace = new AtomicReference<>();
+    PaintEventRecorder.setSlowFrameListener(20, 1000, 0, (durationNs, trace) -> {
+      duration.set(durationNs);
+      slowTrace.set(trace);
+    });
+
+    SwingUtilities.invokeAndWait(() -> new TestClass().paint());
+    assertThat(slowTrace.get()).isNull();
+
+    SwingUtilities.invokeAndWait(() -> {
+      MethodStat stat = new TestMethodStat(this);
+      try {
+        Thread.sleep(30);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      stat.endMethod();
+    });
+    assertThat(duration.get()).isAtLeast(20_000_000L);
+    assertThat(slowTrace.get().getEventCount()).isAtLeast(2);
+  }
+
+  /**
+   * Returns the names of the track events of a Perfetto trace.
+   */
+  @NotNull
+  private static List<String> readEventNames(@NotNull byte[] trace) {
+    List<String> names = new ArrayList<>();
+    ProtoReader reader = new ProtoReader(trace, 0, trace.length);
+    while (reader.next()) {
+      ProtoReader packet = reader.message();
+      while (packet.next()) {
+        if (packet.field == 11) {
+          ProtoReader event = packet.message();
+          while (event.next()) {
+            if (event.field == 23) {
+              names.add(event.string());
+            }
+          }
+        }
+      }
+    }
+    return names;
+  }
+
+  private static final class ProtoReader {
+    private final byte[] myBytes;
+    private int myPosition;
+    private final int myEnd;
+    int field;
+    private int myWireType;
+    private long myValue;
+
+    ProtoReader(@NotNull byte[] bytes, int start, int end) {
+      myBytes = bytes;
+      myPosition = start;
+      myEnd = end;
+    }
+
+    boolean next() {
+      if (myPosition >= myEnd) {
+        return false;
+      }
+      long tag = readVarint();
+      field = (int)(tag >>> 3);
+      myWireType = (int)(tag & 7);
+      myValue = readVarint();
+      if (myWireType == 2) {
+        myPosition += (int)myValue;
+      }
+      return true;
+    }
+
+    @NotNull
+    ProtoReader message() {
+      return new ProtoReader(myBytes, myPosition - (int)myValue, myPosition);
+    }
+
+    @NotNull
+    String string() {
+      return new String(myBytes, myPosition - (int)myValue, (int)myValue, StandardCharsets.UTF_8);
+    }
+
+    private long readVarint() {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = myBytes[myPosition++];
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
+
+  private static final class TestMethodStat extends MethodStat {
+    public TestMethodStat(@NotNull Object owner) {
+      super(owner);
+    }
+  }
+
+  private static final class TestClass {
+    public void paint() {
+      MethodStat stat = new TestMethodStat(this);
+      MethodStat child = new TestMethodStat(this);
+      child.endMethod();
+      stat.endMethod();
+    }
+  }
+}
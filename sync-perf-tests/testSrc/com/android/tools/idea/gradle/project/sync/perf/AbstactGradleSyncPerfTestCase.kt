@@ -20,6 +20,7 @@ import com.android.tools.analytics.LoggedUsage
 import com.android.tools.analytics.TestUsageTracker
 import com.android.tools.analytics.UsageTracker.cleanAfterTesting
 import com.android.tools.analytics.UsageTracker.setWriterForTest
+import com.android.tools.idea.gradle.project.sync.setup.module.common.SetupStepTimings
 import com.android.tools.idea.testing.AndroidGradleProjectRule
 import com.android.tools.perflogger.Benchmark
 import com.android.tools.perflogger.Metric
@@ -166,10 +167,12 @@ abstract class AbstractGradleSyncPerfTestCase(private val useSingleVariantSyncIn
       val metricRegularTotal = Metric("Regular_Total")
       val metricRegularIDE = Metric("Regular_IDE")
       val metricRegularGradle = Metric("Regular_Gradle")
+      val metricsSetupSteps = HashMap<String, Metric>()
       // Measure initial sync (already synced when loadProject was called)
       val initialStats = getLastSyncStats()
-      printStats("initial sync", initialStats, log)
+      val initialSetupStepTimings = printStats("initial sync", initialStats, log)
       var currentTime = Instant.now().toEpochMilli()
+      addSetupStepSamples(metricsSetupSteps, "Initial", initialSetupStepTimings, scenarioBenchmark, currentTime)
       metricScenario.addSamples(initialBenchmark, MetricSample(currentTime, initialStats!!.totalTimeMs))
       metricInitialGradle.addSamples(scenarioBenchmark, MetricSample(currentTime, initialStats.gradleTimeMs))
       metricInitialIDE.addSamples(scenarioBenchmark, MetricSample(currentTime, initialStats.ideTimeMs))
@@ -184,10 +187,11 @@ abstract class AbstractGradleSyncPerfTestCase(private val useSingleVariantSyncIn
       for (sample in 1..numSamples) {
         projectRule.requestSyncAndWait()
         val sampleStats = getLastSyncStats()
-        printStats("sample $sample", sampleStats, log)
+        val sampleSetupStepTimings = printStats("sample $sample", sampleStats, log)
         if (sampleStats != null) {
           measurements.add(sampleStats.totalTimeMs)
           currentTime = Instant.now().toEpochMilli()
+          addSetupStepSamples(metricsSetupSteps, "Regular", sampleSetupStepTimings, scenarioBenchmark, currentTime)
           metricScenario.addSamples(regularBenchmark, MetricSample(currentTime, sampleStats.totalTimeMs))
           metricRegularGradle.addSamples(scenarioBenchmark, MetricSample(currentTime, sampleStats.gradleTimeMs))
           metricRegularIDE.addSamples(scenarioBenchmark, MetricSample(currentTime, sampleStats.ideTimeMs))
@@ -201,6 +205,7 @@ abstract class AbstractGradleSyncPerfTestCase(private val useSingleVariantSyncIn
       metricRegularGradle.commit(scenarioName)
       metricRegularIDE.commit(scenarioName)
       metricRegularTotal.commit(scenarioName)
+      metricsSetupSteps.values.forEach { it.commit(scenarioName) }
     }
     catch (e: java.lang.Exception) {
       throw RuntimeException(e)
@@ -227,7 +232,10 @@ abstract class AbstractGradleSyncPerfTestCase(private val useSingleVariantSyncIn
     return null
   }
 
-  private fun printStats(message: String, stats: GradleSyncStats?, log: Logger) {
+  /**
+   * Logs the given stats and the time spent in each module setup step since the last call, and returns the latter.
+   */
+  private fun printStats(message: String, stats: GradleSyncStats?, log: Logger): Map<String, Long> {
     log.info("${getScenarioName()} $message:")
     if (stats == null) {
       log.info("  <null_stats>")
@@ -237,6 +245,30 @@ abstract class AbstractGradleSyncPerfTestCase(private val useSingleVariantSyncIn
       log.info("     IDE: " + stats.ideTimeMs)
       log.info("   Total: " + stats.totalTimeMs)
     }
+    return printSetupStepTimings(log)
+  }
+
+  /**
+   * Logs and returns the time spent in each module setup step since the last call, so that regressions of the IDE part of sync can be
+   * traced to a step.
+   */
+  private fun printSetupStepTimings(log: Logger): Map<String, Long> {
+    val timings = SetupStepTimings.getInstance(projectRule.project)
+    val timingsMs = timings.timingsMs
+    timingsMs.forEach { (step, timeMs) -> log.info("  Setup step $step: $timeMs") }
+    timings.reset()
+    return timingsMs
+  }
+
+  /**
+   * Adds a sample to the "<prefix>_Setup_<step>" metric of each setup step, creating the metrics as needed.
+   */
+  private fun addSetupStepSamples(metrics: MutableMap<String, Metric>, prefix: String, timingsMs: Map<String, Long>,
+                                  benchmark: Benchmark, time: Long) {
+    timingsMs.forEach { (step, timeMs) ->
+      val name = "${prefix}_Setup_$step"
+      metrics.getOrPut(name) { Metric(name) }.addSamples(benchmark, MetricSample(time, timeMs))
+    }
   }
 
   private fun getScenarioName(): String {
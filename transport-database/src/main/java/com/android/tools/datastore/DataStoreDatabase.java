@@ -15,7 +15,9 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreWriter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.sql.Connection;
@@ -39,6 +41,8 @@ public class DataStoreDatabase {
 
   private final Connection myConnection;
 
+  @Nullable private final DataStoreWriter myWriter;
+
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
@@ -52,6 +56,17 @@ public class DataStoreDatabase {
                            @NotNull Characteristic characteristic,
                            @NotNull LogService logService,
                            @NotNull Consumer<Throwable> noPiiExceptionHandler) {
+    this(dbPath, characteristic, logService, noPiiExceptionHandler, null);
+  }
+
+  /**
+   * @param writerConfig if not null, inserts queued by the tables of this database are batched and committed by a {@link DataStoreWriter}.
+   */
+  public DataStoreDatabase(@NotNull String dbPath,
+                           @NotNull Characteristic characteristic,
+                           @NotNull LogService logService,
+                           @NotNull Consumer<Throwable> noPiiExceptionHandler,
+                           @Nullable DataStoreWriter.Config writerConfig) {
     myLogService = logService;
     Connection connection = null;
     try {
@@ -98,9 +113,13 @@ public class DataStoreDatabase {
       noPiiExceptionHandler.accept(e);
     }
     myConnection = connection;
+    myWriter = connection != null && writerConfig != null ? new DataStoreWriter(connection, writerConfig) : null;
   }
 
   public void disconnect() {
+    if (myWriter != null) {
+      myWriter.stop();
+    }
     try {
       myConnection.commit();
     }
@@ -122,4 +141,12 @@ public class DataStoreDatabase {
   public Connection getConnection() {
     return myConnection;
   }
+
+  /**
+   * @return the writer batching the inserts of the tables on this database, or null if inserts are written as they are made.
+   */
+  @Nullable
+  public DataStoreWriter getWriter() {
+    return myWriter;
+  }
 }
@@ -16,10 +16,14 @@
 package com.android.tools.datastore;
 
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.DURABLE;
+import static com.android.tools.idea.flags.StudioFlags.PROFILER_DATASTORE_BATCHED_WRITES;
+import static com.android.tools.idea.flags.StudioFlags.PROFILER_DATASTORE_EVENT_PARTITIONS;
+import static com.android.tools.idea.flags.StudioFlags.PROFILER_DATASTORE_EVENT_RETENTION;
 import static com.android.tools.idea.flags.StudioFlags.PROFILER_UNIFIED_PIPELINE;
 
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.DataStoreWriter;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.datastore.service.CpuService;
 import com.android.tools.datastore.service.EnergyService;
@@ -196,7 +200,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public void createPollers() {
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
-    UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
+    UnifiedEventsTable unifiedTable =
+      new UnifiedEventsTable(PROFILER_DATASTORE_EVENT_PARTITIONS.get() ? createPartitionConfig() : null);
     myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get());
     registerService(myTransportService);
     registerService(new ProfilerService(this, myLogService));
@@ -212,7 +217,16 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public DataStoreDatabase createDatabase(@NotNull String dbPath,
                                           @NotNull DataStoreDatabase.Characteristic characteristic,
                                           Consumer<Throwable> noPiiExceptionHandler) {
-    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler);
+    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler,
+                                 PROFILER_DATASTORE_BATCHED_WRITES.get() ? new DataStoreWriter.Config() : null);
+  }
+
+  @NotNull
+  private static UnifiedEventsTable.PartitionConfig createPartitionConfig() {
+    return new UnifiedEventsTable.PartitionConfig(UnifiedEventsTable.PartitionConfig.DEFAULT_PARTITION_DURATION_NS,
+                                                  PROFILER_DATASTORE_EVENT_RETENTION.get()
+                                                  ? UnifiedEventsTable.PartitionConfig.DEFAULT_RETENTION_NS
+                                                  : UnifiedEventsTable.PartitionConfig.NO_RETENTION);
   }
 
   /**
@@ -227,7 +241,7 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       assert !namespace.myNamespace.isEmpty();
       DataStoreDatabase db = myDatabases.computeIfAbsent(namespace, backingNamespace -> createDatabase(
         myDatastoreDirectory + backingNamespace.myNamespace, backingNamespace.myCharacteristic, myNoPiiExceptionHandler));
-      service.setBackingStore(namespace, db.getConnection());
+      service.setBackingStore(namespace, db);
     });
 
     // Build server and start listening for RPC calls for the registered service
@@ -43,4 +43,15 @@ public interface ServicePassThrough {
    * @param connection {@link Connection} to the backing store
    */
   void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection);
+
+  /**
+   * Same as {@link #setBackingStore(DataStoreService.BackingNamespace, Connection)}, but gives services whose tables batch their inserts
+   * access to the database's {@link com.android.tools.datastore.database.DataStoreWriter}.
+   *
+   * @param namespace a namespace corresponding to an entry in the list returned from {@link #getBackingNamespaces()}
+   * @param database  the backing store
+   */
+  default void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull DataStoreDatabase database) {
+    setBackingStore(namespace, database.getConnection());
+  }
 }
@@ -126,7 +126,7 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   }
 
   public void insert(Common.Session session, CpuUsageData data) {
-    execute(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
+    executeQueued(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
   }
 
   public List<CpuUsageData> getCpuDataByRequest(CpuDataRequest request) {
@@ -153,9 +153,8 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
                                List<GetThreadsResponse.ThreadActivity> activities) {
     getThreadIdCacheForSession(session.getSessionId()).add(tid);
     for (GetThreadsResponse.ThreadActivity activity : activities) {
-      // TODO: optimize it by adding the states in batches
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY, session.getSessionId(), tid, activity.getTimestamp(), activity.getNewState().toString(),
-              name);
+      executeQueued(CpuStatements.INSERT_THREAD_ACTIVITY, session.getSessionId(), tid, activity.getTimestamp(),
+                    activity.getNewState().toString(), name);
     }
   }
 
@@ -166,8 +165,8 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     // For now, insert it as activity. TODO: differentiate the concepts of snapshot and activity
     for (GetThreadsResponse.ThreadSnapshot.Snapshot snapshot : snapshots) {
       idSet.add(snapshot.getTid());
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY,
-              session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(), snapshot.getName());
+      executeQueued(CpuStatements.INSERT_THREAD_ACTIVITY,
+                    session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(), snapshot.getName());
     }
   }
 
@@ -16,6 +16,7 @@
 package com.android.tools.datastore.database;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.*;
 import java.util.*;
@@ -32,8 +33,34 @@ public abstract class DataStoreTable<T extends Enum> {
   private Connection myConnection;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
 
-  // Cache custom queries we have a limited number and we call the same query multiple times.
-  private final ThreadLocal<Map<String, PreparedStatement>> myCustomQueryCache = new ThreadLocal<>();
+  // Cache custom queries we call the same query multiple times. Tables created at runtime make the set of queries open-ended, so the cache
+  // is bounded.
+  private static final int MAX_CUSTOM_QUERIES_PER_THREAD = 64;
+  private final StatementCache myCustomQueryCache = new StatementCache(MAX_CUSTOM_QUERIES_PER_THREAD);
+
+  // Rows queued by executeQueued, only used when the connection has a DataStoreWriter.
+  @Nullable private DataStoreWriter myWriter;
+  private final Object myQueuedWritesLock = new Object();
+  // Held while queued rows are written out so that batches from different threads don't interleave.
+  private final Object myFlushLock = new Object();
+  @NotNull private List<QueuedWrite<T>> myQueuedWrites = new ArrayList<>();
+
+  private static final class QueuedWrite<T> {
+    // Exactly one of the statement and the sql is set.
+    @Nullable private final T myStatement;
+    @Nullable private final String mySql;
+    @NotNull private final Object[] myParams;
+
+    QueuedWrite(@Nullable T statement, @Nullable String sql, @NotNull Object[] params) {
+      myStatement = statement;
+      mySql = sql;
+      myParams = params;
+    }
+
+    boolean hasSameStatement(@NotNull QueuedWrite<T> other) {
+      return myStatement == other.myStatement && Objects.equals(mySql, other.mySql);
+    }
+  }
 
   public interface DataStoreTableErrorCallback {
     void onDataStoreError(Throwable t);
@@ -48,6 +75,18 @@ public abstract class DataStoreTable<T extends Enum> {
     myConnection = connection;
   }
 
+  /**
+   * Same as {@link #initialize(Connection)}, but inserts made through {@link #executeQueued(Enum, Object...)} are batched by the given
+   * writer, usually the one owned by the {@link com.android.tools.datastore.DataStoreDatabase} of the connection.
+   */
+  public void initialize(@NotNull Connection connection, @Nullable DataStoreWriter writer) {
+    myWriter = writer;
+    if (writer != null) {
+      writer.register(this);
+    }
+    initialize(connection);
+  }
+
   /**
    * Helper function called after initialize to create {@link PreparedStatement} the implementor should cache
    * the statements for later use.
@@ -142,8 +181,14 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return;
     }
+    flushQueuedWrites();
+    executeBatchInternal(getStatementMap().get(statement), batchParams, paramConverter);
+  }
+
+  private <K> void executeBatchInternal(@NotNull PreparedStatement stmt,
+                                        @NotNull List<K> batchParams,
+                                        @NotNull Function<K, Object[]> paramConverter) {
     try {
-      PreparedStatement stmt = getStatementMap().get(statement);
       batchParams.forEach((object) -> {
         try {
           applyParams(stmt, paramConverter.apply(object));
@@ -168,6 +213,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return;
     }
+    flushQueuedWrites();
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       applyParams(stmt, params);
@@ -181,10 +227,92 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Same as {@link #execute(Enum, Object...)}, but if the connection has a {@link DataStoreWriter} the row is queued and written out later
+   * as part of a batch. Use this for inserts on hot polling paths where the caller does not need the statement's result.
+   */
+  protected void executeQueued(@NotNull T statement, Object... params) {
+    if (myWriter == null) {
+      execute(statement, params);
+      return;
+    }
+    queueWrite(new QueuedWrite<>(statement, null, params));
+  }
+
+  /**
+   * Same as {@link #executeOneTimeUpdate(String, Object...)}, but queued like {@link #executeQueued(Enum, Object...)}.
+   */
+  protected void executeQueued(@NotNull String sql, Object... params) {
+    if (myWriter == null) {
+      executeOneTimeUpdate(sql, params);
+      return;
+    }
+    queueWrite(new QueuedWrite<>(null, sql, params));
+  }
+
+  private void queueWrite(@NotNull QueuedWrite<T> write) {
+    DataStoreWriter writer = myWriter;
+    assert writer != null;
+    if (isClosed()) {
+      return;
+    }
+
+    boolean isFull;
+    synchronized (myQueuedWritesLock) {
+      myQueuedWrites.add(write);
+      isFull = myQueuedWrites.size() >= writer.getMaxBatchSize();
+    }
+    if (isFull) {
+      flushQueuedWrites();
+    }
+  }
+
+  /**
+   * Writes out the rows queued by {@link #executeQueued(Enum, Object...)}, grouping consecutive rows of the same statement into a batch.
+   *
+   * @return true if any row was written.
+   */
+  boolean flushQueuedWrites() {
+    if (myWriter == null) {
+      return false;
+    }
+    synchronized (myFlushLock) {
+      List<QueuedWrite<T>> queuedWrites;
+      synchronized (myQueuedWritesLock) {
+        if (myQueuedWrites.isEmpty()) {
+          return false;
+        }
+        queuedWrites = myQueuedWrites;
+        myQueuedWrites = new ArrayList<>();
+      }
+
+      int start = 0;
+      while (start < queuedWrites.size()) {
+        QueuedWrite<T> first = queuedWrites.get(start);
+        int end = start + 1;
+        while (end < queuedWrites.size() && queuedWrites.get(end).hasSameStatement(first)) {
+          end++;
+        }
+        try {
+          PreparedStatement stmt =
+            first.myStatement != null ? getStatementMap().get(first.myStatement) : myCustomQueryCache.get(myConnection, first.mySql);
+          executeBatchInternal(stmt, queuedWrites.subList(start, end), write -> write.myParams);
+        }
+        catch (SQLException ex) {
+          onError(ex);
+        }
+        start = end;
+      }
+      return true;
+    }
+  }
+
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
     if (isClosed()) {
       return new EmptyResultSet();
     }
+    // Reads see every row queued so far, whichever thread queued it.
+    flushQueuedWrites();
     PreparedStatement stmt = getStatementMap().get(statement);
     applyParams(stmt, params);
     return stmt.executeQuery();
@@ -194,18 +322,54 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return new EmptyResultSet();
     }
-    if (myCustomQueryCache.get() == null) {
-      myCustomQueryCache.set(new HashMap<>());
+    flushQueuedWrites();
+    PreparedStatement statement = myCustomQueryCache.get(myConnection, sql);
+    applyParams(statement, params);
+    ResultSet results = statement.executeQuery();
+    myCustomQueryCache.setResultSet(statement, results);
+    return results;
+  }
+
+  /**
+   * Like {@link #executeOneTimeQuery(String, Object[])}, but for statements that modify the database, e.g. inserts into tables that are
+   * created at runtime and so have no entry in the statement enum.
+   */
+  protected void executeOneTimeUpdate(@NotNull String sql, Object... params) {
+    if (isClosed()) {
+      return;
     }
+    flushQueuedWrites();
+    try {
+      PreparedStatement statement = myCustomQueryCache.get(myConnection, sql);
+      applyParams(statement, params);
+      statement.execute();
+      statement.clearParameters();
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+  }
 
-    Map<String, PreparedStatement> queryCache = myCustomQueryCache.get();
-    if (!queryCache.containsKey(sql)) {
-      queryCache.put(sql, myConnection.prepareStatement(sql));
+  /**
+   * Executes a statement that is expected to run only once, such as maintenance on a table that is about to be dropped. Unlike
+   * {@link #executeOneTimeUpdate(String, Object...)} the statement is closed instead of cached.
+   */
+  protected void executeUncached(@NotNull String sql, Object... params) throws SQLException {
+    flushQueuedWrites();
+    try (PreparedStatement statement = myConnection.prepareStatement(sql)) {
+      applyParams(statement, params);
+      statement.execute();
     }
+  }
 
-    PreparedStatement statement = queryCache.get(sql);
-    applyParams(statement, params);
-    return statement.executeQuery();
+  /**
+   * Drops a table created at runtime, evicting the cached statements of every thread that refer to it by its bracketed name.
+   */
+  protected void dropTable(@NotNull String table) throws SQLException {
+    String bracketedName = "[" + table + "]";
+    flushQueuedWrites();
+    myCustomQueryCache.invalidate(sql -> sql.contains(bracketedName));
+    executeUncached(String.format("DROP TABLE IF EXISTS %s", bracketedName));
   }
 
   protected void applyParams(@NotNull PreparedStatement statement, Object... params) throws SQLException {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Batches the writes queued through {@link DataStoreTable#executeQueued} on a {@link Connection}. Each table keeps a bounded queue of
+ * pending rows, and a dedicated writer thread periodically flushes every queue as multi-row batches. A producer that fills its table's
+ * queue flushes it inline, which bounds memory and applies back pressure to the poller. Flushing does not commit: the connection keeps
+ * the single open transaction it has without a writer.
+ *
+ * Non-queued writes and reads on a table flush its queue first, so that they stay ordered after the queued inserts of every thread. Rows
+ * are only batched for as long as nothing reads the table.
+ */
+public final class DataStoreWriter {
+  public static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+  public static final class Config {
+    private final long myFlushIntervalMs;
+    private final int myMaxBatchSize;
+
+    /**
+     * @param flushIntervalMs how often the writer thread flushes queued rows.
+     * @param maxBatchSize    how many rows a table queues before they are flushed by the thread queueing them.
+     */
+    public Config(long flushIntervalMs, int maxBatchSize) {
+      assert flushIntervalMs > 0 && maxBatchSize > 0;
+      myFlushIntervalMs = flushIntervalMs;
+      myMaxBatchSize = maxBatchSize;
+    }
+
+    public Config() {
+      this(DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_MAX_BATCH_SIZE);
+    }
+  }
+
+  @NotNull private final Connection myConnection;
+  @NotNull private final Config myConfig;
+  @NotNull private final List<DataStoreTable<?>> myTables = new CopyOnWriteArrayList<>();
+  @NotNull private final ScheduledExecutorService myExecutor;
+
+  /**
+   * Starts the writer thread. Tables batch their inserts through this writer once they are initialized with it, see
+   * {@link DataStoreTable#initialize(Connection, DataStoreWriter)}.
+   */
+  public DataStoreWriter(@NotNull Connection connection, @NotNull Config config) {
+    myConnection = connection;
+    myConfig = config;
+    myExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "DataStoreWriter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    myExecutor.scheduleWithFixedDelay(this::flush, config.myFlushIntervalMs, config.myFlushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  int getMaxBatchSize() {
+    return myConfig.myMaxBatchSize;
+  }
+
+  void register(@NotNull DataStoreTable<?> table) {
+    myTables.add(table);
+  }
+
+  /**
+   * Writes out the rows queued by every table.
+   */
+  public void flush() {
+    try {
+      if (myConnection.isClosed()) {
+        return;
+      }
+      for (DataStoreTable<?> table : myTables) {
+        table.flushQueuedWrites();
+      }
+    }
+    catch (SQLException ex) {
+      DataStoreTable.onError(ex);
+    }
+  }
+
+  /**
+   * Stops the writer thread after a final flush. Must be called before the connection is closed.
+   */
+  public void stop() {
+    myExecutor.shutdown();
+    try {
+      myExecutor.awaitTermination(myConfig.myFlushIntervalMs * 10, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+}
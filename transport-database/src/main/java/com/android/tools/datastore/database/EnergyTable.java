@@ -95,12 +95,12 @@ public final class EnergyTable extends DataStoreTable<EnergyTable.EventStatement
   }
 
   public void insertOrReplace(@NotNull Common.Session session, @NotNull EnergyProfiler.EnergySample sample) {
-    execute(EventStatements.INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    executeQueued(EventStatements.INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
   }
 
   public void insertOrReplace(@NotNull Common.Session session, @NotNull Common.Event event) {
-    execute(EventStatements.INSERT_EVENT, session.getSessionId(), event.getGroupId(), event.getTimestamp(), event.getIsEnded(),
-            event.toByteArray());
+    executeQueued(EventStatements.INSERT_EVENT, session.getSessionId(), event.getGroupId(), event.getTimestamp(), event.getIsEnded(),
+                  event.toByteArray());
   }
 
   /**
@@ -184,7 +184,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertJniReferenceData(@NotNull Common.Session session, @NotNull Memory.BatchJNIGlobalRefEvent sample) {
-    execute(INSERT_JNI_REF, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    executeQueued(INSERT_JNI_REF, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
   }
 
   public void insertAllocationContexts(Common.Session session, Memory.BatchAllocationContexts sample) {
@@ -201,7 +201,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertAllocationEvents(Common.Session session, Memory.BatchAllocationEvents sample) {
-    execute(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    executeQueued(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
   }
 
   public void insertOrReplaceAllocationSamplingRateEvent(@NotNull Common.Session session, @NotNull AllocationSamplingRateEvent event) {
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Caches statements prepared from SQL that is built at runtime, e.g. queries over tables created at runtime. Like the statements of a
+ * {@link DataStoreTable}, each thread gets its own statements, and each thread keeps at most a fixed number of them, evicting the least
+ * recently used one when it needs room for a new one. {@link #invalidate(Predicate)} evicts matching statements on every thread, which
+ * callers use before dropping a table the statements refer to.
+ * <p>
+ * An evicted statement is only closed once it is idle, i.e. the result set it last returned has been closed, and only by the thread
+ * that owns it, since another thread may be about to execute it. The statements of threads that have exited are closed by whichever
+ * thread next registers with, or invalidates, the cache.
+ */
+final class StatementCache {
+  private final int myMaxSize;
+  // The statements of each thread that used this cache, so that invalidate can reach them and those of exited threads can be closed.
+  @NotNull private final Map<Thread, ThreadStatements> myThreadStatements = new ConcurrentHashMap<>();
+  @NotNull private final ThreadLocal<ThreadStatements> myStatements = ThreadLocal.withInitial(this::createThreadStatements);
+
+  StatementCache(int maxSize) {
+    assert maxSize > 0;
+    myMaxSize = maxSize;
+  }
+
+  @NotNull
+  private ThreadStatements createThreadStatements() {
+    closeStatementsOfExitedThreads();
+    ThreadStatements statements = new ThreadStatements();
+    myThreadStatements.put(Thread.currentThread(), statements);
+    return statements;
+  }
+
+  /**
+   * @return the calling thread's statement for the given SQL, preparing it on the connection if needed.
+   */
+  @NotNull
+  PreparedStatement get(@NotNull Connection connection, @NotNull String sql) throws SQLException {
+    ThreadStatements statements = myStatements.get();
+    synchronized (statements) {
+      PreparedStatement statement = statements.myCached.get(sql);
+      if (statement == null) {
+        statement = connection.prepareStatement(sql);
+        statements.myCached.put(sql, statement);
+      }
+      statements.closeIdleEvicted();
+      return statement;
+    }
+  }
+
+  /**
+   * Records the result set that a statement returned by {@link #get(Connection, String)} produced, so that the statement is not closed
+   * while the result set is still being read.
+   */
+  void setResultSet(@NotNull PreparedStatement statement, @NotNull ResultSet resultSet) {
+    ThreadStatements statements = myStatements.get();
+    synchronized (statements) {
+      statements.myResultSets.put(statement, resultSet);
+    }
+  }
+
+  /**
+   * Evicts the statements of every thread whose SQL matches the given predicate. The calling thread's statements are closed right away
+   * if they are idle, those of other threads once their thread next uses the cache.
+   */
+  void invalidate(@NotNull Predicate<String> sqlMatcher) {
+    closeStatementsOfExitedThreads();
+    ThreadStatements ownStatements = myThreadStatements.get(Thread.currentThread());
+    for (ThreadStatements statements : myThreadStatements.values()) {
+      synchronized (statements) {
+        Iterator<Map.Entry<String, PreparedStatement>> iterator = statements.myCached.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Map.Entry<String, PreparedStatement> entry = iterator.next();
+          if (sqlMatcher.test(entry.getKey())) {
+            statements.myEvicted.add(entry.getValue());
+            iterator.remove();
+          }
+        }
+        if (statements == ownStatements) {
+          statements.closeIdleEvicted();
+        }
+      }
+    }
+  }
+
+  private void closeStatementsOfExitedThreads() {
+    Iterator<Map.Entry<Thread, ThreadStatements>> iterator = myThreadStatements.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Thread, ThreadStatements> entry = iterator.next();
+      if (!entry.getKey().isAlive()) {
+        iterator.remove();
+        ThreadStatements statements = entry.getValue();
+        synchronized (statements) {
+          statements.myCached.values().forEach(StatementCache::close);
+          statements.myEvicted.forEach(StatementCache::close);
+        }
+      }
+    }
+  }
+
+  private static void close(@NotNull PreparedStatement statement) {
+    try {
+      statement.close();
+    }
+    catch (SQLException ex) {
+      DataStoreTable.onError(ex);
+    }
+  }
+
+  /**
+   * The statements of one thread, guarded by the instance itself since {@link #invalidate(Predicate)} may run on any thread.
+   */
+  private final class ThreadStatements {
+    @NotNull private final Map<String, PreparedStatement> myCached = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+        if (size() <= myMaxSize) {
+          return false;
+        }
+        myEvicted.add(eldest.getValue());
+        return true;
+      }
+    };
+    @NotNull private final List<PreparedStatement> myEvicted = new ArrayList<>();
+    @NotNull private final Map<PreparedStatement, ResultSet> myResultSets = new IdentityHashMap<>();
+
+    private void closeIdleEvicted() {
+      Iterator<PreparedStatement> iterator = myEvicted.iterator();
+      while (iterator.hasNext()) {
+        PreparedStatement statement = iterator.next();
+        if (isIdle(statement)) {
+          close(statement);
+          myResultSets.remove(statement);
+          iterator.remove();
+        }
+      }
+    }
+
+    private boolean isIdle(@NotNull PreparedStatement statement) {
+      ResultSet resultSet = myResultSets.get(statement);
+      try {
+        return resultSet == null || resultSet.isClosed();
+      }
+      catch (SQLException ex) {
+        // The result set can no longer be read either way.
+        return true;
+      }
+    }
+  }
+}
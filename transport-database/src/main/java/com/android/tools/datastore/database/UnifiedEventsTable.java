@@ -26,27 +26,39 @@ import com.google.common.base.Predicates;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statements> {
+  private static final String EVENTS_TABLE = "UnifiedEventsTable";
+  private static final String BYTES_TABLE = "BytesTable";
+  private static final String EVENT_COLUMNS = "StreamId, ProcessId, GroupId, Kind, CommandId, Timestamp, IsEnded, Data";
+  // Since no data should be updated after it has been inserted we drop any duplicated request from the poller.
+  private static final String INSERT_EVENT_SQL = "INSERT OR IGNORE INTO [%s] (" + EVENT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String DELETE_EVENTS_SQL =
+    "DELETE FROM [%s] WHERE StreamId = ? AND ProcessId = ? And GroupId = ? And Kind = ? AND Timestamp >= ? AND Timestamp <= ?";
+  private static final String INSERT_BYTES_SQL = "INSERT OR IGNORE INTO [%s] (StreamId, Id, Data) VALUES (?, ?, ?)";
+  private static final String GET_BYTES_SQL = "SELECT Data FROM [%s] WHERE StreamId = ? AND Id = ?";
+  // Leaves room for 2^40 rows per partition when ordering rows across partitions.
+  private static final int ROW_ID_BUCKET_SHIFT = 40;
+
   public enum Statements {
-    // Since no data should be updated after it has been inserted we drop any duplicated request from the poller.
-    INSERT_EVENT(
-      "INSERT OR IGNORE INTO [UnifiedEventsTable] (StreamId, ProcessId, GroupId, Kind, CommandId, Timestamp, IsEnded, Data) " +
-      "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
-    DELETE_EVENTS(
-      "DELETE FROM [UnifiedEventsTable] " +
-      "WHERE StreamId = ? AND ProcessId = ? And GroupId = ? And Kind = ? AND Timestamp >= ? AND Timestamp <= ?"),
+    INSERT_EVENT(String.format(INSERT_EVENT_SQL, EVENTS_TABLE)),
+    DELETE_EVENTS(String.format(DELETE_EVENTS_SQL, EVENTS_TABLE)),
     // Only used for test.
     QUERY_EVENTS("SELECT Data FROM [UnifiedEventsTable]"),
-    INSERT_BYTES("INSERT OR IGNORE INTO [BytesTable] (StreamId, Id, Data) VALUES (?, ?, ?)"),
-    GET_BYTES("SELECT Data FROM [BytesTable] WHERE StreamId = ? AND Id = ?");
+    INSERT_BYTES(String.format(INSERT_BYTES_SQL, BYTES_TABLE)),
+    GET_BYTES(String.format(GET_BYTES_SQL, BYTES_TABLE));
 
     @NotNull private final String mySqlStatement;
 
@@ -60,6 +72,63 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * Splits the events and bytes of each stream into one table per time bucket, so that queries only touch the buckets overlapping their
+   * time range.
+   *
+   * Retention is opt-in. With a retention duration, once a stream's latest event is more than that duration past the end of a bucket, the
+   * bucket is compacted into the base tables: only the last event of each group that has not ended is kept, and the bucket's bytes are
+   * dropped. This bounds the size of the database during long sessions while keeping the state of long-running groups (e.g. processes)
+   * queryable, but the events and payloads of groups that ended in the bucket (e.g. completed captures) are lost.
+   */
+  public static final class PartitionConfig {
+    public static final long DEFAULT_PARTITION_DURATION_NS = TimeUnit.MINUTES.toNanos(5);
+    public static final long DEFAULT_RETENTION_NS = TimeUnit.HOURS.toNanos(1);
+    /**
+     * Retention duration that keeps every partition.
+     */
+    public static final long NO_RETENTION = Long.MAX_VALUE;
+
+    private final long myPartitionDurationNs;
+    private final long myRetentionNs;
+
+    public PartitionConfig(long partitionDurationNs, long retentionNs) {
+      assert partitionDurationNs > 0 && retentionNs >= 0;
+      myPartitionDurationNs = partitionDurationNs;
+      myRetentionNs = retentionNs;
+    }
+
+    /**
+     * Partitions events without retention.
+     */
+    public PartitionConfig() {
+      this(DEFAULT_PARTITION_DURATION_NS, NO_RETENTION);
+    }
+  }
+
+  private static final class StreamPartitions {
+    // Maps the bucket index to the suffix of the bucket's event and bytes tables.
+    @NotNull private final TreeMap<Long, String> myTableSuffixes = new TreeMap<>();
+    private long myLatestTimestamp = Long.MIN_VALUE;
+    // Buckets before this one have been compacted into the base tables.
+    private long myFirstLiveBucket = Long.MIN_VALUE;
+  }
+
+  @Nullable private final PartitionConfig myPartitionConfig;
+  // Partitions of each stream id. Also guards the creation and compaction of partition tables.
+  @NotNull private final Map<Long, StreamPartitions> myStreamPartitions = new HashMap<>();
+
+  public UnifiedEventsTable() {
+    this(null);
+  }
+
+  /**
+   * @param partitionConfig if not null, events are stored in time-bucketed partitions as described in {@link PartitionConfig}.
+   */
+  public UnifiedEventsTable(@Nullable PartitionConfig partitionConfig) {
+    myPartitionConfig = partitionConfig;
+  }
+
   @Override
   public void prepareStatements() {
     try {
@@ -76,43 +145,70 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
     try {
-      createTable("UnifiedEventsTable",
-                  "StreamId INTEGER NOT NULL", // Optional filter, required for all data.
-                  "ProcessId INTEGER NOT NULL", // Optional filter, not required for data (eg device/process).
-                  "GroupId INTEGER NOT NULL", // Optional filter, not required for data.
-                  "Kind INTEGER NOT NULL", // Required filter, required for all data.
-                  "CommandId INTEGER NOT NULL", // Optional filter, not required for data.
-                  "Timestamp INTEGER NOT NULL", // Optional filter, required for all data.
-                  "IsEnded INTEGER NOT NULL", // Optional filter, required for all data.
-                  "Data BLOB");
-      createTable("BytesTable", "StreamId INTEGER NOT NULL", "Id STRING NOT NULL", "Data BLOB");
-      createUniqueIndex("UnifiedEventsTable", "Kind", "StreamId", "ProcessId", "GroupId", "Timestamp", "IsEnded");
-      createUniqueIndex("BytesTable", "StreamId", "Id");
+      createTables("");
     }
     catch (SQLException ex) {
       onError(ex);
     }
   }
 
+  private void createTables(@NotNull String suffix) throws SQLException {
+    createTable(EVENTS_TABLE + suffix,
+                "StreamId INTEGER NOT NULL", // Optional filter, required for all data.
+                "ProcessId INTEGER NOT NULL", // Optional filter, not required for data (eg device/process).
+                "GroupId INTEGER NOT NULL", // Optional filter, not required for data.
+                "Kind INTEGER NOT NULL", // Required filter, required for all data.
+                "CommandId INTEGER NOT NULL", // Optional filter, not required for data.
+                "Timestamp INTEGER NOT NULL", // Optional filter, required for all data.
+                "IsEnded INTEGER NOT NULL", // Optional filter, required for all data.
+                "Data BLOB");
+    createTable(BYTES_TABLE + suffix, "StreamId INTEGER NOT NULL", "Id STRING NOT NULL", "Data BLOB");
+    createUniqueIndex(EVENTS_TABLE + suffix, "Kind", "StreamId", "ProcessId", "GroupId", "Timestamp", "IsEnded");
+    createUniqueIndex(BYTES_TABLE + suffix, "StreamId", "Id");
+  }
+
   public void insertUnifiedEvent(long streamId, @NotNull Event event) {
-    execute(Statements.INSERT_EVENT,
-            streamId,
-            event.getPid(),
-            event.getGroupId(),
-            event.getKind().getNumber(),
-            event.getCommandId(),
-            event.getTimestamp(),
-            event.getIsEnded() ? 1 : 0,
-            event.toByteArray());
+    Object[] params = {streamId,
+      event.getPid(),
+      event.getGroupId(),
+      event.getKind().getNumber(),
+      event.getCommandId(),
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()};
+    String partitionSuffix = getPartitionForInsert(streamId, event.getTimestamp());
+    if (partitionSuffix == null) {
+      executeQueued(Statements.INSERT_EVENT, params);
+    }
+    else {
+      executeQueued(String.format(INSERT_EVENT_SQL, EVENTS_TABLE + partitionSuffix), params);
+    }
   }
 
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
     execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
+    for (Map.Entry<Long, String> partition : getPartitions(streamId, fromTimestamp, toTimestamp)) {
+      executeOneTimeUpdate(String.format(DELETE_EVENTS_SQL, EVENTS_TABLE + partition.getValue()),
+                           streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
+    }
   }
 
   @VisibleForTesting
   public List<Event> queryUnifiedEvents() {
-    return queryUnifiedEvents(Statements.QUERY_EVENTS);
+    if (myPartitionConfig == null) {
+      return queryUnifiedEvents(Statements.QUERY_EVENTS);
+    }
+    List<Event> records = new ArrayList<>();
+    // Closing the results lets the statement cache close the statement once it is evicted.
+    try (ResultSet results = executeOneTimeQuery("SELECT Data FROM " + getEventsSource(0, 0, Long.MAX_VALUE), null)) {
+      while (results.next()) {
+        records.add(Event.parser().parseFrom(results.getBytes(1)));
+      }
+    }
+    catch (SQLException | InvalidProtocolBufferException ex) {
+      onError(ex);
+    }
+    return records;
   }
 
   /**
@@ -160,7 +256,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
 
     HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
     // The string format allows for altering the group by results for +1 and -1 queries.
-    String sql = "SELECT Data, GroupId%s From [UnifiedEventsTable] WHERE Kind = ? %s";
+    String sql = "SELECT Data, GroupId%s From %s WHERE Kind = ? %s";
     StringBuilder filter = new StringBuilder();
     baseParams.add(request.getKind().getNumber());
 
@@ -184,8 +280,15 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
       baseParams.add(request.getCommandId());
     }
 
-    String sqlBefore = String.format(sql, ", IsEnded, MAX(Timestamp), MAX(ROWID)", filter + " AND Timestamp < ? GROUP BY GroupId");
-    String sqlAfter = String.format(sql, ", MIN(Timestamp), MIN(ROWID)", filter + " AND Timestamp > ? GROUP BY GroupId");
+    // With partitioning enabled each query only reads the partitions that can hold events in its time range.
+    long fromTimestamp = Math.max(request.getFromTimestamp(), 0);
+    long toTimestamp = request.getToTimestamp() > 0 ? request.getToTimestamp() : Long.MAX_VALUE;
+    String sqlBefore = String.format(sql, ", IsEnded, MAX(Timestamp), MAX(ROWID)",
+                                     getEventsSource(request.getStreamId(), 0, fromTimestamp),
+                                     filter + " AND Timestamp < ? GROUP BY GroupId");
+    String sqlAfter = String.format(sql, ", MIN(Timestamp), MIN(ROWID)",
+                                    getEventsSource(request.getStreamId(), toTimestamp, Long.MAX_VALUE),
+                                    filter + " AND Timestamp > ? GROUP BY GroupId");
     ArrayList<Object> inRangeQueryParams = new ArrayList<>(baseParams);
     if (request.getFromTimestamp() > 0) {
       beforeRangeParams = new ArrayList<>(baseParams);
@@ -219,7 +322,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
 
     // Query example:
     // SELECT [Data], [GroupId] From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp >= ? AND Timestamp <= ?;
-    String query = String.format(sql, "", filter);
+    String query = String.format(sql, "", getEventsSource(request.getStreamId(), fromTimestamp, toTimestamp), filter);
     gatherEvents(query, inRangeQueryParams, builderGroups, Predicates.alwaysTrue());
 
     // Gather after range events if needed.
@@ -241,12 +344,28 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
   }
 
   public void insertBytes(long streamId, @NotNull String id, @NotNull BytesResponse response) {
-    execute(Statements.INSERT_BYTES, streamId, id, response.toByteArray());
+    String partitionSuffix = getLatestPartition(streamId);
+    if (partitionSuffix == null) {
+      executeQueued(Statements.INSERT_BYTES, streamId, id, response.toByteArray());
+    }
+    else {
+      executeQueued(String.format(INSERT_BYTES_SQL, BYTES_TABLE + partitionSuffix), streamId, id, response.toByteArray());
+    }
   }
 
   @Nullable
   public BytesResponse getBytes(@NotNull BytesRequest request) {
     try {
+      // Bytes are stored in the partition that was the latest when they were inserted, so search from the newest partition backwards.
+      List<Map.Entry<Long, String>> partitions = getPartitions(request.getStreamId(), 0, Long.MAX_VALUE);
+      for (int i = partitions.size() - 1; i >= 0; i--) {
+        try (ResultSet results = executeOneTimeQuery(String.format(GET_BYTES_SQL, BYTES_TABLE + partitions.get(i).getValue()),
+                                                     new Object[]{request.getStreamId(), request.getId()})) {
+          if (results.next()) {
+            return BytesResponse.parseFrom(results.getBytes(1));
+          }
+        }
+      }
       ResultSet results = executeQuery(Statements.GET_BYTES, request.getStreamId(), request.getId());
       if (results.next()) {
         return BytesResponse.parseFrom(results.getBytes(1));
@@ -259,6 +378,144 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     return null;
   }
 
+  /**
+   * @return the suffix of the partition tables that an event of the given stream and timestamp should be inserted into, creating them if
+   * needed, or null if the event belongs in the base table. Also compacts the partitions that fall out of the retention window.
+   */
+  @Nullable
+  private String getPartitionForInsert(long streamId, long timestamp) {
+    if (myPartitionConfig == null || isClosed()) {
+      return null;
+    }
+    long bucket = getBucket(timestamp);
+    synchronized (myStreamPartitions) {
+      StreamPartitions partitions = myStreamPartitions.computeIfAbsent(streamId, id -> new StreamPartitions());
+      if (timestamp > partitions.myLatestTimestamp) {
+        partitions.myLatestTimestamp = timestamp;
+        compactExpiredPartitions(partitions);
+      }
+      if (bucket < partitions.myFirstLiveBucket) {
+        // A late event for a bucket that has already been compacted.
+        return null;
+      }
+      String suffix = partitions.myTableSuffixes.get(bucket);
+      if (suffix == null) {
+        suffix = String.format("_%x_%d", streamId, bucket);
+        try {
+          createTables(suffix);
+        }
+        catch (SQLException ex) {
+          onError(ex);
+          return null;
+        }
+        partitions.myTableSuffixes.put(bucket, suffix);
+      }
+      return suffix;
+    }
+  }
+
+  /**
+   * @return the suffix of the newest partition of the given stream, or null if the stream has none.
+   */
+  @Nullable
+  private String getLatestPartition(long streamId) {
+    if (myPartitionConfig == null) {
+      return null;
+    }
+    synchronized (myStreamPartitions) {
+      StreamPartitions partitions = myStreamPartitions.get(streamId);
+      return partitions == null || partitions.myTableSuffixes.isEmpty() ? null : partitions.myTableSuffixes.lastEntry().getValue();
+    }
+  }
+
+  /**
+   * @param streamId the stream to get the partitions of, or 0 for all streams.
+   * @return the bucket indices and table suffixes of the partitions that may contain events between the given timestamps, ordered by
+   * bucket within each stream.
+   */
+  @NotNull
+  private List<Map.Entry<Long, String>> getPartitions(long streamId, long fromTimestamp, long toTimestamp) {
+    List<Map.Entry<Long, String>> partitions = new ArrayList<>();
+    if (myPartitionConfig == null) {
+      return partitions;
+    }
+    long fromBucket = getBucket(fromTimestamp);
+    long toBucket = getBucket(toTimestamp);
+    synchronized (myStreamPartitions) {
+      for (Map.Entry<Long, StreamPartitions> entry : myStreamPartitions.entrySet()) {
+        if (streamId == 0 || entry.getKey() == streamId) {
+          for (Map.Entry<Long, String> partition : entry.getValue().myTableSuffixes.subMap(fromBucket, true, toBucket, true).entrySet()) {
+            partitions.add(new AbstractMap.SimpleImmutableEntry<>(partition));
+          }
+        }
+      }
+    }
+    return partitions;
+  }
+
+  /**
+   * @return the table, or union of tables, to select events between the given timestamps from. The union exposes a RowId column that
+   * queries can use in place of ROWID: it is offset by the bucket index of each partition so that, like ROWID in a single table, it
+   * increases with the time the events were recorded.
+   */
+  @NotNull
+  private String getEventsSource(long streamId, long fromTimestamp, long toTimestamp) {
+    List<Map.Entry<Long, String>> partitions = getPartitions(streamId, fromTimestamp, toTimestamp);
+    if (partitions.isEmpty()) {
+      return "[" + EVENTS_TABLE + "]";
+    }
+    StringBuilder source = new StringBuilder("(SELECT ROWID AS RowId, * FROM [" + EVENTS_TABLE + "]");
+    for (Map.Entry<Long, String> partition : partitions) {
+      source.append(String.format(" UNION ALL SELECT ((%d << %d) + ROWID) AS RowId, * FROM [%s%s]",
+                                  partition.getKey() + 1, ROW_ID_BUCKET_SHIFT, EVENTS_TABLE, partition.getValue()));
+    }
+    return source.append(")").toString();
+  }
+
+  private void compactExpiredPartitions(@NotNull StreamPartitions partitions) {
+    assert myPartitionConfig != null;
+    if (myPartitionConfig.myRetentionNs == PartitionConfig.NO_RETENTION) {
+      return;
+    }
+    long firstLiveBucket = getBucket(partitions.myLatestTimestamp - myPartitionConfig.myRetentionNs);
+    if (firstLiveBucket <= partitions.myFirstLiveBucket) {
+      return;
+    }
+    partitions.myFirstLiveBucket = firstLiveBucket;
+    Iterator<String> expired = partitions.myTableSuffixes.headMap(firstLiveBucket, false).values().iterator();
+    while (expired.hasNext()) {
+      compactPartition(expired.next());
+      expired.remove();
+    }
+  }
+
+  /**
+   * Moves the last event of each group in the partition into the base table, replacing any older event of that group, unless the group
+   * has ended. Then drops the partition's tables.
+   */
+  private void compactPartition(@NotNull String suffix) {
+    String partition = "[" + EVENTS_TABLE + suffix + "]";
+    String groupMatch = "%1$s.Kind = %2$s.Kind AND %1$s.StreamId = %2$s.StreamId AND %1$s.ProcessId = %2$s.ProcessId AND " +
+                        "%1$s.GroupId = %2$s.GroupId";
+    try {
+      executeUncached(String.format("DELETE FROM [%s] WHERE EXISTS (SELECT 1 FROM %s AS e WHERE %s)",
+                                    EVENTS_TABLE, partition, String.format(groupMatch, "e", "[" + EVENTS_TABLE + "]")));
+      executeUncached(String.format("INSERT OR IGNORE INTO [%s] (%s) SELECT %s FROM %s AS e WHERE e.IsEnded = 0 AND e.ROWID = " +
+                                    "(SELECT l.ROWID FROM %s AS l WHERE %s ORDER BY l.Timestamp DESC, l.ROWID DESC LIMIT 1)",
+                                    EVENTS_TABLE, EVENT_COLUMNS, EVENT_COLUMNS, partition, partition, String.format(groupMatch, "l", "e")));
+      dropTable(EVENTS_TABLE + suffix);
+      dropTable(BYTES_TABLE + suffix);
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+  }
+
+  private long getBucket(long timestamp) {
+    assert myPartitionConfig != null;
+    return Math.max(timestamp, 0) / myPartitionConfig.myPartitionDurationNs;
+  }
+
   /**
    * Executes the sql statement and passes each event through the filter. If the filter returns true, the event is added
    * to the hashmap. Otherwise it is ignored.
@@ -272,8 +529,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
                             List<Object> params,
                             HashMap<Long, EventGroup.Builder> builderGroups,
                             Predicate<ResultSet> filter) {
-    try {
-      ResultSet results = executeOneTimeQuery(sql, params.toArray());
+    try (ResultSet results = executeOneTimeQuery(sql, params.toArray())) {
       while (results.next()) {
         Long groupId = results.getLong("GroupId");
         if (filter.test(results)) {
@@ -17,6 +17,7 @@ package com.android.tools.datastore.service;
 
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.PERFORMANT;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.DataStoreService.BackingNamespace;
 import com.android.tools.datastore.LogService;
@@ -289,4 +290,15 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
       myAllocationsTable.initialize(connection);
     }
   }
+
+  @Override
+  public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull DataStoreDatabase database) {
+    assert getBackingNamespaces().contains(namespace);
+    if (namespace.equals(BackingNamespace.DEFAULT_SHARED_NAMESPACE)) {
+      myStatsTable.initialize(database.getConnection(), database.getWriter());
+    }
+    else {
+      myAllocationsTable.initialize(database.getConnection(), database.getWriter());
+    }
+  }
 }
\ No newline at end of file
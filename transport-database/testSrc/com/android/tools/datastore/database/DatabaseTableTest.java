@@ -106,6 +106,65 @@ public class DatabaseTableTest {
     }
   }
 
+  @Test
+  public void testQueuedWritesAreVisibleToReads() throws Exception {
+    File dbFile = File.createTempFile("DatabaseTableTestBatched", "sql");
+    DataStoreDatabase database = new DataStoreDatabase(dbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE,
+                                                       new FakeLogService(), t -> {}, new DataStoreWriter.Config(60000, 10));
+    try {
+      ThreadTestTable table = new ThreadTestTable();
+      table.initialize(database.getConnection(), database.getWriter());
+      // Fewer rows than the batch size stay queued until a read flushes them.
+      for (int i = 0; i < 5; i++) {
+        table.insertDataQueued(i);
+      }
+      assertThat(countRows(table.readDataRaw())).isEqualTo(5);
+
+      // Exceeding the batch size flushes on the inserting thread.
+      for (int i = 0; i < 25; i++) {
+        table.insertDataQueued(i);
+      }
+      assertThat(countRows(table.readDataRaw())).isEqualTo(30);
+    }
+    finally {
+      database.disconnect();
+      dbFile.delete();
+    }
+  }
+
+  @Test
+  public void testQueuedWritesOfOtherThreadsAreVisibleToReads() throws Exception {
+    File dbFile = File.createTempFile("DatabaseTableTestBatchedReader", "sql");
+    DataStoreDatabase database = new DataStoreDatabase(dbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE,
+                                                       new FakeLogService(), t -> {}, new DataStoreWriter.Config(60000, 10));
+    try {
+      ThreadTestTable table = new ThreadTestTable();
+      table.initialize(database.getConnection(), database.getWriter());
+      Thread inserter = new Thread(() -> {
+        for (int i = 0; i < 5; i++) {
+          table.insertDataQueued(i);
+        }
+      });
+      inserter.start();
+      inserter.join();
+
+      // Reads from a thread that did not queue the rows flush them too, so they are seen without waiting for the writer.
+      assertThat(countRows(table.readDataRaw())).isEqualTo(5);
+    }
+    finally {
+      database.disconnect();
+      dbFile.delete();
+    }
+  }
+
+  private static int countRows(@NotNull ResultSet resultSet) throws SQLException {
+    int count = 0;
+    while (resultSet.next()) {
+      count++;
+    }
+    return count;
+  }
+
   /**
    * Runnable class that handles querying the database as fast as possible.
    */
@@ -184,6 +243,10 @@ public class DatabaseTableTest {
       }
     }
 
+    public void insertDataQueued(int data) {
+      executeQueued(ThreadTableStatement.INSERT_DATA, data);
+    }
+
     public ResultSet readDataRaw() throws SQLException {
       return executeQuery(ThreadTableStatement.READ_DATA);
     }
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.idea.protobuf.ByteString
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport.BytesRequest
+import com.android.tools.profiler.proto.Transport.BytesResponse
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.io.File
+import java.util.function.Consumer
+
+/**
+ * Tests a [UnifiedEventsTable] whose events are spread across partitions. The shared table puts every 2ns of events in a partition of
+ * its own, without dropping any of them.
+ */
+class PartitionedUnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
+  // Two SESSION groups whose events fall in several partitions, and a PROCESS group.
+  private val events = listOf(eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 1),
+                              eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 2),
+                              eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 3),
+                              eventBuilder(Common.Event.Kind.SESSION, true, 1, 1, 0, 4),
+                              eventBuilder(Common.Event.Kind.SESSION, false, 1, 2, 0, 5),
+                              eventBuilder(Common.Event.Kind.SESSION, true, 1, 2, 0, 8),
+                              eventBuilder(Common.Event.Kind.PROCESS, true, 1, 3, 0, 6))
+
+  override fun createTable(): UnifiedEventsTable {
+    return UnifiedEventsTable(UnifiedEventsTable.PartitionConfig(2, UnifiedEventsTable.PartitionConfig.NO_RETENTION))
+  }
+
+  override fun getTableQueryMethodsForVerification(): List<Consumer<UnifiedEventsTable>> {
+    val events = mutableListOf(Common.Event.newBuilder().build())
+    return mutableListOf(
+      (Consumer { it.insertUnifiedEvent(1, events[0]) }),
+      (Consumer { it.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 1, 1) }),
+      (Consumer {
+        it.queryUnifiedEventGroups(
+          GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setPid(1).setToTimestamp(
+            10).build())
+      }),
+      (Consumer { it.queryUnifiedEvents() }),
+      (Consumer { assertThat(it.getBytes(BytesRequest.getDefaultInstance())).isEqualTo(null) }),
+      (Consumer { it.insertBytes(0, "id", BytesResponse.getDefaultInstance()) }))
+  }
+
+  @Test
+  fun queryEventsOfAllPartitions() {
+    events.forEach { table.insertUnifiedEvent(1, it) }
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+  }
+
+  @Test
+  fun deleteEventsOfAllPartitions() {
+    events.forEach { table.insertUnifiedEvent(1, it) }
+    table.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 2, 4)
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events - events.subList(1, 4))
+  }
+
+  @Test
+  fun filterKind() {
+    validateFilter(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.PROCESS).build(), 6)
+  }
+
+  @Test
+  fun filterKindFromTimestamp() {
+    // The first group ended before the from timestamp, and the event of the second group before it is included.
+    validateFilter(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setFromTimestamp(6).build(), 4, 5)
+  }
+
+  @Test
+  fun filterKindFromTimestampToTimestamp() {
+    // The events of the first group either side of the range are included, and the second group starts after it.
+    validateFilter(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setFromTimestamp(3).setToTimestamp(3).build(),
+                   1, 2, 3)
+  }
+
+  @Test
+  fun getBytesOfLatestPartition() {
+    val bytes = BytesResponse.newBuilder().setContents(ByteString.copyFromUtf8("data")).build()
+    events.forEach { table.insertUnifiedEvent(1, it) }
+    table.insertBytes(1, "id", bytes)
+    assertThat(table.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("id").build())).isEqualTo(bytes)
+  }
+
+  @Test
+  fun expiredPartitionsAreCompacted() {
+    val dbFile = File.createTempFile("PartitionedUnifiedEventsTableTest", "sql")
+    val database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    try {
+      val partitionedTable = UnifiedEventsTable(UnifiedEventsTable.PartitionConfig(10, 10))
+      partitionedTable.initialize(database.connection)
+      val openGroupLatest = eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 2)
+      partitionedTable.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 1))
+      partitionedTable.insertUnifiedEvent(1, openGroupLatest)
+      partitionedTable.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, false, 1, 2, 0, 3))
+      partitionedTable.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, true, 1, 2, 0, 4))
+      partitionedTable.insertBytes(1, "expired", BytesResponse.newBuilder().setContents(ByteString.copyFromUtf8("data")).build())
+      assertThat(partitionedTable.queryUnifiedEvents()).hasSize(4)
+
+      // An event 25ns later pushes the first bucket [0, 10) out of the 10ns retention window.
+      val newEvent = eventBuilder(Common.Event.Kind.SESSION, false, 1, 3, 0, 25)
+      partitionedTable.insertUnifiedEvent(1, newEvent)
+
+      // Only the last event of the group that has not ended survives, along with the new event.
+      assertThat(partitionedTable.queryUnifiedEvents()).containsExactly(openGroupLatest, newEvent)
+      assertThat(partitionedTable.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("expired").build())).isNull()
+      // The compacted group is still returned for queries after it.
+      val groups = partitionedTable.queryUnifiedEventGroups(
+        GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setFromTimestamp(20).build())
+      assertThat(groups.map { it.groupId }).containsExactly(1L, 3L)
+    }
+    finally {
+      database.disconnect()
+      dbFile.delete()
+    }
+  }
+
+  @Test
+  fun partitionsAreKeptWithoutRetention() {
+    val dbFile = File.createTempFile("PartitionedUnifiedEventsTableTestNoRetention", "sql")
+    val database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    try {
+      val partitionedTable = UnifiedEventsTable(UnifiedEventsTable.PartitionConfig())
+      partitionedTable.initialize(database.connection)
+      val endedGroup = listOf(eventBuilder(Common.Event.Kind.SESSION, false, 1, 2, 0, 1),
+                              eventBuilder(Common.Event.Kind.SESSION, true, 1, 2, 0, 2))
+      endedGroup.forEach { partitionedTable.insertUnifiedEvent(1, it) }
+      partitionedTable.insertBytes(1, "kept", BytesResponse.newBuilder().setContents(ByteString.copyFromUtf8("data")).build())
+      // Far past the default retention duration, which only applies when it is asked for.
+      val newEvent = eventBuilder(Common.Event.Kind.SESSION, false, 1, 3, 0, UnifiedEventsTable.PartitionConfig.DEFAULT_RETENTION_NS * 10)
+      partitionedTable.insertUnifiedEvent(1, newEvent)
+
+      assertThat(partitionedTable.queryUnifiedEvents()).containsExactlyElementsIn(endedGroup + newEvent)
+      assertThat(partitionedTable.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("kept").build())).isNotNull()
+    }
+    finally {
+      database.disconnect()
+      dbFile.delete()
+    }
+  }
+
+  @Test
+  fun partitionInsertsAreQueued() {
+    val dbFile = File.createTempFile("PartitionedUnifiedEventsTableTestBatched", "sql")
+    val database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), {},
+                                     DataStoreWriter.Config(60000, 100))
+    try {
+      val partitionedTable = UnifiedEventsTable(UnifiedEventsTable.PartitionConfig(10, 10))
+      partitionedTable.initialize(database.connection, database.writer)
+      val insertedEvents = (0L until 30L).map { eventBuilder(Common.Event.Kind.SESSION, false, 1, it, 0, it) }
+      insertedEvents.forEach { partitionedTable.insertUnifiedEvent(1, it) }
+
+      // The event at 20ns compacts the first bucket [0, 10), which flushes the 20 rows queued before it. That leaves the last event of
+      // each of the 10 open groups of the first bucket in the base table, and the 10 rows of the second bucket in its partition. The 10
+      // rows of the third bucket are still queued. Count the rows directly, since reads through the table flush the queue.
+      val countSql = "SELECT (SELECT COUNT(*) FROM [UnifiedEventsTable]) + (SELECT COUNT(*) FROM [UnifiedEventsTable_1_1]) + " +
+                     "(SELECT COUNT(*) FROM [UnifiedEventsTable_1_2])"
+      database.connection.createStatement().use { statement ->
+        statement.executeQuery(countSql).use { results ->
+          assertThat(results.next()).isTrue()
+          assertThat(results.getInt(1)).isEqualTo(20)
+        }
+      }
+      database.writer!!.flush()
+      assertThat(partitionedTable.queryUnifiedEvents()).containsExactlyElementsIn(insertedEvents)
+    }
+    finally {
+      database.disconnect()
+      dbFile.delete()
+    }
+  }
+
+  private fun validateFilter(request: GetEventGroupsRequest, vararg expectedIndices: Int) {
+    events.forEach { table.insertUnifiedEvent(1, it) }
+    val actualResults = table.queryUnifiedEventGroups(request).flatMap { it.eventsList }
+    assertThat(actualResults).containsExactlyElementsIn(expectedIndices.map { events[it] })
+  }
+
+  private fun eventBuilder(kind: Common.Event.Kind,
+                           isEnded: Boolean,
+                           pid: Int,
+                           groupId: Long,
+                           commandId: Int,
+                           timestamp: Long): Common.Event {
+    return Common.Event.newBuilder()
+      .setKind(kind)
+      .setIsEnded(isEnded)
+      .setPid(pid)
+      .setGroupId(groupId)
+      .setCommandId(commandId)
+      .setTimestamp(timestamp)
+      .build()
+  }
+}
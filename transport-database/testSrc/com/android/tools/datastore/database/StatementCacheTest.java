@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.datastore.FakeLogService;
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+  private File myDbFile;
+  private DataStoreDatabase myDatabase;
+
+  @Before
+  public void setUp() throws Exception {
+    myDbFile = File.createTempFile("StatementCacheTest", "sql");
+    myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.PERFORMANT, new FakeLogService());
+  }
+
+  @After
+  public void tearDown() {
+    myDatabase.disconnect();
+    myDbFile.delete();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedStatementIsClosed() throws Exception {
+    StatementCache cache = new StatementCache(2);
+    PreparedStatement first = cache.get(myDatabase.getConnection(), "SELECT 1");
+    PreparedStatement second = cache.get(myDatabase.getConnection(), "SELECT 2");
+    assertThat(cache.get(myDatabase.getConnection(), "SELECT 1")).isSameAs(first);
+
+    cache.get(myDatabase.getConnection(), "SELECT 3");
+    assertThat(second.isClosed()).isTrue();
+    assertThat(first.isClosed()).isFalse();
+    assertThat(cache.get(myDatabase.getConnection(), "SELECT 2")).isNotSameAs(second);
+  }
+
+  @Test
+  public void testEvictedStatementIsClosedOnceIdle() throws Exception {
+    StatementCache cache = new StatementCache(1);
+    PreparedStatement first = cache.get(myDatabase.getConnection(), "SELECT 1");
+    ResultSet results = first.executeQuery();
+    cache.setResultSet(first, results);
+
+    cache.get(myDatabase.getConnection(), "SELECT 2");
+    assertThat(first.isClosed()).isFalse();
+    assertThat(results.next()).isTrue();
+
+    results.close();
+    cache.get(myDatabase.getConnection(), "SELECT 2");
+    assertThat(first.isClosed()).isTrue();
+  }
+
+  @Test
+  public void testInvalidateClosesStatementsOfExitedThreads() throws Exception {
+    StatementCache cache = new StatementCache(8);
+    AtomicReference<PreparedStatement> otherThreadStatement = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        otherThreadStatement.set(cache.get(myDatabase.getConnection(), "SELECT 1 AS [Dropped]"));
+      }
+      catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    thread.start();
+    thread.join();
+    PreparedStatement kept = cache.get(myDatabase.getConnection(), "SELECT 2 AS [Kept]");
+
+    cache.invalidate(sql -> sql.contains("[Dropped]"));
+    assertThat(otherThreadStatement.get().isClosed()).isTrue();
+    assertThat(kept.isClosed()).isFalse();
+  }
+
+  @Test
+  public void testInvalidatedStatementOfLiveThreadIsClosedByThatThread() throws Exception {
+    StatementCache cache = new StatementCache(8);
+    AtomicReference<PreparedStatement> otherThreadStatement = new AtomicReference<>();
+    CountDownLatch prepared = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try {
+        otherThreadStatement.set(cache.get(myDatabase.getConnection(), "SELECT 1 AS [Dropped]"));
+        prepared.countDown();
+        invalidated.await();
+        cache.get(myDatabase.getConnection(), "SELECT 2");
+      }
+      catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    thread.start();
+    prepared.await();
+
+    // The other thread may be about to execute the statement, so it is left open until that thread uses the cache again.
+    cache.invalidate(sql -> sql.contains("[Dropped]"));
+    assertThat(otherThreadStatement.get().isClosed()).isFalse();
+
+    invalidated.countDown();
+    thread.join();
+    assertThat(otherThreadStatement.get().isClosed()).isTrue();
+  }
+}